@@ -0,0 +1,180 @@
+package io.github.willqi.pizzamc.claims.api.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Thread safe cache that loads missing values asynchronously, only loading a key once at a time.
+ *
+ * The cache can be bounded in size, in which case the least recently used values are evicted first.
+ * Values can expire a while after they were written and can be reloaded in the background
+ * once they are older than the refresh time while the old value is still handed out.
+ * @param <K> key type
+ * @param <V> value type. Values should be immutable
+ */
+public class AsyncLoadingCache<K, V> {
+
+    private final Function<K, CompletableFuture<V>> loader;
+    private final long expireAfterWriteNanos;
+    private final long refreshAfterWriteNanos;
+
+    // Ordered from least to most recently used
+    private final LinkedHashMap<K, Entry<V>> entries;
+    private final InFlightLoads<K, V> loads;
+    private final LoadStats stats;
+
+    /**
+     * Create an unbounded cache whose values never expire
+     * @param loader loads the value of a key
+     */
+    public AsyncLoadingCache(Function<K, CompletableFuture<V>> loader) {
+        this(loader, 0, 0, 0, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * @param loader loads the value of a key
+     * @param maximumSize amount of values kept before the least recently used one is evicted. 0 or less for no limit
+     * @param expireAfterWrite how long a value is kept after it was written. 0 or less to keep values until they are evicted
+     * @param refreshAfterWrite how old a value can get before it is reloaded in the background. 0 or less to never refresh
+     * @param unit unit of expireAfterWrite and refreshAfterWrite
+     */
+    public AsyncLoadingCache(Function<K, CompletableFuture<V>> loader, int maximumSize, long expireAfterWrite, long refreshAfterWrite, TimeUnit unit) {
+        this.loader = loader;
+        this.expireAfterWriteNanos = unit.toNanos(expireAfterWrite);
+        this.refreshAfterWriteNanos = unit.toNanos(refreshAfterWrite);
+        this.entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true) {
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return maximumSize > 0 && this.size() > maximumSize;
+            }
+
+        };
+        this.stats = new LoadStats();
+        this.loads = new InFlightLoads<>(this.stats);
+    }
+
+    /**
+     * Retrieve the value of a key, loading it if it is not cached
+     * @param key
+     * @return CompletableFuture with the value
+     */
+    public CompletableFuture<V> get(K key) {
+        V value;
+        boolean refresh;
+        synchronized (this) {
+            Entry<V> entry = this.getEntry(key);
+            if (entry == null) {
+                value = null;
+                refresh = false;
+            } else {
+                value = entry.value;
+                refresh = this.refreshAfterWriteNanos > 0 && System.nanoTime() - entry.writeTime >= this.refreshAfterWriteNanos;
+            }
+        }
+        if (value == null) {
+            this.stats.recordMiss();
+            return this.loads.load(key, this::loadAndStore);
+        }
+
+        this.stats.recordHit();
+        if (refresh && this.loads.get(key) == null) {
+            // The old value is still used if the refresh fails
+            this.loads.load(key, this::loadAndStore);
+        }
+        return CompletableFuture.completedFuture(value);
+    }
+
+    /**
+     * @param key
+     * @return the cached value or null if it is not cached
+     */
+    public synchronized V getIfPresent(K key) {
+        Entry<V> entry = this.getEntry(key);
+        return entry != null ? entry.value : null;
+    }
+
+    public synchronized void put(K key, V value) {
+        this.entries.put(key, new Entry<>(value, System.nanoTime()));
+    }
+
+    /**
+     * Change the cached value of a key atomically
+     * @param key
+     * @param remappingFunction called with the key and the cached value or null. Returning null removes the value
+     * @return the new value
+     */
+    public synchronized V compute(K key, BiFunction<K, V, V> remappingFunction) {
+        Entry<V> entry = this.getEntry(key);
+        V value = remappingFunction.apply(key, entry != null ? entry.value : null);
+        if (value == null) {
+            this.entries.remove(key);
+        } else {
+            this.entries.put(key, new Entry<>(value, System.nanoTime()));
+        }
+        return value;
+    }
+
+    public synchronized void invalidate(K key) {
+        this.entries.remove(key);
+    }
+
+    public synchronized void invalidateAll() {
+        this.entries.clear();
+        this.loads.clear();
+    }
+
+    public synchronized int size() {
+        return this.entries.size();
+    }
+
+    public LoadStats getStats() {
+        return this.stats;
+    }
+
+    /**
+     * Must be called while synchronized. Expired entries are removed
+     */
+    private Entry<V> getEntry(K key) {
+        Entry<V> entry = this.entries.get(key);
+        if (entry != null && this.expireAfterWriteNanos > 0 && System.nanoTime() - entry.writeTime >= this.expireAfterWriteNanos) {
+            this.entries.remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    private CompletableFuture<V> loadAndStore(K key) {
+        long startTime = System.nanoTime();
+        return this.loader.apply(key).thenApply(value -> {
+            synchronized (this) {
+                Entry<V> entry = this.entries.get(key);
+                // A value written while loading is newer than the loaded one
+                if (entry != null && entry.writeTime - startTime >= 0) {
+                    return entry.value;
+                }
+                if (value != null) {
+                    this.entries.put(key, new Entry<>(value, System.nanoTime()));
+                }
+                return value;
+            }
+        });
+    }
+
+    private static class Entry<V> {
+
+        private final V value;
+        private final long writeTime;
+
+        private Entry(V value, long writeTime) {
+            this.value = value;
+            this.writeTime = writeTime;
+        }
+
+    }
+
+}
@@ -0,0 +1,99 @@
+package io.github.willqi.pizzamc.claims.api.cache;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Ensures that only 1 load is in flight at a time for each key.
+ *
+ * A load is registered atomically before it starts and is only removed by the load itself once it finished,
+ * so a finished load is never left behind and two callers can never start a load of the same key at once.
+ * Loads should store their result somewhere before they complete so that callers woken up by them find it.
+ * Started and coalesced loads are recorded in the stats. Hits and misses are recorded by the caller.
+ * @param <K> key type
+ * @param <V> loaded value type
+ */
+public class InFlightLoads<K, V> {
+
+    private final Map<K, CompletableFuture<V>> loads;
+    private final LoadStats stats;
+
+    public InFlightLoads(LoadStats stats) {
+        this.loads = new ConcurrentHashMap<>();
+        this.stats = stats;
+    }
+
+    /**
+     * Wait on the load of a key that is in flight or start a new one
+     * @param key
+     * @param loader starts loading the key. Called outside of any lock
+     * @return CompletableFuture with the loaded value
+     */
+    public CompletableFuture<V> load(K key, Function<K, CompletableFuture<V>> loader) {
+        CompletableFuture<V> promise = new CompletableFuture<>();
+        CompletableFuture<V> existingLoad = this.loads.putIfAbsent(key, promise);
+        if (existingLoad != null) {
+            this.stats.recordCoalescedLoad();
+            return existingLoad;
+        }
+
+        long startTime = System.nanoTime();
+        CompletableFuture<V> load;
+        try {
+            load = loader.apply(key);
+        } catch (RuntimeException exception) {
+            load = new CompletableFuture<>();
+            load.completeExceptionally(exception);
+        }
+        load.whenComplete((value, exception) -> {
+            // Removed before completing so that nobody woken up by the promise finds it in flight
+            this.loads.remove(key, promise);
+            this.stats.recordLoad(System.nanoTime() - startTime, exception == null);
+            if (exception != null) {
+                promise.completeExceptionally(exception);
+            } else {
+                promise.complete(value);
+            }
+        });
+        return promise;
+    }
+
+    /**
+     * Register a load that was started elsewhere, such as one that loads many keys at once
+     * @param key
+     * @param load
+     * @return the load that was already in flight for the key or null if the load was registered
+     */
+    public CompletableFuture<V> register(K key, CompletableFuture<V> load) {
+        CompletableFuture<V> existingLoad = this.loads.putIfAbsent(key, load);
+        if (existingLoad != null) {
+            this.stats.recordCoalescedLoad();
+            return existingLoad;
+        }
+        long startTime = System.nanoTime();
+        load.whenComplete((value, exception) -> {
+            this.loads.remove(key, load);
+            this.stats.recordLoad(System.nanoTime() - startTime, exception == null);
+        });
+        return null;
+    }
+
+    /**
+     * @param key
+     * @return the load in flight for the key or null
+     */
+    public CompletableFuture<V> get(K key) {
+        return this.loads.get(key);
+    }
+
+    public int size() {
+        return this.loads.size();
+    }
+
+    public void clear() {
+        this.loads.clear();
+    }
+
+}
@@ -0,0 +1,97 @@
+package io.github.willqi.pizzamc.claims.api.cache;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Thread safe counters of how often cached values were used and how long loading missing values took.
+ */
+public class LoadStats {
+
+    private final LongAdder hits;
+    private final LongAdder misses;
+    private final LongAdder coalescedLoads;
+    private final LongAdder loads;
+    private final LongAdder failedLoads;
+    private final LongAdder loadNanos;
+
+    public LoadStats() {
+        this.hits = new LongAdder();
+        this.misses = new LongAdder();
+        this.coalescedLoads = new LongAdder();
+        this.loads = new LongAdder();
+        this.failedLoads = new LongAdder();
+        this.loadNanos = new LongAdder();
+    }
+
+    public void recordHit() {
+        this.hits.increment();
+    }
+
+    public void recordMiss() {
+        this.misses.increment();
+    }
+
+    /**
+     * Record a miss that waited on a load that was already in flight instead of starting another one
+     */
+    public void recordCoalescedLoad() {
+        this.coalescedLoads.increment();
+    }
+
+    /**
+     * @param nanos time the load took
+     * @param successful if the load did not fail
+     */
+    public void recordLoad(long nanos, boolean successful) {
+        this.loads.increment();
+        this.loadNanos.add(nanos);
+        if (!successful) {
+            this.failedLoads.increment();
+        }
+    }
+
+    public long getHitCount() {
+        return this.hits.sum();
+    }
+
+    public long getMissCount() {
+        return this.misses.sum();
+    }
+
+    public long getCoalescedLoadCount() {
+        return this.coalescedLoads.sum();
+    }
+
+    /**
+     * @return the amount of loads that were started. Coalesced loads are not included
+     */
+    public long getLoadCount() {
+        return this.loads.sum();
+    }
+
+    public long getFailedLoadCount() {
+        return this.failedLoads.sum();
+    }
+
+    /**
+     * @return the ratio of requests served from the cache
+     */
+    public double getHitRate() {
+        long hits = this.getHitCount();
+        long requests = hits + this.getMissCount();
+        return requests > 0 ? (double)hits / requests : 1;
+    }
+
+    public double getAverageLoadMillis() {
+        long loads = this.getLoadCount();
+        return loads > 0 ? this.loadNanos.sum() / 1_000_000d / loads : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d hits, %d misses (%.1f%% hit rate), %d loads (%d failed, %d coalesced) averaging %.2fms",
+                this.getHitCount(), this.getMissCount(), this.getHitRate() * 100, this.getLoadCount(), this.getFailedLoadCount(),
+                this.getCoalescedLoadCount(), this.getAverageLoadMillis());
+    }
+
+}
@@ -4,16 +4,19 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.UUID;
 
-public class Claim implements Cloneable {
+/**
+ * Immutable snapshot of a claim.
+ * Use the with* methods to create a modified copy that can be passed to the ClaimsManager.
+ */
+public class Claim {
 
-    private ChunkCoordinates coordinates;
+    private final ChunkCoordinates coordinates;
 
-    private int flags;
-    private UUID owner = null;
+    private final int flags;
+    private final UUID owner;
 
     public Claim (ChunkCoordinates coordinates, int flags) {
-        this.coordinates = coordinates;
-        this.flags = flags;
+        this(coordinates, null, flags);
     }
 
     public Claim (ChunkCoordinates coordinates, UUID owner, int flags) {
@@ -34,47 +37,67 @@ public class Claim implements Cloneable {
         return Optional.ofNullable(owner);
     }
 
-    public void setOwner (UUID uuid) {
-        this.owner = uuid;
+    /**
+     * Owner without allocating an Optional. Used on hot paths within the package
+     * @return the owner or null if nobody has claimed this chunk
+     */
+    UUID getOwnerUuid() {
+        return this.owner;
+    }
+
+    public boolean hasOwner() {
+        return this.owner != null;
+    }
+
+    /**
+     * Check if a player owns this claim without allocating an Optional
+     * @param uuid
+     * @return if the uuid is the owner of this claim
+     */
+    public boolean isOwner(UUID uuid) {
+        return this.owner != null && this.owner.equals(uuid);
+    }
+
+    /**
+     * @param uuid the new owner or null to remove the owner
+     * @return a copy of this claim with the owner provided
+     */
+    public Claim withOwner (UUID uuid) {
+        return new Claim(this.coordinates, uuid, this.flags);
     }
 
     public int getFlags() {
         return this.flags;
     }
 
-    public void setFlags(int flags) {
-        this.flags = flags;
+    /**
+     * @param flags
+     * @return a copy of this claim with the flags provided
+     */
+    public Claim withFlags(int flags) {
+        return new Claim(this.coordinates, this.owner, flags);
     }
 
-    public void addFlag(Flag flag) {
-        if ((this.flags & flag.getValue()) == 0) {
-            this.flags += flag.getValue();
-        }
+    /**
+     * @param flag
+     * @return a copy of this claim with the flag added
+     */
+    public Claim withFlag(Flag flag) {
+        return this.withFlags(this.flags | flag.getValue());
     }
 
-    public void removeFlag(Flag flag) {
-        if ((this.flags & flag.getValue()) != 0) {
-            this.flags -= flag.getValue();
-        }
+    /**
+     * @param flag
+     * @return a copy of this claim with the flag removed
+     */
+    public Claim withoutFlag(Flag flag) {
+        return this.withFlags(this.flags & ~flag.getValue());
     }
 
     public boolean hasFlag(Flag flag) {
         return (this.flags & flag.getValue()) != 0;
     }
 
-    @Override
-    protected Claim clone() {
-        try {
-            return (Claim)super.clone();
-        } catch (CloneNotSupportedException exception) {
-            if (this.getOwner().isPresent()) {
-                return new Claim(this.coordinates, this.owner, this.getFlags());
-            } else {
-                return new Claim(this.coordinates, this.getFlags());
-            }
-        }
-    }
-
     @Override
     public int hashCode() {
         return Objects.hash(this.coordinates);
@@ -3,10 +3,14 @@ package io.github.willqi.pizzamc.claims.api.claims;
 import java.util.Objects;
 import java.util.UUID;
 
-public class ClaimHelper implements Cloneable {
+/**
+ * Immutable snapshot of a claim helper.
+ * Use the with* methods to create a modified copy that can be passed to the ClaimsManager.
+ */
+public class ClaimHelper {
 
-    private int permissions;
-    private UUID uuid;
+    private final int permissions;
+    private final UUID uuid;
 
     public ClaimHelper(UUID helperUuid, int permissions) {
         this.uuid = helperUuid;
@@ -14,7 +18,7 @@ public class ClaimHelper implements Cloneable {
     }
 
     public ClaimHelper(UUID helperUuid) {
-        this.uuid = helperUuid;
+        this(helperUuid, 0);
     }
 
     public int getPermissions() {
@@ -25,40 +29,36 @@ public class ClaimHelper implements Cloneable {
         return this.uuid;
     }
 
-    public void setPermissions (int permissions) {
-        this.permissions = permissions;
+    /**
+     * @param permissions
+     * @return a copy of this helper with the permissions provided
+     */
+    public ClaimHelper withPermissions (int permissions) {
+        return new ClaimHelper(this.uuid, permissions);
     }
 
     /**
      * Add a permission to the helper
      * @param permission
-     * @return the helper
+     * @return a copy of this helper with the permission added
      */
-    public void addPermission (Permission permission) {
-        if ((this.permissions & permission.getValue()) == 0) {
-            this.permissions += permission.getValue();
-        }
+    public ClaimHelper withPermission (Permission permission) {
+        return this.withPermissions(this.permissions | permission.getValue());
     }
 
-    public void removePermission (Permission permission) {
-        if ((this.permissions & permission.getValue()) != 0) {
-            this.permissions -= permission.getValue();
-        }
+    /**
+     * Remove a permission from the helper
+     * @param permission
+     * @return a copy of this helper with the permission removed
+     */
+    public ClaimHelper withoutPermission (Permission permission) {
+        return this.withPermissions(this.permissions & ~permission.getValue());
     }
 
     public boolean hasPermission (Permission permission) {
         return (this.permissions & permission.getValue()) != 0;
     }
 
-    @Override
-    protected ClaimHelper clone() {
-        try {
-            return (ClaimHelper)super.clone();
-        } catch (CloneNotSupportedException exception) {
-            return new ClaimHelper(this.getUuid(), this.getPermissions());
-        }
-    }
-
     @Override
     public int hashCode() {
         return Objects.hash(this.uuid);
@@ -0,0 +1,168 @@
+package io.github.willqi.pizzamc.claims.api.claims;
+
+import java.util.*;
+import java.util.function.Supplier;
+
+/**
+ * Groups the claimed chunks of each owner into regions of chunks that share an edge.
+ *
+ * Each owner has a union-find over their claimed chunks that is built the first time their regions are queried.
+ * New claims are merged into it right away. Union-find can not split a region, so removing a claim
+ * throws away the owner's union-find and it is rebuilt on the next query.
+ */
+class ClaimRegions {
+
+    // Parent of every claimed chunk per owner. A chunk that is its own parent is the root of a region
+    private final Map<UUID, Map<ChunkCoordinates, ChunkCoordinates>> parents;
+    // Amount of chunks in the region of each root per owner
+    private final Map<UUID, Map<ChunkCoordinates, Integer>> sizes;
+
+    ClaimRegions() {
+        this.parents = new HashMap<>();
+        this.sizes = new HashMap<>();
+    }
+
+    /**
+     * Merge a new claim into the regions of its owner.
+     * Has no effect if the regions of the owner were not built yet.
+     * @param owner
+     * @param coordinates
+     */
+    synchronized void add(UUID owner, ChunkCoordinates coordinates) {
+        Map<ChunkCoordinates, ChunkCoordinates> ownerParents = this.parents.get(owner);
+        if (ownerParents == null || ownerParents.containsKey(coordinates)) {
+            return;
+        }
+        this.addUnlocked(owner, ownerParents, coordinates);
+    }
+
+    /**
+     * Remove a claim from the regions of its owner
+     * @param owner
+     * @param coordinates
+     */
+    synchronized void remove(UUID owner, ChunkCoordinates coordinates) {
+        Map<ChunkCoordinates, ChunkCoordinates> ownerParents = this.parents.get(owner);
+        if (ownerParents != null && ownerParents.containsKey(coordinates)) {
+            this.removeOwner(owner);
+        }
+    }
+
+    /**
+     * @param owner
+     * @param ownedClaims supplies every chunk claimed by the owner if the regions have to be built
+     * @return every region of the owner
+     */
+    synchronized List<Set<ChunkCoordinates>> getRegions(UUID owner, Supplier<Set<ChunkCoordinates>> ownedClaims) {
+        Map<ChunkCoordinates, ChunkCoordinates> ownerParents = this.getParents(owner, ownedClaims);
+        Map<ChunkCoordinates, Set<ChunkCoordinates>> regions = new HashMap<>();
+        for (ChunkCoordinates coordinates : ownerParents.keySet()) {
+            regions.computeIfAbsent(find(ownerParents, coordinates), root -> new HashSet<>()).add(coordinates);
+        }
+        return new ArrayList<>(regions.values());
+    }
+
+    /**
+     * @param owner
+     * @param coordinates
+     * @param ownedClaims supplies every chunk claimed by the owner if the regions have to be built
+     * @return the chunks in the same region as the coordinates or an empty set if the owner did not claim it
+     */
+    synchronized Set<ChunkCoordinates> getRegion(UUID owner, ChunkCoordinates coordinates, Supplier<Set<ChunkCoordinates>> ownedClaims) {
+        Map<ChunkCoordinates, ChunkCoordinates> ownerParents = this.getParents(owner, ownedClaims);
+        if (!ownerParents.containsKey(coordinates)) {
+            return Collections.emptySet();
+        }
+        ChunkCoordinates root = find(ownerParents, coordinates);
+        Set<ChunkCoordinates> region = new HashSet<>();
+        for (ChunkCoordinates claimed : ownerParents.keySet()) {
+            if (find(ownerParents, claimed).equals(root)) {
+                region.add(claimed);
+            }
+        }
+        return region;
+    }
+
+    /**
+     * @return a copy of the owners whose regions were built
+     */
+    synchronized Set<UUID> getOwners() {
+        return new HashSet<>(this.parents.keySet());
+    }
+
+    synchronized void removeOwner(UUID owner) {
+        this.parents.remove(owner);
+        this.sizes.remove(owner);
+    }
+
+    synchronized void clear() {
+        this.parents.clear();
+        this.sizes.clear();
+    }
+
+    private Map<ChunkCoordinates, ChunkCoordinates> getParents(UUID owner, Supplier<Set<ChunkCoordinates>> ownedClaims) {
+        Map<ChunkCoordinates, ChunkCoordinates> ownerParents = this.parents.get(owner);
+        if (ownerParents == null) {
+            ownerParents = new HashMap<>();
+            this.parents.put(owner, ownerParents);
+            this.sizes.put(owner, new HashMap<>());
+            for (ChunkCoordinates coordinates : ownedClaims.get()) {
+                this.addUnlocked(owner, ownerParents, coordinates);
+            }
+        }
+        return ownerParents;
+    }
+
+    private void addUnlocked(UUID owner, Map<ChunkCoordinates, ChunkCoordinates> ownerParents, ChunkCoordinates coordinates) {
+        ownerParents.put(coordinates, coordinates);
+        this.sizes.get(owner).put(coordinates, 1);
+        UUID worldUuid = coordinates.getWorldUUID();
+        int x = coordinates.getX();
+        int z = coordinates.getZ();
+        this.union(owner, ownerParents, coordinates, new ChunkCoordinates(worldUuid, x + 1, z));
+        this.union(owner, ownerParents, coordinates, new ChunkCoordinates(worldUuid, x - 1, z));
+        this.union(owner, ownerParents, coordinates, new ChunkCoordinates(worldUuid, x, z + 1));
+        this.union(owner, ownerParents, coordinates, new ChunkCoordinates(worldUuid, x, z - 1));
+    }
+
+    private void union(UUID owner, Map<ChunkCoordinates, ChunkCoordinates> ownerParents, ChunkCoordinates coordinates, ChunkCoordinates neighbour) {
+        if (!ownerParents.containsKey(neighbour)) {
+            return;
+        }
+        ChunkCoordinates root = find(ownerParents, coordinates);
+        ChunkCoordinates neighbourRoot = find(ownerParents, neighbour);
+        if (root.equals(neighbourRoot)) {
+            return;
+        }
+
+        // Attach the smaller region to the larger one to keep the trees flat
+        Map<ChunkCoordinates, Integer> ownerSizes = this.sizes.get(owner);
+        int size = ownerSizes.get(root);
+        int neighbourSize = ownerSizes.get(neighbourRoot);
+        if (size < neighbourSize) {
+            ChunkCoordinates swappedRoot = root;
+            root = neighbourRoot;
+            neighbourRoot = swappedRoot;
+        }
+        ownerParents.put(neighbourRoot, root);
+        ownerSizes.put(root, size + neighbourSize);
+        ownerSizes.remove(neighbourRoot);
+    }
+
+    private static ChunkCoordinates find(Map<ChunkCoordinates, ChunkCoordinates> ownerParents, ChunkCoordinates coordinates) {
+        ChunkCoordinates root = coordinates;
+        ChunkCoordinates parent;
+        while (!(parent = ownerParents.get(root)).equals(root)) {
+            root = parent;
+        }
+
+        // Path compression
+        while (!coordinates.equals(root)) {
+            ChunkCoordinates next = ownerParents.get(coordinates);
+            ownerParents.put(coordinates, root);
+            coordinates = next;
+        }
+        return root;
+    }
+
+}
@@ -0,0 +1,636 @@
+package io.github.willqi.pizzamc.claims.api.claims;
+
+import io.github.willqi.pizzamc.claims.api.claims.dao.ClaimHelpersDao;
+import io.github.willqi.pizzamc.claims.api.claims.dao.ClaimsDao;
+import io.github.willqi.pizzamc.claims.api.daosources.DaoExecutor;
+import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
+
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Write-behind queue for claim and claim helper changes.
+ *
+ * Changes are coalesced per claim and per helper so that only the latest state is written,
+ * and are flushed to the daos in batches once enough changes are queued or when flush is called.
+ * Flushes write claims before helpers and delete helpers before claims so that
+ * the claim_helpers foreign key is never violated.
+ * Changes queued inside of batched are only flushed once all of them are queued so that they are written together.
+ *
+ * Changes that fail to be written are never dropped while the server runs since the cache already holds them.
+ * They stay queued and are retried with an increasing delay until the daos accept them again.
+ */
+class ClaimWriteQueue {
+
+    // Flushes attempted by drain before the changes that are still queued are logged and given up on
+    private static final int MAX_DRAIN_ATTEMPTS = 3;
+    // Delay before the first retry of a failed flush. Doubled after every failed retry
+    private static final long MIN_RETRY_DELAY_MILLIS = 1000;
+    private static final long MAX_RETRY_DELAY_MILLIS = 60000;
+
+    private final ClaimsDao claimsDao;
+    private final ClaimHelpersDao claimHelpersDao;
+    private final Executor flushExecutor;
+    private final ScheduledExecutorService retryScheduler;
+    private final int flushThreshold;
+    private volatile Logger logger = Logger.getLogger(ClaimsManager.class.getName());
+    private volatile Runnable recoveryListener = () -> {};
+
+    private final Object lock = new Object();
+    private final Object flushLock = new Object();
+
+    private Map<ChunkCoordinates, PendingWrite<Claim>> pendingClaims = new LinkedHashMap<>();
+    private Map<HelperKey, PendingWrite<ClaimHelper>> pendingHelpers = new LinkedHashMap<>();
+
+    // Changes currently being written. Used to know what exists in the database while a flush is running
+    private Map<ChunkCoordinates, PendingWrite<Claim>> flushingClaims = Collections.emptyMap();
+    private Map<HelperKey, PendingWrite<ClaimHelper>> flushingHelpers = Collections.emptyMap();
+
+    private boolean flushRequested;
+    // Set after a failed flush. Flushes triggered by queued changes or the flush interval wait until the retry is due
+    private long retryDelayMillis;
+    private long retryAtNanos;
+    private boolean retryScheduled;
+    // Amount of batched calls that are queueing changes. Flushes are not triggered while this is above 0
+    private int batchDepth;
+    // Set while the daos must not be written to. Changes stay queued until writes are resumed
+    private boolean paused;
+
+    /**
+     * @param claimsDao
+     * @param claimHelpersDao
+     * @param flushExecutor executor used to flush once flushThreshold changes are queued
+     * @param flushThreshold amount of queued changes that triggers a flush. 1 writes every change right away
+     * @param retryScheduler schedules the retries of failed flushes
+     */
+    ClaimWriteQueue(ClaimsDao claimsDao, ClaimHelpersDao claimHelpersDao, Executor flushExecutor, int flushThreshold, ScheduledExecutorService retryScheduler) {
+        this.claimsDao = claimsDao;
+        this.claimHelpersDao = claimHelpersDao;
+        this.flushExecutor = flushExecutor;
+        this.flushThreshold = Math.max(flushThreshold, 1);
+        this.retryScheduler = retryScheduler;
+    }
+
+    /**
+     * @param logger logger that failed writes are reported to
+     */
+    void setLogger(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * @param recoveryListener called once queued changes are written again after flushes failed
+     */
+    void setRecoveryListener(Runnable recoveryListener) {
+        this.recoveryListener = recoveryListener;
+    }
+
+    /**
+     * Queue a claim to be inserted or updated
+     * @param claim
+     * @param existsInDatabase if the claim is stored in the database as far as the cache knows
+     * @return a CompletableFuture that resolves once the change is written
+     */
+    CompletableFuture<Void> saveClaim(Claim claim, boolean existsInDatabase) {
+        boolean empty = !claim.hasOwner() && claim.getFlags() == 0;
+        return this.enqueue(claim.getCoordinates(), claim, empty, false, existsInDatabase);
+    }
+
+    /**
+     * Queue a claim to be deleted
+     * @param claim
+     * @param existsInDatabase if the claim is stored in the database as far as the cache knows
+     * @return a CompletableFuture that resolves once the change is written
+     */
+    CompletableFuture<Void> deleteClaim(Claim claim, boolean existsInDatabase) {
+        return this.enqueue(claim.getCoordinates(), claim, true, true, existsInDatabase);
+    }
+
+    /**
+     * Queue a claim helper to be inserted or updated
+     * @param coordinates
+     * @param helper
+     * @param existsInDatabase if the helper is stored in the database as far as the cache knows
+     * @return a CompletableFuture that resolves once the change is written
+     */
+    CompletableFuture<Void> saveHelper(ChunkCoordinates coordinates, ClaimHelper helper, boolean existsInDatabase) {
+        HelperKey key = new HelperKey(coordinates, helper.getUuid());
+        return this.enqueue(key, helper, helper.getPermissions() == 0, false, existsInDatabase);
+    }
+
+    /**
+     * Queue a claim helper to be deleted
+     * @param coordinates
+     * @param helper
+     * @param existsInDatabase if the helper is stored in the database as far as the cache knows
+     * @return a CompletableFuture that resolves once the change is written
+     */
+    CompletableFuture<Void> deleteHelper(ChunkCoordinates coordinates, ClaimHelper helper, boolean existsInDatabase) {
+        HelperKey key = new HelperKey(coordinates, helper.getUuid());
+        return this.enqueue(key, helper, true, true, existsInDatabase);
+    }
+
+    /**
+     * Queue many changes that should be written together.
+     * A flush is only triggered once the changes queued by the action are all queued.
+     * @param action queues the changes
+     * @param <T> result type
+     * @return the value returned by the action
+     */
+    <T> T batched(Supplier<T> action) {
+        synchronized (this.lock) {
+            this.batchDepth++;
+        }
+        try {
+            return action.get();
+        } finally {
+            boolean shouldFlush;
+            synchronized (this.lock) {
+                this.batchDepth--;
+                shouldFlush = this.shouldRequestFlush();
+            }
+            if (shouldFlush) {
+                this.requestFlush();
+            }
+        }
+    }
+
+    /**
+     * Retrieve the state a claim will have once queued changes are written.
+     * Used to keep claims loaded from the database consistent with changes that were not written yet.
+     * @param coordinates
+     * @param storedClaim the claim loaded from the database
+     * @return the queued claim or storedClaim if there is no queued change
+     */
+    Claim applyPendingClaim(ChunkCoordinates coordinates, Claim storedClaim) {
+        synchronized (this.lock) {
+            PendingWrite<Claim> pending = this.pendingClaims.get(coordinates);
+            if (pending == null) {
+                pending = this.flushingClaims.get(coordinates);
+            }
+            if (pending == null) {
+                return storedClaim;
+            }
+            return pending.deleted ? new Claim(coordinates, 0) : pending.value;
+        }
+    }
+
+    /**
+     * Retrieve the helpers a claim will have once queued changes are written.
+     * @param coordinates
+     * @param storedHelpers the helpers loaded from the database
+     * @return the helpers with queued changes applied
+     */
+    Set<ClaimHelper> applyPendingHelpers(ChunkCoordinates coordinates, Set<ClaimHelper> storedHelpers) {
+        synchronized (this.lock) {
+            if (this.pendingHelpers.isEmpty() && this.flushingHelpers.isEmpty()) {
+                return storedHelpers;
+            }
+            Map<UUID, ClaimHelper> helpers = new HashMap<>();
+            for (ClaimHelper helper : storedHelpers) {
+                helpers.put(helper.getUuid(), helper);
+            }
+            applyHelpers(coordinates, this.flushingHelpers, helpers);
+            applyHelpers(coordinates, this.pendingHelpers, helpers);
+            return new HashSet<>(helpers.values());
+        }
+    }
+
+    /**
+     * @param coordinates
+     * @return if a change to the claim is waiting to be written
+     */
+    boolean hasPendingClaim(ChunkCoordinates coordinates) {
+        synchronized (this.lock) {
+            return this.pendingClaims.containsKey(coordinates) || this.flushingClaims.containsKey(coordinates);
+        }
+    }
+
+    /**
+     * @return the amount of claims and helpers waiting to be written
+     */
+    int getPendingCount() {
+        synchronized (this.lock) {
+            return this.pendingClaims.size() + this.pendingHelpers.size() + this.flushingClaims.size() + this.flushingHelpers.size();
+        }
+    }
+
+    /**
+     * Flush unless a failed flush is waiting to be retried
+     */
+    void flushIfDue() {
+        synchronized (this.lock) {
+            if (this.retryDelayMillis > 0 && System.nanoTime() - this.retryAtNanos < 0) {
+                this.flushRequested = false;
+                return;
+            }
+        }
+        this.flush();
+    }
+
+    /**
+     * Write every queued change to the daos on the calling thread.
+     * Changes that fail to be written are queued again and the futures waiting on them fail.
+     */
+    void flush() {
+        synchronized (this.flushLock) {
+            Map<ChunkCoordinates, PendingWrite<Claim>> claims;
+            Map<HelperKey, PendingWrite<ClaimHelper>> helpers;
+            synchronized (this.lock) {
+                this.flushRequested = false;
+                if (this.paused || this.pendingClaims.isEmpty() && this.pendingHelpers.isEmpty()) {
+                    return;
+                }
+                claims = this.pendingClaims;
+                helpers = this.pendingHelpers;
+                this.flushingClaims = claims;
+                this.flushingHelpers = helpers;
+                this.pendingClaims = new LinkedHashMap<>();
+                this.pendingHelpers = new LinkedHashMap<>();
+            }
+
+            Map<Operation, List<PendingWrite<Claim>>> claimOperations = groupByOperation(claims.values());
+            Map<Operation, List<PendingWrite<ClaimHelper>>> helperOperations = groupByOperation(helpers.values());
+
+            // Ordered so that the claim_helpers foreign key is never violated
+            List<PendingWrite<Claim>> savedClaims = new ArrayList<>(claimOperations.get(Operation.INSERT));
+            savedClaims.addAll(claimOperations.get(Operation.UPDATE));
+            List<PendingWrite<ClaimHelper>> writtenHelpers = new ArrayList<>(helperOperations.get(Operation.DELETE));
+            writtenHelpers.addAll(helperOperations.get(Operation.INSERT));
+            writtenHelpers.addAll(helperOperations.get(Operation.UPDATE));
+            List<Stage> stages = Arrays.asList(
+                    new Stage(savedClaims, () -> this.claimsDao.saveAll(
+                            values(claimOperations.get(Operation.INSERT)),
+                            values(claimOperations.get(Operation.UPDATE))
+                    )),
+                    new Stage(writtenHelpers, () -> this.claimHelpersDao.writeAll(
+                            groupHelpers(helperOperations.get(Operation.DELETE)),
+                            groupHelpers(helperOperations.get(Operation.INSERT)),
+                            groupHelpers(helperOperations.get(Operation.UPDATE))
+                    )),
+                    new Stage(claimOperations.get(Operation.DELETE), () -> this.claimsDao.deleteAll(values(claimOperations.get(Operation.DELETE))))
+            );
+
+            List<PendingWrite<?>> written = new ArrayList<>(claimOperations.get(Operation.NONE));
+            written.addAll(helperOperations.get(Operation.NONE));
+            List<PendingWrite<?>> failed = new ArrayList<>();
+            DaoException failure = null;
+            for (Stage stage : stages) {
+                if (failure != null) {
+                    failed.addAll(stage.writes);
+                    continue;
+                }
+                try {
+                    if (!stage.writes.isEmpty()) {
+                        stage.action.run();
+                    }
+                    written.addAll(stage.writes);
+                } catch (DaoException exception) {
+                    failure = exception;
+                    failed.addAll(stage.writes);
+                }
+            }
+
+            List<CompletableFuture<Void>> failedFutures = new ArrayList<>();
+            long retryDelayMillis;
+            boolean scheduleRetry;
+            boolean recovered;
+            synchronized (this.lock) {
+                recovered = failure == null && this.retryDelayMillis > 0;
+                if (failure != null) {
+                    for (PendingWrite<?> write : failed) {
+                        failedFutures.addAll(write.futures);
+                        write.futures.clear();
+                        this.requeue(write);
+                    }
+                    this.retryDelayMillis = Math.min(Math.max(this.retryDelayMillis * 2, MIN_RETRY_DELAY_MILLIS), MAX_RETRY_DELAY_MILLIS);
+                    this.retryAtNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.retryDelayMillis);
+                } else {
+                    this.retryDelayMillis = 0;
+                }
+                retryDelayMillis = this.retryDelayMillis;
+                scheduleRetry = failure != null && !this.retryScheduled;
+                if (scheduleRetry) {
+                    this.retryScheduled = true;
+                }
+                this.flushingClaims = Collections.emptyMap();
+                this.flushingHelpers = Collections.emptyMap();
+            }
+
+            if (recovered) {
+                this.recoveryListener.run();
+            }
+            if (failure != null) {
+                this.logger.log(Level.WARNING, "Failed to write " + failed.size() + " claim changes. They stay queued and are retried in " + retryDelayMillis + "ms", failure);
+                if (scheduleRetry) {
+                    this.scheduleRetry(retryDelayMillis);
+                }
+            }
+
+            // Completed outside of the lock since dependent stages may run on this thread
+            for (PendingWrite<?> write : written) {
+                write.futures.forEach(future -> future.complete(null));
+            }
+            if (failure != null) {
+                DaoException queuedFailure = new DaoException("Failed to write claim changes. They stay queued and are retried", failure);
+                for (CompletableFuture<Void> future : failedFutures) {
+                    future.completeExceptionally(queuedFailure);
+                }
+            }
+        }
+    }
+
+    /**
+     * Write every queued change on the calling thread, then stop writing until resume is called.
+     * Changes queued in the meantime stay queued.
+     */
+    void pause() {
+        synchronized (this.flushLock) {
+            this.flush();
+            synchronized (this.lock) {
+                this.paused = true;
+            }
+        }
+    }
+
+    /**
+     * Write changes again, starting with the changes queued while paused
+     */
+    void resume() {
+        synchronized (this.lock) {
+            this.paused = false;
+            if (this.pendingClaims.isEmpty() && this.pendingHelpers.isEmpty()) {
+                return;
+            }
+            this.flushRequested = true;
+        }
+        this.requestFlush();
+    }
+
+    /**
+     * Flush until every queued change was written. Used on shutdown.
+     * Changes that still could not be written are logged so that they can be restored by hand.
+     */
+    void drain() {
+        synchronized (this.lock) {
+            this.paused = false;
+        }
+        for (int i = 0; i < MAX_DRAIN_ATTEMPTS && this.getPendingCount() > 0; i++) {
+            this.flush();
+        }
+        List<String> unwritten = new ArrayList<>();
+        synchronized (this.lock) {
+            for (PendingWrite<Claim> write : this.pendingClaims.values()) {
+                Claim claim = write.value;
+                ChunkCoordinates coordinates = claim.getCoordinates();
+                unwritten.add(write.deleted
+                        ? String.format("delete claim at world %s chunk %d, %d", coordinates.getWorldUUID(), coordinates.getX(), coordinates.getZ())
+                        : String.format("save claim at world %s chunk %d, %d with owner %s and flags %d", coordinates.getWorldUUID(), coordinates.getX(), coordinates.getZ(),
+                                claim.getOwner().map(UUID::toString).orElse("none"), claim.getFlags()));
+            }
+            for (PendingWrite<ClaimHelper> write : this.pendingHelpers.values()) {
+                HelperKey key = (HelperKey)write.key;
+                unwritten.add(write.deleted
+                        ? String.format("delete helper %s at world %s chunk %d, %d", key.helperUuid, key.coordinates.getWorldUUID(), key.coordinates.getX(), key.coordinates.getZ())
+                        : String.format("save helper %s at world %s chunk %d, %d with permissions %d", key.helperUuid, key.coordinates.getWorldUUID(), key.coordinates.getX(), key.coordinates.getZ(),
+                                write.value.getPermissions()));
+            }
+        }
+        if (!unwritten.isEmpty()) {
+            this.logger.severe(unwritten.size() + " claim changes could not be written before shutting down:");
+            unwritten.forEach(this.logger::severe);
+        }
+    }
+
+    private void scheduleRetry(long delayMillis) {
+        try {
+            this.retryScheduler.schedule(() -> DaoExecutor.runAsync(() -> {
+                synchronized (this.lock) {
+                    this.retryScheduled = false;
+                }
+                this.flush();
+            }, this.flushExecutor).whenComplete((ignored, exception) -> {
+                if (exception != null) {
+                    // Could not run the retry. Try again later so that the queued changes are not stranded
+                    this.scheduleRetry(delayMillis);
+                }
+            }), delayMillis, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException exception) {
+            // Shutting down. drain writes or logs what is left
+            synchronized (this.lock) {
+                this.retryScheduled = false;
+            }
+        }
+    }
+
+    private <V> CompletableFuture<Void> enqueue(Object key, V value, boolean empty, boolean deleted, boolean existsInDatabase) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        boolean shouldFlush;
+        synchronized (this.lock) {
+            Map<Object, PendingWrite<V>> pending = this.getPendingMap(key);
+            Map<Object, PendingWrite<V>> flushing = this.getFlushingMap(key);
+
+            PendingWrite<V> write = pending.get(key);
+            if (write == null) {
+                PendingWrite<V> flushingWrite = flushing.get(key);
+                write = new PendingWrite<>(key, flushingWrite != null ? flushingWrite.existsAfterWrite() : existsInDatabase);
+                pending.put(key, write);
+            }
+            write.value = value;
+            write.empty = empty;
+            write.deleted = deleted;
+            write.futures.add(future);
+
+            shouldFlush = this.shouldRequestFlush();
+        }
+
+        if (shouldFlush) {
+            this.requestFlush();
+        }
+        return future;
+    }
+
+    /**
+     * Must be called while holding the lock. Marks the flush as requested if it returns true
+     */
+    private boolean shouldRequestFlush() {
+        boolean shouldFlush = !this.flushRequested
+                && this.batchDepth == 0
+                && this.pendingClaims.size() + this.pendingHelpers.size() >= this.flushThreshold;
+        if (shouldFlush) {
+            this.flushRequested = true;
+        }
+        return shouldFlush;
+    }
+
+    private void requestFlush() {
+        DaoExecutor.runAsync(this::flushIfDue, this.flushExecutor).whenComplete((ignored, exception) -> {
+            if (exception != null) {
+                // Could not schedule the flush. The next change, scheduled flush or shutdown will write it.
+                synchronized (this.lock) {
+                    this.flushRequested = false;
+                }
+            }
+        });
+    }
+
+    /**
+     * Must be called while holding the lock since flush swaps the maps
+     */
+    @SuppressWarnings("unchecked")
+    private <V> Map<Object, PendingWrite<V>> getPendingMap(Object key) {
+        return (Map<Object, PendingWrite<V>>)(Map<?, ?>)(key instanceof HelperKey ? this.pendingHelpers : this.pendingClaims);
+    }
+
+    /**
+     * Must be called while holding the lock since flush swaps the maps
+     */
+    @SuppressWarnings("unchecked")
+    private <V> Map<Object, PendingWrite<V>> getFlushingMap(Object key) {
+        return (Map<Object, PendingWrite<V>>)(Map<?, ?>)(key instanceof HelperKey ? this.flushingHelpers : this.flushingClaims);
+    }
+
+    /**
+     * Queue a write that failed again unless a newer write replaced it
+     */
+    private <V> void requeue(PendingWrite<V> write) {
+        Map<Object, PendingWrite<V>> pending = this.getPendingMap(write.key);
+        PendingWrite<V> newerWrite = pending.get(write.key);
+        if (newerWrite != null) {
+            // The newer write assumed this one would succeed
+            newerWrite.existsInDatabase = write.existsInDatabase;
+        } else {
+            pending.put(write.key, write);
+        }
+    }
+
+    private static void applyHelpers(ChunkCoordinates coordinates, Map<HelperKey, PendingWrite<ClaimHelper>> writes, Map<UUID, ClaimHelper> helpers) {
+        for (PendingWrite<ClaimHelper> write : writes.values()) {
+            HelperKey key = (HelperKey)write.key;
+            if (key.coordinates.equals(coordinates)) {
+                if (write.deleted) {
+                    helpers.remove(key.helperUuid);
+                } else {
+                    helpers.put(key.helperUuid, write.value);
+                }
+            }
+        }
+    }
+
+    private static <V> Map<Operation, List<PendingWrite<V>>> groupByOperation(Collection<PendingWrite<V>> writes) {
+        Map<Operation, List<PendingWrite<V>>> operations = new EnumMap<>(Operation.class);
+        for (Operation operation : Operation.values()) {
+            operations.put(operation, new ArrayList<>());
+        }
+        for (PendingWrite<V> write : writes) {
+            operations.get(write.getOperation()).add(write);
+        }
+        return operations;
+    }
+
+    private static <V> List<V> values(List<PendingWrite<V>> writes) {
+        List<V> values = new ArrayList<>(writes.size());
+        for (PendingWrite<V> write : writes) {
+            values.add(write.value);
+        }
+        return values;
+    }
+
+    private static Map<ChunkCoordinates, List<ClaimHelper>> groupHelpers(List<PendingWrite<ClaimHelper>> writes) {
+        Map<ChunkCoordinates, List<ClaimHelper>> helpers = new LinkedHashMap<>();
+        for (PendingWrite<ClaimHelper> write : writes) {
+            helpers.computeIfAbsent(((HelperKey)write.key).coordinates, coordinates -> new ArrayList<>()).add(write.value);
+        }
+        return helpers;
+    }
+
+    private enum Operation {
+        NONE,
+        INSERT,
+        UPDATE,
+        DELETE
+    }
+
+    private interface DaoAction {
+        void run() throws DaoException;
+    }
+
+    private static class Stage {
+
+        private final List<? extends PendingWrite<?>> writes;
+        private final DaoAction action;
+
+        private Stage(List<? extends PendingWrite<?>> writes, DaoAction action) {
+            this.writes = writes;
+            this.action = action;
+        }
+
+    }
+
+    /**
+     * Latest queued state of a claim or helper
+     */
+    private static class PendingWrite<V> {
+
+        private final Object key;
+        private final List<CompletableFuture<Void>> futures = new ArrayList<>();
+        private V value;
+        private boolean empty;
+        private boolean deleted;
+        private boolean existsInDatabase;
+
+        private PendingWrite(Object key, boolean existsInDatabase) {
+            this.key = key;
+            this.existsInDatabase = existsInDatabase;
+        }
+
+        private Operation getOperation() {
+            if (this.deleted) {
+                return this.existsInDatabase ? Operation.DELETE : Operation.NONE;
+            }
+            if (this.existsInDatabase) {
+                return Operation.UPDATE;
+            }
+            return this.empty ? Operation.NONE : Operation.INSERT;
+        }
+
+        private boolean existsAfterWrite() {
+            return !this.deleted && (this.existsInDatabase || !this.empty);
+        }
+
+    }
+
+    private static class HelperKey {
+
+        private final ChunkCoordinates coordinates;
+        private final UUID helperUuid;
+
+        private HelperKey(ChunkCoordinates coordinates, UUID helperUuid) {
+            this.coordinates = coordinates;
+            this.helperUuid = helperUuid;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(this.coordinates, this.helperUuid);
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (obj instanceof HelperKey) {
+                HelperKey key = (HelperKey)obj;
+                return key.coordinates.equals(this.coordinates) && key.helperUuid.equals(this.helperUuid);
+            }
+            return false;
+        }
+
+    }
+
+}
@@ -1,76 +1,398 @@
 package io.github.willqi.pizzamc.claims.api.claims;
 
+import io.github.willqi.pizzamc.claims.api.cache.InFlightLoads;
+import io.github.willqi.pizzamc.claims.api.cache.LoadStats;
+import io.github.willqi.pizzamc.claims.api.claims.cache.ChunkBitmap;
+import io.github.willqi.pizzamc.claims.api.claims.cache.ChunkClock;
+import io.github.willqi.pizzamc.claims.api.claims.cache.ChunkKeys;
+import io.github.willqi.pizzamc.claims.api.claims.cache.ClaimIndex;
+import io.github.willqi.pizzamc.claims.api.claims.cache.HelperSet;
+import io.github.willqi.pizzamc.claims.api.claims.cache.Interner;
+import io.github.willqi.pizzamc.claims.api.claims.cache.ObjectSizes;
+import io.github.willqi.pizzamc.claims.api.claims.cache.OwnerIndex;
+import io.github.willqi.pizzamc.claims.api.claims.cache.WorldRegistry;
 import io.github.willqi.pizzamc.claims.api.claims.dao.ClaimsDao;
 import io.github.willqi.pizzamc.claims.api.claims.dao.ClaimHelpersDao;
+import io.github.willqi.pizzamc.claims.api.claims.dao.OwnerTrustsDao;
+import io.github.willqi.pizzamc.claims.api.claims.sync.ClaimUpdate;
+import io.github.willqi.pizzamc.claims.api.claims.sync.ClaimUpdateBus;
+import io.github.willqi.pizzamc.claims.api.daosources.DaoExecutor;
 import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
 
 /**
  * Responsible for caching claims/helpers and
  * handling interacting with the ClaimsDao/ClaimsHelperDao.
+ *
+ * Claims and claim helpers are immutable so cached instances are handed out directly.
+ * The helpers of each chunk are cached as an interned HelperSet so that chunks with the same helpers share one instance.
  */
 public class ClaimsManager {
 
-    private final Map<ChunkCoordinates, Claim> claimsCache;
-    private final Map<ChunkCoordinates, Set<ClaimHelper>> helpersCache;
-    private final Map<UUID, Integer> claimCountCache;
+    // Largest rectangle of chunks fetchClaims will load with a single query
+    private static final int MAX_BATCH_AREA = 32 * 32;
 
-    // Used to ensure that only 1 future is active at a time for each query.
-    private final Map<ChunkCoordinates, CompletableFuture<Claim>> queueClaimFutures;
-    private final Map<ChunkCoordinates, CompletableFuture<Set<ClaimHelper>>> queueHelperFutures;
-    private final Map<UUID, CompletableFuture<Integer>> claimCountFutures;
+    private final WorldRegistry worlds;
+    private final ClaimIndex<Claim> claimsCache;
+    private final ClaimIndex<HelperSet> helpersCache;
+    // Every cached HelperSet is interned. Most chunks of an owner have the same helpers
+    private final Interner<HelperSet> helperSets;
+    // Bounds the chunks stored in the claim and helper caches. Chunks loaded by the server are pinned
+    private final ChunkClock cachedChunks;
+
+    // Chunks known to have no claim and no helpers. These are not stored in the claim or helper caches
+    // and unlike them are kept when a chunk is unloaded.
+    private final ChunkBitmap unclaimedChunks;
+
+    // Set once every claim has been loaded by preloadClaims. Chunks without a cached claim are unclaimed from then on.
+    private volatile boolean preloaded;
+
+    // Chunks claimed by each player whose claims were loaded. Kept up to date by saveClaim and deleteClaim.
+    private final OwnerIndex<ChunkCoordinates> ownedClaims;
+    // Connected claims of the same owner. Built from ownedClaims when first queried
+    private final ClaimRegions claimRegions;
+
+    // Helpers trusted on every claim of an owner. Loaded with the first claim of the owner that is cached
+    // and kept until cleanUp since there is only one small map per owner. Unused without an OwnerTrustsDao
+    private final Map<UUID, HelperSet> ownerTrustsCache;
+
+    // Used to ensure that only 1 load is active at a time for each query.
+    private final LoadStats loadStats;
+    private final InFlightLoads<ChunkCoordinates, Claim> claimLoads;
+    private final InFlightLoads<ChunkCoordinates, Set<ClaimHelper>> helperLoads;
+    private final InFlightLoads<UUID, Set<ChunkCoordinates>> ownedClaimsLoads;
+    private final InFlightLoads<UUID, Set<ClaimHelper>> ownerTrustsLoads;
 
     private final ClaimsDao claimsDao;
     private final ClaimHelpersDao claimHelpersDao;
+    private final OwnerTrustsDao ownerTrustsDao;
+
+    private final Executor executor;
+
+    private final ClaimWriteQueue writeQueue;
+    private final ScheduledExecutorService flushScheduler;
+
+    // Receives the changes made by other servers and is sent the changes made by this one. Null if the cache is not shared
+    private volatile ClaimUpdateBus updateBus;
 
     public ClaimsManager (ClaimsDao claimsDao, ClaimHelpersDao claimHelpersDao) {
+        this(claimsDao, claimHelpersDao, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param claimsDao
+     * @param claimHelpersDao
+     * @param executor executor used to run dao calls
+     */
+    public ClaimsManager (ClaimsDao claimsDao, ClaimHelpersDao claimHelpersDao, Executor executor) {
+        this(claimsDao, claimHelpersDao, executor, 0, 1);
+    }
+
+    /**
+     * Create a ClaimsManager that writes changes to the daos in batches.
+     * The cache is updated right away while changes are written behind it.
+     * @param claimsDao
+     * @param claimHelpersDao
+     * @param executor executor used to run dao calls
+     * @param flushIntervalMillis how often queued changes are written. 0 or less only writes once flushThreshold changes are queued
+     * @param flushThreshold amount of queued changes that are written at once. 1 writes every change right away
+     */
+    public ClaimsManager (ClaimsDao claimsDao, ClaimHelpersDao claimHelpersDao, Executor executor, long flushIntervalMillis, int flushThreshold) {
+        this(claimsDao, claimHelpersDao, null, executor, flushIntervalMillis, flushThreshold);
+    }
+
+    /**
+     * Create a ClaimsManager that also resolves permissions using the helpers trusted by the owner of a claim.
+     * Helpers of a chunk override the trust of the owner.
+     * @param claimsDao
+     * @param claimHelpersDao
+     * @param ownerTrustsDao dao storing the helpers trusted on every claim of an owner or null to only use the helpers of each chunk
+     * @param executor executor used to run dao calls
+     * @param flushIntervalMillis how often queued changes are written. 0 or less only writes once flushThreshold changes are queued
+     * @param flushThreshold amount of queued changes that are written at once. 1 writes every change right away
+     */
+    public ClaimsManager (ClaimsDao claimsDao, ClaimHelpersDao claimHelpersDao, OwnerTrustsDao ownerTrustsDao, Executor executor, long flushIntervalMillis, int flushThreshold) {
+        this(claimsDao, claimHelpersDao, ownerTrustsDao, executor, flushIntervalMillis, flushThreshold, 0);
+    }
+
+    /**
+     * Create a ClaimsManager that keeps at most maximumCachedChunks claimed chunks in memory.
+     * Chunks that were not used for the longest time are evicted first. Pinned chunks are never evicted.
+     * @param claimsDao
+     * @param claimHelpersDao
+     * @param ownerTrustsDao dao storing the helpers trusted on every claim of an owner or null to only use the helpers of each chunk
+     * @param executor executor used to run dao calls
+     * @param flushIntervalMillis how often queued changes are written. 0 or less only writes once flushThreshold changes are queued
+     * @param flushThreshold amount of queued changes that are written at once. 1 writes every change right away
+     * @param maximumCachedChunks amount of chunks whose claim and helpers are cached. 0 or less for no limit
+     */
+    public ClaimsManager (ClaimsDao claimsDao, ClaimHelpersDao claimHelpersDao, OwnerTrustsDao ownerTrustsDao, Executor executor, long flushIntervalMillis, int flushThreshold, int maximumCachedChunks) {
         this.claimsDao = claimsDao;
         this.claimHelpersDao = claimHelpersDao;
+        this.ownerTrustsDao = ownerTrustsDao;
+        this.executor = executor;
 
-        this.claimsCache = new ConcurrentHashMap<>();
-        this.helpersCache = new ConcurrentHashMap<>();
-        this.claimCountCache = new ConcurrentHashMap<>();
+        this.worlds = new WorldRegistry();
+        this.claimsCache = new ClaimIndex<>();
+        this.helpersCache = new ClaimIndex<>();
+        this.helperSets = new Interner<>();
+        this.cachedChunks = new ChunkClock(maximumCachedChunks, this::evictChunk);
+        this.unclaimedChunks = new ChunkBitmap();
+        this.ownedClaims = new OwnerIndex<>();
+        this.claimRegions = new ClaimRegions();
+        this.ownerTrustsCache = new ConcurrentHashMap<>();
 
-        this.queueClaimFutures = new ConcurrentHashMap<>();
-        this.queueHelperFutures = new ConcurrentHashMap<>();
-        this.claimCountFutures = new ConcurrentHashMap<>();
+        this.loadStats = new LoadStats();
+        this.claimLoads = new InFlightLoads<>(this.loadStats);
+        this.helperLoads = new InFlightLoads<>(this.loadStats);
+        this.ownedClaimsLoads = new InFlightLoads<>(this.loadStats);
+        this.ownerTrustsLoads = new InFlightLoads<>(this.loadStats);
+
+        // Also schedules the retries of failed writes when changes are written right away
+        ScheduledThreadPoolExecutor flushScheduler = new ScheduledThreadPoolExecutor(1, runnable -> {
+            Thread thread = new Thread(runnable, "PizzaMCClaims-WriteBehind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Retries waiting on shutdown are not run since drain writes or logs what is left
+        flushScheduler.setExecuteExistingDelayedTasksAfterShutdownPolicy(false);
+        this.flushScheduler = flushScheduler;
+        this.writeQueue = new ClaimWriteQueue(claimsDao, claimHelpersDao, executor, flushIntervalMillis > 0 ? flushThreshold : 1, this.flushScheduler);
+        // Updates that failed to be sent along with the writes are sent right away once the daos accept writes again
+        this.writeQueue.setRecoveryListener(this::flushUpdateBus);
+        if (flushIntervalMillis > 0) {
+            this.flushScheduler.scheduleWithFixedDelay(this.writeQueue::flushIfDue, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Set the logger that claim changes which failed to be written are reported to.
+     * Failed changes stay queued and are retried. Changes that are still not written on cleanUp are logged with their values.
+     * @param logger
+     */
+    public void setLogger(Logger logger) {
+        this.writeQueue.setLogger(logger);
     }
 
 
+    /**
+     * Retrieve the id used internally to index the claims of a world.
+     * Callers on hot paths should resolve this once and use the int based lookups.
+     * @param worldUuid
+     * @return the world id
+     */
+    public int getWorldId(UUID worldUuid) {
+        return this.worlds.getId(worldUuid);
+    }
+
     /**
      * Fetch a claim from the ClaimsDao if it's not cached
      * @param coordinates
      * @return CompletableFuture with a empty or existing claim
      */
     public CompletableFuture<Claim> fetchClaim(ChunkCoordinates coordinates) {
-        Claim existingClaim = this.claimsCache.getOrDefault(coordinates, null);
+        Claim existingClaim = this.getCachedClaim(coordinates);
         if (existingClaim != null) {
-            return CompletableFuture.completedFuture(existingClaim.clone());
+            this.loadStats.recordHit();
+            this.accessChunk(coordinates);
+            return CompletableFuture.completedFuture(existingClaim);
+        } else if (this.isCachedAsUnclaimed(coordinates)) {
+            this.loadStats.recordHit();
+            return CompletableFuture.completedFuture(new Claim(coordinates, 0));
         } else {
             // Ensure we don't run unnecessary queries
-            CompletableFuture<Claim> returnedFuture = this.queueClaimFutures.getOrDefault(coordinates, null);
-            if (returnedFuture == null) {
-                returnedFuture = this.fetchClaimHelpers(coordinates).thenApplyAsync(helpers -> {
+            this.loadStats.recordMiss();
+            return this.claimLoads.load(coordinates, key -> this.fetchClaimHelpers(coordinates).thenApplyAsync(helpers -> {
                     Optional<Claim> result;
                     try {
                         result = this.claimsDao.getClaimByLocation(coordinates);
                     } catch (DaoException exception) {
                         throw new CompletionException(exception);
                     }
-                    Claim claim = result.orElseGet(() -> new Claim(coordinates, 0));
-                    this.claimsCache.putIfAbsent(coordinates, claim);
-                    this.queueClaimFutures.remove(coordinates);
-                    return claim.clone();
+                    Claim claim = this.writeQueue.applyPendingClaim(coordinates, result.orElseGet(() -> new Claim(coordinates, 0)));
+                    if (claim.hasOwner()) {
+                        this.loadOwnerTrusts(claim.getOwnerUuid());
+                    }
+                    int worldId = this.getWorldId(coordinates.getWorldUUID());
+                    Claim cachedClaim;
+                    if (isUnclaimed(claim, helpers)) {
+                        cachedClaim = this.cacheAsUnclaimedIfAbsent(worldId, coordinates.getX(), coordinates.getZ());
+                    } else {
+                        cachedClaim = this.claimsCache.putIfAbsent(worldId, coordinates.getX(), coordinates.getZ(), claim);
+                        this.accessChunk(worldId, coordinates.getX(), coordinates.getZ());
+                    }
+                    return cachedClaim != null ? cachedClaim : claim;
+                }, this.executor));
+        }
+    }
+
+    /**
+     * Fetch many claims and their helpers at once.
+     * Uncached chunks of the same world are loaded with a single region query per dao
+     * instead of 2 queries per chunk.
+     * @param coordinatesCollection
+     * @return CompletableFuture with the empty or existing claim of each chunk
+     */
+    public CompletableFuture<Map<ChunkCoordinates, Claim>> fetchClaims(Collection<ChunkCoordinates> coordinatesCollection) {
+        Map<ChunkCoordinates, CompletableFuture<Claim>> claimFutures = new HashMap<>();
+        Map<UUID, List<ChunkCoordinates>> uncachedCoordinates = new HashMap<>();
+        for (ChunkCoordinates coordinates : coordinatesCollection) {
+            if (claimFutures.containsKey(coordinates)) {
+                continue;
+            }
+            Claim existingClaim = this.getCachedClaim(coordinates);
+            if (existingClaim != null) {
+                this.loadStats.recordHit();
+                this.accessChunk(coordinates);
+                claimFutures.put(coordinates, CompletableFuture.completedFuture(existingClaim));
+                continue;
+            }
+            if (this.isCachedAsUnclaimed(coordinates)) {
+                this.loadStats.recordHit();
+                claimFutures.put(coordinates, CompletableFuture.completedFuture(new Claim(coordinates, 0)));
+                continue;
+            }
+            this.loadStats.recordMiss();
+            CompletableFuture<Claim> queuedFuture = this.claimLoads.get(coordinates);
+            if (queuedFuture != null) {
+                claimFutures.put(coordinates, queuedFuture);
+            } else {
+                uncachedCoordinates.computeIfAbsent(coordinates.getWorldUUID(), worldUuid -> new ArrayList<>()).add(coordinates);
+            }
+        }
+
+        for (List<ChunkCoordinates> worldCoordinates : uncachedCoordinates.values()) {
+            for (List<ChunkCoordinates> batch : splitIntoBatches(worldCoordinates)) {
+                CompletableFuture<Map<ChunkCoordinates, Claim>> batchFuture = new CompletableFuture<>();
+                for (ChunkCoordinates coordinates : batch) {
+                    CompletableFuture<Claim> claimFuture = batchFuture.thenApply(claims -> claims.get(coordinates));
+                    CompletableFuture<Claim> existingLoad = this.claimLoads.register(coordinates, claimFuture);
+                    this.helperLoads.register(coordinates, claimFuture.thenApply(claim -> this.getClaimHelpers(coordinates).orElse(Collections.emptySet())));
+                    claimFutures.put(coordinates, existingLoad != null ? existingLoad : claimFuture);
+                }
+
+                DaoExecutor.supplyAsync(() -> this.loadClaims(batch), this.executor).whenComplete((claims, exception) -> {
+                    if (exception != null) {
+                        batchFuture.completeExceptionally(exception);
+                    } else {
+                        batchFuture.complete(claims);
+                    }
                 });
-                this.queueClaimFutures.putIfAbsent(coordinates, returnedFuture);
             }
-            return returnedFuture;
         }
+
+        return CompletableFuture.allOf(claimFutures.values().toArray(new CompletableFuture[0])).thenApply(ignored -> {
+            Map<ChunkCoordinates, Claim> claims = new HashMap<>();
+            claimFutures.forEach((coordinates, future) -> claims.put(coordinates, future.join()));
+            return claims;
+        });
+    }
+
+    /**
+     * Load every claim and claim helper into the cache.
+     * Once finished, chunks without a cached claim are treated as unclaimed, claims and helpers are never
+     * queried from the daos again and removing claims from the cache has no effect.
+     * @return CompletableFuture with statistics about the load
+     */
+    public CompletableFuture<PreloadStats> preloadClaims() {
+        return DaoExecutor.supplyAsync(() -> {
+            long startTime = System.nanoTime();
+
+            // Queued claims are written first so that the owners of every claim are read below
+            this.ownedClaims.startLoadingAll();
+            this.writeQueue.flush();
+
+            // Helpers are cached before claims so that a cached claim always has its helpers cached.
+            Map<ChunkCoordinates, List<ClaimHelper>> loadedHelpers = new HashMap<>();
+            int[] helperCount = new int[1];
+            try {
+                this.claimHelpersDao.forEachClaimHelper((coordinates, helper) -> {
+                    loadedHelpers.computeIfAbsent(coordinates, key -> new ArrayList<>()).add(helper);
+                    helperCount[0]++;
+                });
+            } catch (DaoException exception) {
+                throw new CompletionException(exception);
+            }
+            // Interned sets are shared by every chunk with the same helpers and only counted once
+            Set<HelperSet> distinctHelpers = Collections.newSetFromMap(new IdentityHashMap<>());
+            for (Map.Entry<ChunkCoordinates, List<ClaimHelper>> entry : loadedHelpers.entrySet()) {
+                ChunkCoordinates coordinates = entry.getKey();
+                HelperSet helpers = this.internHelpers(entry.getValue());
+                this.helpersCache.putIfAbsent(this.getWorldId(coordinates.getWorldUUID()), coordinates.getX(), coordinates.getZ(), helpers);
+                distinctHelpers.add(helpers);
+            }
+            loadedHelpers.clear();
+            if (this.ownerTrustsDao != null) {
+                Map<UUID, List<ClaimHelper>> loadedTrusts = new HashMap<>();
+                try {
+                    this.ownerTrustsDao.forEachTrust((ownerUuid, helper) ->
+                            loadedTrusts.computeIfAbsent(ownerUuid, key -> new ArrayList<>()).add(helper));
+                } catch (DaoException exception) {
+                    throw new CompletionException(exception);
+                }
+                loadedTrusts.forEach((ownerUuid, trusts) -> this.ownerTrustsCache.putIfAbsent(ownerUuid, HelperSet.of(trusts)));
+            }
+
+            int[] claimCount = new int[1];
+            int[] ownedClaimCount = new int[1];
+            Map<UUID, List<ChunkCoordinates>> loadedOwnedClaims = new HashMap<>();
+            try {
+                this.claimsDao.forEachClaim(claim -> {
+                    ChunkCoordinates coordinates = claim.getCoordinates();
+                    int worldId = this.getWorldId(coordinates.getWorldUUID());
+                    if (this.claimsCache.putIfAbsent(worldId, coordinates.getX(), coordinates.getZ(), claim) == null) {
+                        this.unclaimedChunks.remove(worldId, coordinates.getX(), coordinates.getZ());
+                    }
+                    if (claim.hasOwner()) {
+                        loadedOwnedClaims.computeIfAbsent(claim.getOwner().get(), key -> new ArrayList<>()).add(coordinates);
+                        ownedClaimCount[0]++;
+                    }
+                    claimCount[0]++;
+                });
+            } catch (DaoException exception) {
+                this.ownedClaims.cancelLoadingAll();
+                throw new CompletionException(exception);
+            }
+            this.ownedClaims.finishLoadingAll(loadedOwnedClaims);
+
+            this.preloaded = true;
+            // Nothing is evicted from now on
+            this.cachedChunks.clear();
+            long claimBytes = this.claimsCache.capacity() * ObjectSizes.INDEX_SLOT
+                    + (long)claimCount[0] * (ObjectSizes.CLAIM + ObjectSizes.CHUNK_COORDINATES)
+                    + (long)ownedClaimCount[0] * (ObjectSizes.UUID + ObjectSizes.HASH_SET_ENTRY);
+            long helperBytes = this.helpersCache.capacity() * ObjectSizes.INDEX_SLOT;
+            for (HelperSet helpers : distinctHelpers) {
+                helperBytes += ObjectSizes.HELPER_SET + ObjectSizes.INTERNED_ENTRY + ObjectSizes.referenceArray(helpers.size())
+                        + (long)helpers.size() * (ObjectSizes.CLAIM_HELPER + ObjectSizes.UUID);
+            }
+            return new PreloadStats(claimCount[0], helperCount[0], (System.nanoTime() - startTime) / 1_000_000, claimBytes, helperBytes);
+        }, this.executor);
+    }
+
+    /**
+     * @return if every claim was loaded into the cache using preloadClaims
+     */
+    public boolean isPreloaded() {
+        return this.preloaded;
+    }
+
+    /**
+     * @return how often claims, helpers, owned claims and owner trusts were served from the cache and how long loading them took
+     */
+    public LoadStats getLoadStats() {
+        return this.loadStats;
     }
 
     /**
@@ -79,12 +401,22 @@ public class ClaimsManager {
      * @return cached claim
      */
     public Optional<Claim> getClaim(ChunkCoordinates coordinates) {
-        Claim claim = this.claimsCache.getOrDefault(coordinates, null);
-        if (claim != null) {
-            return Optional.of(claim.clone());
-        } else {
-            return Optional.empty();
+        return this.getClaim(this.getWorldId(coordinates.getWorldUUID()), coordinates.getX(), coordinates.getZ());
+    }
+
+    /**
+     * Get a claim from the cache if it is cached.
+     * @param worldId id retrieved from getWorldId
+     * @param chunkX
+     * @param chunkZ
+     * @return cached claim
+     */
+    public Optional<Claim> getClaim(int worldId, int chunkX, int chunkZ) {
+        Claim claim = this.claimsCache.get(worldId, chunkX, chunkZ);
+        if (claim == null && this.isCachedAsUnclaimed(worldId, chunkX, chunkZ)) {
+            claim = new Claim(new ChunkCoordinates(this.worlds.getWorldUUID(worldId), chunkX, chunkZ), 0);
         }
+        return Optional.ofNullable(claim);
     }
 
     /**
@@ -93,20 +425,19 @@ public class ClaimsManager {
      * @return CompletableFuture that resolves after saving
      */
     public CompletableFuture<Void> saveClaim(Claim claim) {
-        return this.fetchClaim(claim.getCoordinates()).thenAcceptAsync(savedClaim -> {
-            try {
-                if (savedClaim.getOwner().isPresent() || savedClaim.getFlags() != 0 ) {
-                    this.claimsDao.update(claim);
-                    this.claimsCache.put(claim.getCoordinates(), claim.clone());
-                } else if (claim.getOwner().isPresent() || claim.getFlags() != 0) {
-                    this.claimsDao.insert(claim);
-                    this.claimsCache.put(claim.getCoordinates(), claim.clone());
-                }
-            } catch (DaoException exception) {
-                throw new CompletionException(exception);
+        // The trusts of the owner are loaded before the claim is cached so that permissions can be resolved right away
+        CompletableFuture<Set<ClaimHelper>> ownerTrusts = claim.hasOwner() ? this.fetchOwnerTrusts(claim.getOwnerUuid()) : CompletableFuture.completedFuture(null);
+        return this.fetchClaim(claim.getCoordinates()).thenCombine(ownerTrusts, (savedClaim, ignored) -> savedClaim).thenCompose(savedClaim -> {
+            boolean claimExists = savedClaim.getOwner().isPresent() || savedClaim.getFlags() != 0;
+            if (!claimExists && !claim.getOwner().isPresent() && claim.getFlags() == 0) {
+                return CompletableFuture.completedFuture(null);
             }
-
-            this.updateClaimCountCache(savedClaim, claim);
+            this.putCachedClaim(claim);
+            this.publish(ClaimUpdate.claim(claim, savedClaim.getOwner().orElse(null)));
+            // Queued before the owners are updated so that an owner loaded in the meantime reads it
+            CompletableFuture<Void> claimSave = this.writeQueue.saveClaim(claim, claimExists);
+            this.updateOwnedClaims(savedClaim, claim);
+            return claimSave;
         });
     }
 
@@ -116,21 +447,51 @@ public class ClaimsManager {
      * @return CompletableFuture that resolves after deleting
      */
     public CompletableFuture<Void> deleteClaim(Claim claim) {
-        return this.fetchClaimHelpers(claim.getCoordinates())
-                .thenAcceptAsync(helpers -> helpers.forEach(helper -> this.deleteClaimHelper(claim.getCoordinates(), helper)))
-                .thenRunAsync(() -> this.fetchClaim(claim.getCoordinates()).thenAcceptAsync(cachedClaim -> {
-                    try {
-                        this.claimsDao.delete(claim);
-                    } catch (DaoException exception) {
-                        throw new CompletionException(exception);
-                    }
-                    Claim newClaim = new Claim(claim.getCoordinates(), null, 0);
-                    this.claimsCache.put(claim.getCoordinates(), newClaim);
+        ChunkCoordinates coordinates = claim.getCoordinates();
+        return this.fetchClaimHelpers(coordinates).thenCompose(helpers -> {
+            // Queued helper deletions are always written before the claim deletion
+            CompletableFuture<Void> helpersDeletion = CompletableFuture.allOf(helpers.stream()
+                    .map(helper -> this.deleteClaimHelper(coordinates, helper))
+                    .toArray(CompletableFuture[]::new));
+
+            return this.fetchClaim(coordinates).thenCompose(cachedClaim -> {
+                Claim newClaim = new Claim(coordinates, null, 0);
+                this.cacheAsUnclaimed(this.getWorldId(coordinates.getWorldUUID()), coordinates.getX(), coordinates.getZ());
+                this.publish(ClaimUpdate.claim(newClaim, cachedClaim.getOwner().orElse(null)));
+
+                CompletableFuture<Void> claimDeletion = this.writeQueue.deleteClaim(claim, cachedClaim.getOwner().isPresent() || cachedClaim.getFlags() != 0);
+                this.updateOwnedClaims(cachedClaim, newClaim);
+                return CompletableFuture.allOf(helpersDeletion, claimDeletion);
+            });
+        });
+    }
 
-                    this.updateClaimCountCache(cachedClaim, newClaim);
-                }));
+
+    /**
+     * Save many claims at once.
+     * The changes are queued together so that they are written in as few transactions as possible.
+     * @param claims
+     * @return CompletableFuture that resolves after saving every claim
+     */
+    public CompletableFuture<Void> saveClaims(Collection<Claim> claims) {
+        return this.fetchClaims(toCoordinates(claims)).thenCompose(ignored -> this.writeQueue.batched(() ->
+                CompletableFuture.allOf(claims.stream()
+                        .map(this::saveClaim)
+                        .toArray(CompletableFuture[]::new))));
     }
 
+    /**
+     * Delete many claims and their helpers at once.
+     * The changes are queued together so that they are written in as few transactions as possible.
+     * @param claims
+     * @return CompletableFuture that resolves after deleting every claim
+     */
+    public CompletableFuture<Void> deleteClaims(Collection<Claim> claims) {
+        return this.fetchClaims(toCoordinates(claims)).thenCompose(ignored -> this.writeQueue.batched(() ->
+                CompletableFuture.allOf(claims.stream()
+                        .map(this::deleteClaim)
+                        .toArray(CompletableFuture[]::new))));
+    }
 
     /**
      * Fetch the claim helpers of a chunk from the ClaimHelpersDao
@@ -138,41 +499,99 @@ public class ClaimsManager {
      * @return CompletableFuture that resolves with the claim helpers of a chunk
      */
     public CompletableFuture<Set<ClaimHelper>> fetchClaimHelpers(ChunkCoordinates coordinates) {
-        Set<ClaimHelper> existingHelpers = this.helpersCache.getOrDefault(coordinates, null);
+        HelperSet existingHelpers = this.getCachedHelpers(coordinates);
         if (existingHelpers != null) {
-            return CompletableFuture.completedFuture(existingHelpers.stream().map(ClaimHelper::clone).collect(Collectors.toSet()));
+            this.loadStats.recordHit();
+            return CompletableFuture.completedFuture(existingHelpers.asSet());
+        } else if (this.isCachedAsUnclaimed(coordinates)) {
+            this.loadStats.recordHit();
+            return CompletableFuture.completedFuture(Collections.emptySet());
         } else {
 
             // Ensure we don't run unnecessary queries
-            CompletableFuture<Set<ClaimHelper>> returnedFuture = this.queueHelperFutures.getOrDefault(coordinates, null);
-            if (returnedFuture == null) {
-                returnedFuture = CompletableFuture.supplyAsync(() -> {
-                    Set<ClaimHelper> helpers;
-                    try {
-                        helpers = this.claimHelpersDao.getClaimHelpersByLocation(coordinates);
-                    } catch (DaoException exception) {
-                        throw new CompletionException(exception);
-                    }
-                    this.helpersCache.putIfAbsent(coordinates, helpers);
-                    this.queueHelperFutures.remove(coordinates);
-                    return helpers.stream()
-                            .map(ClaimHelper::clone)
-                            .collect(Collectors.toSet());
-                });
-                this.queueHelperFutures.putIfAbsent(coordinates, returnedFuture);
-            }
-            return returnedFuture;
+            this.loadStats.recordMiss();
+            return this.helperLoads.load(coordinates, key -> DaoExecutor.supplyAsync(() -> {
+                Set<ClaimHelper> helpers;
+                try {
+                    helpers = this.writeQueue.applyPendingHelpers(coordinates, this.claimHelpersDao.getClaimHelpersByLocation(coordinates));
+                } catch (DaoException exception) {
+                    throw new CompletionException(exception);
+                }
+                HelperSet loadedHelpers = this.internHelpers(helpers);
+                HelperSet cachedHelpers = this.helpersCache.putIfAbsent(this.getWorldId(coordinates.getWorldUUID()), coordinates.getX(), coordinates.getZ(), loadedHelpers);
+                this.accessChunk(coordinates);
+                return (cachedHelpers != null ? cachedHelpers : loadedHelpers).asSet();
+            }, this.executor));
         }
     }
 
     /**
      * Remove the cached data for a claim.
      * This will also clear claim helpers of a claim.
+     * Chunks known to be unclaimed stay cached since they are stored compactly.
      * @param coordinates
      */
     public void removeClaimFromCache(ChunkCoordinates coordinates) {
-        this.claimsCache.remove(coordinates);
+        if (this.preloaded) {
+            return;
+        }
+        int worldId = this.getWorldId(coordinates.getWorldUUID());
+        this.claimsCache.remove(worldId, coordinates.getX(), coordinates.getZ());
         this.removeClaimHelpersFromCache(coordinates);
+        this.cachedChunks.remove(worldId, coordinates.getX(), coordinates.getZ());
+    }
+
+    /**
+     * Keep the cached claim and helpers of a chunk when the cache is full, such as while the chunk is loaded.
+     * Removing the claim from the cache still removes it.
+     * @param coordinates
+     */
+    public void pinChunk(ChunkCoordinates coordinates) {
+        if (!this.preloaded) {
+            this.cachedChunks.pin(this.getWorldId(coordinates.getWorldUUID()), coordinates.getX(), coordinates.getZ());
+        }
+    }
+
+    /**
+     * Allow the cached claim and helpers of a chunk to be evicted again.
+     * They stay cached until the cache is full or until removeUnpinnedChunksFromCache removes them,
+     * so that a chunk that is loaded again shortly after does not need to be queried again.
+     * @param coordinates
+     */
+    public void unpinChunk(ChunkCoordinates coordinates) {
+        this.cachedChunks.unpin(this.getWorldId(coordinates.getWorldUUID()), coordinates.getX(), coordinates.getZ());
+    }
+
+    /**
+     * Remove the cached claim and helpers of the chunks that were unpinned a while ago and were not pinned again since.
+     * Has no effect once every claim was preloaded.
+     * @param unpinnedForMillis how long a chunk must have been unpinned for
+     */
+    public void removeUnpinnedChunksFromCache(long unpinnedForMillis) {
+        if (!this.preloaded) {
+            this.cachedChunks.expireReleasedBefore(System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(unpinnedForMillis));
+        }
+    }
+
+    /**
+     * @return the amount of chunks pinned again while their claim and helpers were still cached since they were unpinned
+     */
+    public long getAvoidedReloadCount() {
+        return this.cachedChunks.getRepinnedCount();
+    }
+
+    /**
+     * @return the amount of chunks whose cached claim and helpers were evicted because the cache was full
+     */
+    public long getEvictedChunkCount() {
+        return this.cachedChunks.getEvictionCount();
+    }
+
+    /**
+     * @return the amount of chunks whose cached claim and helpers were removed by removeUnpinnedChunksFromCache
+     */
+    public long getExpiredChunkCount() {
+        return this.cachedChunks.getExpiredCount();
     }
 
     /**
@@ -181,8 +600,12 @@ public class ClaimsManager {
      * @return cached claim helpers
      */
     public Optional<Set<ClaimHelper>> getClaimHelpers(ChunkCoordinates coordinates) {
-        return Optional.ofNullable(this.helpersCache.getOrDefault(coordinates, null))
-                .map(helpers -> helpers.stream().map(ClaimHelper::clone).collect(Collectors.toSet()));
+        HelperSet helpers = this.getCachedHelpers(coordinates);
+        if (helpers == null && this.isCachedAsUnclaimed(coordinates)) {
+            return Optional.of(Collections.emptySet());
+        }
+        return Optional.ofNullable(helpers)
+                .map(HelperSet::asSet);
     }
 
     /**
@@ -192,17 +615,78 @@ public class ClaimsManager {
      * @return Will return an empty optional if the claim helper does not exist or if no helpers have been fetched yet.
      */
     public Optional<ClaimHelper> getClaimHelper(ChunkCoordinates coordinates, UUID helperUuid) {
-        Set<ClaimHelper> existingHelpers = this.helpersCache.getOrDefault(coordinates, null);
+        return this.getClaimHelper(this.getWorldId(coordinates.getWorldUUID()), coordinates.getX(), coordinates.getZ(), helperUuid);
+    }
+
+    /**
+     * Get a claim helper from the cache.
+     * The helper is found with a binary search over the helpers of the chunk without copying them.
+     * @param worldId id retrieved from getWorldId
+     * @param chunkX
+     * @param chunkZ
+     * @param helperUuid
+     * @return Will return an empty optional if the claim helper does not exist or if no helpers have been fetched yet.
+     */
+    public Optional<ClaimHelper> getClaimHelper(int worldId, int chunkX, int chunkZ, UUID helperUuid) {
+        HelperSet existingHelpers = this.helpersCache.get(worldId, chunkX, chunkZ);
         if (existingHelpers != null) {
-            return existingHelpers.stream()
-                    .filter(helper -> helper.getUuid().equals(helperUuid))
-                    .map(ClaimHelper::clone)
-                    .findAny();
+            return Optional.ofNullable(existingHelpers.get(helperUuid));
         } else {
             return Optional.empty();
         }
     }
 
+    /**
+     * Check if a player can perform an action in a chunk using the cached claim and claim helpers.
+     * A helper of the chunk overrides the trust of the owner, so a helper can be given less permissions in some chunks.
+     * This does not allocate and is intended to be used by event listeners.
+     * @param worldId id retrieved from getWorldId
+     * @param chunkX
+     * @param chunkZ
+     * @param playerUuid
+     * @param permission the permission a claim helper requires to perform the action
+     * @return LOADING if the claim or the trusts of its owner were not fetched yet
+     */
+    public PermissionState checkPermission(int worldId, int chunkX, int chunkZ, UUID playerUuid, ClaimHelper.Permission permission) {
+        Claim claim = this.claimsCache.get(worldId, chunkX, chunkZ);
+        if (claim == null) {
+            return this.isCachedAsUnclaimed(worldId, chunkX, chunkZ) ? PermissionState.ALLOWED : PermissionState.LOADING;
+        }
+
+        // does this claim have a owner? Is it us? If not, are we a helper with permission?
+        if (!claim.hasOwner() || claim.isOwner(playerUuid)) {
+            return PermissionState.ALLOWED;
+        }
+        HelperSet helpers = this.helpersCache.get(worldId, chunkX, chunkZ);
+        ClaimHelper helper = helpers != null ? helpers.get(playerUuid) : null;
+        if (helper == null && this.ownerTrustsDao != null) {
+            HelperSet trusts = this.ownerTrustsCache.get(claim.getOwnerUuid());
+            if (trusts == null) {
+                // Owners without a cached entry trust nobody once everything is preloaded
+                return this.preloaded ? PermissionState.DENIED : PermissionState.LOADING;
+            }
+            helper = trusts.get(playerUuid);
+        }
+        if (helper != null && helper.hasPermission(permission)) {
+            return PermissionState.ALLOWED;
+        }
+        return PermissionState.DENIED;
+    }
+
+    /**
+     * Check if the cached claim of a chunk has a flag.
+     * This does not allocate and is intended to be used by event listeners.
+     * @param worldId id retrieved from getWorldId
+     * @param chunkX
+     * @param chunkZ
+     * @param flag
+     * @return false if the claim does not have the flag or if the claim was not fetched yet
+     */
+    public boolean hasFlag(int worldId, int chunkX, int chunkZ, Claim.Flag flag) {
+        Claim claim = this.claimsCache.get(worldId, chunkX, chunkZ);
+        return claim != null && claim.hasFlag(flag);
+    }
+
     /**
      * Save a ClaimHelper to the ClaimHelpersDao
      * @param coordinates
@@ -211,25 +695,14 @@ public class ClaimsManager {
      */
     public CompletableFuture<Void> saveClaimHelper(ChunkCoordinates coordinates, ClaimHelper helper) {
         return this.fetchClaimHelpers(coordinates)
-                .thenAcceptAsync(savedHelpers -> {
-                    Optional<ClaimHelper> savedHelper = savedHelpers.stream()
-                            .filter(h -> h.getUuid().equals(helper.getUuid()))
-                            .findAny();
-                    try {
-                        if (savedHelper.isPresent()) {
-                            this.claimHelpersDao.update(coordinates, helper);
-                            savedHelper.get().setPermissions(helper.getPermissions());
-                            this.helpersCache.put(coordinates, savedHelpers);
-
-                        } else if (helper.getPermissions() != 0) {
-                            this.claimHelpersDao.insert(coordinates, helper);
-                            savedHelpers.add(helper.clone());
-                            this.helpersCache.put(coordinates, savedHelpers);
-
-                        }
-                    } catch (DaoException exception) {
-                        throw new CompletionException(exception);
+                .thenCompose(savedHelpers -> {
+                    boolean helperExists = savedHelpers.contains(helper);
+                    if (!helperExists && helper.getPermissions() == 0) {
+                        return CompletableFuture.completedFuture(null);
                     }
+                    this.putCachedHelper(coordinates, helper);
+                    this.publish(ClaimUpdate.helper(coordinates, helper));
+                    return this.writeQueue.saveHelper(coordinates, helper, helperExists);
                 });
     }
 
@@ -240,55 +713,294 @@ public class ClaimsManager {
      * @return a CompletableFuture that resolves after deletion has finished
      */
     public CompletableFuture<Void> deleteClaimHelper(ChunkCoordinates coordinates, ClaimHelper helper) {
-        return CompletableFuture.runAsync(() -> {
+        return this.fetchClaimHelpers(coordinates)
+                .thenCompose(savedHelpers -> {
+                    this.removeCachedHelper(coordinates, helper.getUuid());
+                    this.publish(ClaimUpdate.helper(coordinates, helper.withPermissions(0)));
+                    return this.writeQueue.deleteHelper(coordinates, helper, savedHelpers.contains(helper));
+                });
+    }
+
+    /**
+     * Give a helper the same permissions on every claim of an owner.
+     * The helper is written with a single dao call instead of one per claim and the cached helpers of the claims are patched in one pass.
+     * A helper without permissions is removed instead.
+     * @param ownerUuid
+     * @param helper
+     * @return a CompletableFuture that resolves after saving has finished
+     */
+    public CompletableFuture<Void> saveClaimHelperOfOwner(UUID ownerUuid, ClaimHelper helper) {
+        if (helper.getPermissions() == 0) {
+            return this.deleteClaimHelperOfOwner(ownerUuid, helper.getUuid());
+        }
+        return this.writeOwnerHelper(ownerUuid, helper.getUuid(), () -> this.claimHelpersDao.saveForOwner(ownerUuid, helper), helper);
+    }
+
+    /**
+     * Remove a helper from every claim of an owner.
+     * The helper is deleted with a single dao call instead of one per claim and the cached helpers of the claims are patched in one pass.
+     * @param ownerUuid
+     * @param helperUuid
+     * @return a CompletableFuture that resolves after deletion has finished
+     */
+    public CompletableFuture<Void> deleteClaimHelperOfOwner(UUID ownerUuid, UUID helperUuid) {
+        return this.writeOwnerHelper(ownerUuid, helperUuid, () -> this.claimHelpersDao.deleteForOwner(ownerUuid, helperUuid), null);
+    }
+
+    /**
+     * @param helper the new state of the helper or null if it was deleted
+     */
+    private CompletableFuture<Void> writeOwnerHelper(UUID ownerUuid, UUID helperUuid, DaoAction action, ClaimHelper helper) {
+        return this.fetchOwnedClaims(ownerUuid).thenCompose(fetchedClaims -> DaoExecutor.runAsync(() -> {
+            // The dao reads the owner's claims and helpers from the database so queued changes must be written first
+            this.writeQueue.flush();
             try {
-                this.claimHelpersDao.delete(coordinates, helper);
+                action.run();
             } catch (DaoException exception) {
                 throw new CompletionException(exception);
             }
-            Set<ClaimHelper> helpers = this.helpersCache.getOrDefault(coordinates, null);
-            if (helpers != null) {
-                helpers.remove(helper);
+
+            this.putCachedHelperOfOwner(this.getOwnedClaimsOrDefault(ownerUuid, fetchedClaims), helperUuid, helper);
+            this.publish(ClaimUpdate.ownerHelper(ownerUuid, helper != null ? helper : new ClaimHelper(helperUuid, 0)));
+        }, this.executor));
+    }
+
+    /**
+     * Patch the cached helpers of the claims of an owner
+     * @param ownedClaims the claims of the owner
+     * @param helperUuid
+     * @param helper the new state of the helper or null if it was deleted
+     */
+    private void putCachedHelperOfOwner(Set<ChunkCoordinates> ownedClaims, UUID helperUuid, ClaimHelper helper) {
+        for (ChunkCoordinates coordinates : ownedClaims) {
+            // Helpers that are not cached are loaded with the change later unless everything is preloaded
+            this.helpersCache.compute(this.getWorldId(coordinates.getWorldUUID()), coordinates.getX(), coordinates.getZ(), existingHelpers -> {
+                if (existingHelpers == null && !this.preloaded) {
+                    return null;
+                }
+                HelperSet currentHelpers = existingHelpers != null ? existingHelpers : HelperSet.EMPTY;
+                return this.helperSets.intern(helper != null ? currentHelpers.with(helper) : currentHelpers.without(helperUuid));
+            });
+        }
+    }
+
+    /**
+     * @return if helpers can be trusted on every claim of an owner
+     */
+    public boolean isOwnerTrustEnabled() {
+        return this.ownerTrustsDao != null;
+    }
+
+    /**
+     * Fetch the helpers trusted on every claim of an owner from the OwnerTrustsDao if they are not cached
+     * @param ownerUuid
+     * @return CompletableFuture with the trusted helpers. Empty if owner trust is not enabled
+     */
+    public CompletableFuture<Set<ClaimHelper>> fetchOwnerTrusts(UUID ownerUuid) {
+        if (this.ownerTrustsDao == null) {
+            return CompletableFuture.completedFuture(Collections.emptySet());
+        }
+        HelperSet existingTrusts = this.ownerTrustsCache.get(ownerUuid);
+        if (existingTrusts != null) {
+            this.loadStats.recordHit();
+            return CompletableFuture.completedFuture(existingTrusts.asSet());
+        }
+
+        // Ensure we don't run unnecessary queries
+        this.loadStats.recordMiss();
+        return this.ownerTrustsLoads.load(ownerUuid, key -> DaoExecutor.supplyAsync(() -> this.loadOwnerTrusts(ownerUuid).asSet(), this.executor));
+    }
+
+    /**
+     * Retrieve the helpers trusted on every claim of an owner from the cache
+     * @param ownerUuid
+     * @return cached trusted helpers
+     */
+    public Optional<Set<ClaimHelper>> getOwnerTrusts(UUID ownerUuid) {
+        return Optional.ofNullable(this.ownerTrustsCache.get(ownerUuid))
+                .map(HelperSet::asSet);
+    }
+
+    /**
+     * Get a helper trusted on every claim of an owner from the cache
+     * @param ownerUuid
+     * @param helperUuid
+     * @return Will return an empty optional if the helper is not trusted or if the trusts have not been fetched yet.
+     */
+    public Optional<ClaimHelper> getOwnerTrust(UUID ownerUuid, UUID helperUuid) {
+        HelperSet trusts = this.ownerTrustsCache.get(ownerUuid);
+        return trusts != null ? Optional.ofNullable(trusts.get(helperUuid)) : Optional.empty();
+    }
+
+    /**
+     * Trust a helper on every claim of an owner, including claims made later.
+     * Unlike saveClaimHelperOfOwner, this stores a single row no matter how many claims the owner has.
+     * A helper without permissions is removed instead.
+     * @param ownerUuid
+     * @param helper
+     * @return a CompletableFuture that resolves after saving has finished
+     */
+    public CompletableFuture<Void> saveOwnerTrust(UUID ownerUuid, ClaimHelper helper) {
+        if (helper.getPermissions() == 0) {
+            return this.deleteOwnerTrust(ownerUuid, helper.getUuid());
+        }
+        return this.writeOwnerTrust(ownerUuid, helper.getUuid(), helper);
+    }
+
+    /**
+     * Stop trusting a helper on every claim of an owner.
+     * Helpers of a chunk are kept.
+     * @param ownerUuid
+     * @param helperUuid
+     * @return a CompletableFuture that resolves after deletion has finished
+     */
+    public CompletableFuture<Void> deleteOwnerTrust(UUID ownerUuid, UUID helperUuid) {
+        return this.writeOwnerTrust(ownerUuid, helperUuid, null);
+    }
+
+    /**
+     * @param helper the new state of the trusted helper or null if it was deleted
+     */
+    private CompletableFuture<Void> writeOwnerTrust(UUID ownerUuid, UUID helperUuid, ClaimHelper helper) {
+        if (this.ownerTrustsDao == null) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            future.completeExceptionally(new IllegalStateException("Owner trust is not enabled"));
+            return future;
+        }
+        return this.fetchOwnerTrusts(ownerUuid).thenCompose(ignored -> {
+            ClaimHelper[] previousHelper = new ClaimHelper[1];
+            this.ownerTrustsCache.compute(ownerUuid, (key, existingTrusts) -> {
+                HelperSet currentTrusts = existingTrusts != null ? existingTrusts : HelperSet.EMPTY;
+                previousHelper[0] = currentTrusts.get(helperUuid);
+                return helper != null ? currentTrusts.with(helper) : currentTrusts.without(helperUuid);
+            });
+            if (helper == null && previousHelper[0] == null) {
+                return CompletableFuture.completedFuture(null);
             }
+            this.publish(ClaimUpdate.ownerTrust(ownerUuid, helper != null ? helper : new ClaimHelper(helperUuid, 0)));
+            return DaoExecutor.runAsync(() -> {
+                try {
+                    if (helper == null) {
+                        this.ownerTrustsDao.delete(ownerUuid, helperUuid);
+                    } else if (previousHelper[0] != null) {
+                        this.ownerTrustsDao.update(ownerUuid, helper);
+                    } else {
+                        this.ownerTrustsDao.insert(ownerUuid, helper);
+                    }
+                } catch (DaoException exception) {
+                    throw new CompletionException(exception);
+                }
+            }, this.executor);
         });
     }
 
+    /**
+     * Read the trusts of an owner and cache them if they are not cached yet.
+     * Must be called from the executor.
+     * @return the cached trusts of the owner
+     */
+    private HelperSet loadOwnerTrusts(UUID ownerUuid) {
+        if (this.ownerTrustsDao == null) {
+            return HelperSet.EMPTY;
+        }
+        HelperSet existingTrusts = this.ownerTrustsCache.get(ownerUuid);
+        if (existingTrusts != null) {
+            return existingTrusts;
+        }
+        HelperSet loadedTrusts = HelperSet.EMPTY;
+        if (!this.preloaded) {
+            try {
+                loadedTrusts = HelperSet.of(this.ownerTrustsDao.getTrustsOfOwner(ownerUuid));
+            } catch (DaoException exception) {
+                throw new CompletionException(exception);
+            }
+        }
+        HelperSet cachedTrusts = this.ownerTrustsCache.putIfAbsent(ownerUuid, loadedTrusts);
+        return cachedTrusts != null ? cachedTrusts : loadedTrusts;
+    }
+
     /**
      * Remove all claim helpers cached for a coordinate
      * @param coordinates
      */
     public void removeClaimHelpersFromCache(ChunkCoordinates coordinates) {
-        this.helpersCache.remove(coordinates);
+        if (this.preloaded) {
+            return;
+        }
+        this.helpersCache.remove(this.getWorldId(coordinates.getWorldUUID()), coordinates.getX(), coordinates.getZ());
     }
 
     /**
-     * Retrieve the amount of claims a player has from the ClaimHelpersDao
+     * Fetch a page of the claims owned by a player from the ClaimsDao.
+     * Queued claim changes are written first so that the page includes them.
+     * @param ownerUuid
+     * @param page page number starting at 1
+     * @param pageSize amount of claims per page
+     * @return CompletableFuture with the claims of the page ordered by world and coordinates
+     */
+    public CompletableFuture<List<Claim>> fetchClaimsOfOwner(UUID ownerUuid, int page, int pageSize) {
+        return DaoExecutor.supplyAsync(() -> {
+            this.writeQueue.flush();
+            try {
+                return this.claimsDao.getClaimsOfOwner(ownerUuid, (Math.max(page, 1) - 1) * pageSize, pageSize);
+            } catch (DaoException exception) {
+                throw new CompletionException(exception);
+            }
+        }, this.executor);
+    }
+
+    /**
+     * Fetch the chunks claimed by a player if they are not cached.
+     * Once fetched, the claimed chunks of the player are kept up to date in memory.
+     * @param ownerUuid
+     * @return CompletableFuture with the coordinates of every chunk the player owns
+     */
+    public CompletableFuture<Set<ChunkCoordinates>> fetchOwnedClaims(UUID ownerUuid) {
+        Set<ChunkCoordinates> ownedClaims = this.ownedClaims.getKeys(ownerUuid);
+        if (ownedClaims != null) {
+            this.loadStats.recordHit();
+            return CompletableFuture.completedFuture(Collections.unmodifiableSet(ownedClaims));
+        }
+
+        // Ensure we don't run unnecessary queries
+        this.loadStats.recordMiss();
+        return this.ownedClaimsLoads.load(ownerUuid, key -> DaoExecutor.supplyAsync(() -> {
+            // Changes made from now on are replayed on top of the stored claims
+            this.ownedClaims.startLoading(ownerUuid);
+            this.writeQueue.flush();
+            List<ChunkCoordinates> storedCoordinates;
+            try {
+                storedCoordinates = this.claimsDao.getCoordinatesOfOwner(ownerUuid);
+            } catch (DaoException exception) {
+                this.ownedClaims.cancelLoading(ownerUuid);
+                throw new CompletionException(exception);
+            }
+            Set<ChunkCoordinates> loadedClaims = this.ownedClaims.finishLoading(ownerUuid, storedCoordinates);
+            return Collections.unmodifiableSet(loadedClaims != null ? loadedClaims : new HashSet<>(storedCoordinates));
+        }, this.executor));
+    }
+
+    /**
+     * Retrieve the chunks claimed by a player from the cache
+     * @param ownerUuid
+     * @return cached coordinates of every chunk the player owns
+     */
+    public Optional<Set<ChunkCoordinates>> getOwnedClaims(UUID ownerUuid) {
+        return Optional.ofNullable(this.ownedClaims.getKeys(ownerUuid))
+                .map(Collections::unmodifiableSet);
+    }
+
+    /**
+     * Retrieve the amount of claims a player has, fetching their claimed chunks if they are not cached
      * @param uuid
      * @return the amount of claims a user has
      */
     public CompletableFuture<Integer> fetchClaimCount(UUID uuid) {
-        Integer count = this.claimCountCache.getOrDefault(uuid, null);
-        if (count != null) {
+        int count = this.ownedClaims.getCount(uuid);
+        if (count >= 0) {
             return CompletableFuture.completedFuture(count);
-        } else {
-            CompletableFuture<Integer> countFuture = this.claimCountFutures.getOrDefault(uuid, null);
-            if (countFuture != null) {
-                return countFuture;
-            } else {
-                CompletableFuture<Integer> activeCountFuture = CompletableFuture.supplyAsync(() -> {
-                    try {
-                        int claims = this.claimsDao.getClaimCountOfUuid(uuid);
-                        this.claimCountCache.put(uuid, claims);
-                        this.claimCountFutures.remove(uuid);
-                        return claims;
-                    } catch (DaoException exception) {
-                        throw new CompletionException(exception);
-                    }
-                });
-                this.claimCountFutures.put(uuid, activeCountFuture);
-                return activeCountFuture;
-            }
         }
+        return this.fetchOwnedClaims(uuid).thenApply(Set::size);
     }
 
     /**
@@ -297,57 +1009,524 @@ public class ClaimsManager {
      * @return cached claim count
      */
     public Optional<Integer> getClaimCount(UUID uuid) {
-        return Optional.ofNullable(this.claimCountCache.getOrDefault(uuid, null));
+        int count = this.ownedClaims.getCount(uuid);
+        return count >= 0 ? Optional.of(count) : Optional.empty();
     }
 
     /**
-     * Remove cached claim count for a player
+     * Stop keeping the claimed chunks of a player in memory.
+     * Has no effect once every claim was preloaded.
      * @param uuid
      */
     public void removeClaimCountFromCache(UUID uuid) {
-        this.claimCountCache.remove(uuid);
+        this.ownedClaims.removeOwner(uuid);
+        if (!this.ownedClaims.isLoaded(uuid)) {
+            this.claimRegions.removeOwner(uuid);
+        }
+    }
+
+    /**
+     * Stop keeping the claimed chunks of every player but the given ones in memory,
+     * such as players whose claims were fetched by someone else.
+     * Has no effect once every claim was preloaded.
+     * @param uuids players to keep
+     */
+    public void retainClaimCountsInCache(Set<UUID> uuids) {
+        Set<UUID> cachedOwners = this.ownedClaims.getOwners();
+        // Regions may have been built from claims fetched right before their owner was removed
+        cachedOwners.addAll(this.claimRegions.getOwners());
+        for (UUID uuid : cachedOwners) {
+            if (!uuids.contains(uuid)) {
+                this.removeClaimCountFromCache(uuid);
+            }
+        }
+    }
+
+    /**
+     * Fetch every region of a player. A region is a group of claimed chunks connected by their edges.
+     * @param ownerUuid
+     * @return CompletableFuture with the chunks of each region
+     */
+    public CompletableFuture<List<Set<ChunkCoordinates>>> fetchClaimRegions(UUID ownerUuid) {
+        return this.fetchOwnedClaims(ownerUuid)
+                .thenApply(ownedClaims -> this.claimRegions.getRegions(ownerUuid, () -> this.getOwnedClaimsOrDefault(ownerUuid, ownedClaims)));
+    }
+
+    /**
+     * Fetch the region a claimed chunk belongs to.
+     * A region is a group of chunks with the same owner connected by their edges.
+     * @param coordinates
+     * @return CompletableFuture with the chunks of the region or an empty set if the chunk has no owner
+     */
+    public CompletableFuture<Set<ChunkCoordinates>> fetchClaimRegion(ChunkCoordinates coordinates) {
+        return this.fetchClaim(coordinates).thenCompose(claim -> {
+            if (!claim.hasOwner()) {
+                return CompletableFuture.completedFuture(Collections.emptySet());
+            }
+            UUID ownerUuid = claim.getOwner().get();
+            return this.fetchOwnedClaims(ownerUuid)
+                    .thenApply(ownedClaims -> this.claimRegions.getRegion(ownerUuid, coordinates, () -> this.getOwnedClaimsOrDefault(ownerUuid, ownedClaims)));
+        });
     }
 
     /**
-     * Update the claim count of a player.
-     * Note: This will not update anything if the player's claim count was not fetched first
+     * Retrieve the region a claimed chunk belongs to from the cache
+     * @param coordinates
+     * @return the chunks of the region, an empty set if the chunk has no owner or an empty optional if the claim or the claims of its owner are not cached
+     */
+    public Optional<Set<ChunkCoordinates>> getClaimRegion(ChunkCoordinates coordinates) {
+        Optional<Claim> claim = this.getClaim(coordinates);
+        if (!claim.isPresent()) {
+            return Optional.empty();
+        }
+        if (!claim.get().hasOwner()) {
+            return Optional.of(Collections.emptySet());
+        }
+        UUID ownerUuid = claim.get().getOwner().get();
+        if (!this.ownedClaims.isLoaded(ownerUuid)) {
+            return Optional.empty();
+        }
+        return Optional.of(this.claimRegions.getRegion(ownerUuid, coordinates, () -> this.getOwnedClaimsOrDefault(ownerUuid, Collections.emptySet())));
+    }
+
+    /**
+     * Fetch the claims of every chunk in the region of a claimed chunk
+     * @param coordinates
+     * @return CompletableFuture with the claim of each chunk in the region
+     */
+    public CompletableFuture<Map<ChunkCoordinates, Claim>> fetchClaimsInRegion(ChunkCoordinates coordinates) {
+        return this.fetchClaimRegion(coordinates).thenCompose(this::fetchClaims);
+    }
+
+    /**
+     * Set the flags of every claim in the region of a claimed chunk
+     * @param coordinates
+     * @param flags
+     * @return CompletableFuture that resolves after saving every claim of the region
+     */
+    public CompletableFuture<Void> saveClaimRegionFlags(ChunkCoordinates coordinates, int flags) {
+        return this.fetchClaimsInRegion(coordinates).thenCompose(claims -> this.saveClaims(claims.values().stream()
+                .map(claim -> claim.withFlags(flags))
+                .collect(Collectors.toList())));
+    }
+
+    /**
+     * Save a claim helper to every claim in the region of a claimed chunk
+     * @param coordinates
+     * @param helper
+     * @return CompletableFuture that resolves after saving the helper of every claim of the region
+     */
+    public CompletableFuture<Void> saveClaimRegionHelper(ChunkCoordinates coordinates, ClaimHelper helper) {
+        return this.fetchClaimsInRegion(coordinates).thenCompose(claims -> this.writeQueue.batched(() ->
+                CompletableFuture.allOf(claims.keySet().stream()
+                        .map(claimCoordinates -> this.saveClaimHelper(claimCoordinates, helper))
+                        .toArray(CompletableFuture[]::new))));
+    }
+
+    /**
+     * Delete a claim helper from every claim in the region of a claimed chunk
+     * @param coordinates
+     * @param helper
+     * @return CompletableFuture that resolves after deleting the helper of every claim of the region
+     */
+    public CompletableFuture<Void> deleteClaimRegionHelper(ChunkCoordinates coordinates, ClaimHelper helper) {
+        return this.fetchClaimsInRegion(coordinates).thenCompose(claims -> this.writeQueue.batched(() ->
+                CompletableFuture.allOf(claims.keySet().stream()
+                        .map(claimCoordinates -> this.deleteClaimHelper(claimCoordinates, helper))
+                        .toArray(CompletableFuture[]::new))));
+    }
+
+    /**
+     * The owned claims are read again when building regions since they may have changed after they were fetched
+     */
+    private Set<ChunkCoordinates> getOwnedClaimsOrDefault(UUID ownerUuid, Set<ChunkCoordinates> fetchedClaims) {
+        Set<ChunkCoordinates> ownedClaims = this.ownedClaims.getKeys(ownerUuid);
+        return ownedClaims != null ? ownedClaims : fetchedClaims;
+    }
+
+    /**
+     * Move a claim between the claimed chunks of its old and new owner.
+     * Note: Owners whose claimed chunks were not fetched are not tracked
      * @param oldClaim The old state of the claim being updated
      * @param newClaim The new state of the claim being updated
      */
-    private void updateClaimCountCache(Claim oldClaim, Claim newClaim) {
-        if (oldClaim.getOwner().isPresent() && !newClaim.getOwner().isPresent()) {
-            // Removing owner from claim
-            this.decrementClaimCountIfAvailable(oldClaim.getOwner().get());
-        } else if (!oldClaim.getOwner().isPresent() && newClaim.getOwner().isPresent()) {
-            // Setting owner to empty claim
-            this.incrementClaimCountIfAvailable(newClaim.getOwner().get());
-        } else if ( (!oldClaim.getOwner().equals(newClaim.getOwner())) && (oldClaim.getOwner().isPresent() && newClaim.getOwner().isPresent()) ) {
-            // Updating owner
-            this.decrementClaimCountIfAvailable(oldClaim.getOwner().get());
-            this.incrementClaimCountIfAvailable(newClaim.getOwner().get());
+    private void updateOwnedClaims(Claim oldClaim, Claim newClaim) {
+        if (oldClaim.getOwner().equals(newClaim.getOwner())) {
+            return;
         }
+        ChunkCoordinates coordinates = newClaim.getCoordinates();
+        oldClaim.getOwner().ifPresent(owner -> {
+            this.ownedClaims.remove(owner, coordinates);
+            this.claimRegions.remove(owner, coordinates);
+        });
+        newClaim.getOwner().ifPresent(owner -> {
+            this.ownedClaims.add(owner, coordinates);
+            this.claimRegions.add(owner, coordinates);
+        });
     }
 
-    private void incrementClaimCountIfAvailable(UUID uuid) {
-        this.claimCountCache.computeIfPresent(uuid, (key, currentClaimCunt) -> currentClaimCunt + 1);
+    /**
+     * Load the claims and helpers of chunks in the same world and add them to the cache.
+     * Helpers are cached before claims so that a cached claim always has its helpers cached.
+     */
+    private Map<ChunkCoordinates, Claim> loadClaims(List<ChunkCoordinates> batch) {
+        UUID worldUuid = batch.get(0).getWorldUUID();
+        int worldId = this.getWorldId(worldUuid);
+        int minX = Integer.MAX_VALUE;
+        int minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxZ = Integer.MIN_VALUE;
+        for (ChunkCoordinates coordinates : batch) {
+            minX = Math.min(minX, coordinates.getX());
+            minZ = Math.min(minZ, coordinates.getZ());
+            maxX = Math.max(maxX, coordinates.getX());
+            maxZ = Math.max(maxZ, coordinates.getZ());
+        }
+
+        Map<ChunkCoordinates, Claim> storedClaims = new HashMap<>();
+        Map<ChunkCoordinates, Set<ClaimHelper>> storedHelpers;
+        try {
+            storedHelpers = this.claimHelpersDao.getClaimHelpersInRegion(worldUuid, minX, minZ, maxX, maxZ);
+            for (Claim claim : this.claimsDao.getClaimsInRegion(worldUuid, minX, minZ, maxX, maxZ)) {
+                storedClaims.put(claim.getCoordinates(), claim);
+            }
+        } catch (DaoException exception) {
+            throw new CompletionException(exception);
+        }
+
+        // Every chunk of the queried rectangle is known now, not only the requested ones
+        long[] unclaimedKeys = new long[(maxX - minX + 1) * (maxZ - minZ + 1)];
+        int unclaimedCount = 0;
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                ChunkCoordinates coordinates = new ChunkCoordinates(worldUuid, x, z);
+                Claim storedClaim = storedClaims.get(coordinates);
+                Set<ClaimHelper> helpers = storedHelpers.getOrDefault(coordinates, Collections.emptySet());
+                if ((storedClaim == null || isUnclaimed(storedClaim, helpers))
+                        && this.claimsCache.get(worldId, x, z) == null
+                        && !this.writeQueue.hasPendingClaim(coordinates)) {
+                    unclaimedKeys[unclaimedCount++] = ChunkKeys.pack(x, z);
+                }
+            }
+        }
+        this.unclaimedChunks.addAll(worldId, unclaimedKeys, unclaimedCount);
+
+        Map<ChunkCoordinates, Claim> claims = new HashMap<>();
+        for (ChunkCoordinates coordinates : batch) {
+            Claim claim = this.writeQueue.applyPendingClaim(coordinates, storedClaims.getOrDefault(coordinates, new Claim(coordinates, 0)));
+            if (claim.hasOwner()) {
+                // Cached before the claim so that a cached claim always has the trusts of its owner cached
+                this.loadOwnerTrusts(claim.getOwnerUuid());
+            }
+            Set<ClaimHelper> helpers = this.writeQueue.applyPendingHelpers(coordinates, storedHelpers.getOrDefault(coordinates, Collections.emptySet()));
+            if (isUnclaimed(claim, helpers)) {
+                Claim cachedClaim = this.cacheAsUnclaimedIfAbsent(worldId, coordinates.getX(), coordinates.getZ());
+                claims.put(coordinates, cachedClaim != null ? cachedClaim : claim);
+                continue;
+            }
+
+            this.helpersCache.putIfAbsent(worldId, coordinates.getX(), coordinates.getZ(), this.internHelpers(helpers));
+
+            Claim cachedClaim = this.claimsCache.putIfAbsent(worldId, coordinates.getX(), coordinates.getZ(), claim);
+            this.accessChunk(worldId, coordinates.getX(), coordinates.getZ());
+            claims.put(coordinates, cachedClaim != null ? cachedClaim : claim);
+        }
+        return claims;
     }
 
-    private void decrementClaimCountIfAvailable(UUID uuid) {
-        this.claimCountCache.computeIfPresent(uuid, (key, currentClaimCunt) -> currentClaimCunt - 1);
+    /**
+     * Split chunks of the same world into batches whose bounding rectangle is small enough to query at once.
+     * Chunks that are close together are kept in a single batch.
+     */
+    private static Collection<List<ChunkCoordinates>> splitIntoBatches(List<ChunkCoordinates> worldCoordinates) {
+        int minX = Integer.MAX_VALUE;
+        int minZ = Integer.MAX_VALUE;
+        int maxX = Integer.MIN_VALUE;
+        int maxZ = Integer.MIN_VALUE;
+        for (ChunkCoordinates coordinates : worldCoordinates) {
+            minX = Math.min(minX, coordinates.getX());
+            minZ = Math.min(minZ, coordinates.getZ());
+            maxX = Math.max(maxX, coordinates.getX());
+            maxZ = Math.max(maxZ, coordinates.getZ());
+        }
+        if ((long)(maxX - minX + 1) * (maxZ - minZ + 1) <= MAX_BATCH_AREA) {
+            return Collections.singletonList(worldCoordinates);
+        }
+
+        // Too spread out: query each 32x32 region separately
+        Map<Long, List<ChunkCoordinates>> regions = new HashMap<>();
+        for (ChunkCoordinates coordinates : worldCoordinates) {
+            long regionKey = ChunkKeys.pack(coordinates.getX() >> 5, coordinates.getZ() >> 5);
+            regions.computeIfAbsent(regionKey, key -> new ArrayList<>()).add(coordinates);
+        }
+        return regions.values();
+    }
+
+    private Claim getCachedClaim(ChunkCoordinates coordinates) {
+        return this.claimsCache.get(this.getWorldId(coordinates.getWorldUUID()), coordinates.getX(), coordinates.getZ());
+    }
+
+    private void putCachedClaim(Claim claim) {
+        ChunkCoordinates coordinates = claim.getCoordinates();
+        int worldId = this.getWorldId(coordinates.getWorldUUID());
+        if (this.isCachedAsUnclaimed(worldId, coordinates.getX(), coordinates.getZ())) {
+            // Unclaimed chunks have no helpers
+            this.helpersCache.putIfAbsent(worldId, coordinates.getX(), coordinates.getZ(), HelperSet.EMPTY);
+            this.unclaimedChunks.remove(worldId, coordinates.getX(), coordinates.getZ());
+        }
+        this.claimsCache.put(worldId, coordinates.getX(), coordinates.getZ(), claim);
+        this.accessChunk(worldId, coordinates.getX(), coordinates.getZ());
     }
 
+    private boolean isCachedAsUnclaimed(ChunkCoordinates coordinates) {
+        return this.isCachedAsUnclaimed(this.getWorldId(coordinates.getWorldUUID()), coordinates.getX(), coordinates.getZ());
+    }
+
+    /**
+     * Only meaningful if no claim is cached for the chunk.
+     * When everything is preloaded, this also means that a cached claim without cached helpers has no helpers.
+     */
+    private boolean isCachedAsUnclaimed(int worldId, int x, int z) {
+        return this.preloaded || this.unclaimedChunks.contains(worldId, x, z);
+    }
+
+    /**
+     * Store a chunk as unclaimed, replacing any cached claim and helpers.
+     */
+    private void cacheAsUnclaimed(int worldId, int x, int z) {
+        this.unclaimedChunks.add(worldId, x, z);
+        this.claimsCache.remove(worldId, x, z);
+        this.helpersCache.remove(worldId, x, z);
+    }
+
+    /**
+     * Store a freshly loaded chunk as unclaimed unless a claim was cached in the meantime.
+     * @return the claim that was cached in the meantime or null
+     */
+    private Claim cacheAsUnclaimedIfAbsent(int worldId, int x, int z) {
+        Claim cachedClaim = this.claimsCache.get(worldId, x, z);
+        if (cachedClaim != null) {
+            return cachedClaim;
+        }
+        this.unclaimedChunks.add(worldId, x, z);
+        this.helpersCache.compute(worldId, x, z, existingHelpers -> existingHelpers != null && existingHelpers.isEmpty() ? null : existingHelpers);
+        return null;
+    }
+
+    /**
+     * Make sure a chunk that is about to get helpers is no longer cached as unclaimed
+     */
+    private void removeFromUnclaimed(ChunkCoordinates coordinates) {
+        int worldId = this.getWorldId(coordinates.getWorldUUID());
+        if (this.isCachedAsUnclaimed(worldId, coordinates.getX(), coordinates.getZ())) {
+            this.claimsCache.putIfAbsent(worldId, coordinates.getX(), coordinates.getZ(), new Claim(coordinates, 0));
+            this.unclaimedChunks.remove(worldId, coordinates.getX(), coordinates.getZ());
+        }
+    }
+
+    private void accessChunk(ChunkCoordinates coordinates) {
+        this.accessChunk(this.getWorldId(coordinates.getWorldUUID()), coordinates.getX(), coordinates.getZ());
+    }
+
+    /**
+     * Mark a chunk stored in the claim or helper cache as used so that it is evicted last
+     */
+    private void accessChunk(int worldId, int x, int z) {
+        if (!this.preloaded) {
+            this.cachedChunks.access(worldId, x, z);
+        }
+    }
+
+    /**
+     * Called by the ChunkClock while it is locked
+     */
+    private void evictChunk(int worldId, int x, int z) {
+        if (this.preloaded) {
+            return;
+        }
+        // The claim is removed first so that a cached claim always has its helpers cached
+        this.claimsCache.remove(worldId, x, z);
+        this.helpersCache.remove(worldId, x, z);
+    }
+
+    private static boolean isUnclaimed(Claim claim, Collection<ClaimHelper> helpers) {
+        return !claim.hasOwner() && claim.getFlags() == 0 && helpers.isEmpty();
+    }
+
+    private HelperSet getCachedHelpers(ChunkCoordinates coordinates) {
+        return this.helpersCache.get(this.getWorldId(coordinates.getWorldUUID()), coordinates.getX(), coordinates.getZ());
+    }
+
+    private void putCachedHelper(ChunkCoordinates coordinates, ClaimHelper helper) {
+        this.removeFromUnclaimed(coordinates);
+        this.helpersCache.compute(this.getWorldId(coordinates.getWorldUUID()), coordinates.getX(), coordinates.getZ(), existingHelpers ->
+                this.helperSets.intern((existingHelpers != null ? existingHelpers : HelperSet.EMPTY).with(helper)));
+        this.accessChunk(coordinates);
+    }
+
+    private void removeCachedHelper(ChunkCoordinates coordinates, UUID helperUuid) {
+        this.helpersCache.compute(this.getWorldId(coordinates.getWorldUUID()), coordinates.getX(), coordinates.getZ(), existingHelpers ->
+                existingHelpers != null ? this.helperSets.intern(existingHelpers.without(helperUuid)) : null);
+    }
+
+    private static List<ChunkCoordinates> toCoordinates(Collection<Claim> claims) {
+        List<ChunkCoordinates> coordinates = new ArrayList<>(claims.size());
+        for (Claim claim : claims) {
+            coordinates.add(claim.getCoordinates());
+        }
+        return coordinates;
+    }
+
+    private HelperSet internHelpers(Collection<ClaimHelper> helpers) {
+        return this.helperSets.intern(HelperSet.of(helpers));
+    }
+
+
+    /**
+     * Share changes to the cache with other servers using the same daos.
+     * Changes made by this manager are published to the bus and the changes received from it are applied to the cache
+     * without querying the daos again. Only what is already cached is patched: chunks that are not cached are read
+     * from the daos when they are first used, so changes that have not been written by the other server yet are not seen.
+     * Helpers changed on every claim of an owner are only patched if the claims of the owner are loaded.
+     * @param updateBus
+     */
+    public void attachUpdateBus(ClaimUpdateBus updateBus) {
+        this.updateBus = updateBus;
+        updateBus.subscribe(this::applyUpdate);
+    }
+
+    private void publish(ClaimUpdate update) {
+        ClaimUpdateBus bus = this.updateBus;
+        if (bus != null) {
+            bus.publish(update);
+        }
+    }
+
+    private void flushUpdateBus() {
+        ClaimUpdateBus bus = this.updateBus;
+        if (bus != null) {
+            bus.flush();
+        }
+    }
+
+    /**
+     * Apply a change made by another server to the cache
+     */
+    private void applyUpdate(ClaimUpdate update) {
+        switch (update.getType()) {
+            case CLAIM:
+                this.applyClaimUpdate(update);
+                break;
+            case HELPER:
+                this.applyHelperUpdate(update);
+                break;
+            case OWNER_HELPER:
+                ClaimHelper helper = update.getHelper();
+                // The caches are indexed by chunk so the affected chunks are only known if the claims of the owner are loaded.
+                // They are not loaded just for this since every server would query them for a change it may not use
+                Set<ChunkCoordinates> ownedClaims = this.ownedClaims.getKeys(update.getOwner().orElseThrow(IllegalArgumentException::new));
+                if (ownedClaims != null) {
+                    this.putCachedHelperOfOwner(ownedClaims, helper.getUuid(), helper.getPermissions() != 0 ? helper : null);
+                }
+                break;
+            case OWNER_TRUST:
+                ClaimHelper trust = update.getHelper();
+                this.ownerTrustsCache.computeIfPresent(update.getOwner().orElseThrow(IllegalArgumentException::new), (key, existingTrusts) ->
+                        trust.getPermissions() != 0 ? existingTrusts.with(trust) : existingTrusts.without(trust.getUuid()));
+                break;
+        }
+    }
+
+    private void applyClaimUpdate(ClaimUpdate update) {
+        Claim claim = update.getClaim();
+        ChunkCoordinates coordinates = claim.getCoordinates();
+        int worldId = this.getWorldId(coordinates.getWorldUUID());
+        if (this.claimsCache.get(worldId, coordinates.getX(), coordinates.getZ()) != null || this.isCachedAsUnclaimed(worldId, coordinates.getX(), coordinates.getZ())) {
+            HelperSet helpers = this.helpersCache.get(worldId, coordinates.getX(), coordinates.getZ());
+            if (isUnclaimed(claim, helpers != null ? helpers.asSet() : Collections.emptySet())) {
+                this.cacheAsUnclaimed(worldId, coordinates.getX(), coordinates.getZ());
+            } else {
+                if (claim.hasOwner()) {
+                    this.fetchOwnerTrusts(claim.getOwnerUuid());
+                }
+                this.putCachedClaim(claim);
+            }
+        }
+        this.updateOwnedClaims(new Claim(coordinates, update.getPreviousOwner().orElse(null), 0), claim);
+    }
+
+    private void applyHelperUpdate(ClaimUpdate update) {
+        ChunkCoordinates coordinates = update.getCoordinates();
+        ClaimHelper helper = update.getHelper();
+        if (helper.getPermissions() == 0) {
+            this.removeCachedHelper(coordinates, helper.getUuid());
+        } else if (this.getCachedHelpers(coordinates) != null || this.isCachedAsUnclaimed(coordinates)) {
+            this.putCachedHelper(coordinates, helper);
+        }
+    }
+
+    /**
+     * Write every queued claim and claim helper change to the daos
+     * @return CompletableFuture that resolves once the queued changes were written
+     */
+    public CompletableFuture<Void> flushWrites() {
+        return DaoExecutor.runAsync(this.writeQueue::flush, this.executor);
+    }
+
+    /**
+     * Write every queued claim change, then stop writing changes to the daos until resumeWrites is called,
+     * such as while a snapshot is imported. Changes made in the meantime are cached and queued as usual.
+     * Blocks until the queued changes were written, so this should not be called from the main thread.
+     */
+    public void pauseWrites() {
+        this.writeQueue.pause();
+    }
+
+    /**
+     * Write the changes queued since pauseWrites and keep writing changes from now on
+     */
+    public void resumeWrites() {
+        this.writeQueue.resume();
+    }
+
+    /**
+     * @return the amount of claim and claim helper changes that were not written to the daos yet
+     */
+    public int getPendingWriteCount() {
+        return this.writeQueue.getPendingCount();
+    }
 
     /**
      * Called internally when plugin is shutdown
      */
     public void cleanUp () {
+        this.updateBus = null;
+        this.flushScheduler.shutdown();
+        try {
+            this.flushScheduler.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        this.writeQueue.drain();
+
         this.claimsCache.clear();
         this.helpersCache.clear();
-        this.claimCountCache.clear();
+        this.helperSets.clear();
+        this.cachedChunks.clear();
+        this.unclaimedChunks.clear();
+        this.preloaded = false;
+        this.ownedClaims.clear();
+        this.claimRegions.clear();
+        this.ownerTrustsCache.clear();
+
+        this.helperLoads.clear();
+        this.claimLoads.clear();
+        this.ownedClaimsLoads.clear();
+        this.ownerTrustsLoads.clear();
+    }
 
-        this.queueHelperFutures.clear();
-        this.queueClaimFutures.clear();
-        this.claimCountFutures.clear();
+    private interface DaoAction {
+        void run() throws DaoException;
     }
 
 }
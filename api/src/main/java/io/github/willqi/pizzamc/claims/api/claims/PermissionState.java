@@ -0,0 +1,10 @@
+package io.github.willqi.pizzamc.claims.api.claims;
+
+/**
+ * Result of checking if a player may perform an action in a chunk
+ */
+public enum PermissionState {
+    ALLOWED,
+    DENIED,
+    LOADING     // The claim of the chunk has not been fetched yet
+}
@@ -0,0 +1,70 @@
+package io.github.willqi.pizzamc.claims.api.claims;
+
+/**
+ * Statistics of loading every claim and claim helper into memory.
+ * Memory usage is estimated from the size of the cache structures and the objects stored in them,
+ * so it is the same on every run with the same claims and does not depend on garbage collection.
+ */
+public class PreloadStats {
+
+    private final int claimCount;
+    private final int helperCount;
+    private final long loadTimeMillis;
+    private final long claimBytes;
+    private final long helperBytes;
+
+    public PreloadStats(int claimCount, int helperCount, long loadTimeMillis, long claimBytes, long helperBytes) {
+        this.claimCount = claimCount;
+        this.helperCount = helperCount;
+        this.loadTimeMillis = loadTimeMillis;
+        this.claimBytes = claimBytes;
+        this.helperBytes = helperBytes;
+    }
+
+    public int getClaimCount() {
+        return this.claimCount;
+    }
+
+    public int getHelperCount() {
+        return this.helperCount;
+    }
+
+    public long getLoadTimeMillis() {
+        return this.loadTimeMillis;
+    }
+
+    /**
+     * @return estimated bytes used by the cached claims
+     */
+    public long getClaimBytes() {
+        return this.claimBytes;
+    }
+
+    /**
+     * @return estimated bytes used by the cached claim helpers
+     */
+    public long getHelperBytes() {
+        return this.helperBytes;
+    }
+
+    /**
+     * @return estimated bytes used per claim
+     */
+    public long getBytesPerClaim() {
+        return this.claimCount > 0 ? this.claimBytes / this.claimCount : 0;
+    }
+
+    /**
+     * @return estimated bytes used per claim helper
+     */
+    public long getBytesPerHelper() {
+        return this.helperCount > 0 ? this.helperBytes / this.helperCount : 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("Loaded %d claims and %d claim helpers in %dms (~%d bytes per claim, ~%d bytes per claim helper)",
+                this.claimCount, this.helperCount, this.loadTimeMillis, this.getBytesPerClaim(), this.getBytesPerHelper());
+    }
+
+}
@@ -0,0 +1,156 @@
+package io.github.willqi.pizzamc.claims.api.claims.cache;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * Thread safe per-world set of chunks.
+ * Chunks are grouped into 32x32 regions that are each stored as a 1024 bit bitset
+ * so that large contiguous areas only cost 128 bytes per region.
+ */
+public class ChunkBitmap {
+
+    private static final int REGION_SHIFT = 5;
+    private static final int REGION_MASK = (1 << REGION_SHIFT) - 1;
+    private static final int WORDS_PER_REGION = (1 << (REGION_SHIFT * 2)) / Long.SIZE;
+
+    private final StampedLock lock;
+
+    @SuppressWarnings("unchecked")
+    private LongObjectMap<long[]>[] worlds = new LongObjectMap[0];
+
+    public ChunkBitmap() {
+        this.lock = new StampedLock();
+    }
+
+    public boolean contains(int worldId, int x, int z) {
+        long stamp = this.lock.readLock();
+        try {
+            LongObjectMap<long[]> world = worldId < this.worlds.length ? this.worlds[worldId] : null;
+            if (world == null) {
+                return false;
+            }
+            long[] region = world.get(getRegionKey(x, z));
+            return region != null && (region[getWordIndex(x, z)] & getBitMask(x, z)) != 0;
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    public void add(int worldId, int x, int z) {
+        long stamp = this.lock.writeLock();
+        try {
+            this.addUnlocked(worldId, x, z);
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Add many chunks of a world at once
+     * @param worldId
+     * @param chunkKeys chunk keys created by {@link ChunkKeys#pack(int, int)}
+     * @param count amount of keys to read from chunkKeys
+     */
+    public void addAll(int worldId, long[] chunkKeys, int count) {
+        long stamp = this.lock.writeLock();
+        try {
+            for (int i = 0; i < count; i++) {
+                this.addUnlocked(worldId, ChunkKeys.getX(chunkKeys[i]), ChunkKeys.getZ(chunkKeys[i]));
+            }
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    public void remove(int worldId, int x, int z) {
+        long stamp = this.lock.writeLock();
+        try {
+            LongObjectMap<long[]> world = worldId < this.worlds.length ? this.worlds[worldId] : null;
+            if (world == null) {
+                return;
+            }
+            long regionKey = getRegionKey(x, z);
+            long[] region = world.get(regionKey);
+            if (region != null) {
+                region[getWordIndex(x, z)] &= ~getBitMask(x, z);
+                if (isEmpty(region)) {
+                    world.remove(regionKey);
+                }
+            }
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * @return the amount of regions that contain at least 1 chunk
+     */
+    public int getRegionCount() {
+        long stamp = this.lock.readLock();
+        try {
+            int count = 0;
+            for (LongObjectMap<long[]> world : this.worlds) {
+                if (world != null) {
+                    count += world.size();
+                }
+            }
+            return count;
+        } finally {
+            this.lock.unlockRead(stamp);
+        }
+    }
+
+    public void clear() {
+        long stamp = this.lock.writeLock();
+        try {
+            for (LongObjectMap<long[]> world : this.worlds) {
+                if (world != null) {
+                    world.clear();
+                }
+            }
+        } finally {
+            this.lock.unlockWrite(stamp);
+        }
+    }
+
+    private void addUnlocked(int worldId, int x, int z) {
+        if (worldId >= this.worlds.length) {
+            this.worlds = Arrays.copyOf(this.worlds, worldId + 1);
+        }
+        LongObjectMap<long[]> world = this.worlds[worldId];
+        if (world == null) {
+            world = new LongObjectMap<>();
+            this.worlds[worldId] = world;
+        }
+        long regionKey = getRegionKey(x, z);
+        long[] region = world.get(regionKey);
+        if (region == null) {
+            region = new long[WORDS_PER_REGION];
+            world.put(regionKey, region);
+        }
+        region[getWordIndex(x, z)] |= getBitMask(x, z);
+    }
+
+    private static long getRegionKey(int x, int z) {
+        return ChunkKeys.pack(x >> REGION_SHIFT, z >> REGION_SHIFT);
+    }
+
+    private static int getWordIndex(int x, int z) {
+        return (((z & REGION_MASK) << REGION_SHIFT) | (x & REGION_MASK)) >>> 6;
+    }
+
+    private static long getBitMask(int x, int z) {
+        return 1L << (((z & REGION_MASK) << REGION_SHIFT) | (x & REGION_MASK));
+    }
+
+    private static boolean isEmpty(long[] region) {
+        for (long word : region) {
+            if (word != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,245 @@
+package io.github.willqi.pizzamc.claims.api.claims.cache;
+
+import java.util.Arrays;
+
+/**
+ * Thread safe size bound for cached chunks using the CLOCK (second chance) policy.
+ *
+ * Every cached chunk is kept on a ring with a referenced bit that is set whenever the chunk is used.
+ * Once more chunks are tracked than allowed, the hand sweeps the ring clearing referenced bits
+ * and evicts the first chunk that was not used since the hand last passed it.
+ * Pinned chunks, such as chunks loaded by the server, are never evicted.
+ *
+ * Unpinned chunks stay tracked as released chunks so that a chunk pinned again shortly after does not need to be reloaded.
+ * Released chunks are dropped by the CLOCK like any other unpinned chunk or once they were released for too long.
+ */
+public class ChunkClock {
+
+    private final int maximumSize;
+    private final EvictionListener listener;
+
+    @SuppressWarnings("unchecked")
+    private LongObjectMap<Slot>[] worlds = new LongObjectMap[0];
+    private Slot[] ring;
+    private int size;
+    private int hand;
+    private int pinnedCount;
+    private long evictionCount;
+    private long expiredCount;
+    private long repinnedCount;
+
+    /**
+     * @param maximumSize amount of chunks tracked before unpinned chunks are evicted. 0 or less for no limit
+     * @param listener called with every evicted chunk while the clock is locked
+     */
+    public ChunkClock(int maximumSize, EvictionListener listener) {
+        this.maximumSize = maximumSize;
+        this.listener = listener;
+        this.ring = new Slot[16];
+    }
+
+    /**
+     * Track a chunk that was cached or used, evicting other chunks if there are too many
+     * @param worldId
+     * @param x
+     * @param z
+     */
+    public synchronized void access(int worldId, int x, int z) {
+        this.getOrCreateSlot(worldId, ChunkKeys.pack(x, z)).referenced = true;
+        this.evictOverflow();
+    }
+
+    /**
+     * Prevent a chunk from being evicted until it is unpinned
+     * @param worldId
+     * @param x
+     * @param z
+     */
+    public synchronized void pin(int worldId, int x, int z) {
+        Slot slot = this.getOrCreateSlot(worldId, ChunkKeys.pack(x, z));
+        if (!slot.pinned) {
+            slot.pinned = true;
+            this.pinnedCount++;
+        }
+        if (slot.released) {
+            slot.released = false;
+            this.repinnedCount++;
+        }
+    }
+
+    /**
+     * Allow a chunk to be evicted again. The chunk stays tracked as a released chunk
+     * @param worldId
+     * @param x
+     * @param z
+     */
+    public synchronized void unpin(int worldId, int x, int z) {
+        Slot slot = this.getSlot(worldId, ChunkKeys.pack(x, z));
+        if (slot != null && slot.pinned) {
+            slot.pinned = false;
+            slot.referenced = true;
+            slot.released = true;
+            slot.releaseTime = System.nanoTime();
+            this.pinnedCount--;
+            this.evictOverflow();
+        }
+    }
+
+    /**
+     * Stop tracking a chunk that was removed from the cache without calling the listener.
+     * Pinned chunks stay tracked.
+     * @param worldId
+     * @param x
+     * @param z
+     */
+    public synchronized void remove(int worldId, int x, int z) {
+        Slot slot = this.getSlot(worldId, ChunkKeys.pack(x, z));
+        if (slot != null && !slot.pinned) {
+            this.removeSlot(slot);
+        }
+    }
+
+    /**
+     * Evict the chunks that were released before a point in time and were not pinned again since
+     * @param nanoTime value of {@link System#nanoTime()}
+     */
+    public synchronized void expireReleasedBefore(long nanoTime) {
+        // Iterated backwards since removing a slot moves the last slot into its place
+        for (int i = this.size - 1; i >= 0; i--) {
+            Slot slot = this.ring[i];
+            if (slot.released && slot.releaseTime - nanoTime < 0) {
+                this.removeSlot(slot);
+                this.expiredCount++;
+                this.listener.onEviction(slot.worldId, ChunkKeys.getX(slot.chunkKey), ChunkKeys.getZ(slot.chunkKey));
+            }
+        }
+    }
+
+    public synchronized int size() {
+        return this.size;
+    }
+
+    public synchronized int getPinnedCount() {
+        return this.pinnedCount;
+    }
+
+    /**
+     * @return the amount of chunks evicted to stay within the maximum size
+     */
+    public synchronized long getEvictionCount() {
+        return this.evictionCount;
+    }
+
+    /**
+     * @return the amount of released chunks evicted by expireReleasedBefore
+     */
+    public synchronized long getExpiredCount() {
+        return this.expiredCount;
+    }
+
+    /**
+     * @return the amount of times a released chunk was pinned again while it was still tracked
+     */
+    public synchronized long getRepinnedCount() {
+        return this.repinnedCount;
+    }
+
+    /**
+     * Stop tracking every chunk, including pinned chunks
+     */
+    public synchronized void clear() {
+        for (LongObjectMap<Slot> world : this.worlds) {
+            if (world != null) {
+                world.clear();
+            }
+        }
+        Arrays.fill(this.ring, 0, this.size, null);
+        this.size = 0;
+        this.hand = 0;
+        this.pinnedCount = 0;
+    }
+
+    private void evictOverflow() {
+        if (this.maximumSize <= 0) {
+            return;
+        }
+        while (this.size > this.maximumSize && this.pinnedCount < this.size) {
+            if (this.hand >= this.size) {
+                this.hand = 0;
+            }
+            Slot slot = this.ring[this.hand];
+            if (slot.pinned) {
+                this.hand++;
+            } else if (slot.referenced) {
+                slot.referenced = false;
+                this.hand++;
+            } else {
+                // The last slot is moved under the hand, which is looked at next
+                this.removeSlot(slot);
+                this.evictionCount++;
+                this.listener.onEviction(slot.worldId, ChunkKeys.getX(slot.chunkKey), ChunkKeys.getZ(slot.chunkKey));
+            }
+        }
+    }
+
+    private Slot getSlot(int worldId, long chunkKey) {
+        LongObjectMap<Slot> world = worldId < this.worlds.length ? this.worlds[worldId] : null;
+        return world != null ? world.get(chunkKey) : null;
+    }
+
+    private Slot getOrCreateSlot(int worldId, long chunkKey) {
+        if (worldId >= this.worlds.length) {
+            this.worlds = Arrays.copyOf(this.worlds, worldId + 1);
+        }
+        LongObjectMap<Slot> world = this.worlds[worldId];
+        if (world == null) {
+            world = new LongObjectMap<>();
+            this.worlds[worldId] = world;
+        }
+        Slot slot = world.get(chunkKey);
+        if (slot == null) {
+            slot = new Slot(worldId, chunkKey);
+            world.put(chunkKey, slot);
+            if (this.size == this.ring.length) {
+                this.ring = Arrays.copyOf(this.ring, this.size * 2);
+            }
+            slot.index = this.size;
+            this.ring[this.size++] = slot;
+        }
+        return slot;
+    }
+
+    private void removeSlot(Slot slot) {
+        this.worlds[slot.worldId].remove(slot.chunkKey);
+        Slot lastSlot = this.ring[--this.size];
+        this.ring[slot.index] = lastSlot;
+        lastSlot.index = slot.index;
+        this.ring[this.size] = null;
+        if (slot.pinned) {
+            this.pinnedCount--;
+        }
+    }
+
+    public interface EvictionListener {
+        void onEviction(int worldId, int x, int z);
+    }
+
+    private static class Slot {
+
+        private final int worldId;
+        private final long chunkKey;
+        private int index;
+        private boolean referenced;
+        private boolean pinned;
+        // Set once the chunk was unpinned until it is pinned again
+        private boolean released;
+        private long releaseTime;
+
+        private Slot(int worldId, long chunkKey) {
+            this.worldId = worldId;
+            this.chunkKey = chunkKey;
+        }
+
+    }
+
+}
@@ -0,0 +1,23 @@
+package io.github.willqi.pizzamc.claims.api.claims.cache;
+
+/**
+ * Packs chunk x/z coordinates into a single long so that
+ * claim lookups do not need to allocate a key object.
+ */
+public final class ChunkKeys {
+
+    private ChunkKeys() {}
+
+    public static long pack(int x, int z) {
+        return ((long)x << 32) | (z & 0xFFFFFFFFL);
+    }
+
+    public static int getX(long key) {
+        return (int)(key >> 32);
+    }
+
+    public static int getZ(long key) {
+        return (int)key;
+    }
+
+}
@@ -0,0 +1,185 @@
+package io.github.willqi.pizzamc.claims.api.claims.cache;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Function;
+
+/**
+ * Thread safe per-world index of chunk data keyed by packed chunk coordinates.
+ * Worlds are addressed by the ids handed out by a {@link WorldRegistry}.
+ *
+ * Entries are sharded by 32x32 chunk region so that each shard has its own lock
+ * and loading or updating one area does not block lookups elsewhere.
+ * @param <V> value type
+ */
+public class ClaimIndex<V> {
+
+    private static final int REGION_SHIFT = 5;
+    private static final int SHARD_COUNT = 64;
+
+    private final Shard<V>[] shards;
+
+    @SuppressWarnings("unchecked")
+    public ClaimIndex() {
+        this.shards = new Shard[SHARD_COUNT];
+        for (int i = 0; i < SHARD_COUNT; i++) {
+            this.shards[i] = new Shard<>();
+        }
+    }
+
+    public V get(int worldId, int x, int z) {
+        return this.get(worldId, ChunkKeys.pack(x, z));
+    }
+
+    public V get(int worldId, long chunkKey) {
+        Shard<V> shard = this.getShard(worldId, ChunkKeys.getX(chunkKey), ChunkKeys.getZ(chunkKey));
+        long stamp = shard.lock.readLock();
+        try {
+            LongObjectMap<V> world = shard.getWorld(worldId);
+            return world != null ? world.get(chunkKey) : null;
+        } finally {
+            shard.lock.unlockRead(stamp);
+        }
+    }
+
+    public V put(int worldId, int x, int z, V value) {
+        Shard<V> shard = this.getShard(worldId, x, z);
+        long stamp = shard.lock.writeLock();
+        try {
+            return shard.getOrCreateWorld(worldId).put(ChunkKeys.pack(x, z), value);
+        } finally {
+            shard.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Store a value only if there is no value present
+     * @return the existing value or null if the value was stored
+     */
+    public V putIfAbsent(int worldId, int x, int z, V value) {
+        Shard<V> shard = this.getShard(worldId, x, z);
+        long stamp = shard.lock.writeLock();
+        try {
+            return shard.getOrCreateWorld(worldId).putIfAbsent(ChunkKeys.pack(x, z), value);
+        } finally {
+            shard.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Atomically replace the value of a chunk
+     * @param remappingFunction receives the current value or null and returns the new value or null to remove it
+     * @return the new value
+     */
+    public V compute(int worldId, int x, int z, Function<? super V, ? extends V> remappingFunction) {
+        Shard<V> shard = this.getShard(worldId, x, z);
+        long stamp = shard.lock.writeLock();
+        try {
+            LongObjectMap<V> world = shard.getOrCreateWorld(worldId);
+            long chunkKey = ChunkKeys.pack(x, z);
+            V value = remappingFunction.apply(world.get(chunkKey));
+            if (value != null) {
+                world.put(chunkKey, value);
+            } else {
+                world.remove(chunkKey);
+            }
+            return value;
+        } finally {
+            shard.lock.unlockWrite(stamp);
+        }
+    }
+
+    public V remove(int worldId, int x, int z) {
+        Shard<V> shard = this.getShard(worldId, x, z);
+        long stamp = shard.lock.writeLock();
+        try {
+            LongObjectMap<V> world = shard.getWorld(worldId);
+            return world != null ? world.remove(ChunkKeys.pack(x, z)) : null;
+        } finally {
+            shard.lock.unlockWrite(stamp);
+        }
+    }
+
+    public int size() {
+        int size = 0;
+        for (Shard<V> shard : this.shards) {
+            long stamp = shard.lock.readLock();
+            try {
+                for (LongObjectMap<V> world : shard.worlds) {
+                    if (world != null) {
+                        size += world.size();
+                    }
+                }
+            } finally {
+                shard.lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the amount of slots allocated by every world of every shard, used or not
+     */
+    public long capacity() {
+        long capacity = 0;
+        for (Shard<V> shard : this.shards) {
+            long stamp = shard.lock.readLock();
+            try {
+                for (LongObjectMap<V> world : shard.worlds) {
+                    if (world != null) {
+                        capacity += world.capacity();
+                    }
+                }
+            } finally {
+                shard.lock.unlockRead(stamp);
+            }
+        }
+        return capacity;
+    }
+
+    public void clear() {
+        for (Shard<V> shard : this.shards) {
+            long stamp = shard.lock.writeLock();
+            try {
+                for (LongObjectMap<V> world : shard.worlds) {
+                    if (world != null) {
+                        world.clear();
+                    }
+                }
+            } finally {
+                shard.lock.unlockWrite(stamp);
+            }
+        }
+    }
+
+    private Shard<V> getShard(int worldId, int x, int z) {
+        int hash = (x >> REGION_SHIFT) * 0x9E3779B9 ^ (z >> REGION_SHIFT) * 0x85EBCA6B ^ worldId;
+        return this.shards[(hash ^ (hash >>> 16)) & (SHARD_COUNT - 1)];
+    }
+
+    private static class Shard<V> {
+
+        private final StampedLock lock = new StampedLock();
+
+        @SuppressWarnings("unchecked")
+        private LongObjectMap<V>[] worlds = new LongObjectMap[0];
+
+        private LongObjectMap<V> getWorld(int worldId) {
+            return worldId < this.worlds.length ? this.worlds[worldId] : null;
+        }
+
+        private LongObjectMap<V> getOrCreateWorld(int worldId) {
+            if (worldId >= this.worlds.length) {
+                this.worlds = Arrays.copyOf(this.worlds, worldId + 1);
+            }
+            LongObjectMap<V> world = this.worlds[worldId];
+            if (world == null) {
+                world = new LongObjectMap<>();
+                this.worlds[worldId] = world;
+            }
+            return world;
+        }
+
+    }
+
+}
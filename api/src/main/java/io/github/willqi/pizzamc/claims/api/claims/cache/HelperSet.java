@@ -0,0 +1,177 @@
+package io.github.willqi.pizzamc.claims.api.claims.cache;
+
+import io.github.willqi.pizzamc.claims.api.claims.ClaimHelper;
+
+import java.util.*;
+
+/**
+ * Immutable set of claim helpers stored as an array sorted by uuid.
+ *
+ * Changes return a copy so a set can be shared by every chunk with the same helpers.
+ * Unlike a Set of ClaimHelper, two helper sets are only equal if their helpers also have the same permissions.
+ */
+public final class HelperSet {
+
+    public static final HelperSet EMPTY = new HelperSet(new ClaimHelper[0]);
+
+    private final ClaimHelper[] helpers;
+    private final int hash;
+    private final Set<ClaimHelper> view;
+
+    private HelperSet(ClaimHelper[] helpers) {
+        this.helpers = helpers;
+        int hash = 1;
+        for (ClaimHelper helper : helpers) {
+            hash = 31 * hash + helper.getUuid().hashCode();
+            hash = 31 * hash + helper.getPermissions();
+        }
+        this.hash = hash;
+        this.view = new View();
+    }
+
+    /**
+     * @param helpers helpers to store. The last helper of a uuid is kept
+     * @return a helper set containing the helpers
+     */
+    public static HelperSet of(Collection<ClaimHelper> helpers) {
+        if (helpers.isEmpty()) {
+            return EMPTY;
+        }
+        Map<UUID, ClaimHelper> byUuid = new TreeMap<>();
+        for (ClaimHelper helper : helpers) {
+            byUuid.put(helper.getUuid(), helper);
+        }
+        return new HelperSet(byUuid.values().toArray(new ClaimHelper[0]));
+    }
+
+    /**
+     * Find a helper without allocating
+     * @param uuid
+     * @return the helper or null if the uuid is not a helper
+     */
+    public ClaimHelper get(UUID uuid) {
+        int index = this.indexOf(uuid);
+        return index >= 0 ? this.helpers[index] : null;
+    }
+
+    /**
+     * @param helper
+     * @return a copy of this set with the helper added or replaced. This set if it already contains the same helper
+     */
+    public HelperSet with(ClaimHelper helper) {
+        int index = this.indexOf(helper.getUuid());
+        if (index >= 0) {
+            if (this.helpers[index].getPermissions() == helper.getPermissions()) {
+                return this;
+            }
+            ClaimHelper[] updatedHelpers = this.helpers.clone();
+            updatedHelpers[index] = helper;
+            return new HelperSet(updatedHelpers);
+        }
+        int insertionPoint = -index - 1;
+        ClaimHelper[] updatedHelpers = new ClaimHelper[this.helpers.length + 1];
+        System.arraycopy(this.helpers, 0, updatedHelpers, 0, insertionPoint);
+        updatedHelpers[insertionPoint] = helper;
+        System.arraycopy(this.helpers, insertionPoint, updatedHelpers, insertionPoint + 1, this.helpers.length - insertionPoint);
+        return new HelperSet(updatedHelpers);
+    }
+
+    /**
+     * @param uuid
+     * @return a copy of this set without the helper. This set if it does not contain the helper
+     */
+    public HelperSet without(UUID uuid) {
+        int index = this.indexOf(uuid);
+        if (index < 0) {
+            return this;
+        }
+        if (this.helpers.length == 1) {
+            return EMPTY;
+        }
+        ClaimHelper[] updatedHelpers = new ClaimHelper[this.helpers.length - 1];
+        System.arraycopy(this.helpers, 0, updatedHelpers, 0, index);
+        System.arraycopy(this.helpers, index + 1, updatedHelpers, index, this.helpers.length - index - 1);
+        return new HelperSet(updatedHelpers);
+    }
+
+    public int size() {
+        return this.helpers.length;
+    }
+
+    public boolean isEmpty() {
+        return this.helpers.length == 0;
+    }
+
+    /**
+     * @return an unmodifiable view of the helpers. Contains compares helpers by uuid like ClaimHelper.equals
+     */
+    public Set<ClaimHelper> asSet() {
+        return this.view;
+    }
+
+    @Override
+    public int hashCode() {
+        return this.hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj) {
+            return true;
+        }
+        if (!(obj instanceof HelperSet)) {
+            return false;
+        }
+        HelperSet other = (HelperSet)obj;
+        if (this.hash != other.hash || this.helpers.length != other.helpers.length) {
+            return false;
+        }
+        for (int i = 0; i < this.helpers.length; i++) {
+            if (!this.helpers[i].getUuid().equals(other.helpers[i].getUuid()) || this.helpers[i].getPermissions() != other.helpers[i].getPermissions()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Binary search by uuid
+     * @return the index of the helper or (-(insertion point) - 1) if it is absent
+     */
+    private int indexOf(UUID uuid) {
+        int low = 0;
+        int high = this.helpers.length - 1;
+        while (low <= high) {
+            int middle = (low + high) >>> 1;
+            int comparison = this.helpers[middle].getUuid().compareTo(uuid);
+            if (comparison < 0) {
+                low = middle + 1;
+            } else if (comparison > 0) {
+                high = middle - 1;
+            } else {
+                return middle;
+            }
+        }
+        return -(low + 1);
+    }
+
+    private class View extends AbstractSet<ClaimHelper> {
+
+        @Override
+        public Iterator<ClaimHelper> iterator() {
+            return Collections.unmodifiableList(Arrays.asList(HelperSet.this.helpers)).iterator();
+        }
+
+        @Override
+        public int size() {
+            return HelperSet.this.helpers.length;
+        }
+
+        @Override
+        public boolean contains(Object obj) {
+            return obj instanceof ClaimHelper && HelperSet.this.indexOf(((ClaimHelper)obj).getUuid()) >= 0;
+        }
+
+    }
+
+}
@@ -0,0 +1,46 @@
+package io.github.willqi.pizzamc.claims.api.claims.cache;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Thread safe pool of immutable values so that equal values share one instance.
+ * Values are only weakly referenced and are dropped from the pool once nothing else uses them.
+ * @param <T> immutable value type
+ */
+public class Interner<T> {
+
+    // The value is referenced weakly too so that it does not keep its own key alive
+    private final Map<T, WeakReference<T>> instances;
+
+    public Interner() {
+        this.instances = new WeakHashMap<>();
+    }
+
+    /**
+     * @param value
+     * @return the pooled instance equal to the value. The value itself if no equal value was pooled
+     */
+    public synchronized T intern(T value) {
+        WeakReference<T> reference = this.instances.get(value);
+        T instance = reference != null ? reference.get() : null;
+        if (instance == null) {
+            this.instances.put(value, new WeakReference<>(value));
+            instance = value;
+        }
+        return instance;
+    }
+
+    /**
+     * @return the amount of pooled values that were not garbage collected yet
+     */
+    public synchronized int size() {
+        return this.instances.size();
+    }
+
+    public synchronized void clear() {
+        this.instances.clear();
+    }
+
+}
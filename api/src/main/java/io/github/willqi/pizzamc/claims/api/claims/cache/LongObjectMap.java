@@ -0,0 +1,208 @@
+package io.github.willqi.pizzamc.claims.api.claims.cache;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing hash map keyed by primitive longs.
+ * Lookups do not box the key or allocate any entry objects.
+ *
+ * Null values are not supported as an empty value slot is used to mark an empty bucket.
+ * This class is not thread safe.
+ * @param <V> value type
+ */
+public class LongObjectMap<V> {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final float LOAD_FACTOR = 0.6f;
+
+    private long[] keys;
+    private Object[] values;
+    private int mask;
+    private int size;
+    private int resizeThreshold;
+
+    public LongObjectMap() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public LongObjectMap(int expectedSize) {
+        int capacity = tableSizeFor((int)Math.ceil(Math.max(expectedSize, 2) / LOAD_FACTOR));
+        this.allocate(capacity);
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /**
+     * @return the amount of slots allocated, used or not
+     */
+    public int capacity() {
+        return this.keys.length;
+    }
+
+    /**
+     * Retrieve the value stored for a key
+     * @param key
+     * @return the value or null if there is none
+     */
+    @SuppressWarnings("unchecked")
+    public V get(long key) {
+        int index = this.indexOf(key);
+        return index >= 0 ? (V)this.values[index] : null;
+    }
+
+    public boolean containsKey(long key) {
+        return this.indexOf(key) >= 0;
+    }
+
+    /**
+     * Store a value
+     * @param key
+     * @param value
+     * @return the previous value or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V put(long key, V value) {
+        if (value == null) {
+            throw new NullPointerException("LongObjectMap does not support null values");
+        }
+        int index = hash(key) & this.mask;
+        while (this.values[index] != null) {
+            if (this.keys[index] == key) {
+                V previous = (V)this.values[index];
+                this.values[index] = value;
+                return previous;
+            }
+            index = (index + 1) & this.mask;
+        }
+        this.keys[index] = key;
+        this.values[index] = value;
+        if (++this.size > this.resizeThreshold) {
+            this.rehash(this.keys.length << 1);
+        }
+        return null;
+    }
+
+    /**
+     * Store a value only if no value is present for the key
+     * @param key
+     * @param value
+     * @return the existing value or null if the value was stored
+     */
+    public V putIfAbsent(long key, V value) {
+        V existing = this.get(key);
+        if (existing != null) {
+            return existing;
+        }
+        this.put(key, value);
+        return null;
+    }
+
+    /**
+     * Remove a key from the map
+     * @param key
+     * @return the removed value or null if there was none
+     */
+    @SuppressWarnings("unchecked")
+    public V remove(long key) {
+        int index = this.indexOf(key);
+        if (index < 0) {
+            return null;
+        }
+        V previous = (V)this.values[index];
+        this.shiftBackFrom(index);
+        this.size--;
+        return previous;
+    }
+
+    public void clear() {
+        Arrays.fill(this.values, null);
+        this.size = 0;
+    }
+
+    /**
+     * Iterate over all entries in the map.
+     * The map must not be modified while iterating.
+     * @param consumer
+     */
+    @SuppressWarnings("unchecked")
+    public void forEach(EntryConsumer<? super V> consumer) {
+        for (int i = 0; i < this.values.length; i++) {
+            if (this.values[i] != null) {
+                consumer.accept(this.keys[i], (V)this.values[i]);
+            }
+        }
+    }
+
+    private int indexOf(long key) {
+        int index = hash(key) & this.mask;
+        while (this.values[index] != null) {
+            if (this.keys[index] == key) {
+                return index;
+            }
+            index = (index + 1) & this.mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Backward shift deletion so that lookups never need tombstones.
+     */
+    private void shiftBackFrom(int emptyIndex) {
+        int index = emptyIndex;
+        while (true) {
+            index = (index + 1) & this.mask;
+            if (this.values[index] == null) {
+                break;
+            }
+            int idealIndex = hash(this.keys[index]) & this.mask;
+            // Can the entry at index be moved into the empty slot without breaking its probe chain?
+            if (((index - idealIndex) & this.mask) >= ((index - emptyIndex) & this.mask)) {
+                this.keys[emptyIndex] = this.keys[index];
+                this.values[emptyIndex] = this.values[index];
+                emptyIndex = index;
+            }
+        }
+        this.values[emptyIndex] = null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void rehash(int newCapacity) {
+        long[] oldKeys = this.keys;
+        Object[] oldValues = this.values;
+        this.allocate(newCapacity);
+        this.size = 0;
+        for (int i = 0; i < oldValues.length; i++) {
+            if (oldValues[i] != null) {
+                this.put(oldKeys[i], (V)oldValues[i]);
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new long[capacity];
+        this.values = new Object[capacity];
+        this.mask = capacity - 1;
+        this.resizeThreshold = (int)(capacity * LOAD_FACTOR);
+    }
+
+    private static int hash(long key) {
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return (int)(hash ^ (hash >>> 32));
+    }
+
+    private static int tableSizeFor(int size) {
+        int capacity = Integer.highestOneBit(Math.max(size - 1, 1)) << 1;
+        return Math.max(capacity, DEFAULT_CAPACITY);
+    }
+
+    public interface EntryConsumer<V> {
+        void accept(long key, V value);
+    }
+
+}
@@ -0,0 +1,49 @@
+package io.github.willqi.pizzamc.claims.api.claims.cache;
+
+/**
+ * Estimated sizes of the objects kept in the claim caches, assuming a 64 bit JVM with compressed references.
+ * The estimates are computed from the layout of each object rather than measured, so they do not depend on garbage collection.
+ */
+public final class ObjectSizes {
+
+    private static final int OBJECT_HEADER = 12;
+    private static final int ARRAY_HEADER = 16;
+    private static final int REFERENCE = 4;
+    private static final int ALIGNMENT = 8;
+
+    public static final int UUID = align(OBJECT_HEADER + 8 + 8);
+    public static final int CHUNK_COORDINATES = align(OBJECT_HEADER + 4 + 4 + REFERENCE);
+    public static final int CLAIM = align(OBJECT_HEADER + REFERENCE + 4 + REFERENCE);
+    public static final int CLAIM_HELPER = align(OBJECT_HEADER + 4 + REFERENCE);
+
+    // The helper set itself and its set view
+    public static final int HELPER_SET = align(OBJECT_HEADER + REFERENCE + 4 + REFERENCE) + align(OBJECT_HEADER + REFERENCE);
+
+    // WeakHashMap entry, the weak reference to the value and the table slot
+    public static final int INTERNED_ENTRY = align(OBJECT_HEADER + 5 * REFERENCE + 4 + REFERENCE) + align(OBJECT_HEADER + 4 * REFERENCE) + REFERENCE;
+
+    // HashMap node and the table slot at the default load factor
+    public static final int HASH_SET_ENTRY = align(OBJECT_HEADER + 4 + 3 * REFERENCE) + align((int)Math.ceil(REFERENCE / 0.75));
+
+    // Key and value of one LongObjectMap slot
+    public static final int INDEX_SLOT = 8 + REFERENCE;
+
+    private ObjectSizes() {}
+
+    /**
+     * @param length
+     * @return the size of an array of references
+     */
+    public static long referenceArray(int length) {
+        return align(ARRAY_HEADER + (long)length * REFERENCE);
+    }
+
+    private static int align(int size) {
+        return (int)align((long)size);
+    }
+
+    private static long align(long size) {
+        return (size + ALIGNMENT - 1) / ALIGNMENT * ALIGNMENT;
+    }
+
+}
@@ -0,0 +1,232 @@
+package io.github.willqi.pizzamc.claims.api.claims.cache;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Thread safe reverse index from an owner to the keys of everything they own.
+ *
+ * An owner is either unknown, loading or loaded. Changes to a loading owner are recorded and replayed
+ * once the stored keys are handed to finishLoading, so changes made while the stored keys were read are never lost.
+ * Changes to unknown owners are ignored unless the index is complete, in which case unknown owners own nothing.
+ * @param <K> key type
+ */
+public class OwnerIndex<K> {
+
+    private final Map<UUID, Owner<K>> owners;
+
+    // Unknown owners are tracked once this is set
+    private volatile boolean recordingAll;
+    // Unknown owners own nothing once this is set
+    private volatile boolean complete;
+
+    public OwnerIndex() {
+        this.owners = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Start recording the changes of an owner whose keys are about to be read.
+     * Has no effect if the owner is already loading or loaded.
+     * @param owner
+     */
+    public void startLoading(UUID owner) {
+        this.owners.computeIfAbsent(owner, key -> new Owner<>(false));
+    }
+
+    /**
+     * Store the keys read for an owner and replay the changes recorded since startLoading.
+     * @param owner
+     * @param storedKeys
+     * @return the keys of the owner or null if the owner was removed in the meantime
+     */
+    public Set<K> finishLoading(UUID owner, Collection<K> storedKeys) {
+        Owner<K> entry = this.owners.get(owner);
+        if (entry == null) {
+            return null;
+        }
+        synchronized (entry) {
+            entry.load(storedKeys);
+            return new HashSet<>(entry.keys);
+        }
+    }
+
+    /**
+     * Forget an owner whose keys could not be read
+     * @param owner
+     */
+    public void cancelLoading(UUID owner) {
+        Owner<K> entry = this.owners.get(owner);
+        if (entry != null) {
+            synchronized (entry) {
+                if (entry.changes != null) {
+                    this.owners.remove(owner, entry);
+                }
+            }
+        }
+    }
+
+    /**
+     * Start recording the changes of every owner before all stored keys are read at once.
+     */
+    public void startLoadingAll() {
+        this.recordingAll = true;
+    }
+
+    /**
+     * Stop recording owners that were unknown before startLoadingAll after the stored keys could not be read.
+     * Their recorded changes are kept until they are loaded separately.
+     */
+    public void cancelLoadingAll() {
+        this.recordingAll = false;
+    }
+
+    /**
+     * Store the keys read for every owner. Owners without stored keys own nothing from now on.
+     * @param storedKeys keys of every owner
+     */
+    public void finishLoadingAll(Map<UUID, ? extends Collection<K>> storedKeys) {
+        for (Map.Entry<UUID, ? extends Collection<K>> stored : storedKeys.entrySet()) {
+            Owner<K> entry = this.owners.computeIfAbsent(stored.getKey(), key -> new Owner<>(false));
+            synchronized (entry) {
+                entry.load(stored.getValue());
+            }
+        }
+        this.complete = true;
+        for (Owner<K> entry : this.owners.values()) {
+            synchronized (entry) {
+                entry.load(Collections.emptySet());
+            }
+        }
+    }
+
+    public void add(UUID owner, K key) {
+        this.record(owner, key, true);
+    }
+
+    public void remove(UUID owner, K key) {
+        this.record(owner, key, false);
+    }
+
+    /**
+     * @param owner
+     * @return if the keys of the owner are known
+     */
+    public boolean isLoaded(UUID owner) {
+        Owner<K> entry = this.owners.get(owner);
+        if (entry == null) {
+            return this.complete;
+        }
+        synchronized (entry) {
+            return entry.changes == null;
+        }
+    }
+
+    /**
+     * @param owner
+     * @return the amount of keys of the owner or -1 if they are not loaded
+     */
+    public int getCount(UUID owner) {
+        Owner<K> entry = this.owners.get(owner);
+        if (entry == null) {
+            return this.complete ? 0 : -1;
+        }
+        synchronized (entry) {
+            return entry.changes == null ? entry.keys.size() : -1;
+        }
+    }
+
+    /**
+     * @param owner
+     * @return a copy of the keys of the owner or null if they are not loaded
+     */
+    public Set<K> getKeys(UUID owner) {
+        Owner<K> entry = this.owners.get(owner);
+        if (entry == null) {
+            return this.complete ? new HashSet<>() : null;
+        }
+        synchronized (entry) {
+            return entry.changes == null ? new HashSet<>(entry.keys) : null;
+        }
+    }
+
+    /**
+     * Stop tracking an owner. Has no effect once the index is complete.
+     * @param owner
+     */
+    public void removeOwner(UUID owner) {
+        if (!this.complete && !this.recordingAll) {
+            this.owners.remove(owner);
+        }
+    }
+
+    /**
+     * @return a copy of the owners that are loading or loaded
+     */
+    public Set<UUID> getOwners() {
+        return new HashSet<>(this.owners.keySet());
+    }
+
+    public boolean isComplete() {
+        return this.complete;
+    }
+
+    public void clear() {
+        this.owners.clear();
+        this.recordingAll = false;
+        this.complete = false;
+    }
+
+    private void record(UUID owner, K key, boolean added) {
+        Owner<K> entry = this.owners.get(owner);
+        if (entry == null) {
+            if (this.complete) {
+                entry = this.owners.computeIfAbsent(owner, ignored -> new Owner<>(true));
+            } else if (this.recordingAll) {
+                entry = this.owners.computeIfAbsent(owner, ignored -> new Owner<>(false));
+            } else {
+                return;
+            }
+        }
+        synchronized (entry) {
+            if (entry.changes != null) {
+                // Only the last change of a key matters when replaying
+                entry.changes.put(key, added);
+            } else if (added) {
+                entry.keys.add(key);
+            } else {
+                entry.keys.remove(key);
+            }
+        }
+    }
+
+    private static class Owner<K> {
+
+        private final Set<K> keys = new HashSet<>();
+        // Changes recorded while loading. null once loaded
+        private Map<K, Boolean> changes;
+
+        private Owner(boolean loaded) {
+            this.changes = loaded ? null : new HashMap<>();
+        }
+
+        /**
+         * Add the stored keys and replay the recorded changes on top of them. Has no effect once loaded.
+         */
+        private void load(Collection<K> storedKeys) {
+            if (this.changes == null) {
+                return;
+            }
+            this.keys.addAll(storedKeys);
+            this.changes.forEach((key, added) -> {
+                if (added) {
+                    this.keys.add(key);
+                } else {
+                    this.keys.remove(key);
+                }
+            });
+            this.changes = null;
+        }
+
+    }
+
+}
@@ -0,0 +1,62 @@
+package io.github.willqi.pizzamc.claims.api.claims.cache;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves world UUIDs to small int ids.
+ * Ids are assigned once and never change for the lifetime of the registry.
+ */
+public class WorldRegistry {
+
+    private final Map<UUID, Integer> ids;
+    private volatile UUID[] worlds;
+
+    public WorldRegistry() {
+        this.ids = new ConcurrentHashMap<>();
+        this.worlds = new UUID[0];
+    }
+
+    /**
+     * Retrieve the id of a world, assigning one if it does not exist yet.
+     * @param worldUuid
+     * @return the world id
+     */
+    public int getId(UUID worldUuid) {
+        Integer id = this.ids.get(worldUuid);
+        if (id != null) {
+            return id;
+        }
+        return this.register(worldUuid);
+    }
+
+    /**
+     * Retrieve the world UUID of an id
+     * @param id
+     * @return the world UUID or null if the id was never assigned
+     */
+    public UUID getWorldUUID(int id) {
+        UUID[] currentWorlds = this.worlds;
+        return id >= 0 && id < currentWorlds.length ? currentWorlds[id] : null;
+    }
+
+    public int size() {
+        return this.worlds.length;
+    }
+
+    private synchronized int register(UUID worldUuid) {
+        Integer existingId = this.ids.get(worldUuid);
+        if (existingId != null) {
+            return existingId;
+        }
+        UUID[] newWorlds = new UUID[this.worlds.length + 1];
+        System.arraycopy(this.worlds, 0, newWorlds, 0, this.worlds.length);
+        int id = this.worlds.length;
+        newWorlds[id] = worldUuid;
+        this.worlds = newWorlds;
+        this.ids.put(worldUuid, id);
+        return id;
+    }
+
+}
@@ -4,7 +4,11 @@ import io.github.willqi.pizzamc.claims.api.claims.ChunkCoordinates;
 import io.github.willqi.pizzamc.claims.api.claims.ClaimHelper;
 import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
 
 /**
  * Communicator between the ClaimManager and the database for claim helpers
@@ -13,9 +17,116 @@ public interface ClaimHelpersDao {
 
     Set<ClaimHelper> getClaimHelpersByLocation(ChunkCoordinates location) throws DaoException;
 
+    /**
+     * Retrieve the helpers of every claim within a rectangle of chunks in one query
+     * @param worldUuid
+     * @param minX inclusive
+     * @param minZ inclusive
+     * @param maxX inclusive
+     * @param maxZ inclusive
+     * @return the helpers of each chunk. Chunks without helpers are omitted
+     * @throws DaoException
+     */
+    Map<ChunkCoordinates, Set<ClaimHelper>> getClaimHelpersInRegion(UUID worldUuid, int minX, int minZ, int maxX, int maxZ) throws DaoException;
+
+    /**
+     * Stream every stored claim helper without keeping the whole table in memory
+     * @param consumer called with the coordinates of the claim and the helper
+     * @throws DaoException
+     */
+    void forEachClaimHelper(BiConsumer<ChunkCoordinates, ClaimHelper> consumer) throws DaoException;
+
+    /**
+     * @return if no claim helpers are stored
+     * @throws DaoException
+     */
+    boolean isEmpty() throws DaoException;
+
     void insert(ChunkCoordinates claimCoords, ClaimHelper helper) throws DaoException;
     void update(ChunkCoordinates claimCoords, ClaimHelper helper) throws DaoException;
     void delete(ChunkCoordinates claimCoords, ClaimHelper helper) throws DaoException;
 
+    /**
+     * Give a helper the same permissions on every claim of an owner in one operation.
+     * The helper is updated on claims it already helps and inserted on the others.
+     * @param ownerUuid
+     * @param helper
+     * @throws DaoException
+     */
+    void saveForOwner(UUID ownerUuid, ClaimHelper helper) throws DaoException;
+
+    /**
+     * Remove a helper from every claim of an owner in one operation
+     * @param ownerUuid
+     * @param helperUuid
+     * @throws DaoException
+     */
+    void deleteForOwner(UUID ownerUuid, UUID helperUuid) throws DaoException;
+
+    /**
+     * Insert the helpers of many claims at once.
+     * Implementations should write all helpers or none of them.
+     * @param helpers helpers to insert grouped by claim
+     * @throws DaoException
+     */
+    default void insertAll(Map<ChunkCoordinates, ? extends Collection<ClaimHelper>> helpers) throws DaoException {
+        for (Map.Entry<ChunkCoordinates, ? extends Collection<ClaimHelper>> entry : helpers.entrySet()) {
+            for (ClaimHelper helper : entry.getValue()) {
+                this.insert(entry.getKey(), helper);
+            }
+        }
+    }
+
+    /**
+     * Update the helpers of many claims at once.
+     * Implementations should write all helpers or none of them.
+     * @param helpers helpers to update grouped by claim
+     * @throws DaoException
+     */
+    default void updateAll(Map<ChunkCoordinates, ? extends Collection<ClaimHelper>> helpers) throws DaoException {
+        for (Map.Entry<ChunkCoordinates, ? extends Collection<ClaimHelper>> entry : helpers.entrySet()) {
+            for (ClaimHelper helper : entry.getValue()) {
+                this.update(entry.getKey(), helper);
+            }
+        }
+    }
+
+    /**
+     * Delete, insert and update the helpers of many claims at once, in that order.
+     * Implementations should write all helpers or none of them.
+     * @param deletes helpers to delete grouped by claim
+     * @param inserts helpers to insert grouped by claim
+     * @param updates helpers to update grouped by claim
+     * @throws DaoException
+     */
+    default void writeAll(
+            Map<ChunkCoordinates, ? extends Collection<ClaimHelper>> deletes,
+            Map<ChunkCoordinates, ? extends Collection<ClaimHelper>> inserts,
+            Map<ChunkCoordinates, ? extends Collection<ClaimHelper>> updates
+    ) throws DaoException {
+        if (!deletes.isEmpty()) {
+            this.deleteAll(deletes);
+        }
+        if (!inserts.isEmpty()) {
+            this.insertAll(inserts);
+        }
+        if (!updates.isEmpty()) {
+            this.updateAll(updates);
+        }
+    }
+
+    /**
+     * Delete the helpers of many claims at once.
+     * Implementations should delete all helpers or none of them.
+     * @param helpers helpers to delete grouped by claim
+     * @throws DaoException
+     */
+    default void deleteAll(Map<ChunkCoordinates, ? extends Collection<ClaimHelper>> helpers) throws DaoException {
+        for (Map.Entry<ChunkCoordinates, ? extends Collection<ClaimHelper>> entry : helpers.entrySet()) {
+            for (ClaimHelper helper : entry.getValue()) {
+                this.delete(entry.getKey(), helper);
+            }
+        }
+    }
 
 }
@@ -4,8 +4,12 @@ import io.github.willqi.pizzamc.claims.api.claims.ChunkCoordinates;
 import io.github.willqi.pizzamc.claims.api.claims.Claim;
 import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 /**
  * Communicator between the ClaimManager and the database for io.github.willqi.pizzamc.claims
@@ -19,10 +23,104 @@ public interface ClaimsDao {
      * @throws DaoException
      */
     Optional<Claim> getClaimByLocation(ChunkCoordinates location) throws DaoException;
-    int getClaimCountOfUuid(UUID uuid) throws DaoException;
+
+    /**
+     * Retrieve all claims stored within a rectangle of chunks in one query
+     * @param worldUuid
+     * @param minX inclusive
+     * @param minZ inclusive
+     * @param maxX inclusive
+     * @param maxZ inclusive
+     * @return the claims that exist in the database. Chunks without a stored claim are omitted
+     * @throws DaoException
+     */
+    Set<Claim> getClaimsInRegion(UUID worldUuid, int minX, int minZ, int maxX, int maxZ) throws DaoException;
+
+    /**
+     * Retrieve the coordinates of every claim owned by a player without reading the rest of each claim
+     * @param ownerUuid
+     * @return the coordinates in no particular order
+     * @throws DaoException
+     */
+    List<ChunkCoordinates> getCoordinatesOfOwner(UUID ownerUuid) throws DaoException;
+
+    /**
+     * Retrieve a page of the claims owned by a player
+     * @param ownerUuid
+     * @param offset amount of claims to skip
+     * @param limit maximum amount of claims to return
+     * @return the claims ordered by world and coordinates
+     * @throws DaoException
+     */
+    List<Claim> getClaimsOfOwner(UUID ownerUuid, int offset, int limit) throws DaoException;
+
+    /**
+     * Stream every stored claim without keeping the whole table in memory
+     * @param consumer called for each claim
+     * @throws DaoException
+     */
+    void forEachClaim(Consumer<Claim> consumer) throws DaoException;
+
+    /**
+     * @return if no claims are stored
+     * @throws DaoException
+     */
+    boolean isEmpty() throws DaoException;
 
     void insert(Claim claim) throws DaoException;
     void update(Claim claim) throws DaoException;
     void delete(Claim claim) throws DaoException;
 
+    /**
+     * Insert many claims at once.
+     * Implementations should write all claims or none of them.
+     * @param claims
+     * @throws DaoException
+     */
+    default void insertAll(Collection<Claim> claims) throws DaoException {
+        for (Claim claim : claims) {
+            this.insert(claim);
+        }
+    }
+
+    /**
+     * Update many claims at once.
+     * Implementations should write all claims or none of them.
+     * @param claims
+     * @throws DaoException
+     */
+    default void updateAll(Collection<Claim> claims) throws DaoException {
+        for (Claim claim : claims) {
+            this.update(claim);
+        }
+    }
+
+    /**
+     * Insert and update many claims at once.
+     * Implementations should write all claims or none of them.
+     * @param inserts claims that are not stored yet
+     * @param updates claims that are already stored
+     * @throws DaoException
+     */
+    default void saveAll(Collection<Claim> inserts, Collection<Claim> updates) throws DaoException {
+        if (!inserts.isEmpty()) {
+            this.insertAll(inserts);
+        }
+        if (!updates.isEmpty()) {
+            this.updateAll(updates);
+        }
+    }
+
+    /**
+     * Delete many claims at once.
+     * Implementations should delete all claims or none of them.
+     * @param claims
+     * @throws DaoException
+     */
+    default void deleteAll(Collection<Claim> claims) throws DaoException {
+        for (Claim claim : claims) {
+            this.delete(claim);
+        }
+    }
+
 }
@@ -0,0 +1,51 @@
+package io.github.willqi.pizzamc.claims.api.claims.dao;
+
+import io.github.willqi.pizzamc.claims.api.claims.ClaimHelper;
+import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+/**
+ * Communicator between the ClaimManager and the database for helpers trusted on every claim of an owner.
+ * A trust is stored once per owner instead of once per claimed chunk.
+ */
+public interface OwnerTrustsDao {
+
+    Set<ClaimHelper> getTrustsOfOwner(UUID ownerUuid) throws DaoException;
+
+    /**
+     * Stream every stored trust without keeping the whole table in memory
+     * @param consumer called with the uuid of the owner and the trusted helper
+     * @throws DaoException
+     */
+    void forEachTrust(BiConsumer<UUID, ClaimHelper> consumer) throws DaoException;
+
+    /**
+     * @return if no trusts are stored
+     * @throws DaoException
+     */
+    boolean isEmpty() throws DaoException;
+
+    void insert(UUID ownerUuid, ClaimHelper helper) throws DaoException;
+    void update(UUID ownerUuid, ClaimHelper helper) throws DaoException;
+    void delete(UUID ownerUuid, UUID helperUuid) throws DaoException;
+
+    /**
+     * Insert the trusts of many owners at once.
+     * Implementations should write all trusts or none of them.
+     * @param trusts trusted helpers to insert grouped by owner
+     * @throws DaoException
+     */
+    default void insertAll(Map<UUID, ? extends Collection<ClaimHelper>> trusts) throws DaoException {
+        for (Map.Entry<UUID, ? extends Collection<ClaimHelper>> entry : trusts.entrySet()) {
+            for (ClaimHelper helper : entry.getValue()) {
+                this.insert(entry.getKey(), helper);
+            }
+        }
+    }
+
+}
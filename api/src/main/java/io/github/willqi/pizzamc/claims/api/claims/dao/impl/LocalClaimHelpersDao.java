@@ -0,0 +1,316 @@
+package io.github.willqi.pizzamc.claims.api.claims.dao.impl;
+
+import io.github.willqi.pizzamc.claims.api.claims.ChunkCoordinates;
+import io.github.willqi.pizzamc.claims.api.claims.ClaimHelper;
+import io.github.willqi.pizzamc.claims.api.claims.dao.ClaimHelpersDao;
+import io.github.willqi.pizzamc.claims.api.daosources.ClaimJournal;
+import io.github.willqi.pizzamc.claims.api.daosources.LocalTable;
+import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Claim helpers kept in memory and persisted through a {@link ClaimJournal}.
+ *
+ * The helpers of each world are sorted by the x and then z of their claim so that regions are read with range scans.
+ */
+public class LocalClaimHelpersDao implements ClaimHelpersDao {
+
+    // Regions wider than this are read with one scan over the columns instead of one range per column
+    private static final int MAX_RANGE_SCAN_COLUMNS = 256;
+
+    private final ClaimJournal journal;
+    private final LocalClaimsDao claimsDao;
+    private final ReadWriteLock lock;
+    private final Map<UUID, NavigableMap<Long, Map<UUID, ClaimHelper>>> worlds = new HashMap<>();
+    private int size;
+
+    /**
+     * @param journal
+     * @param claimsDao used to find the claims of an owner. Must be persisted through the same journal
+     */
+    public LocalClaimHelpersDao(ClaimJournal journal, LocalClaimsDao claimsDao) {
+        this.journal = journal;
+        this.claimsDao = claimsDao;
+        this.lock = journal.getLock();
+    }
+
+    @Override
+    public Set<ClaimHelper> getClaimHelpersByLocation(ChunkCoordinates location) throws DaoException {
+        this.lock.readLock().lock();
+        try {
+            Map<UUID, ClaimHelper> helpers = this.getStoredHelpers(location);
+            return helpers != null ? new HashSet<>(helpers.values()) : new HashSet<>();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Map<ChunkCoordinates, Set<ClaimHelper>> getClaimHelpersInRegion(UUID worldUuid, int minX, int minZ, int maxX, int maxZ) throws DaoException {
+        Map<ChunkCoordinates, Set<ClaimHelper>> helpers = new HashMap<>();
+        this.lock.readLock().lock();
+        try {
+            NavigableMap<Long, Map<UUID, ClaimHelper>> world = this.worlds.get(worldUuid);
+            if (world == null || minX > maxX || minZ > maxZ) {
+                return helpers;
+            }
+            if ((long)maxX - minX < MAX_RANGE_SCAN_COLUMNS) {
+                for (int x = minX; x <= maxX; x++) {
+                    addHelpers(helpers, worldUuid, world.subMap(LocalTable.toSortedChunkKey(x, minZ), true, LocalTable.toSortedChunkKey(x, maxZ), true), minZ, maxZ);
+                }
+            } else {
+                addHelpers(helpers, worldUuid, world.subMap(LocalTable.toSortedChunkKey(minX, minZ), true, LocalTable.toSortedChunkKey(maxX, maxZ), true), minZ, maxZ);
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return helpers;
+    }
+
+    @Override
+    public void forEachClaimHelper(BiConsumer<ChunkCoordinates, ClaimHelper> consumer) throws DaoException {
+        this.lock.readLock().lock();
+        try {
+            for (Map.Entry<UUID, NavigableMap<Long, Map<UUID, ClaimHelper>>> world : this.worlds.entrySet()) {
+                for (Map.Entry<Long, Map<UUID, ClaimHelper>> entry : world.getValue().entrySet()) {
+                    ChunkCoordinates coordinates = toCoordinates(world.getKey(), entry.getKey());
+                    for (ClaimHelper helper : entry.getValue().values()) {
+                        consumer.accept(coordinates, helper);
+                    }
+                }
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.size() == 0;
+    }
+
+    @Override
+    public void insert(ChunkCoordinates claimCoords, ClaimHelper helper) throws DaoException {
+        this.writeAll(Collections.emptyMap(), Collections.singletonMap(claimCoords, Collections.singleton(helper)), Collections.emptyMap());
+    }
+
+    @Override
+    public void update(ChunkCoordinates claimCoords, ClaimHelper helper) throws DaoException {
+        this.writeAll(Collections.emptyMap(), Collections.emptyMap(), Collections.singletonMap(claimCoords, Collections.singleton(helper)));
+    }
+
+    @Override
+    public void delete(ChunkCoordinates claimCoords, ClaimHelper helper) throws DaoException {
+        this.writeAll(Collections.singletonMap(claimCoords, Collections.singleton(helper)), Collections.emptyMap(), Collections.emptyMap());
+    }
+
+    @Override
+    public void saveForOwner(UUID ownerUuid, ClaimHelper helper) throws DaoException {
+        Map<ChunkCoordinates, Set<ClaimHelper>> puts = new HashMap<>();
+        for (ChunkCoordinates coordinates : this.claimsDao.getCoordinatesOfOwner(ownerUuid)) {
+            puts.put(coordinates, Collections.singleton(helper));
+        }
+        this.lock.writeLock().lock();
+        try {
+            this.write(puts, Collections.emptyMap());
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteForOwner(UUID ownerUuid, UUID helperUuid) throws DaoException {
+        Map<ChunkCoordinates, Set<ClaimHelper>> deletes = new HashMap<>();
+        ClaimHelper helper = new ClaimHelper(helperUuid);
+        this.lock.writeLock().lock();
+        try {
+            for (ChunkCoordinates coordinates : this.claimsDao.getCoordinatesOfOwner(ownerUuid)) {
+                if (this.isStored(coordinates, helperUuid)) {
+                    deletes.put(coordinates, Collections.singleton(helper));
+                }
+            }
+            this.write(Collections.emptyMap(), deletes);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void insertAll(Map<ChunkCoordinates, ? extends Collection<ClaimHelper>> helpers) throws DaoException {
+        this.writeAll(Collections.emptyMap(), helpers, Collections.emptyMap());
+    }
+
+    @Override
+    public void updateAll(Map<ChunkCoordinates, ? extends Collection<ClaimHelper>> helpers) throws DaoException {
+        this.writeAll(Collections.emptyMap(), Collections.emptyMap(), helpers);
+    }
+
+    @Override
+    public void deleteAll(Map<ChunkCoordinates, ? extends Collection<ClaimHelper>> helpers) throws DaoException {
+        this.writeAll(helpers, Collections.emptyMap(), Collections.emptyMap());
+    }
+
+    @Override
+    public void writeAll(
+            Map<ChunkCoordinates, ? extends Collection<ClaimHelper>> deletes,
+            Map<ChunkCoordinates, ? extends Collection<ClaimHelper>> inserts,
+            Map<ChunkCoordinates, ? extends Collection<ClaimHelper>> updates
+    ) throws DaoException {
+        this.lock.writeLock().lock();
+        try {
+            // Changes are checked against the helpers as they will be after the earlier changes of the batch
+            Map<ChunkCoordinates, Map<UUID, ClaimHelper>> staged = new LinkedHashMap<>();
+            for (Map.Entry<ChunkCoordinates, ? extends Collection<ClaimHelper>> entry : deletes.entrySet()) {
+                for (ClaimHelper helper : entry.getValue()) {
+                    if (this.isStaged(staged, entry.getKey(), helper.getUuid())) {
+                        staged.computeIfAbsent(entry.getKey(), coordinates -> new LinkedHashMap<>()).put(helper.getUuid(), null);
+                    }
+                }
+            }
+            for (Map.Entry<ChunkCoordinates, ? extends Collection<ClaimHelper>> entry : inserts.entrySet()) {
+                for (ClaimHelper helper : entry.getValue()) {
+                    if (this.isStaged(staged, entry.getKey(), helper.getUuid())) {
+                        throw new DaoException("Helper " + helper.getUuid() + " is already stored at " + entry.getKey().getX() + ", " + entry.getKey().getZ());
+                    }
+                    staged.computeIfAbsent(entry.getKey(), coordinates -> new LinkedHashMap<>()).put(helper.getUuid(), helper);
+                }
+            }
+            for (Map.Entry<ChunkCoordinates, ? extends Collection<ClaimHelper>> entry : updates.entrySet()) {
+                for (ClaimHelper helper : entry.getValue()) {
+                    // Updating a helper that is not stored does nothing, like an update that matches no rows
+                    if (this.isStaged(staged, entry.getKey(), helper.getUuid())) {
+                        staged.computeIfAbsent(entry.getKey(), coordinates -> new LinkedHashMap<>()).put(helper.getUuid(), helper);
+                    }
+                }
+            }
+
+            Map<ChunkCoordinates, Set<ClaimHelper>> puts = new HashMap<>();
+            Map<ChunkCoordinates, Set<ClaimHelper>> removals = new HashMap<>();
+            for (Map.Entry<ChunkCoordinates, Map<UUID, ClaimHelper>> entry : staged.entrySet()) {
+                for (Map.Entry<UUID, ClaimHelper> helper : entry.getValue().entrySet()) {
+                    if (helper.getValue() != null) {
+                        puts.computeIfAbsent(entry.getKey(), coordinates -> new HashSet<>()).add(helper.getValue());
+                    } else {
+                        removals.computeIfAbsent(entry.getKey(), coordinates -> new HashSet<>()).add(new ClaimHelper(helper.getKey()));
+                    }
+                }
+            }
+            this.write(puts, removals);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Apply a helper record of the journal. The write lock of the journal must be held
+     * @param record
+     */
+    public void replay(ClaimJournal.Record record) {
+        if (record.getType() == ClaimJournal.Record.Type.PUT_HELPER) {
+            this.putHelper(record.getCoordinates(), new ClaimHelper(record.getSubject(), record.getValue()));
+        } else if (record.getType() == ClaimJournal.Record.Type.DELETE_HELPER) {
+            this.removeHelper(record.getCoordinates(), record.getSubject());
+        }
+    }
+
+    /**
+     * Write a record for every stored helper. The lock of the journal must be held
+     * @param sink
+     * @throws IOException
+     */
+    public void writeSnapshot(ClaimJournal.RecordSink sink) throws IOException {
+        for (Map.Entry<UUID, NavigableMap<Long, Map<UUID, ClaimHelper>>> world : this.worlds.entrySet()) {
+            for (Map.Entry<Long, Map<UUID, ClaimHelper>> entry : world.getValue().entrySet()) {
+                ChunkCoordinates coordinates = toCoordinates(world.getKey(), entry.getKey());
+                for (ClaimHelper helper : entry.getValue().values()) {
+                    sink.append(ClaimJournal.Record.putHelper(coordinates, helper));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the amount of stored helpers
+     */
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.size;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Append the changes to the journal as one batch and apply them. The write lock must be held
+     */
+    private void write(Map<ChunkCoordinates, Set<ClaimHelper>> puts, Map<ChunkCoordinates, Set<ClaimHelper>> deletes) throws DaoException {
+        List<ClaimJournal.Record> records = new ArrayList<>();
+        deletes.forEach((coordinates, helpers) -> helpers.forEach(helper -> records.add(ClaimJournal.Record.deleteHelper(coordinates, helper.getUuid()))));
+        puts.forEach((coordinates, helpers) -> helpers.forEach(helper -> records.add(ClaimJournal.Record.putHelper(coordinates, helper))));
+        this.journal.append(records);
+        records.forEach(this::replay);
+    }
+
+    private boolean isStaged(Map<ChunkCoordinates, Map<UUID, ClaimHelper>> staged, ChunkCoordinates coordinates, UUID helperUuid) {
+        Map<UUID, ClaimHelper> stagedHelpers = staged.get(coordinates);
+        if (stagedHelpers != null && stagedHelpers.containsKey(helperUuid)) {
+            return stagedHelpers.get(helperUuid) != null;
+        }
+        return this.isStored(coordinates, helperUuid);
+    }
+
+    private boolean isStored(ChunkCoordinates coordinates, UUID helperUuid) {
+        Map<UUID, ClaimHelper> helpers = this.getStoredHelpers(coordinates);
+        return helpers != null && helpers.containsKey(helperUuid);
+    }
+
+    private Map<UUID, ClaimHelper> getStoredHelpers(ChunkCoordinates coordinates) {
+        NavigableMap<Long, Map<UUID, ClaimHelper>> world = this.worlds.get(coordinates.getWorldUUID());
+        return world != null ? world.get(LocalTable.toSortedChunkKey(coordinates.getX(), coordinates.getZ())) : null;
+    }
+
+    private void putHelper(ChunkCoordinates coordinates, ClaimHelper helper) {
+        Map<UUID, ClaimHelper> helpers = this.worlds.computeIfAbsent(coordinates.getWorldUUID(), uuid -> new TreeMap<>())
+                .computeIfAbsent(LocalTable.toSortedChunkKey(coordinates.getX(), coordinates.getZ()), key -> new HashMap<>());
+        if (helpers.put(helper.getUuid(), helper) == null) {
+            this.size++;
+        }
+    }
+
+    private void removeHelper(ChunkCoordinates coordinates, UUID helperUuid) {
+        NavigableMap<Long, Map<UUID, ClaimHelper>> world = this.worlds.get(coordinates.getWorldUUID());
+        if (world == null) {
+            return;
+        }
+        long key = LocalTable.toSortedChunkKey(coordinates.getX(), coordinates.getZ());
+        Map<UUID, ClaimHelper> helpers = world.get(key);
+        if (helpers != null && helpers.remove(helperUuid) != null) {
+            this.size--;
+            if (helpers.isEmpty()) {
+                world.remove(key);
+                if (world.isEmpty()) {
+                    this.worlds.remove(coordinates.getWorldUUID());
+                }
+            }
+        }
+    }
+
+    private static void addHelpers(Map<ChunkCoordinates, Set<ClaimHelper>> helpers, UUID worldUuid, Map<Long, Map<UUID, ClaimHelper>> range, int minZ, int maxZ) {
+        for (Map.Entry<Long, Map<UUID, ClaimHelper>> entry : range.entrySet()) {
+            int z = LocalTable.getSortedChunkZ(entry.getKey());
+            if (z >= minZ && z <= maxZ) {
+                helpers.put(toCoordinates(worldUuid, entry.getKey()), new HashSet<>(entry.getValue().values()));
+            }
+        }
+    }
+
+    private static ChunkCoordinates toCoordinates(UUID worldUuid, long key) {
+        return new ChunkCoordinates(worldUuid, LocalTable.getSortedChunkX(key), LocalTable.getSortedChunkZ(key));
+    }
+
+}
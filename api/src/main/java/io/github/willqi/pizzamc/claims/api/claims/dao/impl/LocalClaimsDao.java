@@ -0,0 +1,271 @@
+package io.github.willqi.pizzamc.claims.api.claims.dao.impl;
+
+import io.github.willqi.pizzamc.claims.api.claims.ChunkCoordinates;
+import io.github.willqi.pizzamc.claims.api.claims.Claim;
+import io.github.willqi.pizzamc.claims.api.claims.dao.ClaimsDao;
+import io.github.willqi.pizzamc.claims.api.daosources.ClaimJournal;
+import io.github.willqi.pizzamc.claims.api.daosources.LocalTable;
+import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Claims kept in memory and persisted through a {@link ClaimJournal}.
+ *
+ * The claims of each world are sorted by x and then z so that regions are read with range scans.
+ */
+public class LocalClaimsDao implements ClaimsDao {
+
+    // Regions wider than this are read with one scan over the columns instead of one range per column
+    private static final int MAX_RANGE_SCAN_COLUMNS = 256;
+
+    private final ClaimJournal journal;
+    private final ReadWriteLock lock;
+    private final Map<UUID, NavigableMap<Long, Claim>> worlds = new HashMap<>();
+    private final Map<UUID, Set<ChunkCoordinates>> ownedClaims = new HashMap<>();
+    private int size;
+
+    public LocalClaimsDao(ClaimJournal journal) {
+        this.journal = journal;
+        this.lock = journal.getLock();
+    }
+
+    @Override
+    public Optional<Claim> getClaimByLocation(ChunkCoordinates location) throws DaoException {
+        this.lock.readLock().lock();
+        try {
+            return Optional.ofNullable(this.getStoredClaim(location));
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Set<Claim> getClaimsInRegion(UUID worldUuid, int minX, int minZ, int maxX, int maxZ) throws DaoException {
+        Set<Claim> claims = new HashSet<>();
+        this.lock.readLock().lock();
+        try {
+            NavigableMap<Long, Claim> world = this.worlds.get(worldUuid);
+            if (world == null || minX > maxX || minZ > maxZ) {
+                return claims;
+            }
+            long firstKey = LocalTable.toSortedChunkKey(minX, minZ);
+            long lastKey = LocalTable.toSortedChunkKey(maxX, maxZ);
+            if ((long)maxX - minX < MAX_RANGE_SCAN_COLUMNS) {
+                for (int x = minX; x <= maxX; x++) {
+                    claims.addAll(world.subMap(LocalTable.toSortedChunkKey(x, minZ), true, LocalTable.toSortedChunkKey(x, maxZ), true).values());
+                }
+            } else {
+                for (Map.Entry<Long, Claim> entry : world.subMap(firstKey, true, lastKey, true).entrySet()) {
+                    int z = LocalTable.getSortedChunkZ(entry.getKey());
+                    if (z >= minZ && z <= maxZ) {
+                        claims.add(entry.getValue());
+                    }
+                }
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return claims;
+    }
+
+    @Override
+    public List<Claim> getClaimsOfOwner(UUID ownerUuid, int offset, int limit) throws DaoException {
+        List<ChunkCoordinates> coordinates = this.getCoordinatesOfOwner(ownerUuid);
+        // Same order as the SQL dao, which sorts world uuids by their bytes
+        coordinates.sort(Comparator.comparing(ChunkCoordinates::getWorldUUID, LocalClaimsDao::compareUuidBytes)
+                .thenComparingInt(ChunkCoordinates::getX)
+                .thenComparingInt(ChunkCoordinates::getZ));
+        List<Claim> claims = new ArrayList<>();
+        this.lock.readLock().lock();
+        try {
+            for (int i = Math.max(offset, 0); i < coordinates.size() && claims.size() < limit; i++) {
+                Claim claim = this.getStoredClaim(coordinates.get(i));
+                if (claim != null) {
+                    claims.add(claim);
+                }
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+        return claims;
+    }
+
+    @Override
+    public void forEachClaim(Consumer<Claim> consumer) throws DaoException {
+        this.lock.readLock().lock();
+        try {
+            for (NavigableMap<Long, Claim> world : this.worlds.values()) {
+                world.values().forEach(consumer);
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.size() == 0;
+    }
+
+    @Override
+    public void insert(Claim claim) throws DaoException {
+        this.insertAll(Collections.singletonList(claim));
+    }
+
+    @Override
+    public void update(Claim claim) throws DaoException {
+        this.updateAll(Collections.singletonList(claim));
+    }
+
+    @Override
+    public void delete(Claim claim) throws DaoException {
+        this.deleteAll(Collections.singletonList(claim));
+    }
+
+    @Override
+    public void insertAll(Collection<Claim> claims) throws DaoException {
+        this.saveAll(claims, Collections.emptyList());
+    }
+
+    @Override
+    public void updateAll(Collection<Claim> claims) throws DaoException {
+        this.saveAll(Collections.emptyList(), claims);
+    }
+
+    @Override
+    public void saveAll(Collection<Claim> inserts, Collection<Claim> updates) throws DaoException {
+        this.lock.writeLock().lock();
+        try {
+            List<ClaimJournal.Record> puts = new ArrayList<>(inserts.size() + updates.size());
+            for (Claim claim : inserts) {
+                if (this.getStoredClaim(claim.getCoordinates()) != null) {
+                    throw new DaoException("A claim is already stored at " + claim.getCoordinates().getX() + ", " + claim.getCoordinates().getZ());
+                }
+                puts.add(ClaimJournal.Record.putClaim(claim));
+            }
+            for (Claim claim : updates) {
+                // Updating a claim that is not stored does nothing, like an update that matches no rows
+                if (this.getStoredClaim(claim.getCoordinates()) != null) {
+                    puts.add(ClaimJournal.Record.putClaim(claim));
+                }
+            }
+            this.journal.append(puts);
+            puts.forEach(this::replay);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void deleteAll(Collection<Claim> claims) throws DaoException {
+        this.lock.writeLock().lock();
+        try {
+            List<ClaimJournal.Record> deletes = new ArrayList<>(claims.size());
+            for (Claim claim : claims) {
+                if (this.getStoredClaim(claim.getCoordinates()) != null) {
+                    deletes.add(ClaimJournal.Record.deleteClaim(claim.getCoordinates()));
+                }
+            }
+            this.journal.append(deletes);
+            deletes.forEach(this::replay);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Apply a claim record of the journal. The write lock of the journal must be held
+     * @param record
+     */
+    public void replay(ClaimJournal.Record record) {
+        if (record.getType() == ClaimJournal.Record.Type.PUT_CLAIM) {
+            this.putClaim(new Claim(record.getCoordinates(), record.getSubject(), record.getValue()));
+        } else if (record.getType() == ClaimJournal.Record.Type.DELETE_CLAIM) {
+            this.removeClaim(record.getCoordinates());
+        }
+    }
+
+    /**
+     * Write a record for every stored claim. The lock of the journal must be held
+     * @param sink
+     * @throws IOException
+     */
+    public void writeSnapshot(ClaimJournal.RecordSink sink) throws IOException {
+        for (NavigableMap<Long, Claim> world : this.worlds.values()) {
+            for (Claim claim : world.values()) {
+                sink.append(ClaimJournal.Record.putClaim(claim));
+            }
+        }
+    }
+
+    /**
+     * @return the amount of stored claims
+     */
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.size;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public List<ChunkCoordinates> getCoordinatesOfOwner(UUID ownerUuid) {
+        this.lock.readLock().lock();
+        try {
+            Set<ChunkCoordinates> coordinates = this.ownedClaims.get(ownerUuid);
+            return coordinates != null ? new ArrayList<>(coordinates) : new ArrayList<>();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private Claim getStoredClaim(ChunkCoordinates coordinates) {
+        NavigableMap<Long, Claim> world = this.worlds.get(coordinates.getWorldUUID());
+        return world != null ? world.get(LocalTable.toSortedChunkKey(coordinates.getX(), coordinates.getZ())) : null;
+    }
+
+    private void putClaim(Claim claim) {
+        ChunkCoordinates coordinates = claim.getCoordinates();
+        Claim oldClaim = this.worlds.computeIfAbsent(coordinates.getWorldUUID(), uuid -> new TreeMap<>())
+                .put(LocalTable.toSortedChunkKey(coordinates.getX(), coordinates.getZ()), claim);
+        if (oldClaim == null) {
+            this.size++;
+        } else {
+            this.removeOwnedClaim(oldClaim);
+        }
+        claim.getOwner().ifPresent(owner -> this.ownedClaims.computeIfAbsent(owner, uuid -> new HashSet<>()).add(coordinates));
+    }
+
+    private void removeClaim(ChunkCoordinates coordinates) {
+        NavigableMap<Long, Claim> world = this.worlds.get(coordinates.getWorldUUID());
+        Claim oldClaim = world != null ? world.remove(LocalTable.toSortedChunkKey(coordinates.getX(), coordinates.getZ())) : null;
+        if (oldClaim != null) {
+            this.size--;
+            this.removeOwnedClaim(oldClaim);
+            if (world.isEmpty()) {
+                this.worlds.remove(coordinates.getWorldUUID());
+            }
+        }
+    }
+
+    private void removeOwnedClaim(Claim claim) {
+        claim.getOwner().ifPresent(owner -> {
+            Set<ChunkCoordinates> coordinates = this.ownedClaims.get(owner);
+            if (coordinates != null && coordinates.remove(claim.getCoordinates()) && coordinates.isEmpty()) {
+                this.ownedClaims.remove(owner);
+            }
+        });
+    }
+
+    private static int compareUuidBytes(UUID a, UUID b) {
+        int result = Long.compareUnsigned(a.getMostSignificantBits(), b.getMostSignificantBits());
+        return result != 0 ? result : Long.compareUnsigned(a.getLeastSignificantBits(), b.getLeastSignificantBits());
+    }
+
+}
@@ -0,0 +1,184 @@
+package io.github.willqi.pizzamc.claims.api.claims.dao.impl;
+
+import io.github.willqi.pizzamc.claims.api.claims.ClaimHelper;
+import io.github.willqi.pizzamc.claims.api.claims.dao.OwnerTrustsDao;
+import io.github.willqi.pizzamc.claims.api.daosources.LocalLog;
+import io.github.willqi.pizzamc.claims.api.daosources.LocalTable;
+import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Owner trusts kept in memory and persisted through a {@link LocalLog}
+ */
+public class LocalOwnerTrustsDao implements OwnerTrustsDao, LocalTable {
+
+    public static final byte TABLE_ID = 3;
+
+    private static final byte OP_PUT = 0;
+    private static final byte OP_DELETE = 1;
+
+    private final LocalLog log;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<UUID, Map<UUID, ClaimHelper>> trusts = new HashMap<>();
+    private int size;
+
+    public LocalOwnerTrustsDao(LocalLog log) {
+        this.log = log;
+    }
+
+    @Override
+    public Set<ClaimHelper> getTrustsOfOwner(UUID ownerUuid) throws DaoException {
+        this.lock.readLock().lock();
+        try {
+            Map<UUID, ClaimHelper> helpers = this.trusts.get(ownerUuid);
+            return helpers != null ? new HashSet<>(helpers.values()) : new HashSet<>();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void forEachTrust(BiConsumer<UUID, ClaimHelper> consumer) throws DaoException {
+        this.lock.readLock().lock();
+        try {
+            for (Map.Entry<UUID, Map<UUID, ClaimHelper>> entry : this.trusts.entrySet()) {
+                for (ClaimHelper helper : entry.getValue().values()) {
+                    consumer.accept(entry.getKey(), helper);
+                }
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.size() == 0;
+    }
+
+    @Override
+    public void insert(UUID ownerUuid, ClaimHelper helper) throws DaoException {
+        this.lock.writeLock().lock();
+        try {
+            if (this.isStored(ownerUuid, helper.getUuid())) {
+                throw new DaoException("Helper " + helper.getUuid() + " is already trusted by " + ownerUuid);
+            }
+            this.log.append(output -> writePut(output, ownerUuid, helper));
+            this.putTrust(ownerUuid, helper);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void update(UUID ownerUuid, ClaimHelper helper) throws DaoException {
+        this.lock.writeLock().lock();
+        try {
+            // Updating a trust that is not stored does nothing, like an update that matches no rows
+            if (!this.isStored(ownerUuid, helper.getUuid())) {
+                return;
+            }
+            this.log.append(output -> writePut(output, ownerUuid, helper));
+            this.putTrust(ownerUuid, helper);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(UUID ownerUuid, UUID helperUuid) throws DaoException {
+        this.lock.writeLock().lock();
+        try {
+            if (!this.isStored(ownerUuid, helperUuid)) {
+                return;
+            }
+            this.log.append(output -> {
+                output.writeByte(TABLE_ID);
+                output.writeByte(OP_DELETE);
+                LocalTable.writeUuid(output, ownerUuid);
+                LocalTable.writeUuid(output, helperUuid);
+            });
+            this.removeTrust(ownerUuid, helperUuid);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public byte getTableId() {
+        return TABLE_ID;
+    }
+
+    @Override
+    public void replay(DataInput input) throws IOException {
+        byte op = input.readByte();
+        UUID ownerUuid = LocalTable.readUuid(input);
+        UUID helperUuid = LocalTable.readUuid(input);
+        if (op == OP_PUT) {
+            this.putTrust(ownerUuid, new ClaimHelper(helperUuid, input.readInt()));
+        } else if (op == OP_DELETE) {
+            this.removeTrust(ownerUuid, helperUuid);
+        } else {
+            throw new IOException("Unknown owner trust operation " + op);
+        }
+    }
+
+    @Override
+    public long writeSnapshot(LocalLog.RecordSink sink) throws IOException {
+        long records = 0;
+        for (Map.Entry<UUID, Map<UUID, ClaimHelper>> entry : this.trusts.entrySet()) {
+            for (ClaimHelper helper : entry.getValue().values()) {
+                sink.append(output -> writePut(output, entry.getKey(), helper));
+                records++;
+            }
+        }
+        return records;
+    }
+
+    @Override
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.size;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private boolean isStored(UUID ownerUuid, UUID helperUuid) {
+        Map<UUID, ClaimHelper> helpers = this.trusts.get(ownerUuid);
+        return helpers != null && helpers.containsKey(helperUuid);
+    }
+
+    private void putTrust(UUID ownerUuid, ClaimHelper helper) {
+        if (this.trusts.computeIfAbsent(ownerUuid, uuid -> new HashMap<>()).put(helper.getUuid(), helper) == null) {
+            this.size++;
+        }
+    }
+
+    private void removeTrust(UUID ownerUuid, UUID helperUuid) {
+        Map<UUID, ClaimHelper> helpers = this.trusts.get(ownerUuid);
+        if (helpers != null && helpers.remove(helperUuid) != null) {
+            this.size--;
+            if (helpers.isEmpty()) {
+                this.trusts.remove(ownerUuid);
+            }
+        }
+    }
+
+    private static void writePut(DataOutput output, UUID ownerUuid, ClaimHelper helper) throws IOException {
+        output.writeByte(TABLE_ID);
+        output.writeByte(OP_PUT);
+        LocalTable.writeUuid(output, ownerUuid);
+        LocalTable.writeUuid(output, helper.getUuid());
+        output.writeInt(helper.getPermissions());
+    }
+
+}
@@ -1,172 +1,261 @@
 package io.github.willqi.pizzamc.claims.api.claims.dao.impl;
 
-import com.zaxxer.hikari.HikariDataSource;
 import io.github.willqi.pizzamc.claims.api.claims.ChunkCoordinates;
 import io.github.willqi.pizzamc.claims.api.claims.ClaimHelper;
 import io.github.willqi.pizzamc.claims.api.claims.dao.ClaimHelpersDao;
+import io.github.willqi.pizzamc.claims.api.daosources.SQLReplicaRouter;
+import io.github.willqi.pizzamc.claims.api.daosources.SQLStatementRunner;
+import io.github.willqi.pizzamc.claims.api.daosources.SQLTableVersion;
 import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
 
-import java.sql.*;
-import java.util.HashSet;
-import java.util.Set;
-import java.util.UUID;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.function.BiConsumer;
 
 public class SQLClaimHelpersDao implements ClaimHelpersDao {
 
-    private static final String STMT_CREATE_HELPERS_TABLE = "CREATE TABLE IF NOT EXISTS claim_helpers (" +
-            "world_uuid VARCHAR(36) NOT NULL," +
+    private static final String STMT_CREATE_HELPERS_TABLE = "CREATE TABLE IF NOT EXISTS claim_helpers_v2 (" +
+            "world_uuid BINARY(16) NOT NULL," +
             "x INT NOT NULL," +
             "z INT NOT NULL," +
-            "uuid VARCHAR(36) NOT NULL," +
+            "uuid BINARY(16) NOT NULL," +
             "permissions INT NOT NULL," +
-            "FOREIGN KEY(world_uuid, x, z) REFERENCES claims (world_uuid, x, z)" +
+            "PRIMARY KEY(world_uuid, x, z, uuid)," +
+            "FOREIGN KEY(world_uuid, x, z) REFERENCES claims_v2 (world_uuid, x, z)" +
             ")";
 
-    private static final String STMT_GET_HELPERS = "SELECT uuid, permissions FROM claim_helpers WHERE world_uuid=? AND x=? AND z=?";
-    private static final String STMT_INSERT_HELPER = "INSERT INTO claim_helpers (world_uuid, x, z, uuid, permissions) VALUES (?, ?, ?, ?, ?)";
-    private static final String STMT_UPDATE_HELPER = "UPDATE claim_helpers SET permissions=? WHERE world_uuid=? AND x=? AND z=? AND uuid=?";
-    private static final String STMT_DELETE_HELPER = "DELETE FROM claim_helpers WHERE world_uuid=? AND x=? AND z=? AND uuid=?";
+    private static final String STMT_GET_HELPERS = "SELECT uuid, permissions FROM claim_helpers_v2 WHERE world_uuid=? AND x=? AND z=?";
+    private static final String STMT_GET_HELPERS_IN_REGION = "SELECT x, z, uuid, permissions FROM claim_helpers_v2 WHERE world_uuid=? AND x BETWEEN ? AND ? AND z BETWEEN ? AND ?";
+    private static final String STMT_GET_ALL_HELPERS = "SELECT world_uuid, x, z, uuid, permissions FROM claim_helpers_v2";
+    private static final String STMT_HAS_ROWS = "SELECT 1 FROM claim_helpers_v2 LIMIT 1";
+    private static final String STMT_INSERT_HELPER = "INSERT INTO claim_helpers_v2 (world_uuid, x, z, uuid, permissions) VALUES (?, ?, ?, ?, ?)";
+    // The claim may not be copied to claims_v2 yet. The helper is copied along with the other helpers of the version 1 table then
+    private static final String STMT_INSERT_HELPER_WHILE_COPYING = "INSERT IGNORE INTO claim_helpers_v2 (world_uuid, x, z, uuid, permissions) VALUES (?, ?, ?, ?, ?)";
+    private static final String STMT_UPDATE_HELPER = "UPDATE claim_helpers_v2 SET permissions=? WHERE world_uuid=? AND x=? AND z=? AND uuid=?";
+    private static final String STMT_DELETE_HELPER = "DELETE FROM claim_helpers_v2 WHERE world_uuid=? AND x=? AND z=? AND uuid=?";
 
-    private final HikariDataSource source;
+    // Change a helper on every claim of an owner without reading the claims first
+    private static final String STMT_UPDATE_HELPER_OF_OWNER = "UPDATE claim_helpers_v2 SET permissions=? WHERE uuid=? " +
+            "AND (world_uuid, x, z) IN (SELECT world_uuid, x, z FROM claims_v2 WHERE owner_uuid=?)";
+    private static final String STMT_INSERT_HELPER_OF_OWNER = "INSERT INTO claim_helpers_v2 (world_uuid, x, z, uuid, permissions) " +
+            "SELECT claims.world_uuid, claims.x, claims.z, ?, ? FROM claims_v2 claims WHERE claims.owner_uuid=? " +
+            "AND NOT EXISTS (SELECT 1 FROM claim_helpers_v2 existing WHERE existing.world_uuid=claims.world_uuid AND existing.x=claims.x AND existing.z=claims.z AND existing.uuid=?)";
+    private static final String STMT_DELETE_HELPER_OF_OWNER = "DELETE FROM claim_helpers_v2 WHERE uuid=? " +
+            "AND (world_uuid, x, z) IN (SELECT world_uuid, x, z FROM claims_v2 WHERE owner_uuid=?)";
 
-    public SQLClaimHelpersDao(HikariDataSource source) throws SQLException {
-        this.source = source;
+    // Statements of the version 1 table, used until it was copied
+    private static final String LEGACY_STMT_GET_HELPERS = "SELECT uuid, permissions FROM claim_helpers WHERE world_uuid=? AND x=? AND z=?";
+    private static final String LEGACY_STMT_GET_HELPERS_IN_REGION = "SELECT x, z, uuid, permissions FROM claim_helpers WHERE world_uuid=? AND x BETWEEN ? AND ? AND z BETWEEN ? AND ?";
+    private static final String LEGACY_STMT_GET_ALL_HELPERS = "SELECT world_uuid, x, z, uuid, permissions FROM claim_helpers";
+    private static final String LEGACY_STMT_HAS_ROWS = "SELECT 1 FROM claim_helpers LIMIT 1";
+    private static final String LEGACY_STMT_INSERT_HELPER = "INSERT INTO claim_helpers (world_uuid, x, z, uuid, permissions) VALUES (?, ?, ?, ?, ?)";
+    private static final String LEGACY_STMT_UPDATE_HELPER = "UPDATE claim_helpers SET permissions=? WHERE world_uuid=? AND x=? AND z=? AND uuid=?";
+    private static final String LEGACY_STMT_DELETE_HELPER = "DELETE FROM claim_helpers WHERE world_uuid=? AND x=? AND z=? AND uuid=?";
+    private static final String LEGACY_STMT_UPDATE_HELPER_OF_OWNER = "UPDATE claim_helpers SET permissions=? WHERE uuid=? " +
+            "AND (world_uuid, x, z) IN (SELECT world_uuid, x, z FROM claims WHERE owner_uuid=?)";
+    private static final String LEGACY_STMT_INSERT_HELPER_OF_OWNER = "INSERT INTO claim_helpers (world_uuid, x, z, uuid, permissions) " +
+            "SELECT claims.world_uuid, claims.x, claims.z, ?, ? FROM claims WHERE claims.owner_uuid=? " +
+            "AND NOT EXISTS (SELECT 1 FROM claim_helpers existing WHERE existing.world_uuid=claims.world_uuid AND existing.x=claims.x AND existing.z=claims.z AND existing.uuid=?)";
+    private static final String LEGACY_STMT_DELETE_HELPER_OF_OWNER = "DELETE FROM claim_helpers WHERE uuid=? " +
+            "AND (world_uuid, x, z) IN (SELECT world_uuid, x, z FROM claims WHERE owner_uuid=?)";
 
-        Connection connection = null;
-        Statement stmt = null;
+    // Rows fetched per round trip when streaming a whole table
+    private static final int STREAM_FETCH_SIZE = 10000;
 
-        try {
-            connection = this.source.getConnection();
-            stmt = connection.createStatement();
-            stmt.execute(STMT_CREATE_HELPERS_TABLE);
-        } finally {
-            if (stmt != null) {
-                try { stmt.close(); } catch (SQLException ignored) {}
-            }
-            if (connection != null) {
-                try { connection.close(); } catch (SQLException ignored) {}
-            }
-        }
+    private final SQLStatementRunner runner;
+    private final SQLReplicaRouter reads;
+    private final SQLTableVersion version;
+
+    public SQLClaimHelpersDao(SQLStatementRunner runner) throws DaoException {
+        this(runner, SQLReplicaRouter.primaryOnly(runner), SQLTableVersion.latest());
+    }
 
+    /**
+     * @param runner runner of the primary database
+     * @param reads routes helper lookups by location to a replica
+     * @param version which version of the table is read and written
+     * @throws DaoException if the table could not be created
+     */
+    public SQLClaimHelpersDao(SQLStatementRunner runner, SQLReplicaRouter reads, SQLTableVersion version) throws DaoException {
+        this.runner = runner;
+        this.reads = reads;
+        this.version = version;
+        this.runner.execute(STMT_CREATE_HELPERS_TABLE);
     }
 
     @Override
     public Set<ClaimHelper> getClaimHelpersByLocation(ChunkCoordinates location) throws DaoException {
-        Set<ClaimHelper> helpers = new HashSet<>();
-        Connection connection = null;
-        PreparedStatement stmt = null;
-        ResultSet results = null;
-
-        try {
-            connection = this.source.getConnection();
-            stmt = connection.prepareStatement(STMT_GET_HELPERS);
-            stmt.setString(1, location.getWorldUUID().toString());
-            stmt.setInt(2, location.getX());
-            stmt.setInt(3, location.getZ());
-            results = stmt.executeQuery();
-
+        boolean legacy = this.version.isReadingLegacy();
+        return this.reads.getRunner(location).query(legacy ? LEGACY_STMT_GET_HELPERS : STMT_GET_HELPERS, stmt -> bindCoordinates(stmt, 1, location, legacy), results -> {
+            Set<ClaimHelper> helpers = new HashSet<>();
             while (results.next()) {
-                UUID uuid = UUID.fromString(results.getString("uuid"));
-                int permissions = results.getInt("permissions");
-                ClaimHelper helper = new ClaimHelper(uuid, permissions);
-                helpers.add(helper);
-            }
-        } catch (SQLException exception) {
-            throw new DaoException(exception);
-        } finally {
-            if (results != null) {
-                try { results.close(); } catch (SQLException ignored) {}
-            }
-            if (stmt != null) {
-                try { stmt.close(); } catch (SQLException ignored) {}
+                helpers.add(readHelper(results, legacy));
             }
-            if (connection != null) {
-                try { connection.close(); } catch (SQLException ignored) {}
+            return helpers;
+        });
+    }
+
+    @Override
+    public Map<ChunkCoordinates, Set<ClaimHelper>> getClaimHelpersInRegion(UUID worldUuid, int minX, int minZ, int maxX, int maxZ) throws DaoException {
+        boolean legacy = this.version.isReadingLegacy();
+        return this.runner.query(legacy ? LEGACY_STMT_GET_HELPERS_IN_REGION : STMT_GET_HELPERS_IN_REGION, stmt -> {
+            SQLTableVersion.setUuid(stmt, 1, worldUuid, legacy);
+            stmt.setInt(2, minX);
+            stmt.setInt(3, maxX);
+            stmt.setInt(4, minZ);
+            stmt.setInt(5, maxZ);
+        }, results -> {
+            Map<ChunkCoordinates, Set<ClaimHelper>> helpers = new HashMap<>();
+            while (results.next()) {
+                ChunkCoordinates coordinates = new ChunkCoordinates(worldUuid, results.getInt("x"), results.getInt("z"));
+                helpers.computeIfAbsent(coordinates, ignored -> new HashSet<>()).add(readHelper(results, legacy));
             }
+            return helpers;
+        });
+    }
 
-        }
+    @Override
+    public void forEachClaimHelper(BiConsumer<ChunkCoordinates, ClaimHelper> consumer) throws DaoException {
+        boolean legacy = this.version.isReadingLegacy();
+        // World uuids are shared by most rows so only keep one instance of each
+        Map<UUID, UUID> worldUuids = new HashMap<>();
+        this.runner.stream(legacy ? LEGACY_STMT_GET_ALL_HELPERS : STMT_GET_ALL_HELPERS, STREAM_FETCH_SIZE, results -> {
+            UUID worldUuid = worldUuids.computeIfAbsent(SQLTableVersion.getUuid(results, "world_uuid", legacy), uuid -> uuid);
+            ChunkCoordinates coordinates = new ChunkCoordinates(worldUuid, results.getInt("x"), results.getInt("z"));
+            consumer.accept(coordinates, readHelper(results, legacy));
+        });
+    }
 
-        return helpers;
+    @Override
+    public boolean isEmpty() throws DaoException {
+        String sql = this.version.isReadingLegacy() ? LEGACY_STMT_HAS_ROWS : STMT_HAS_ROWS;
+        return this.runner.query(sql, stmt -> {}, results -> !results.next());
     }
 
     @Override
     public void insert(ChunkCoordinates claimCoords, ClaimHelper helper) throws DaoException {
-        Connection connection = null;
-        PreparedStatement stmt = null;
-        try {
-            connection = this.source.getConnection();
-            stmt = connection.prepareStatement(STMT_INSERT_HELPER);
-            stmt.setString(1, claimCoords.getWorldUUID().toString());
-            stmt.setInt(2, claimCoords.getX());
-            stmt.setInt(3, claimCoords.getZ());
-            stmt.setString(4, helper.getUuid().toString());
-            stmt.setInt(5, helper.getPermissions());
-            stmt.execute();
-
-        } catch (SQLException exception) {
-            throw new DaoException(exception);
-        } finally {
-            if (stmt != null) {
-                try { stmt.close(); } catch (SQLException ignored) {}
-            }
-            if (connection != null) {
-                try { connection.close(); } catch (SQLException ignored) {}
-            }
-
-        }
+        this.insertAll(Collections.singletonMap(claimCoords, Collections.singleton(helper)));
     }
 
     @Override
     public void update(ChunkCoordinates claimCoords, ClaimHelper helper) throws DaoException {
-        Connection connection = null;
-        PreparedStatement stmt = null;
-        try {
-            connection = this.source.getConnection();
-            stmt = connection.prepareStatement(STMT_UPDATE_HELPER);
-            stmt.setInt(1, helper.getPermissions());
-            stmt.setString(2, claimCoords.getWorldUUID().toString());
-            stmt.setInt(3, claimCoords.getX());
-            stmt.setInt(4, claimCoords.getZ());
-            stmt.setString(5, helper.getUuid().toString());
-            stmt.execute();
-
-        } catch (SQLException exception) {
-            throw new DaoException(exception);
-        } finally {
-            if (stmt != null) {
-                try { stmt.close(); } catch (SQLException ignored) {}
-            }
-            if (connection != null) {
-                try { connection.close(); } catch (SQLException ignored) {}
-            }
-
-        }
+        this.updateAll(Collections.singletonMap(claimCoords, Collections.singleton(helper)));
     }
 
     @Override
     public void delete(ChunkCoordinates claimCoords, ClaimHelper helper) throws DaoException {
-        Connection connection = null;
-        PreparedStatement stmt = null;
-        try {
-            connection = this.source.getConnection();
-            stmt = connection.prepareStatement(STMT_DELETE_HELPER);
-            stmt.setString(1, claimCoords.getWorldUUID().toString());
-            stmt.setInt(2, claimCoords.getX());
-            stmt.setInt(3, claimCoords.getZ());
-            stmt.setString(4, helper.getUuid().toString());
-            stmt.execute();
-
-        } catch (SQLException exception) {
-            throw new DaoException(exception);
-        } finally {
-            if (stmt != null) {
-                try { stmt.close(); } catch (SQLException ignored) {}
-            }
-            if (connection != null) {
-                try { connection.close(); } catch (SQLException ignored) {}
-            }
+        this.deleteAll(Collections.singletonMap(claimCoords, Collections.singleton(helper)));
+    }
 
+    @Override
+    public void saveForOwner(UUID ownerUuid, ClaimHelper helper) throws DaoException {
+        List<ClaimHelper> helpers = Collections.singletonList(helper);
+        List<SQLStatementRunner.Batch<ClaimHelper>> batches = new ArrayList<>(4);
+        batches.addAll(this.version.batches(STMT_UPDATE_HELPER_OF_OWNER, LEGACY_STMT_UPDATE_HELPER_OF_OWNER, helpers, (stmt, item, legacy) -> {
+            stmt.setInt(1, item.getPermissions());
+            SQLTableVersion.setUuid(stmt, 2, item.getUuid(), legacy);
+            SQLTableVersion.setUuid(stmt, 3, ownerUuid, legacy);
+        }));
+        batches.addAll(this.version.batches(STMT_INSERT_HELPER_OF_OWNER, LEGACY_STMT_INSERT_HELPER_OF_OWNER, helpers, (stmt, item, legacy) -> {
+            SQLTableVersion.setUuid(stmt, 1, item.getUuid(), legacy);
+            stmt.setInt(2, item.getPermissions());
+            SQLTableVersion.setUuid(stmt, 3, ownerUuid, legacy);
+            SQLTableVersion.setUuid(stmt, 4, item.getUuid(), legacy);
+        }));
+        this.runner.batches(batches);
+        // The claims of the owner are not read, so every helper lookup goes to the primary for a while
+        this.reads.markAllWritten();
+    }
+
+    @Override
+    public void deleteForOwner(UUID ownerUuid, UUID helperUuid) throws DaoException {
+        this.runner.batches(this.version.batches(STMT_DELETE_HELPER_OF_OWNER, LEGACY_STMT_DELETE_HELPER_OF_OWNER, Collections.singletonList(helperUuid), (stmt, item, legacy) -> {
+            SQLTableVersion.setUuid(stmt, 1, item, legacy);
+            SQLTableVersion.setUuid(stmt, 2, ownerUuid, legacy);
+        }));
+        this.reads.markAllWritten();
+    }
+
+    @Override
+    public void insertAll(Map<ChunkCoordinates, ? extends Collection<ClaimHelper>> helpers) throws DaoException {
+        this.runner.batches(this.insertBatches(flatten(helpers)));
+        this.reads.markWritten(helpers.keySet());
+    }
+
+    @Override
+    public void updateAll(Map<ChunkCoordinates, ? extends Collection<ClaimHelper>> helpers) throws DaoException {
+        this.runner.batches(this.version.batches(STMT_UPDATE_HELPER, LEGACY_STMT_UPDATE_HELPER, flatten(helpers), SQLClaimHelpersDao::bindUpdate));
+        this.reads.markWritten(helpers.keySet());
+    }
+
+    @Override
+    public void deleteAll(Map<ChunkCoordinates, ? extends Collection<ClaimHelper>> helpers) throws DaoException {
+        this.runner.batches(this.version.batches(STMT_DELETE_HELPER, LEGACY_STMT_DELETE_HELPER, flatten(helpers), SQLClaimHelpersDao::bindDelete));
+        this.reads.markWritten(helpers.keySet());
+    }
+
+    @Override
+    public void writeAll(
+            Map<ChunkCoordinates, ? extends Collection<ClaimHelper>> deletes,
+            Map<ChunkCoordinates, ? extends Collection<ClaimHelper>> inserts,
+            Map<ChunkCoordinates, ? extends Collection<ClaimHelper>> updates
+    ) throws DaoException {
+        List<SQLStatementRunner.Batch<Map.Entry<ChunkCoordinates, ClaimHelper>>> batches = new ArrayList<>(6);
+        batches.addAll(this.version.batches(STMT_DELETE_HELPER, LEGACY_STMT_DELETE_HELPER, flatten(deletes), SQLClaimHelpersDao::bindDelete));
+        batches.addAll(this.insertBatches(flatten(inserts)));
+        batches.addAll(this.version.batches(STMT_UPDATE_HELPER, LEGACY_STMT_UPDATE_HELPER, flatten(updates), SQLClaimHelpersDao::bindUpdate));
+        this.runner.batches(batches);
+        this.reads.markWritten(deletes.keySet());
+        this.reads.markWritten(inserts.keySet());
+        this.reads.markWritten(updates.keySet());
+    }
+
+    private List<SQLStatementRunner.Batch<Map.Entry<ChunkCoordinates, ClaimHelper>>> insertBatches(List<Map.Entry<ChunkCoordinates, ClaimHelper>> helpers) {
+        String sql = this.version.isReadingLegacy() ? STMT_INSERT_HELPER_WHILE_COPYING : STMT_INSERT_HELPER;
+        return this.version.batches(sql, LEGACY_STMT_INSERT_HELPER, helpers, SQLClaimHelpersDao::bindInsert);
+    }
+
+    private static ClaimHelper readHelper(ResultSet results, boolean legacy) throws SQLException {
+        UUID uuid = SQLTableVersion.getUuid(results, "uuid", legacy);
+        return new ClaimHelper(uuid, results.getInt("permissions"));
+    }
+
+    private static void bindInsert(PreparedStatement stmt, Map.Entry<ChunkCoordinates, ClaimHelper> entry, boolean legacy) throws SQLException {
+        bindCoordinates(stmt, 1, entry.getKey(), legacy);
+        SQLTableVersion.setUuid(stmt, 4, entry.getValue().getUuid(), legacy);
+        stmt.setInt(5, entry.getValue().getPermissions());
+    }
+
+    private static void bindUpdate(PreparedStatement stmt, Map.Entry<ChunkCoordinates, ClaimHelper> entry, boolean legacy) throws SQLException {
+        stmt.setInt(1, entry.getValue().getPermissions());
+        bindCoordinates(stmt, 2, entry.getKey(), legacy);
+        SQLTableVersion.setUuid(stmt, 5, entry.getValue().getUuid(), legacy);
+    }
+
+    private static void bindDelete(PreparedStatement stmt, Map.Entry<ChunkCoordinates, ClaimHelper> entry, boolean legacy) throws SQLException {
+        bindCoordinates(stmt, 1, entry.getKey(), legacy);
+        SQLTableVersion.setUuid(stmt, 4, entry.getValue().getUuid(), legacy);
+    }
+
+    /**
+     * Set the world uuid, x and z parameters starting at index
+     */
+    private static void bindCoordinates(PreparedStatement stmt, int index, ChunkCoordinates coordinates, boolean legacy) throws SQLException {
+        SQLTableVersion.setUuid(stmt, index, coordinates.getWorldUUID(), legacy);
+        stmt.setInt(index + 1, coordinates.getX());
+        stmt.setInt(index + 2, coordinates.getZ());
+    }
+
+    private static List<Map.Entry<ChunkCoordinates, ClaimHelper>> flatten(Map<ChunkCoordinates, ? extends Collection<ClaimHelper>> helpers) {
+        List<Map.Entry<ChunkCoordinates, ClaimHelper>> entries = new ArrayList<>();
+        for (Map.Entry<ChunkCoordinates, ? extends Collection<ClaimHelper>> entry : helpers.entrySet()) {
+            for (ClaimHelper helper : entry.getValue()) {
+                entries.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), helper));
+            }
         }
+        return entries;
     }
 
 }
@@ -1,211 +1,241 @@
 package io.github.willqi.pizzamc.claims.api.claims.dao.impl;
 
-import com.zaxxer.hikari.HikariDataSource;
 import io.github.willqi.pizzamc.claims.api.claims.ChunkCoordinates;
 import io.github.willqi.pizzamc.claims.api.claims.Claim;
 import io.github.willqi.pizzamc.claims.api.claims.dao.ClaimsDao;
+import io.github.willqi.pizzamc.claims.api.daosources.SQLReplicaRouter;
+import io.github.willqi.pizzamc.claims.api.daosources.SQLStatementRunner;
+import io.github.willqi.pizzamc.claims.api.daosources.SQLTableVersion;
 import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
 
-import java.sql.*;
-import java.util.Optional;
-import java.util.UUID;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 public class SQLClaimsDao implements ClaimsDao {
 
-    private static final String STMT_CREATE_CLAIMS_TABLE = "CREATE TABLE IF NOT EXISTS claims (" +
-            "world_uuid VARCHAR(36) NOT NULL," +
+    private static final String STMT_CREATE_CLAIMS_TABLE = "CREATE TABLE IF NOT EXISTS claims_v2 (" +
+            "world_uuid BINARY(16) NOT NULL," +
             "x INT NOT NULL," +
             "z INT NOT NULL," +
-            "owner_uuid VARCHAR(36)," +
+            "owner_uuid BINARY(16)," +
             "flags INT NOT NULL," +
             "PRIMARY KEY(world_uuid, x, z)" +
             ")";
+    // Used to find and list the claims of a player without scanning the table
+    private static final String OWNER_INDEX = "claims_owner_uuid";
+    private static final String STMT_CREATE_OWNER_INDEX = "CREATE INDEX " + OWNER_INDEX + " ON claims_v2 (owner_uuid)";
+
+    private static final String STMT_GET_CLAIM = "SELECT owner_uuid, flags FROM claims_v2 WHERE world_uuid=? AND x=? AND z=?";
+    private static final String STMT_GET_CLAIMS_IN_REGION = "SELECT x, z, owner_uuid, flags FROM claims_v2 WHERE world_uuid=? AND x BETWEEN ? AND ? AND z BETWEEN ? AND ?";
+    private static final String STMT_GET_ALL_CLAIMS = "SELECT world_uuid, x, z, owner_uuid, flags FROM claims_v2";
+    private static final String STMT_HAS_ROWS = "SELECT 1 FROM claims_v2 LIMIT 1";
+    private static final String STMT_GET_CLAIMS_OF_OWNER = "SELECT world_uuid, x, z, owner_uuid, flags FROM claims_v2 WHERE owner_uuid=? ORDER BY world_uuid, x, z LIMIT ? OFFSET ?";
+    private static final String STMT_GET_COORDINATES_OF_OWNER = "SELECT world_uuid, x, z FROM claims_v2 WHERE owner_uuid=?";
+    private static final String STMT_INSERT_CLAIM = "INSERT INTO claims_v2 (world_uuid, x, z, owner_uuid, flags) VALUES (?, ?, ?, ?, ?)";
+    private static final String STMT_UPDATE_CLAIM = "UPDATE claims_v2 SET owner_uuid=?, flags=? WHERE world_uuid=? AND x=? AND z=?";
+    private static final String STMT_DELETE_CLAIM = "DELETE FROM claims_v2 WHERE world_uuid=? AND x=? AND z=?";
+
+    // Statements of the version 1 table, used until it was copied
+    private static final String LEGACY_STMT_GET_CLAIM = "SELECT owner_uuid, flags FROM claims WHERE world_uuid=? AND x=? AND z=?";
+    private static final String LEGACY_STMT_GET_CLAIMS_IN_REGION = "SELECT x, z, owner_uuid, flags FROM claims WHERE world_uuid=? AND x BETWEEN ? AND ? AND z BETWEEN ? AND ?";
+    private static final String LEGACY_STMT_GET_ALL_CLAIMS = "SELECT world_uuid, x, z, owner_uuid, flags FROM claims";
+    private static final String LEGACY_STMT_HAS_ROWS = "SELECT 1 FROM claims LIMIT 1";
+    private static final String LEGACY_STMT_GET_CLAIMS_OF_OWNER = "SELECT world_uuid, x, z, owner_uuid, flags FROM claims WHERE owner_uuid=? ORDER BY world_uuid, x, z LIMIT ? OFFSET ?";
+    private static final String LEGACY_STMT_GET_COORDINATES_OF_OWNER = "SELECT world_uuid, x, z FROM claims WHERE owner_uuid=?";
+    private static final String LEGACY_STMT_INSERT_CLAIM = "INSERT INTO claims (world_uuid, x, z, owner_uuid, flags) VALUES (?, ?, ?, ?, ?)";
+    private static final String LEGACY_STMT_UPDATE_CLAIM = "UPDATE claims SET owner_uuid=?, flags=? WHERE world_uuid=? AND x=? AND z=?";
+    private static final String LEGACY_STMT_DELETE_CLAIM = "DELETE FROM claims WHERE world_uuid=? AND x=? AND z=?";
+
+    // Rows fetched per round trip when streaming a whole table
+    private static final int STREAM_FETCH_SIZE = 10000;
+
+    private final SQLStatementRunner runner;
+    private final SQLReplicaRouter reads;
+    private final SQLTableVersion version;
+
+    public SQLClaimsDao(SQLStatementRunner runner) throws DaoException {
+        this(runner, SQLReplicaRouter.primaryOnly(runner), SQLTableVersion.latest());
+    }
 
-    private static final String STMT_GET_CLAIM = "SELECT owner_uuid, flags FROM claims WHERE world_uuid=? AND x=? AND z=?";
-    private static final String STMT_GET_CLAIM_COUNT = "SELECT COUNT(1) AS total FROM claims WHERE owner_uuid=?";
-    private static final String STMT_INSERT_CLAIM = "INSERT INTO claims (world_uuid, x, z, owner_uuid, flags) VALUES (?, ?, ?, ?, ?)";
-    private static final String STMT_UPDATE_CLAIM = "UPDATE claims SET owner_uuid=?, flags=? WHERE world_uuid=? AND x=? AND z=?";
-    private static final String STMT_DELETE_CLAIM = "DELETE FROM claims WHERE world_uuid=? AND x=? AND z=?";
-
-    private final HikariDataSource source;
-
-    public SQLClaimsDao(HikariDataSource source) throws SQLException {
-        this.source = source;
-        Connection connection = null;
-        Statement stmt = null;
-
-        try {
-            connection = this.source.getConnection();
-            stmt = connection.createStatement();
-            stmt.execute(STMT_CREATE_CLAIMS_TABLE);
-        } finally {
-            if (stmt != null) {
-                try { stmt.close(); } catch (SQLException ignored) {}
-            }
-            if (connection != null) {
-                try { connection.close(); } catch (SQLException ignored) {}
-            }
+    /**
+     * @param runner runner of the primary database
+     * @param reads routes claim lookups by location to a replica
+     * @param version which version of the table is read and written
+     * @throws DaoException if the table could not be created
+     */
+    public SQLClaimsDao(SQLStatementRunner runner, SQLReplicaRouter reads, SQLTableVersion version) throws DaoException {
+        this.runner = runner;
+        this.reads = reads;
+        this.version = version;
+        this.runner.execute(STMT_CREATE_CLAIMS_TABLE);
+        if (!this.runner.indexExists("claims_v2", OWNER_INDEX)) {
+            this.runner.execute(STMT_CREATE_OWNER_INDEX);
         }
     }
 
     @Override
     public Optional<Claim> getClaimByLocation(ChunkCoordinates coordinates) throws DaoException {
-        Connection connection = null;
-        PreparedStatement stmt = null;
-        ResultSet results = null;
+        boolean legacy = this.version.isReadingLegacy();
+        return this.reads.getRunner(coordinates).query(legacy ? LEGACY_STMT_GET_CLAIM : STMT_GET_CLAIM, stmt -> bindCoordinates(stmt, 1, coordinates, legacy), results -> {
+            if (results.next()) {
+                return Optional.of(readClaim(results, coordinates, legacy));
+            }
+            return Optional.empty();
+        });
+    }
 
-        Claim claim = null;
+    @Override
+    public Set<Claim> getClaimsInRegion(UUID worldUuid, int minX, int minZ, int maxX, int maxZ) throws DaoException {
+        boolean legacy = this.version.isReadingLegacy();
+        return this.runner.query(legacy ? LEGACY_STMT_GET_CLAIMS_IN_REGION : STMT_GET_CLAIMS_IN_REGION, stmt -> {
+            SQLTableVersion.setUuid(stmt, 1, worldUuid, legacy);
+            stmt.setInt(2, minX);
+            stmt.setInt(3, maxX);
+            stmt.setInt(4, minZ);
+            stmt.setInt(5, maxZ);
+        }, results -> {
+            Set<Claim> claims = new HashSet<>();
+            while (results.next()) {
+                ChunkCoordinates coordinates = new ChunkCoordinates(worldUuid, results.getInt("x"), results.getInt("z"));
+                claims.add(readClaim(results, coordinates, legacy));
+            }
+            return claims;
+        });
+    }
 
-        try {
-            connection = this.source.getConnection();
-            stmt = connection.prepareStatement(STMT_GET_CLAIM);
-            stmt.setString(1, coordinates.getWorldUUID().toString());
-            stmt.setInt(2, coordinates.getX());
-            stmt.setInt(3, coordinates.getZ());
-            results = stmt.executeQuery();
+    @Override
+    public List<ChunkCoordinates> getCoordinatesOfOwner(UUID ownerUuid) throws DaoException {
+        boolean legacy = this.version.isReadingLegacy();
+        String sql = legacy ? LEGACY_STMT_GET_COORDINATES_OF_OWNER : STMT_GET_COORDINATES_OF_OWNER;
+        return this.runner.query(sql, stmt -> SQLTableVersion.setUuid(stmt, 1, ownerUuid, legacy), results -> {
+            // World uuids are shared by most rows so only keep one instance of each
+            Map<UUID, UUID> worldUuids = new HashMap<>();
+            List<ChunkCoordinates> coordinates = new ArrayList<>();
+            while (results.next()) {
+                UUID worldUuid = worldUuids.computeIfAbsent(SQLTableVersion.getUuid(results, "world_uuid", legacy), uuid -> uuid);
+                coordinates.add(new ChunkCoordinates(worldUuid, results.getInt("x"), results.getInt("z")));
+            }
+            return coordinates;
+        });
+    }
 
-            if (results.next()) {
-                UUID worldUuid = coordinates.getWorldUUID();
-                int x = coordinates.getX();
-                int z = coordinates.getZ();
-                int flags = results.getInt("flags");
-                String ownerUuidStr = results.getString("owner_uuid");
-                if (ownerUuidStr == null) {
-                    claim = new Claim(new ChunkCoordinates(worldUuid, x, z), flags);
-                } else {
-                    claim = new Claim(new ChunkCoordinates(worldUuid, x, z), UUID.fromString(ownerUuidStr), flags);
-                }
-            }
-        } catch (SQLException exception) {
-            throw new DaoException(exception);
-        } finally {
-            if (results != null) {
-                try { results.close(); } catch (SQLException ignored) {}
-            }
-            if (stmt != null) {
-                try { stmt.close(); } catch (SQLException ignored) {}
-            }
-            if (connection != null) {
-                try { connection.close(); } catch (SQLException ignored) {}
-            }
-        }
-        return Optional.ofNullable(claim);
+    @Override
+    public List<Claim> getClaimsOfOwner(UUID ownerUuid, int offset, int limit) throws DaoException {
+        boolean legacy = this.version.isReadingLegacy();
+        return this.runner.query(legacy ? LEGACY_STMT_GET_CLAIMS_OF_OWNER : STMT_GET_CLAIMS_OF_OWNER, stmt -> {
+            SQLTableVersion.setUuid(stmt, 1, ownerUuid, legacy);
+            stmt.setInt(2, limit);
+            stmt.setInt(3, offset);
+        }, results -> {
+            List<Claim> claims = new ArrayList<>();
+            while (results.next()) {
+                UUID worldUuid = SQLTableVersion.getUuid(results, "world_uuid", legacy);
+                ChunkCoordinates coordinates = new ChunkCoordinates(worldUuid, results.getInt("x"), results.getInt("z"));
+                claims.add(readClaim(results, coordinates, legacy));
+            }
+            return claims;
+        });
     }
 
     @Override
-    public int getClaimCountOfUuid(UUID uuid) throws DaoException {
-        Connection connection = null;
-        PreparedStatement stmt = null;
-        ResultSet results = null;
-        try {
-            connection = this.source.getConnection();
-            stmt = connection.prepareStatement(STMT_GET_CLAIM_COUNT);
-            stmt.setString(1, uuid.toString());
-            results = stmt.executeQuery();
+    public void forEachClaim(Consumer<Claim> consumer) throws DaoException {
+        boolean legacy = this.version.isReadingLegacy();
+        // World uuids are shared by most rows so only keep one instance of each
+        Map<UUID, UUID> worldUuids = new HashMap<>();
+        this.runner.stream(legacy ? LEGACY_STMT_GET_ALL_CLAIMS : STMT_GET_ALL_CLAIMS, STREAM_FETCH_SIZE, results -> {
+            UUID worldUuid = worldUuids.computeIfAbsent(SQLTableVersion.getUuid(results, "world_uuid", legacy), uuid -> uuid);
+            ChunkCoordinates coordinates = new ChunkCoordinates(worldUuid, results.getInt("x"), results.getInt("z"));
+            consumer.accept(readClaim(results, coordinates, legacy));
+        });
+    }
 
-            if (results.next()) {
-                return results.getInt("total");
-            }
-        } catch (SQLException exception) {
-            throw new DaoException(exception);
-        } finally {
-            if (results != null) {
-                try { results.close(); } catch (SQLException ignored) {}
-            }
-            if (stmt != null) {
-                try { stmt.close(); } catch (SQLException ignored) {}
-            }
-            if (connection != null) {
-                try { connection.close(); } catch (SQLException ignored) {}
-            }
-        }
-        return 0;
+    @Override
+    public boolean isEmpty() throws DaoException {
+        String sql = this.version.isReadingLegacy() ? LEGACY_STMT_HAS_ROWS : STMT_HAS_ROWS;
+        return this.runner.query(sql, stmt -> {}, results -> !results.next());
     }
 
     @Override
     public void insert(Claim claim) throws DaoException {
-        Connection connection = null;
-        PreparedStatement stmt = null;
-        try {
-            connection = this.source.getConnection();
-            stmt = connection.prepareStatement(STMT_INSERT_CLAIM);
-            stmt.setString(1, claim.getCoordinates().getWorldUUID().toString());
-            stmt.setInt(2, claim.getCoordinates().getX());
-            stmt.setInt(3, claim.getCoordinates().getZ());
-            Optional<UUID> claimOwner = claim.getOwner();
-            if (claimOwner.isPresent()) {
-                stmt.setString(4, claimOwner.get().toString());
-            } else {
-                stmt.setString(4, null);
-            }
-            stmt.setInt(5, claim.getFlags());
-            stmt.execute();
-
-        } catch (SQLException exception) {
-            throw new DaoException(exception);
-        } finally {
-            if (stmt != null) {
-                try { stmt.close(); } catch (SQLException ignored) {}
-            }
-            if (connection != null) {
-                try { connection.close(); } catch (SQLException ignored) {}
-            }
-        }
+        this.insertAll(Collections.singletonList(claim));
     }
 
     @Override
     public void update(Claim claim) throws DaoException {
-        Connection connection = null;
-        PreparedStatement stmt = null;
-        try {
-            connection = this.source.getConnection();
-            stmt = connection.prepareStatement(STMT_UPDATE_CLAIM);
-            Optional<UUID> claimOwner = claim.getOwner();
-            if (claimOwner.isPresent()) {
-                stmt.setString(1, claimOwner.get().toString());
-            } else {
-                stmt.setString(1, null);
-            }
-            stmt.setInt(2, claim.getFlags());
-            stmt.setString(3, claim.getCoordinates().getWorldUUID().toString());
-            stmt.setInt(4, claim.getCoordinates().getX());
-            stmt.setInt(5, claim.getCoordinates().getZ());
-            stmt.execute();
-
-        } catch (SQLException exception) {
-            throw new DaoException(exception);
-        } finally {
-            if (stmt != null) {
-                try { stmt.close(); } catch (SQLException ignored) {}
-            }
-            if (connection != null) {
-                try { connection.close(); } catch (SQLException ignored) {}
-            }
-        }
+        this.updateAll(Collections.singletonList(claim));
     }
 
     @Override
     public void delete(Claim claim) throws DaoException {
-        Connection connection = null;
-        PreparedStatement stmt = null;
-        try {
-            connection = this.source.getConnection();
-            stmt = connection.prepareStatement(STMT_DELETE_CLAIM);
-            stmt.setString(1, claim.getCoordinates().getWorldUUID().toString());
-            stmt.setInt(2, claim.getCoordinates().getX());
-            stmt.setInt(3, claim.getCoordinates().getZ());
-            stmt.execute();
-
-        } catch (SQLException exception) {
-            throw new DaoException(exception);
-        } finally {
-            if (stmt != null) {
-                try { stmt.close(); } catch (SQLException ignored) {}
-            }
-            if (connection != null) {
-                try { connection.close(); } catch (SQLException ignored) {}
-            }
+        this.deleteAll(Collections.singletonList(claim));
+    }
+
+    @Override
+    public void insertAll(Collection<Claim> claims) throws DaoException {
+        this.runner.batches(this.version.batches(STMT_INSERT_CLAIM, LEGACY_STMT_INSERT_CLAIM, claims, SQLClaimsDao::bindInsert));
+        this.reads.markWritten(coordinatesOf(claims));
+    }
+
+    @Override
+    public void updateAll(Collection<Claim> claims) throws DaoException {
+        this.runner.batches(this.version.batches(STMT_UPDATE_CLAIM, LEGACY_STMT_UPDATE_CLAIM, claims, SQLClaimsDao::bindUpdate));
+        this.reads.markWritten(coordinatesOf(claims));
+    }
+
+    @Override
+    public void saveAll(Collection<Claim> inserts, Collection<Claim> updates) throws DaoException {
+        List<SQLStatementRunner.Batch<Claim>> batches = new ArrayList<>(4);
+        batches.addAll(this.version.batches(STMT_INSERT_CLAIM, LEGACY_STMT_INSERT_CLAIM, inserts, SQLClaimsDao::bindInsert));
+        batches.addAll(this.version.batches(STMT_UPDATE_CLAIM, LEGACY_STMT_UPDATE_CLAIM, updates, SQLClaimsDao::bindUpdate));
+        this.runner.batches(batches);
+        this.reads.markWritten(coordinatesOf(inserts));
+        this.reads.markWritten(coordinatesOf(updates));
+    }
+
+    @Override
+    public void deleteAll(Collection<Claim> claims) throws DaoException {
+        this.runner.batches(this.version.batches(STMT_DELETE_CLAIM, LEGACY_STMT_DELETE_CLAIM, claims,
+                (stmt, claim, legacy) -> bindCoordinates(stmt, 1, claim.getCoordinates(), legacy)));
+        this.reads.markWritten(coordinatesOf(claims));
+    }
+
+    private static List<ChunkCoordinates> coordinatesOf(Collection<Claim> claims) {
+        return claims.stream().map(Claim::getCoordinates).collect(Collectors.toList());
+    }
+
+    private static Claim readClaim(ResultSet results, ChunkCoordinates coordinates, boolean legacy) throws SQLException {
+        int flags = results.getInt("flags");
+        UUID ownerUuid = SQLTableVersion.getUuid(results, "owner_uuid", legacy);
+        if (ownerUuid == null) {
+            return new Claim(coordinates, flags);
+        } else {
+            return new Claim(coordinates, ownerUuid, flags);
         }
     }
 
+    private static void bindInsert(PreparedStatement stmt, Claim claim, boolean legacy) throws SQLException {
+        bindCoordinates(stmt, 1, claim.getCoordinates(), legacy);
+        SQLTableVersion.setUuid(stmt, 4, claim.getOwner().orElse(null), legacy);
+        stmt.setInt(5, claim.getFlags());
+    }
+
+    private static void bindUpdate(PreparedStatement stmt, Claim claim, boolean legacy) throws SQLException {
+        SQLTableVersion.setUuid(stmt, 1, claim.getOwner().orElse(null), legacy);
+        stmt.setInt(2, claim.getFlags());
+        bindCoordinates(stmt, 3, claim.getCoordinates(), legacy);
+    }
+
+    /**
+     * Set the world uuid, x and z parameters starting at index
+     */
+    private static void bindCoordinates(PreparedStatement stmt, int index, ChunkCoordinates coordinates, boolean legacy) throws SQLException {
+        SQLTableVersion.setUuid(stmt, index, coordinates.getWorldUUID(), legacy);
+        stmt.setInt(index + 1, coordinates.getX());
+        stmt.setInt(index + 2, coordinates.getZ());
+    }
+
 }
@@ -0,0 +1,116 @@
+package io.github.willqi.pizzamc.claims.api.claims.dao.impl;
+
+import io.github.willqi.pizzamc.claims.api.claims.ClaimHelper;
+import io.github.willqi.pizzamc.claims.api.claims.dao.OwnerTrustsDao;
+import io.github.willqi.pizzamc.claims.api.daosources.SQLStatementRunner;
+import io.github.willqi.pizzamc.claims.api.daosources.UuidBytes;
+import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.BiConsumer;
+
+public class SQLOwnerTrustsDao implements OwnerTrustsDao {
+
+    private static final String STMT_CREATE_TRUSTS_TABLE = "CREATE TABLE IF NOT EXISTS owner_trusts (" +
+            "owner_uuid BINARY(16) NOT NULL," +
+            "helper_uuid BINARY(16) NOT NULL," +
+            "permissions INT NOT NULL," +
+            "PRIMARY KEY(owner_uuid, helper_uuid)" +
+            ")";
+
+    private static final String STMT_GET_TRUSTS = "SELECT helper_uuid, permissions FROM owner_trusts WHERE owner_uuid=?";
+    private static final String STMT_GET_ALL_TRUSTS = "SELECT owner_uuid, helper_uuid, permissions FROM owner_trusts";
+    private static final String STMT_HAS_ROWS = "SELECT 1 FROM owner_trusts LIMIT 1";
+    private static final String STMT_INSERT_TRUST = "INSERT INTO owner_trusts (owner_uuid, helper_uuid, permissions) VALUES (?, ?, ?)";
+    private static final String STMT_UPDATE_TRUST = "UPDATE owner_trusts SET permissions=? WHERE owner_uuid=? AND helper_uuid=?";
+    private static final String STMT_DELETE_TRUST = "DELETE FROM owner_trusts WHERE owner_uuid=? AND helper_uuid=?";
+
+    // Rows fetched per round trip when streaming a whole table
+    private static final int STREAM_FETCH_SIZE = 10000;
+
+    private final SQLStatementRunner runner;
+
+    public SQLOwnerTrustsDao(SQLStatementRunner runner) throws DaoException {
+        this.runner = runner;
+        this.runner.execute(STMT_CREATE_TRUSTS_TABLE);
+    }
+
+    @Override
+    public Set<ClaimHelper> getTrustsOfOwner(UUID ownerUuid) throws DaoException {
+        return this.runner.query(STMT_GET_TRUSTS, stmt -> stmt.setBytes(1, UuidBytes.toBytes(ownerUuid)), results -> {
+            Set<ClaimHelper> trusts = new HashSet<>();
+            while (results.next()) {
+                trusts.add(readTrust(results));
+            }
+            return trusts;
+        });
+    }
+
+    @Override
+    public void forEachTrust(BiConsumer<UUID, ClaimHelper> consumer) throws DaoException {
+        this.runner.stream(STMT_GET_ALL_TRUSTS, STREAM_FETCH_SIZE, results ->
+                consumer.accept(UuidBytes.fromBytes(results.getBytes("owner_uuid")), readTrust(results)));
+    }
+
+    @Override
+    public boolean isEmpty() throws DaoException {
+        return this.runner.query(STMT_HAS_ROWS, stmt -> {}, results -> !results.next());
+    }
+
+    @Override
+    public void insert(UUID ownerUuid, ClaimHelper helper) throws DaoException {
+        this.runner.update(STMT_INSERT_TRUST, stmt -> bindInsert(stmt, ownerUuid, helper));
+    }
+
+    @Override
+    public void insertAll(Map<UUID, ? extends Collection<ClaimHelper>> trusts) throws DaoException {
+        List<Map.Entry<UUID, ClaimHelper>> entries = new ArrayList<>();
+        for (Map.Entry<UUID, ? extends Collection<ClaimHelper>> entry : trusts.entrySet()) {
+            for (ClaimHelper helper : entry.getValue()) {
+                entries.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), helper));
+            }
+        }
+        if (entries.isEmpty()) {
+            return;
+        }
+        this.runner.batch(STMT_INSERT_TRUST, entries, (stmt, entry) -> bindInsert(stmt, entry.getKey(), entry.getValue()));
+    }
+
+    @Override
+    public void update(UUID ownerUuid, ClaimHelper helper) throws DaoException {
+        this.runner.update(STMT_UPDATE_TRUST, stmt -> {
+            stmt.setInt(1, helper.getPermissions());
+            stmt.setBytes(2, UuidBytes.toBytes(ownerUuid));
+            stmt.setBytes(3, UuidBytes.toBytes(helper.getUuid()));
+        });
+    }
+
+    @Override
+    public void delete(UUID ownerUuid, UUID helperUuid) throws DaoException {
+        this.runner.update(STMT_DELETE_TRUST, stmt -> {
+            stmt.setBytes(1, UuidBytes.toBytes(ownerUuid));
+            stmt.setBytes(2, UuidBytes.toBytes(helperUuid));
+        });
+    }
+
+    private static void bindInsert(PreparedStatement stmt, UUID ownerUuid, ClaimHelper helper) throws SQLException {
+        stmt.setBytes(1, UuidBytes.toBytes(ownerUuid));
+        stmt.setBytes(2, UuidBytes.toBytes(helper.getUuid()));
+        stmt.setInt(3, helper.getPermissions());
+    }
+
+    private static ClaimHelper readTrust(ResultSet results) throws SQLException {
+        return new ClaimHelper(UuidBytes.fromBytes(results.getBytes("helper_uuid")), results.getInt("permissions"));
+    }
+
+}
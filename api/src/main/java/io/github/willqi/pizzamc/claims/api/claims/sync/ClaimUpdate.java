@@ -0,0 +1,171 @@
+package io.github.willqi.pizzamc.claims.api.claims.sync;
+
+import io.github.willqi.pizzamc.claims.api.claims.ChunkCoordinates;
+import io.github.willqi.pizzamc.claims.api.claims.Claim;
+import io.github.willqi.pizzamc.claims.api.claims.ClaimHelper;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * A change made to the claims cache of one server that other servers apply to their own caches.
+ * Updates carry the new state of what changed instead of only invalidating it, so other servers do not need to query it again.
+ */
+public class ClaimUpdate {
+
+    private static final int HAS_COORDINATES = 1;
+    private static final int HAS_OWNER = 1 << 1;
+    private static final int HAS_PREVIOUS_OWNER = 1 << 2;
+    private static final int HAS_HELPER = 1 << 3;
+
+    private final Type type;
+    private final ChunkCoordinates coordinates;
+    private final UUID owner;
+    private final UUID previousOwner;
+    private final UUID helperUuid;
+    private final int value;
+
+    private ClaimUpdate(Type type, ChunkCoordinates coordinates, UUID owner, UUID previousOwner, UUID helperUuid, int value) {
+        this.type = type;
+        this.coordinates = coordinates;
+        this.owner = owner;
+        this.previousOwner = previousOwner;
+        this.helperUuid = helperUuid;
+        this.value = value;
+    }
+
+    /**
+     * @param claim the new state of the claim. A claim without owner and flags was deleted
+     * @param previousOwner owner of the claim before the change or null if it had none
+     * @return the update
+     */
+    public static ClaimUpdate claim(Claim claim, UUID previousOwner) {
+        return new ClaimUpdate(Type.CLAIM, claim.getCoordinates(), claim.getOwner().orElse(null), previousOwner, null, claim.getFlags());
+    }
+
+    /**
+     * @param coordinates
+     * @param helper the new state of the helper. A helper without permissions was deleted
+     * @return the update
+     */
+    public static ClaimUpdate helper(ChunkCoordinates coordinates, ClaimHelper helper) {
+        return new ClaimUpdate(Type.HELPER, coordinates, null, null, helper.getUuid(), helper.getPermissions());
+    }
+
+    /**
+     * @param ownerUuid
+     * @param helper the new state of the helper on every claim of the owner. A helper without permissions was deleted
+     * @return the update
+     */
+    public static ClaimUpdate ownerHelper(UUID ownerUuid, ClaimHelper helper) {
+        return new ClaimUpdate(Type.OWNER_HELPER, null, ownerUuid, null, helper.getUuid(), helper.getPermissions());
+    }
+
+    /**
+     * @param ownerUuid
+     * @param helper the new state of the trusted helper. A helper without permissions is no longer trusted
+     * @return the update
+     */
+    public static ClaimUpdate ownerTrust(UUID ownerUuid, ClaimHelper helper) {
+        return new ClaimUpdate(Type.OWNER_TRUST, null, ownerUuid, null, helper.getUuid(), helper.getPermissions());
+    }
+
+    public Type getType() {
+        return this.type;
+    }
+
+    /**
+     * @return the chunk of a CLAIM or HELPER update
+     */
+    public ChunkCoordinates getCoordinates() {
+        return this.coordinates;
+    }
+
+    /**
+     * @return the new owner of a CLAIM update or the owner of an OWNER_HELPER or OWNER_TRUST update
+     */
+    public Optional<UUID> getOwner() {
+        return Optional.ofNullable(this.owner);
+    }
+
+    /**
+     * @return the owner of the claim before a CLAIM update
+     */
+    public Optional<UUID> getPreviousOwner() {
+        return Optional.ofNullable(this.previousOwner);
+    }
+
+    /**
+     * @return the new state of the claim of a CLAIM update
+     */
+    public Claim getClaim() {
+        return new Claim(this.coordinates, this.owner, this.value);
+    }
+
+    /**
+     * @return the new state of the helper of a HELPER, OWNER_HELPER or OWNER_TRUST update. Deleted helpers have no permissions
+     */
+    public ClaimHelper getHelper() {
+        return new ClaimHelper(this.helperUuid, this.value);
+    }
+
+    public void write(DataOutput output) throws IOException {
+        output.writeByte(this.type.ordinal());
+        output.writeByte((this.coordinates != null ? HAS_COORDINATES : 0)
+                | (this.owner != null ? HAS_OWNER : 0)
+                | (this.previousOwner != null ? HAS_PREVIOUS_OWNER : 0)
+                | (this.helperUuid != null ? HAS_HELPER : 0));
+        if (this.coordinates != null) {
+            writeUuid(output, this.coordinates.getWorldUUID());
+            output.writeInt(this.coordinates.getX());
+            output.writeInt(this.coordinates.getZ());
+        }
+        if (this.owner != null) {
+            writeUuid(output, this.owner);
+        }
+        if (this.previousOwner != null) {
+            writeUuid(output, this.previousOwner);
+        }
+        if (this.helperUuid != null) {
+            writeUuid(output, this.helperUuid);
+        }
+        output.writeInt(this.value);
+    }
+
+    public static ClaimUpdate read(DataInput input) throws IOException {
+        int typeId = input.readUnsignedByte();
+        if (typeId >= Type.values().length) {
+            throw new IOException("Unknown claim update type " + typeId);
+        }
+        int present = input.readUnsignedByte();
+        ChunkCoordinates coordinates = (present & HAS_COORDINATES) != 0 ? new ChunkCoordinates(readUuid(input), input.readInt(), input.readInt()) : null;
+        UUID owner = (present & HAS_OWNER) != 0 ? readUuid(input) : null;
+        UUID previousOwner = (present & HAS_PREVIOUS_OWNER) != 0 ? readUuid(input) : null;
+        UUID helperUuid = (present & HAS_HELPER) != 0 ? readUuid(input) : null;
+        return new ClaimUpdate(Type.values()[typeId], coordinates, owner, previousOwner, helperUuid, input.readInt());
+    }
+
+    private static void writeUuid(DataOutput output, UUID uuid) throws IOException {
+        output.writeLong(uuid.getMostSignificantBits());
+        output.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(DataInput input) throws IOException {
+        return new UUID(input.readLong(), input.readLong());
+    }
+
+    public enum Type {
+        // The claim of a chunk changed
+        CLAIM,
+        // A helper of a chunk changed
+        HELPER,
+        // A helper changed on every claim of an owner
+        OWNER_HELPER,
+        // A helper trusted on every claim of an owner changed
+        OWNER_TRUST
+    }
+
+}
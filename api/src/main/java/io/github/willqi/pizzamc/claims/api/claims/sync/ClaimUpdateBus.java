@@ -0,0 +1,35 @@
+package io.github.willqi.pizzamc.claims.api.claims.sync;
+
+import java.util.function.Consumer;
+
+/**
+ * Carries {@link ClaimUpdate}s between the ClaimsManagers of servers sharing the same claims.
+ * Implementations decide how updates reach the other servers.
+ */
+public interface ClaimUpdateBus {
+
+    /**
+     * Send an update to every other server.
+     * Called while claims are changed, possibly from the main thread, so this must not block.
+     * @param update
+     */
+    void publish(ClaimUpdate update);
+
+    /**
+     * Receive the updates published by other servers. Updates published by this bus are not received.
+     * @param listener called with every update, possibly from another thread
+     */
+    void subscribe(Consumer<ClaimUpdate> listener);
+
+    /**
+     * Send the published updates that are still pending without waiting for the bus to send them on its own.
+     * Like publish, this must not block.
+     */
+    default void flush() {}
+
+    /**
+     * Stop sending and receiving updates
+     */
+    void close();
+
+}
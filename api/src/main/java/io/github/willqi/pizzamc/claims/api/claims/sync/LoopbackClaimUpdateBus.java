@@ -0,0 +1,53 @@
+package io.github.willqi.pizzamc.claims.api.claims.sync;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Delivers updates to the other buses connected to it within the same process, on the publishing thread.
+ * Used to run several ClaimsManagers side by side, such as in tests.
+ */
+public class LoopbackClaimUpdateBus implements ClaimUpdateBus {
+
+    private final List<LoopbackClaimUpdateBus> connectedBuses;
+    private volatile Consumer<ClaimUpdate> listener;
+
+    public LoopbackClaimUpdateBus() {
+        this(new CopyOnWriteArrayList<>());
+    }
+
+    private LoopbackClaimUpdateBus(List<LoopbackClaimUpdateBus> connectedBuses) {
+        this.connectedBuses = connectedBuses;
+        this.connectedBuses.add(this);
+    }
+
+    /**
+     * Create a bus for another server that exchanges updates with this one
+     * @return the new bus
+     */
+    public LoopbackClaimUpdateBus connect() {
+        return new LoopbackClaimUpdateBus(this.connectedBuses);
+    }
+
+    @Override
+    public void publish(ClaimUpdate update) {
+        for (LoopbackClaimUpdateBus bus : this.connectedBuses) {
+            Consumer<ClaimUpdate> busListener = bus.listener;
+            if (bus != this && busListener != null) {
+                busListener.accept(update);
+            }
+        }
+    }
+
+    @Override
+    public void subscribe(Consumer<ClaimUpdate> listener) {
+        this.listener = listener;
+    }
+
+    @Override
+    public void close() {
+        this.connectedBuses.remove(this);
+    }
+
+}
@@ -0,0 +1,237 @@
+package io.github.willqi.pizzamc.claims.api.claims.sync;
+
+import io.github.willqi.pizzamc.claims.api.daosources.SQLStatementRunner;
+import io.github.willqi.pizzamc.claims.api.daosources.UuidBytes;
+import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Exchanges updates through a table of the database the servers already share.
+ * Every poll interval, published updates are inserted in one batch and the updates inserted by other servers since the last poll are read.
+ * Rows are deleted once they are older than the retention, so a server that stops polling for longer misses updates.
+ * Updates that fail to be sent stay queued in order and are sent again by the next poll or flush.
+ */
+public class SQLClaimUpdateBus implements ClaimUpdateBus {
+
+    public static final long DEFAULT_POLL_INTERVAL_MILLIS = 500;
+    public static final long DEFAULT_RETENTION_MILLIS = 60000;
+
+    private static final String STMT_CREATE_UPDATES_TABLE = "CREATE TABLE IF NOT EXISTS claim_updates (" +
+            "id BIGINT NOT NULL AUTO_INCREMENT," +
+            "origin BINARY(16) NOT NULL," +
+            "created_at BIGINT NOT NULL," +
+            "payload VARBINARY(128) NOT NULL," +
+            "PRIMARY KEY(id)" +
+            ")";
+    private static final String STMT_GET_LAST_ID = "SELECT MAX(id) AS last_id FROM claim_updates";
+    private static final String STMT_GET_UPDATES = "SELECT id, origin, payload FROM claim_updates WHERE id > ? ORDER BY id LIMIT ?";
+    private static final String STMT_INSERT_UPDATE = "INSERT INTO claim_updates (origin, created_at, payload) VALUES (?, ?, ?)";
+    private static final String STMT_DELETE_OLD_UPDATES = "DELETE FROM claim_updates WHERE created_at < ?";
+
+    // Rows read and written per poll
+    private static final int BATCH_SIZE = 1000;
+
+    // Ids are assigned when rows are inserted but become visible when their transaction commits, which can be out of order.
+    // Rows after a missing id are read again until the missing id shows up or this long has passed.
+    private static final long GAP_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    private final SQLStatementRunner runner;
+    private final long retentionMillis;
+    private final Consumer<Exception> errorHandler;
+    private final UUID origin = UUID.randomUUID();
+
+    private final Deque<byte[]> pendingUpdates = new ConcurrentLinkedDeque<>();
+    private volatile Consumer<ClaimUpdate> listener;
+
+    // Only used by the poll thread
+    private long lastContiguousId;
+    private final TreeSet<Long> receivedIds = new TreeSet<>();
+    private long gapSince;
+    private long lastPruneMillis;
+
+    private final ScheduledExecutorService pollScheduler;
+
+    /**
+     * @param runner runner of the primary database
+     * @param pollIntervalMillis how often updates are sent and received
+     * @param retentionMillis how long rows are kept before they are deleted
+     * @param errorHandler called when updates could not be sent or received
+     * @throws DaoException if the table could not be created
+     */
+    public SQLClaimUpdateBus(SQLStatementRunner runner, long pollIntervalMillis, long retentionMillis, Consumer<Exception> errorHandler) throws DaoException {
+        this.runner = runner;
+        this.retentionMillis = retentionMillis;
+        this.errorHandler = errorHandler;
+
+        this.runner.execute(STMT_CREATE_UPDATES_TABLE);
+        // Updates made before this server started are already in the database
+        this.lastContiguousId = this.runner.query(STMT_GET_LAST_ID, stmt -> {}, results -> results.next() ? results.getLong("last_id") : 0);
+
+        this.pollScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "PizzaMCClaims-UpdateBus");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.pollScheduler.scheduleWithFixedDelay(this::poll, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void publish(ClaimUpdate update) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try {
+            update.write(new DataOutputStream(bytes));
+        } catch (IOException exception) {
+            throw new AssertionError("Writing to a byte array failed", exception);
+        }
+        this.pendingUpdates.add(bytes.toByteArray());
+    }
+
+    @Override
+    public void subscribe(Consumer<ClaimUpdate> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Send the pending updates on the poll thread
+     */
+    @Override
+    public void flush() {
+        try {
+            this.pollScheduler.execute(() -> {
+                try {
+                    this.sendPendingUpdates();
+                } catch (DaoException | RuntimeException exception) {
+                    this.errorHandler.accept(exception);
+                }
+            });
+        } catch (RejectedExecutionException exception) {
+            // Closed. The pending updates are sent by close
+        }
+    }
+
+    /**
+     * Stop polling and send the updates that are still pending
+     */
+    @Override
+    public void close() {
+        this.pollScheduler.shutdown();
+        try {
+            this.pollScheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            this.sendPendingUpdates();
+        } catch (DaoException exception) {
+            this.errorHandler.accept(exception);
+        }
+    }
+
+    private void poll() {
+        // Exceptions are handled here since an exception thrown by a scheduled task cancels it
+        try {
+            this.sendPendingUpdates();
+        } catch (DaoException | RuntimeException exception) {
+            this.errorHandler.accept(exception);
+        }
+        try {
+            this.receiveUpdates();
+            long now = System.currentTimeMillis();
+            if (now - this.lastPruneMillis >= this.retentionMillis) {
+                this.lastPruneMillis = now;
+                this.runner.update(STMT_DELETE_OLD_UPDATES, stmt -> stmt.setLong(1, now - this.retentionMillis));
+            }
+        } catch (DaoException | RuntimeException exception) {
+            this.errorHandler.accept(exception);
+        }
+    }
+
+    private void sendPendingUpdates() throws DaoException {
+        while (!this.pendingUpdates.isEmpty()) {
+            List<byte[]> batch = new ArrayList<>();
+            byte[] payload;
+            while (batch.size() < BATCH_SIZE && (payload = this.pendingUpdates.poll()) != null) {
+                batch.add(payload);
+            }
+            long now = System.currentTimeMillis();
+            byte[] origin = UuidBytes.toBytes(this.origin);
+            try {
+                this.runner.batch(STMT_INSERT_UPDATE, batch, (stmt, item) -> {
+                    stmt.setBytes(1, origin);
+                    stmt.setLong(2, now);
+                    stmt.setBytes(3, item);
+                });
+            } catch (DaoException | RuntimeException exception) {
+                // Put back ahead of the updates published since so that other servers apply them in order
+                for (int i = batch.size() - 1; i >= 0; i--) {
+                    this.pendingUpdates.addFirst(batch.get(i));
+                }
+                throw exception;
+            }
+        }
+    }
+
+    private void receiveUpdates() throws DaoException {
+        List<ClaimUpdate> updates = new ArrayList<>();
+        this.runner.query(STMT_GET_UPDATES, stmt -> {
+            stmt.setLong(1, this.lastContiguousId);
+            stmt.setInt(2, BATCH_SIZE);
+        }, results -> {
+            while (results.next()) {
+                long id = results.getLong("id");
+                if (!this.receivedIds.add(id) || this.origin.equals(UuidBytes.fromBytes(results.getBytes("origin")))) {
+                    continue;
+                }
+                try {
+                    updates.add(ClaimUpdate.read(new DataInputStream(new ByteArrayInputStream(results.getBytes("payload")))));
+                } catch (IOException exception) {
+                    this.errorHandler.accept(new IOException("Skipped malformed claim update " + id, exception));
+                }
+            }
+            return null;
+        });
+
+        this.advanceLastContiguousId();
+        if (!this.receivedIds.isEmpty()) {
+            long now = System.nanoTime();
+            if (this.gapSince == 0) {
+                this.gapSince = now;
+            } else if (now - this.gapSince >= GAP_TIMEOUT_NANOS) {
+                // The missing ids were rolled back or skipped by the database
+                this.lastContiguousId = this.receivedIds.first() - 1;
+                this.advanceLastContiguousId();
+                this.gapSince = this.receivedIds.isEmpty() ? 0 : now;
+            }
+        } else {
+            this.gapSince = 0;
+        }
+
+        Consumer<ClaimUpdate> currentListener = this.listener;
+        if (currentListener != null) {
+            updates.forEach(currentListener);
+        }
+    }
+
+    private void advanceLastContiguousId() {
+        while (!this.receivedIds.isEmpty() && this.receivedIds.first() == this.lastContiguousId + 1) {
+            this.lastContiguousId = this.receivedIds.pollFirst();
+        }
+    }
+
+}
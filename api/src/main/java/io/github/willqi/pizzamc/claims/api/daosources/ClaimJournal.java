@@ -0,0 +1,409 @@
+package io.github.willqi.pizzamc.claims.api.daosources;
+
+import io.github.willqi.pizzamc.claims.api.claims.ChunkCoordinates;
+import io.github.willqi.pizzamc.claims.api.claims.Claim;
+import io.github.willqi.pizzamc.claims.api.claims.ClaimHelper;
+import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Memory mapped append-only journal of claim and helper changes with fixed size records.
+ *
+ * The state rebuilt from the journal is the snapshot file followed by the journal records of the same generation.
+ * Compacting writes a snapshot of the next generation and starts the journal over, so records of older generations
+ * left in the journal are ignored. Changes written together form a batch that is replayed all or not at all.
+ *
+ * The lock of the journal guards the state persisted through it. Appends must hold its write lock.
+ */
+public class ClaimJournal implements Closeable {
+
+    public static final String JOURNAL_FILE_NAME = "claims.journal";
+    public static final String SNAPSHOT_FILE_NAME = "claims.snapshot";
+
+    public static final int RECORD_SIZE = 64;
+
+    private static final int SNAPSHOT_MAGIC = 0x505A4353;
+    private static final int SNAPSHOT_VERSION = 1;
+    private static final int SNAPSHOT_HEADER_SIZE = 24;
+    private static final int INITIAL_CAPACITY = 1 << 20;
+
+    // Record layout
+    private static final int TYPE_OFFSET = 0;
+    private static final int FLAGS_OFFSET = 1;
+    private static final int REMAINING_OFFSET = 4;
+    private static final int GENERATION_OFFSET = 8;
+    private static final int WORLD_OFFSET = 16;
+    private static final int X_OFFSET = 32;
+    private static final int Z_OFFSET = 36;
+    private static final int SUBJECT_OFFSET = 40;
+    private static final int VALUE_OFFSET = 56;
+    private static final int CRC_OFFSET = 60;
+
+    private static final byte FLAG_HAS_SUBJECT = 1;
+
+    private final Path journalFile;
+    private final Path snapshotFile;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object compactionLock = new Object();
+    private final CRC32 crc = new CRC32();
+    private final byte[] crcBuffer = new byte[CRC_OFFSET];
+
+    private FileChannel channel;
+    private MappedByteBuffer journal;
+    // Changed by compactions, which only hold the read lock
+    private volatile long generation;
+    private volatile int recordCount;
+
+    /**
+     * @param directory directory of the journal and snapshot files
+     * @throws DaoException if the journal could not be opened
+     */
+    public ClaimJournal(Path directory) throws DaoException {
+        this.journalFile = directory.resolve(JOURNAL_FILE_NAME);
+        this.snapshotFile = directory.resolve(SNAPSHOT_FILE_NAME);
+        try {
+            this.channel = FileChannel.open(this.journalFile, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.journal = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(this.channel.size(), INITIAL_CAPACITY));
+        } catch (IOException exception) {
+            throw new DaoException("Failed to open " + this.journalFile, exception);
+        }
+    }
+
+    /**
+     * @return the lock guarding the state persisted through the journal
+     */
+    public ReadWriteLock getLock() {
+        return this.lock;
+    }
+
+    /**
+     * Read the snapshot and then every complete batch of the journal.
+     * Anything after the last complete batch is discarded. Must be called before the first append.
+     * @param consumer called with each record
+     * @throws DaoException if the snapshot is corrupt or the journal could not be read
+     */
+    public void replay(Consumer<Record> consumer) throws DaoException {
+        this.lock.writeLock().lock();
+        try {
+            this.replaySnapshot(consumer);
+
+            int batchStart = 0;
+            int index = 0;
+            int capacity = this.journal.capacity() / RECORD_SIZE;
+            while (index < capacity && this.isValid(this.journal, index * RECORD_SIZE, this.generation)) {
+                int remaining = this.journal.getInt(index * RECORD_SIZE + REMAINING_OFFSET);
+                index++;
+                if (remaining == 0) {
+                    for (int i = batchStart; i < index; i++) {
+                        consumer.accept(this.readRecord(this.journal, i * RECORD_SIZE));
+                    }
+                    batchStart = index;
+                }
+            }
+            this.recordCount = batchStart;
+            if (batchStart < capacity && !this.isEmpty(batchStart * RECORD_SIZE)) {
+                // Records of the discarded batch must not be read as part of a batch appended over them later
+                for (int offset = batchStart * RECORD_SIZE; offset < this.journal.capacity(); offset += Long.BYTES) {
+                    this.journal.putLong(offset, 0);
+                }
+                this.journal.force();
+            }
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Write records as one batch and force them to disk. The write lock of the journal must be held
+     * @param records
+     * @throws DaoException if the records could not be written
+     */
+    public void append(List<Record> records) throws DaoException {
+        if (records.isEmpty()) {
+            return;
+        }
+        try {
+            this.ensureCapacity(this.recordCount + records.size());
+        } catch (IOException exception) {
+            throw new DaoException("Failed to grow " + this.journalFile, exception);
+        }
+        for (int i = 0; i < records.size(); i++) {
+            this.writeRecord(this.journal, (this.recordCount + i) * RECORD_SIZE, records.get(i), records.size() - i - 1, this.generation);
+        }
+        this.journal.force();
+        this.recordCount += records.size();
+    }
+
+    /**
+     * Write the current state to a snapshot of the next generation and start the journal over.
+     * Reads of the state continue while the snapshot is written. Appends wait until the journal was started over.
+     * @param writer writes every stored claim and helper
+     * @throws DaoException if the snapshot could not be written
+     */
+    public void compact(SnapshotWriter writer) throws DaoException {
+        synchronized (this.compactionLock) {
+            this.lock.readLock().lock();
+            try {
+                long nextGeneration = this.generation + 1;
+                Path temporaryFile = this.snapshotFile.resolveSibling(SNAPSHOT_FILE_NAME + ".tmp");
+                try (FileChannel snapshotChannel = FileChannel.open(temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                    ByteBuffer buffer = ByteBuffer.allocate(RECORD_SIZE * 1024);
+                    buffer.position(SNAPSHOT_HEADER_SIZE);
+                    long[] count = new long[1];
+                    writer.write(record -> {
+                        if (buffer.remaining() < RECORD_SIZE) {
+                            buffer.flip();
+                            writeFully(snapshotChannel, buffer);
+                            buffer.clear();
+                        }
+                        this.writeRecord(buffer, buffer.position(), record, 0, nextGeneration);
+                        buffer.position(buffer.position() + RECORD_SIZE);
+                        count[0]++;
+                    });
+                    buffer.flip();
+                    writeFully(snapshotChannel, buffer);
+
+                    ByteBuffer header = ByteBuffer.allocate(SNAPSHOT_HEADER_SIZE);
+                    header.putInt(SNAPSHOT_MAGIC).putInt(SNAPSHOT_VERSION).putLong(nextGeneration).putLong(count[0]).flip();
+                    snapshotChannel.position(0);
+                    writeFully(snapshotChannel, header);
+                    snapshotChannel.force(true);
+                }
+                // Once moved, records of the current generation left in the journal are ignored
+                Files.move(temporaryFile, this.snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                this.generation = nextGeneration;
+                this.recordCount = 0;
+            } catch (IOException exception) {
+                throw new DaoException("Failed to write " + this.snapshotFile, exception);
+            } finally {
+                this.lock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * @return the amount of records appended since the last snapshot
+     */
+    public int getRecordCount() {
+        this.lock.readLock().lock();
+        try {
+            return this.recordCount;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the generation of the snapshot the journal applies to
+     */
+    public long getGeneration() {
+        this.lock.readLock().lock();
+        try {
+            return this.generation;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        this.lock.writeLock().lock();
+        try {
+            this.channel.close();
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    private void replaySnapshot(Consumer<Record> consumer) throws DaoException {
+        if (!Files.exists(this.snapshotFile)) {
+            return;
+        }
+        try (FileChannel snapshotChannel = FileChannel.open(this.snapshotFile, StandardOpenOption.READ)) {
+            MappedByteBuffer snapshot = snapshotChannel.map(FileChannel.MapMode.READ_ONLY, 0, snapshotChannel.size());
+            if (snapshot.capacity() < SNAPSHOT_HEADER_SIZE || snapshot.getInt(0) != SNAPSHOT_MAGIC) {
+                throw new DaoException(this.snapshotFile + " is not a claim snapshot");
+            }
+            if (snapshot.getInt(4) != SNAPSHOT_VERSION) {
+                throw new DaoException("Unsupported claim snapshot version " + snapshot.getInt(4));
+            }
+            long snapshotGeneration = snapshot.getLong(8);
+            long count = snapshot.getLong(16);
+            if (snapshot.capacity() != SNAPSHOT_HEADER_SIZE + count * RECORD_SIZE) {
+                throw new DaoException(this.snapshotFile + " is truncated");
+            }
+            for (int offset = SNAPSHOT_HEADER_SIZE; offset < snapshot.capacity(); offset += RECORD_SIZE) {
+                // Snapshots are moved into place once complete so a bad record means the file was damaged
+                if (!this.isValid(snapshot, offset, snapshotGeneration)) {
+                    throw new DaoException(this.snapshotFile + " is corrupt at record " + (offset - SNAPSHOT_HEADER_SIZE) / RECORD_SIZE);
+                }
+                consumer.accept(this.readRecord(snapshot, offset));
+            }
+            this.generation = snapshotGeneration;
+        } catch (IOException exception) {
+            throw new DaoException("Failed to read " + this.snapshotFile, exception);
+        }
+    }
+
+    private void ensureCapacity(int records) throws IOException {
+        long required = (long)records * RECORD_SIZE;
+        if (required <= this.journal.capacity()) {
+            return;
+        }
+        long capacity = this.journal.capacity();
+        while (capacity < required) {
+            capacity *= 2;
+        }
+        if (capacity > Integer.MAX_VALUE) {
+            throw new IOException("The journal can not grow past " + Integer.MAX_VALUE + " bytes");
+        }
+        this.journal.force();
+        this.journal = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    private boolean isValid(ByteBuffer buffer, int offset, long expectedGeneration) {
+        int type = buffer.get(offset + TYPE_OFFSET);
+        if (type < 1 || type > Record.Type.values().length || buffer.getLong(offset + GENERATION_OFFSET) != expectedGeneration) {
+            return false;
+        }
+        return buffer.getInt(offset + CRC_OFFSET) == this.checksum(buffer, offset);
+    }
+
+    private boolean isEmpty(int offset) {
+        for (int i = 0; i < RECORD_SIZE; i += Long.BYTES) {
+            if (this.journal.getLong(offset + i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int checksum(ByteBuffer buffer, int offset) {
+        for (int i = 0; i < CRC_OFFSET; i++) {
+            this.crcBuffer[i] = buffer.get(offset + i);
+        }
+        this.crc.reset();
+        this.crc.update(this.crcBuffer, 0, CRC_OFFSET);
+        return (int)this.crc.getValue();
+    }
+
+    private Record readRecord(ByteBuffer buffer, int offset) {
+        UUID worldUuid = new UUID(buffer.getLong(offset + WORLD_OFFSET), buffer.getLong(offset + WORLD_OFFSET + Long.BYTES));
+        UUID subject = null;
+        if ((buffer.get(offset + FLAGS_OFFSET) & FLAG_HAS_SUBJECT) != 0) {
+            subject = new UUID(buffer.getLong(offset + SUBJECT_OFFSET), buffer.getLong(offset + SUBJECT_OFFSET + Long.BYTES));
+        }
+        ChunkCoordinates coordinates = new ChunkCoordinates(worldUuid, buffer.getInt(offset + X_OFFSET), buffer.getInt(offset + Z_OFFSET));
+        return new Record(Record.Type.values()[buffer.get(offset + TYPE_OFFSET) - 1], coordinates, subject, buffer.getInt(offset + VALUE_OFFSET));
+    }
+
+    private void writeRecord(ByteBuffer buffer, int offset, Record record, int remaining, long recordGeneration) {
+        buffer.put(offset + TYPE_OFFSET, (byte)(record.getType().ordinal() + 1));
+        buffer.put(offset + FLAGS_OFFSET, record.getSubject() != null ? FLAG_HAS_SUBJECT : 0);
+        buffer.putShort(offset + FLAGS_OFFSET + 1, (short)0);
+        buffer.putInt(offset + REMAINING_OFFSET, remaining);
+        buffer.putLong(offset + GENERATION_OFFSET, recordGeneration);
+        buffer.putLong(offset + WORLD_OFFSET, record.getCoordinates().getWorldUUID().getMostSignificantBits());
+        buffer.putLong(offset + WORLD_OFFSET + Long.BYTES, record.getCoordinates().getWorldUUID().getLeastSignificantBits());
+        buffer.putInt(offset + X_OFFSET, record.getCoordinates().getX());
+        buffer.putInt(offset + Z_OFFSET, record.getCoordinates().getZ());
+        buffer.putLong(offset + SUBJECT_OFFSET, record.getSubject() != null ? record.getSubject().getMostSignificantBits() : 0);
+        buffer.putLong(offset + SUBJECT_OFFSET + Long.BYTES, record.getSubject() != null ? record.getSubject().getLeastSignificantBits() : 0);
+        buffer.putInt(offset + VALUE_OFFSET, record.getValue());
+        buffer.putInt(offset + CRC_OFFSET, this.checksum(buffer, offset));
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * A change to a claim or helper
+     */
+    public static class Record {
+
+        private final Type type;
+        private final ChunkCoordinates coordinates;
+        private final UUID subject;
+        private final int value;
+
+        private Record(Type type, ChunkCoordinates coordinates, UUID subject, int value) {
+            this.type = type;
+            this.coordinates = coordinates;
+            this.subject = subject;
+            this.value = value;
+        }
+
+        public static Record putClaim(Claim claim) {
+            return new Record(Type.PUT_CLAIM, claim.getCoordinates(), claim.getOwner().orElse(null), claim.getFlags());
+        }
+
+        public static Record deleteClaim(ChunkCoordinates coordinates) {
+            return new Record(Type.DELETE_CLAIM, coordinates, null, 0);
+        }
+
+        public static Record putHelper(ChunkCoordinates coordinates, ClaimHelper helper) {
+            return new Record(Type.PUT_HELPER, coordinates, helper.getUuid(), helper.getPermissions());
+        }
+
+        public static Record deleteHelper(ChunkCoordinates coordinates, UUID helperUuid) {
+            return new Record(Type.DELETE_HELPER, coordinates, helperUuid, 0);
+        }
+
+        public Type getType() {
+            return this.type;
+        }
+
+        public ChunkCoordinates getCoordinates() {
+            return this.coordinates;
+        }
+
+        /**
+         * @return the owner of a claim or the uuid of a helper. Null if the claim has no owner
+         */
+        public UUID getSubject() {
+            return this.subject;
+        }
+
+        /**
+         * @return the flags of a claim or the permissions of a helper
+         */
+        public int getValue() {
+            return this.value;
+        }
+
+        public enum Type {
+            PUT_CLAIM,
+            DELETE_CLAIM,
+            PUT_HELPER,
+            DELETE_HELPER
+        }
+
+    }
+
+    public interface RecordSink {
+        void append(Record record) throws IOException;
+    }
+
+    public interface SnapshotWriter {
+        void write(RecordSink sink) throws IOException;
+    }
+
+}
@@ -0,0 +1,177 @@
+package io.github.willqi.pizzamc.claims.api.daosources;
+
+import java.lang.reflect.InvocationTargetException;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Executor dedicated to blocking dao calls so that they do not run on the ForkJoinPool.commonPool
+ * which is shared with the rest of the server.
+ */
+public class DaoExecutor implements Executor {
+
+    private final ExecutorService executor;
+    private final int maxQueuedTasks;
+
+    private final AtomicInteger queuedTasks;
+    private final AtomicInteger activeTasks;
+    private final AtomicLong completedTasks;
+    private final AtomicLong rejectedTasks;
+
+    private DaoExecutor(ExecutorService executor, int maxQueuedTasks) {
+        this.executor = executor;
+        this.maxQueuedTasks = maxQueuedTasks;
+
+        this.queuedTasks = new AtomicInteger();
+        this.activeTasks = new AtomicInteger();
+        this.completedTasks = new AtomicLong();
+        this.rejectedTasks = new AtomicLong();
+    }
+
+    /**
+     * Create an executor backed by a fixed amount of platform threads.
+     * @param threads amount of threads. This should usually match the size of the connection pool
+     * @param maxQueuedTasks amount of tasks that can wait for a thread before new tasks are rejected
+     * @return the executor
+     */
+    public static DaoExecutor fixed(int threads, int maxQueuedTasks) {
+        AtomicInteger threadCount = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                threads,
+                threads,
+                60,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(maxQueuedTasks),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "PizzaMCClaims-DAO-" + threadCount.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+        );
+        executor.allowCoreThreadTimeOut(true);
+        return new DaoExecutor(executor, maxQueuedTasks);
+    }
+
+    /**
+     * Create an executor that runs every task on a new virtual thread.
+     * The amount of tasks that can run at once is only limited by maxQueuedTasks.
+     * @param maxQueuedTasks amount of tasks that can be submitted at once before new tasks are rejected
+     * @return the executor
+     * @throws UnsupportedOperationException if virtual threads are not supported by this JVM (Java 21+)
+     */
+    public static DaoExecutor virtual(int maxQueuedTasks) {
+        try {
+            ExecutorService executor = (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            return new DaoExecutor(executor, maxQueuedTasks);
+        } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException exception) {
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or higher", exception);
+        }
+    }
+
+    public static boolean isVirtualThreadsSupported() {
+        try {
+            Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return true;
+        } catch (NoSuchMethodException exception) {
+            return false;
+        }
+    }
+
+    /**
+     * Equivalent to CompletableFuture.supplyAsync except that a rejected task
+     * results in a failed future instead of an exception being thrown to the caller.
+     */
+    public static <T> CompletableFuture<T> supplyAsync(Supplier<T> supplier, Executor executor) {
+        try {
+            return CompletableFuture.supplyAsync(supplier, executor);
+        } catch (RejectedExecutionException exception) {
+            CompletableFuture<T> future = new CompletableFuture<>();
+            future.completeExceptionally(exception);
+            return future;
+        }
+    }
+
+    /**
+     * Equivalent to CompletableFuture.runAsync except that a rejected task
+     * results in a failed future instead of an exception being thrown to the caller.
+     */
+    public static CompletableFuture<Void> runAsync(Runnable runnable, Executor executor) {
+        return supplyAsync(() -> {
+            runnable.run();
+            return null;
+        }, executor);
+    }
+
+    @Override
+    public void execute(Runnable task) {
+        if (this.queuedTasks.incrementAndGet() > this.maxQueuedTasks + this.getThreadLimit()) {
+            this.queuedTasks.decrementAndGet();
+            this.rejectedTasks.incrementAndGet();
+            throw new RejectedExecutionException("Too many dao tasks are queued");
+        }
+        try {
+            this.executor.execute(() -> {
+                this.queuedTasks.decrementAndGet();
+                this.activeTasks.incrementAndGet();
+                try {
+                    task.run();
+                } finally {
+                    this.activeTasks.decrementAndGet();
+                    this.completedTasks.incrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException exception) {
+            this.queuedTasks.decrementAndGet();
+            this.rejectedTasks.incrementAndGet();
+            throw exception;
+        }
+    }
+
+    /**
+     * @return the amount of tasks waiting to be run
+     */
+    public int getQueueDepth() {
+        return this.queuedTasks.get();
+    }
+
+    /**
+     * @return the amount of tasks currently running
+     */
+    public int getActiveCount() {
+        return this.activeTasks.get();
+    }
+
+    public long getCompletedCount() {
+        return this.completedTasks.get();
+    }
+
+    /**
+     * @return the amount of tasks that were rejected because the queue was full or the executor was shutdown
+     */
+    public long getRejectedCount() {
+        return this.rejectedTasks.get();
+    }
+
+    /**
+     * Stop accepting new tasks and wait for the submitted tasks to finish
+     * @param timeout
+     * @param unit
+     * @return if all tasks finished before the timeout elapsed
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) {
+        this.executor.shutdown();
+        try {
+            return this.executor.awaitTermination(timeout, unit);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private int getThreadLimit() {
+        return this.executor instanceof ThreadPoolExecutor ? ((ThreadPoolExecutor)this.executor).getMaximumPoolSize() : 0;
+    }
+
+}
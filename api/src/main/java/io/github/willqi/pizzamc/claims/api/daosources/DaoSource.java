@@ -2,6 +2,7 @@ package io.github.willqi.pizzamc.claims.api.daosources;
 
 import io.github.willqi.pizzamc.claims.api.claims.dao.ClaimsDao;
 import io.github.willqi.pizzamc.claims.api.claims.dao.ClaimHelpersDao;
+import io.github.willqi.pizzamc.claims.api.claims.dao.OwnerTrustsDao;
 import io.github.willqi.pizzamc.claims.api.homes.dao.HomesDao;
 import io.github.willqi.pizzamc.claims.api.users.dao.UsersDao;
 
@@ -9,6 +10,7 @@ public interface DaoSource {
 
     ClaimsDao getClaimsDao();
     ClaimHelpersDao getClaimsHelperDao();
+    OwnerTrustsDao getOwnerTrustsDao();
     HomesDao getHomesDao();
     UsersDao getUsersDao();
 
@@ -0,0 +1,178 @@
+package io.github.willqi.pizzamc.claims.api.daosources;
+
+import io.github.willqi.pizzamc.claims.api.claims.dao.ClaimHelpersDao;
+import io.github.willqi.pizzamc.claims.api.claims.dao.ClaimsDao;
+import io.github.willqi.pizzamc.claims.api.claims.dao.OwnerTrustsDao;
+import io.github.willqi.pizzamc.claims.api.claims.dao.impl.LocalClaimHelpersDao;
+import io.github.willqi.pizzamc.claims.api.claims.dao.impl.LocalClaimsDao;
+import io.github.willqi.pizzamc.claims.api.claims.dao.impl.LocalOwnerTrustsDao;
+import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
+import io.github.willqi.pizzamc.claims.api.homes.dao.HomesDao;
+import io.github.willqi.pizzamc.claims.api.homes.dao.impl.LocalHomesDao;
+import io.github.willqi.pizzamc.claims.api.users.dao.UsersDao;
+import io.github.willqi.pizzamc.claims.api.users.dao.impl.LocalUsersDao;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Embedded storage for single server deployments without a database server.
+ *
+ * Every table is kept in memory, so lookups never leave the process, and every change is written to disk before it is applied.
+ * Claims and helpers are persisted through a {@link ClaimJournal}, which is compacted into a snapshot by compactClaimJournal.
+ * The other tables are persisted through a {@link LocalLog}, which is compacted when opened once it holds more records than rows.
+ */
+public class LocalDaoSource implements DaoSource {
+
+    public static final String LOG_FILE_NAME = "storage.log";
+
+    // Journals with fewer records than this are not worth compacting
+    private static final int MIN_COMPACTED_JOURNAL_RECORDS = 1024;
+
+    private final LocalLog log;
+    private final ClaimJournal claimJournal;
+
+    private final LocalClaimsDao claimsDao;
+    private final LocalClaimHelpersDao claimHelpersDao;
+    private final LocalOwnerTrustsDao ownerTrustsDao;
+    private final LocalHomesDao homesDao;
+    private final LocalUsersDao usersDao;
+
+    /**
+     * @param directory directory the files are stored in. Created if it does not exist
+     * @throws DaoException if the files could not be opened or replayed
+     */
+    public LocalDaoSource(Path directory) throws DaoException {
+        try {
+            Files.createDirectories(directory);
+        } catch (IOException exception) {
+            throw new DaoException("Failed to create " + directory, exception);
+        }
+        this.log = new LocalLog(directory.resolve(LOG_FILE_NAME));
+        try {
+            this.claimJournal = new ClaimJournal(directory);
+        } catch (DaoException exception) {
+            this.cleanUp();
+            throw exception;
+        }
+        this.claimsDao = new LocalClaimsDao(this.claimJournal);
+        this.claimHelpersDao = new LocalClaimHelpersDao(this.claimJournal, this.claimsDao);
+        this.ownerTrustsDao = new LocalOwnerTrustsDao(this.log);
+        this.homesDao = new LocalHomesDao(this.log);
+        this.usersDao = new LocalUsersDao(this.log);
+
+        List<LocalTable> tables = Arrays.asList(this.ownerTrustsDao, this.homesDao, this.usersDao);
+        try {
+            this.claimJournal.replay(record -> {
+                this.claimsDao.replay(record);
+                this.claimHelpersDao.replay(record);
+            });
+            this.compactClaimJournal();
+
+            this.log.replay(input -> {
+                byte tableId = input.readByte();
+                for (LocalTable table : tables) {
+                    if (table.getTableId() == tableId) {
+                        table.replay(input);
+                        return;
+                    }
+                }
+                throw new DaoException("Unknown table " + tableId + " in " + LOG_FILE_NAME);
+            });
+
+            long rows = 0;
+            for (LocalTable table : tables) {
+                rows += table.size();
+            }
+            // Only compacted while opening since writes hold the lock of their table while waiting on the log
+            if (this.log.getRecordCount() > rows) {
+                this.log.compact(sink -> {
+                    long records = 0;
+                    for (LocalTable table : tables) {
+                        records += table.writeSnapshot(sink);
+                    }
+                    return records;
+                });
+            }
+        } catch (DaoException exception) {
+            this.cleanUp();
+            throw exception;
+        }
+    }
+
+    @Override
+    public ClaimsDao getClaimsDao() {
+        return this.claimsDao;
+    }
+
+    @Override
+    public ClaimHelpersDao getClaimsHelperDao() {
+        return this.claimHelpersDao;
+    }
+
+    @Override
+    public OwnerTrustsDao getOwnerTrustsDao() {
+        return this.ownerTrustsDao;
+    }
+
+    @Override
+    public HomesDao getHomesDao() {
+        return this.homesDao;
+    }
+
+    @Override
+    public UsersDao getUsersDao() {
+        return this.usersDao;
+    }
+
+    /**
+     * Write the claims and helpers to a new snapshot if the claim journal holds more records than there are claims and helpers.
+     * Reads continue while the snapshot is written but writes of claims and helpers wait.
+     * @return if the journal was compacted
+     * @throws DaoException if the snapshot could not be written
+     */
+    public boolean compactClaimJournal() throws DaoException {
+        int records = this.claimJournal.getRecordCount();
+        if (records < MIN_COMPACTED_JOURNAL_RECORDS || records <= this.claimsDao.size() + this.claimHelpersDao.size()) {
+            return false;
+        }
+        this.claimJournal.compact(sink -> {
+            this.claimsDao.writeSnapshot(sink);
+            this.claimHelpersDao.writeSnapshot(sink);
+        });
+        return true;
+    }
+
+    /**
+     * @return the amount of records in the log
+     */
+    public long getLogRecordCount() {
+        return this.log.getRecordCount();
+    }
+
+    /**
+     * @return the amount of records in the claim journal since the last snapshot
+     */
+    public int getClaimJournalRecordCount() {
+        return this.claimJournal.getRecordCount();
+    }
+
+    @Override
+    public void cleanUp() {
+        // Every record was forced to disk when it was written so nothing is lost if closing fails
+        try {
+            this.log.close();
+        } catch (IOException ignored) {
+        }
+        if (this.claimJournal != null) {
+            try {
+                this.claimJournal.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+}
@@ -0,0 +1,197 @@
+package io.github.willqi.pizzamc.claims.api.daosources;
+
+import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only log of the changes made to the local daos.
+ *
+ * Every record is written with its length and checksum and forced to disk before the change is applied in memory.
+ * A record torn by a crash fails its checksum and is cut off when the log is replayed, so the changes
+ * of a record are either all replayed or not at all.
+ */
+public class LocalLog implements Closeable {
+
+    private static final int HEADER_SIZE = Integer.BYTES * 2;
+
+    private final Path file;
+    private FileChannel channel;
+    private long recordCount;
+
+    /**
+     * @param file the log file. Created if it does not exist
+     * @throws DaoException if the file could not be opened
+     */
+    public LocalLog(Path file) throws DaoException {
+        this.file = file;
+        try {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        } catch (IOException exception) {
+            throw new DaoException("Failed to open " + file, exception);
+        }
+    }
+
+    /**
+     * Read every record of the log. Anything after the last intact record is cut off.
+     * Must be called before the first append.
+     * @param reader called with the contents of each record
+     * @throws DaoException if the log could not be read or a record could not be applied
+     */
+    public synchronized void replay(RecordReader reader) throws DaoException {
+        try {
+            this.channel.position(0);
+            DataInputStream input = new DataInputStream(new BufferedInputStream(Channels.newInputStream(this.channel)));
+            long validSize = 0;
+            long fileSize = this.channel.size();
+            CRC32 crc = new CRC32();
+            while (fileSize - validSize >= HEADER_SIZE) {
+                int length = input.readInt();
+                int checksum = input.readInt();
+                if (length < 0 || length > fileSize - validSize - HEADER_SIZE) {
+                    break;
+                }
+                byte[] payload = new byte[length];
+                input.readFully(payload);
+                crc.reset();
+                crc.update(payload, 0, length);
+                if ((int)crc.getValue() != checksum) {
+                    break;
+                }
+                reader.read(new DataInputStream(new ByteArrayInputStream(payload)));
+                validSize += HEADER_SIZE + length;
+                this.recordCount++;
+            }
+            if (validSize < fileSize) {
+                this.channel.truncate(validSize);
+                this.channel.force(true);
+            }
+            this.channel.position(validSize);
+        } catch (IOException exception) {
+            throw new DaoException("Failed to replay " + this.file, exception);
+        }
+    }
+
+    /**
+     * Write a record and force it to disk
+     * @param writer writes the contents of the record
+     * @throws DaoException if the record could not be written
+     */
+    public synchronized void append(RecordWriter writer) throws DaoException {
+        ByteBuffer record;
+        try {
+            record = toRecord(writer);
+        } catch (IOException exception) {
+            throw new DaoException("Failed to serialize a record of " + this.file, exception);
+        }
+        long startPosition = -1;
+        try {
+            startPosition = this.channel.position();
+            writeFully(this.channel, record);
+            this.channel.force(false);
+            this.recordCount++;
+        } catch (IOException exception) {
+            // Records appended after a partially written record would be cut off with it when replayed
+            if (startPosition >= 0) {
+                try {
+                    this.channel.truncate(startPosition);
+                    this.channel.position(startPosition);
+                } catch (IOException truncateException) {
+                    exception.addSuppressed(truncateException);
+                }
+            }
+            throw new DaoException("Failed to write to " + this.file, exception);
+        }
+    }
+
+    /**
+     * Replace the log with one holding a single record per row written by the writer.
+     * The new log is written next to the old one and moved over it once complete so that a crash keeps either log.
+     * @param writer writes every stored row to the new log
+     * @throws DaoException if the log could not be rewritten
+     */
+    public synchronized void compact(SnapshotWriter writer) throws DaoException {
+        Path compactedFile = this.file.resolveSibling(this.file.getFileName() + ".compact");
+        try {
+            long compactedCount = 0;
+            try (FileChannel compactedChannel = FileChannel.open(compactedFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                RecordSink sink = recordWriter -> writeFully(compactedChannel, toRecord(recordWriter));
+                compactedCount = writer.write(sink);
+                compactedChannel.force(true);
+            }
+            this.channel.close();
+            Files.move(compactedFile, this.file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            this.channel = FileChannel.open(this.file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.channel.position(this.channel.size());
+            this.recordCount = compactedCount;
+        } catch (IOException exception) {
+            throw new DaoException("Failed to compact " + this.file, exception);
+        }
+    }
+
+    /**
+     * @return the amount of records in the log
+     */
+    public synchronized long getRecordCount() {
+        return this.recordCount;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        this.channel.close();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static ByteBuffer toRecord(RecordWriter writer) throws IOException {
+        ByteArrayOutputStream payload = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(payload);
+        output.writeInt(0);
+        output.writeInt(0);
+        writer.write(output);
+        output.flush();
+
+        ByteBuffer record = ByteBuffer.wrap(payload.toByteArray());
+        int length = record.limit() - HEADER_SIZE;
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), HEADER_SIZE, length);
+        record.putInt(0, length);
+        record.putInt(Integer.BYTES, (int)crc.getValue());
+        return record;
+    }
+
+    public interface RecordReader {
+        void read(DataInput input) throws IOException, DaoException;
+    }
+
+    public interface RecordWriter {
+        void write(DataOutput output) throws IOException;
+    }
+
+    public interface RecordSink {
+        void append(RecordWriter writer) throws IOException;
+    }
+
+    public interface SnapshotWriter {
+
+        /**
+         * @param sink receives the records of the new log
+         * @return the amount of records written
+         */
+        long write(RecordSink sink) throws IOException;
+
+    }
+
+}
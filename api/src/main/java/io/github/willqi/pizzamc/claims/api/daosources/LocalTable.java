@@ -0,0 +1,68 @@
+package io.github.willqi.pizzamc.claims.api.daosources;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.UUID;
+
+/**
+ * Rows of a local dao that are kept in memory and persisted through a {@link LocalLog}.
+ *
+ * Every record of the log starts with the id of the table it belongs to, followed by the changes written by the table.
+ */
+public interface LocalTable {
+
+    /**
+     * @return the id written at the start of the records of this table
+     */
+    byte getTableId();
+
+    /**
+     * Apply the changes of a record read back from the log. The table id was already read
+     * @param input
+     * @throws IOException if the record is malformed
+     */
+    void replay(DataInput input) throws IOException;
+
+    /**
+     * Write records that recreate every stored row
+     * @param sink
+     * @return the amount of records written
+     * @throws IOException
+     */
+    long writeSnapshot(LocalLog.RecordSink sink) throws IOException;
+
+    /**
+     * @return the amount of stored rows
+     */
+    int size();
+
+    static void writeUuid(DataOutput output, UUID uuid) throws IOException {
+        output.writeLong(uuid.getMostSignificantBits());
+        output.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    static UUID readUuid(DataInput input) throws IOException {
+        return new UUID(input.readLong(), input.readLong());
+    }
+
+    /**
+     * Pack chunk coordinates into a key that sorts by x and then by z
+     * @param x
+     * @param z
+     * @return the key
+     */
+    static long toSortedChunkKey(int x, int z) {
+        // The sign bit of z is flipped so that negative z values sort before positive ones
+        return ((long)x << 32) | ((z ^ Integer.MIN_VALUE) & 0xFFFFFFFFL);
+    }
+
+    static int getSortedChunkX(long key) {
+        return (int)(key >> 32);
+    }
+
+    static int getSortedChunkZ(long key) {
+        return (int)key ^ Integer.MIN_VALUE;
+    }
+
+}
@@ -5,44 +5,147 @@ import com.zaxxer.hikari.HikariDataSource;
 import com.zaxxer.hikari.pool.HikariPool;
 import io.github.willqi.pizzamc.claims.api.claims.dao.ClaimsDao;
 import io.github.willqi.pizzamc.claims.api.claims.dao.ClaimHelpersDao;
+import io.github.willqi.pizzamc.claims.api.claims.dao.OwnerTrustsDao;
 import io.github.willqi.pizzamc.claims.api.claims.dao.impl.SQLClaimsDao;
 import io.github.willqi.pizzamc.claims.api.claims.dao.impl.SQLClaimHelpersDao;
+import io.github.willqi.pizzamc.claims.api.claims.dao.impl.SQLOwnerTrustsDao;
+import io.github.willqi.pizzamc.claims.api.claims.sync.SQLClaimUpdateBus;
 import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
 import io.github.willqi.pizzamc.claims.api.homes.dao.HomesDao;
 import io.github.willqi.pizzamc.claims.api.homes.dao.impl.SQLHomesDao;
 import io.github.willqi.pizzamc.claims.api.users.dao.UsersDao;
 import io.github.willqi.pizzamc.claims.api.users.dao.impl.SQLUsersDao;
 
-import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
 
 public class SQLDaoSource implements DaoSource {
 
+    public static final int DEFAULT_POOL_SIZE = 10;
+    public static final long DEFAULT_REPLICA_STICKINESS_MILLIS = 1000;
+
+    /**
+     * MySQL driver properties set unless overridden.
+     * Prepared statements are cached per connection and prepared on the server once,
+     * and batches are sent as multi row statements.
+     */
+    public static final Map<String, String> DEFAULT_DRIVER_PROPERTIES;
+    static {
+        Map<String, String> properties = new HashMap<>();
+        properties.put("cachePrepStmts", "true");
+        properties.put("useServerPrepStmts", "true");
+        properties.put("prepStmtCacheSize", "250");
+        properties.put("prepStmtCacheSqlLimit", "2048");
+        properties.put("rewriteBatchedStatements", "true");
+        properties.put("useLocalSessionState", "true");
+        properties.put("cacheResultSetMetadata", "true");
+        properties.put("cacheServerConfiguration", "true");
+        properties.put("elideSetAutoCommits", "true");
+        properties.put("maintainTimeStats", "false");
+        // Required for MySQL to honor the fetch size of statements that stream whole tables
+        properties.put("useCursorFetch", "true");
+        DEFAULT_DRIVER_PROPERTIES = Collections.unmodifiableMap(properties);
+    }
+
     private final ClaimsDao claimsDao;
     private final ClaimHelpersDao claimHelpersDao;
+    private final OwnerTrustsDao ownerTrustsDao;
     private final HomesDao homesDao;
     private final UsersDao usersDao;
 
     private HikariDataSource source;
+    private HikariDataSource replicaSource;
+    private final SQLStatementRunner runner;
+    private final SQLSchemaMigrator migrator;
 
     public SQLDaoSource(String host, int port, String database, String username, String password) throws DaoException {
-        HikariConfig dbConfig = new HikariConfig();
-        dbConfig.setJdbcUrl("jdbc:mysql://" + host + ":" + port + "/" + database);
-        dbConfig.setUsername(username);
-        dbConfig.setPassword(password);
+        this(host, port, database, username, password, DEFAULT_POOL_SIZE);
+    }
+
+    /**
+     * @param host
+     * @param port
+     * @param database
+     * @param username
+     * @param password
+     * @param poolSize maximum amount of connections kept open to the database
+     * @throws DaoException if the connection pool or daos could not be created
+     */
+    public SQLDaoSource(String host, int port, String database, String username, String password, int poolSize) throws DaoException {
+        this(host, port, database, username, password, poolSize, Collections.emptyMap());
+    }
+
+    /**
+     * @param host
+     * @param port
+     * @param database
+     * @param username
+     * @param password
+     * @param poolSize maximum amount of connections kept open to the database
+     * @param driverProperties driver properties that override or are added to DEFAULT_DRIVER_PROPERTIES
+     * @throws DaoException if the connection pool or daos could not be created
+     */
+    public SQLDaoSource(String host, int port, String database, String username, String password, int poolSize, Map<String, String> driverProperties) throws DaoException {
+        this(host, port, database, username, password, poolSize, driverProperties, null, 0, 0, DEFAULT_REPLICA_STICKINESS_MILLIS);
+    }
+
+    /**
+     * Read claims, helpers, homes and users by their key from a replica and everything else from the primary.
+     * The replica has its own pool so that bursts of lookups, like many players joining at once,
+     * never hold the connections writes need.
+     * @param host
+     * @param port
+     * @param database
+     * @param username
+     * @param password
+     * @param poolSize maximum amount of connections kept open to the primary
+     * @param driverProperties driver properties that override or are added to DEFAULT_DRIVER_PROPERTIES
+     * @param replicaHost host of a replica of the database, or null to read everything from the primary
+     * @param replicaPort
+     * @param replicaPoolSize maximum amount of connections kept open to the replica
+     * @param stickinessMillis how long lookups of rows written by this server are read from the primary instead,
+     *                         so that they are not read from a replica that has not caught up yet
+     * @throws DaoException if the connection pools or daos could not be created
+     */
+    public SQLDaoSource(String host, int port, String database, String username, String password, int poolSize, Map<String, String> driverProperties,
+                        String replicaHost, int replicaPort, int replicaPoolSize, long stickinessMillis) throws DaoException {
         try {
-            this.source = new HikariDataSource(dbConfig);
+            this.source = new HikariDataSource(createConfig(host, port, database, username, password, poolSize, driverProperties));
         } catch (HikariPool.PoolInitializationException exception) {
             throw new DaoException("Failed to initialize hikari source.", exception);
         }
+        SQLStatementRunner runner = new SQLStatementRunner(this.source);
+        this.runner = runner;
+        SQLStatementRunner replicaRunner = runner;
+        if (replicaHost != null) {
+            HikariConfig replicaConfig = createConfig(replicaHost, replicaPort, database, username, password, replicaPoolSize, driverProperties);
+            replicaConfig.setReadOnly(true);
+            try {
+                this.replicaSource = new HikariDataSource(replicaConfig);
+            } catch (HikariPool.PoolInitializationException exception) {
+                this.source.close();
+                throw new DaoException("Failed to initialize hikari replica source.", exception);
+            }
+            replicaRunner = new SQLStatementRunner(this.replicaSource);
+        }
 
+        this.migrator = new SQLSchemaMigrator(runner);
         try {
-            this.claimsDao = new SQLClaimsDao(this.source);
-            this.claimHelpersDao = new SQLClaimHelpersDao(this.source);
-            this.homesDao = new SQLHomesDao(this.source);
-            this.usersDao = new SQLUsersDao(this.source);
-        } catch (SQLException exception) {
-            throw new DaoException("Failed to create daos", exception);
+            this.migrator.prepare();
+            this.claimsDao = new SQLClaimsDao(runner, new SQLReplicaRouter(runner, replicaRunner, stickinessMillis), this.migrator.getVersion("claims"));
+            this.claimHelpersDao = new SQLClaimHelpersDao(runner, new SQLReplicaRouter(runner, replicaRunner, stickinessMillis), this.migrator.getVersion("claim_helpers"));
+            this.ownerTrustsDao = new SQLOwnerTrustsDao(runner);
+            this.homesDao = new SQLHomesDao(runner, new SQLReplicaRouter(runner, replicaRunner, stickinessMillis), this.migrator.getVersion("homes"));
+            this.usersDao = new SQLUsersDao(runner, new SQLReplicaRouter(runner, replicaRunner, stickinessMillis), this.migrator.getVersion("users"));
+        } catch (DaoException exception) {
+            this.cleanUp();
+            throw new DaoException("Failed to create the dao tables", exception);
         }
+        // Tables of an older schema version are copied while the daos are used
+        this.migrator.start();
     }
 
     @Override
@@ -55,6 +158,11 @@ public class SQLDaoSource implements DaoSource {
         return this.claimHelpersDao;
     }
 
+    @Override
+    public OwnerTrustsDao getOwnerTrustsDao() {
+        return this.ownerTrustsDao;
+    }
+
     @Override
     public HomesDao getHomesDao() {
         return this.homesDao;
@@ -65,9 +173,62 @@ public class SQLDaoSource implements DaoSource {
         return this.usersDao;
     }
 
+    /**
+     * Retrieve the maximum amount of connections of the pool.
+     * Running more dao calls than this at once will only block waiting for a connection.
+     * @return the maximum pool size
+     */
+    public int getPoolSize() {
+        return this.source.getMaximumPoolSize();
+    }
+
+    /**
+     * Retrieve the maximum amount of connections of the replica pool
+     * @return the maximum replica pool size or 0 if there is no replica
+     */
+    public int getReplicaPoolSize() {
+        return this.replicaSource != null ? this.replicaSource.getMaximumPoolSize() : 0;
+    }
+
+    /**
+     * Create a bus that exchanges claim updates with other servers using this database.
+     * The bus must be closed before this source is cleaned up.
+     * @param pollIntervalMillis how often updates are sent and received
+     * @param retentionMillis how long updates are kept in the database
+     * @param errorHandler called when updates could not be sent or received
+     * @return the bus
+     * @throws DaoException if the updates table could not be created
+     */
+    public SQLClaimUpdateBus createClaimUpdateBus(long pollIntervalMillis, long retentionMillis, Consumer<Exception> errorHandler) throws DaoException {
+        return new SQLClaimUpdateBus(this.runner, pollIntervalMillis, retentionMillis, errorHandler);
+    }
+
+    /**
+     * Set the logger that failed migrations of the database tables are reported to
+     * @param logger
+     */
+    public void setLogger(Logger logger) {
+        this.migrator.setLogger(logger);
+    }
+
     @Override
     public void cleanUp() {
+        this.migrator.close();
         this.source.close();
+        if (this.replicaSource != null) {
+            this.replicaSource.close();
+        }
+    }
+
+    private static HikariConfig createConfig(String host, int port, String database, String username, String password, int poolSize, Map<String, String> driverProperties) {
+        HikariConfig dbConfig = new HikariConfig();
+        dbConfig.setJdbcUrl("jdbc:mysql://" + host + ":" + port + "/" + database);
+        dbConfig.setUsername(username);
+        dbConfig.setPassword(password);
+        dbConfig.setMaximumPoolSize(poolSize);
+        DEFAULT_DRIVER_PROPERTIES.forEach(dbConfig::addDataSourceProperty);
+        driverProperties.forEach(dbConfig::addDataSourceProperty);
+        return dbConfig;
     }
 
 }
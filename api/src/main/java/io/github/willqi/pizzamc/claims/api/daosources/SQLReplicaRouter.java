@@ -0,0 +1,115 @@
+package io.github.willqi.pizzamc.claims.api.daosources;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Chooses where the hot lookups of a SQL dao are read from.
+ * Lookups go to the replica unless their key was written through the dao within the stickiness window,
+ * in which case they are read from the primary so that a replica that has not caught up yet cannot return the old row.
+ *
+ * Keys are compared with equals, so every dao needs its own router.
+ */
+public class SQLReplicaRouter {
+
+    // Expired keys are removed once every this many writes
+    private static final int PURGE_INTERVAL = 1024;
+
+    private final SQLStatementRunner primary;
+    private final SQLStatementRunner replica;
+    private final long stickinessNanos;
+
+    private final ConcurrentHashMap<Object, Long> recentWrites = new ConcurrentHashMap<>();
+    private final AtomicInteger writesSincePurge = new AtomicInteger();
+    private volatile long allStickyUntil = System.nanoTime();
+
+    /**
+     * @param primary runner of the database that is written to
+     * @param replica runner of the replica. Passing the primary reads everything from the primary.
+     * @param stickinessMillis how long reads of a written key go to the primary. Should exceed the replication lag.
+     */
+    public SQLReplicaRouter(SQLStatementRunner primary, SQLStatementRunner replica, long stickinessMillis) {
+        this.primary = primary;
+        this.replica = replica;
+        this.stickinessNanos = TimeUnit.MILLISECONDS.toNanos(stickinessMillis);
+    }
+
+    /**
+     * Create a router that always reads from the primary
+     * @param primary
+     * @return the router
+     */
+    public static SQLReplicaRouter primaryOnly(SQLStatementRunner primary) {
+        return new SQLReplicaRouter(primary, primary, 0);
+    }
+
+    /**
+     * Retrieve the runner to look up a key with
+     * @param key
+     * @return the primary if the key was recently written, otherwise the replica
+     */
+    public SQLStatementRunner getRunner(Object key) {
+        if (this.replica == this.primary) {
+            return this.primary;
+        }
+        long now = System.nanoTime();
+        if (now - this.allStickyUntil < 0) {
+            return this.primary;
+        }
+        Long stickyUntil = this.recentWrites.get(key);
+        if (stickyUntil != null) {
+            if (now - stickyUntil < 0) {
+                return this.primary;
+            }
+            this.recentWrites.remove(key, stickyUntil);
+        }
+        return this.replica;
+    }
+
+    /**
+     * Read a key from the primary until the stickiness window passes
+     * @param key
+     */
+    public void markWritten(Object key) {
+        if (this.replica == this.primary) {
+            return;
+        }
+        this.recentWrites.put(key, System.nanoTime() + this.stickinessNanos);
+        this.purgeIfDue(1);
+    }
+
+    /**
+     * Read keys from the primary until the stickiness window passes
+     * @param keys
+     */
+    public void markWritten(Collection<?> keys) {
+        if (this.replica == this.primary || keys.isEmpty()) {
+            return;
+        }
+        long stickyUntil = System.nanoTime() + this.stickinessNanos;
+        for (Object key : keys) {
+            this.recentWrites.put(key, stickyUntil);
+        }
+        this.purgeIfDue(keys.size());
+    }
+
+    /**
+     * Read every key from the primary until the stickiness window passes.
+     * Used by writes that do not know which keys they changed.
+     */
+    public void markAllWritten() {
+        this.allStickyUntil = System.nanoTime() + this.stickinessNanos;
+    }
+
+    private void purgeIfDue(int writes) {
+        if (this.writesSincePurge.addAndGet(writes) < PURGE_INTERVAL) {
+            return;
+        }
+        this.writesSincePurge.set(0);
+        long now = System.nanoTime();
+        this.recentWrites.values().removeIf(stickyUntil -> now - stickyUntil >= 0);
+    }
+
+}
@@ -0,0 +1,356 @@
+package io.github.willqi.pizzamc.claims.api.daosources;
+
+import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Moves the tables of the SQL daos to the latest schema version while the servers keep running.
+ *
+ * Version 1 tables store uuids as VARCHAR(36). The daos create the version 2 tables next to them and write to both,
+ * while a background task copies the version 1 rows over in batches. The copy cursor of every table is kept in schema_version
+ * so that a restarted server, or any other server using the database, resumes where the copy stopped.
+ * Once a table is copied its reads go to the version 2 table. Once every table is copied the version 1 tables stop being written,
+ * and they are dropped when a server starts up after that.
+ */
+class SQLSchemaMigrator {
+
+    // Rows copied per transaction
+    static final int BATCH_SIZE = 5000;
+    // Delay between copied batches so that the copy does not hold locks other writes wait for
+    static final long STEP_DELAY_MILLIS = 250;
+    // How long the version 1 tables are still written after the last table was copied.
+    // Gives every server time to read the version 2 tables before the version 1 tables become outdated.
+    static final long SWITCH_GRACE_MILLIS = 60000;
+
+    // Ordered so that claims are copied before the helpers that reference them
+    private static final List<TableCopy> COPIES = Arrays.asList(
+            new TableCopy("claims", true, "world_uuid, x, z, owner_uuid, flags",
+                    unhex("world_uuid") + ", x, z, " + unhex("owner_uuid") + ", flags"),
+            new TableCopy("claim_helpers", true, "world_uuid, x, z, uuid, permissions",
+                    unhex("world_uuid") + ", x, z, " + unhex("uuid") + ", permissions"),
+            new TableCopy("homes", false, "owner_uuid, name, world_uuid, x, y, z",
+                    unhex("owner_uuid") + ", name, " + unhex("world_uuid") + ", x, y, z"),
+            new TableCopy("users", false, "uuid, name",
+                    unhex("uuid") + ", UPPER(name)")
+    );
+    // Ordered so that claim_helpers is dropped before the claims it references
+    private static final List<String> DROP_ORDER = Arrays.asList("users", "homes", "claim_helpers", "claims");
+
+    private static final String STMT_CREATE_VERSION_TABLE = "CREATE TABLE IF NOT EXISTS schema_version (" +
+            "table_name VARCHAR(64) NOT NULL," +
+            "version INT NOT NULL," +
+            "legacy_writes BOOLEAN NOT NULL," +
+            "cursor_uuid VARCHAR(36) NOT NULL," +
+            "cursor_x INT NOT NULL," +
+            "cursor_z INT NOT NULL," +
+            "changed_at BIGINT NOT NULL," +
+            "PRIMARY KEY(table_name)" +
+            ")";
+    private static final String STMT_GET_STATES = "SELECT table_name, version, legacy_writes, cursor_uuid, cursor_x, cursor_z, changed_at FROM schema_version";
+    // Servers starting at once may both insert the state of a table
+    private static final String STMT_INSERT_STATE = "INSERT IGNORE INTO schema_version (table_name, version, legacy_writes, cursor_uuid, cursor_x, cursor_z, changed_at) " +
+            "VALUES (?, ?, ?, '', " + Integer.MIN_VALUE + ", " + Integer.MIN_VALUE + ", ?)";
+    // Only moves the cursor if no other server moved it first
+    private static final String STMT_MOVE_CURSOR = "UPDATE schema_version SET cursor_uuid=?, cursor_x=?, cursor_z=? " +
+            "WHERE table_name=? AND version=" + SQLTableVersion.LEGACY_VERSION + " AND cursor_uuid=? AND cursor_x=? AND cursor_z=?";
+    private static final String STMT_FINISH_COPY = "UPDATE schema_version SET version=" + SQLTableVersion.LATEST_VERSION + ", changed_at=? " +
+            "WHERE table_name=? AND version=" + SQLTableVersion.LEGACY_VERSION + " AND cursor_uuid=? AND cursor_x=? AND cursor_z=?";
+    private static final String STMT_STOP_LEGACY_WRITES = "UPDATE schema_version SET legacy_writes=FALSE, changed_at=? WHERE legacy_writes=TRUE";
+
+    private final SQLStatementRunner runner;
+    private final Map<String, SQLTableVersion> versions = new HashMap<>();
+    private volatile Logger logger = Logger.getLogger(SQLSchemaMigrator.class.getName());
+    private ScheduledExecutorService copyScheduler;
+
+    SQLSchemaMigrator(SQLStatementRunner runner) {
+        this.runner = runner;
+        for (TableCopy copy : COPIES) {
+            this.versions.put(copy.table, SQLTableVersion.latest());
+        }
+    }
+
+    /**
+     * @param logger logger that failed copies are reported to
+     */
+    void setLogger(Logger logger) {
+        this.logger = logger;
+    }
+
+    /**
+     * Read which version of each table is used and drop the version 1 tables once they are no longer written.
+     * Tables that do not exist yet start at the latest version.
+     * Must be called before the daos create their tables.
+     * @throws DaoException if the versions could not be read
+     */
+    void prepare() throws DaoException {
+        this.runner.execute(STMT_CREATE_VERSION_TABLE);
+        Map<String, TableState> states = this.readStates();
+        for (TableCopy copy : COPIES) {
+            if (!states.containsKey(copy.table)) {
+                boolean legacy = this.runner.tableExists(copy.table);
+                this.runner.update(STMT_INSERT_STATE, stmt -> {
+                    stmt.setString(1, copy.table);
+                    stmt.setInt(2, legacy ? SQLTableVersion.LEGACY_VERSION : SQLTableVersion.LATEST_VERSION);
+                    stmt.setBoolean(3, legacy);
+                    stmt.setLong(4, System.currentTimeMillis());
+                });
+            }
+        }
+
+        if (isComplete(this.readStates())) {
+            // Every server stopped writing the version 1 tables before this startup
+            for (String table : DROP_ORDER) {
+                if (this.runner.tableExists(table)) {
+                    this.runner.execute("DROP TABLE " + table);
+                }
+            }
+        }
+    }
+
+    /**
+     * @param table name of the version 1 table
+     * @return the version of the table that its dao reads and writes
+     */
+    SQLTableVersion getVersion(String table) {
+        return this.versions.get(table);
+    }
+
+    /**
+     * @return if every table is read from and only written to the latest version
+     */
+    boolean isComplete() {
+        for (SQLTableVersion version : this.versions.values()) {
+            if (version.isReadingLegacy() || version.isWritingLegacy()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Copy the version 1 tables in the background until every table was copied and switched over
+     */
+    void start() {
+        if (this.isComplete()) {
+            return;
+        }
+        this.copyScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "PizzaMCClaims-SchemaMigrator");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.copyScheduler.scheduleWithFixedDelay(() -> {
+            try {
+                if (this.step()) {
+                    this.logger.info("Finished migrating the database tables to schema version " + SQLTableVersion.LATEST_VERSION);
+                    this.copyScheduler.shutdown();
+                }
+            } catch (DaoException | RuntimeException exception) {
+                this.logger.log(Level.WARNING, "Failed to migrate the database tables. Retrying in " + STEP_DELAY_MILLIS + "ms", exception);
+            }
+        }, 0, STEP_DELAY_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop copying. The copy resumes from its stored cursor on the next startup
+     */
+    void close() {
+        if (this.copyScheduler == null) {
+            return;
+        }
+        this.copyScheduler.shutdown();
+        try {
+            this.copyScheduler.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException exception) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Pick up version changes made by other servers, then copy one batch of the first table that was not copied yet.
+     * Once every table was copied the version 1 tables stop being written after SWITCH_GRACE_MILLIS.
+     * @return if the migration is complete
+     * @throws DaoException if the states could not be read or the batch could not be copied
+     */
+    boolean step() throws DaoException {
+        Map<String, TableState> states = this.readStates();
+        long lastChange = Long.MIN_VALUE;
+        for (TableCopy copy : COPIES) {
+            TableState state = states.get(copy.table);
+            if (state.version == SQLTableVersion.LEGACY_VERSION) {
+                this.copyBatch(copy, state);
+                return false;
+            }
+            lastChange = Math.max(lastChange, state.changedAt);
+        }
+        if (isComplete(states)) {
+            return true;
+        }
+        long now = System.currentTimeMillis();
+        if (now - lastChange < SWITCH_GRACE_MILLIS) {
+            return false;
+        }
+        // Stopped for every table at once since version 1 helpers reference version 1 claims
+        this.runner.update(STMT_STOP_LEGACY_WRITES, stmt -> stmt.setLong(1, now));
+        return isComplete(this.readStates());
+    }
+
+    private void copyBatch(TableCopy copy, TableState state) throws DaoException {
+        TableState end = this.runner.query(copy.selectBatchEnd, stmt -> copy.bindKey(stmt, 1, state), results -> results.next() ? copy.readKey(results) : null);
+        List<String> table = Collections.singletonList(copy.table);
+        if (end == null) {
+            // The rest of the table fits in this batch
+            this.runner.batches(Arrays.asList(
+                    new SQLStatementRunner.Batch<>(copy.copyRest, table, (stmt, ignored) -> copy.bindKey(stmt, 1, state)),
+                    new SQLStatementRunner.Batch<>(STMT_FINISH_COPY, table, (stmt, name) -> {
+                        stmt.setLong(1, System.currentTimeMillis());
+                        stmt.setString(2, name);
+                        bindCursor(stmt, 3, state);
+                    })
+            ));
+        } else {
+            this.runner.batches(Arrays.asList(
+                    new SQLStatementRunner.Batch<>(copy.copyRange, table, (stmt, ignored) -> {
+                        int index = copy.bindKey(stmt, 1, state);
+                        copy.bindKey(stmt, index, end);
+                    }),
+                    new SQLStatementRunner.Batch<>(STMT_MOVE_CURSOR, table, (stmt, name) -> {
+                        bindCursor(stmt, 1, end);
+                        stmt.setString(4, name);
+                        bindCursor(stmt, 5, state);
+                    })
+            ));
+        }
+    }
+
+    /**
+     * Read the state of every table and apply it to the versions the daos use
+     */
+    private Map<String, TableState> readStates() throws DaoException {
+        Map<String, TableState> states = this.runner.query(STMT_GET_STATES, stmt -> {}, results -> {
+            Map<String, TableState> read = new HashMap<>();
+            while (results.next()) {
+                read.put(results.getString("table_name"), new TableState(
+                        results.getInt("version"),
+                        results.getBoolean("legacy_writes"),
+                        results.getString("cursor_uuid"),
+                        results.getInt("cursor_x"),
+                        results.getInt("cursor_z"),
+                        results.getLong("changed_at")
+                ));
+            }
+            return read;
+        });
+        states.forEach((table, state) -> {
+            SQLTableVersion version = this.versions.get(table);
+            if (version != null) {
+                version.set(state.version, state.legacyWrites);
+            }
+        });
+        return states;
+    }
+
+    private static boolean isComplete(Map<String, TableState> states) {
+        for (TableCopy copy : COPIES) {
+            TableState state = states.get(copy.table);
+            if (state == null || state.version != SQLTableVersion.LATEST_VERSION || state.legacyWrites) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void bindCursor(PreparedStatement stmt, int index, TableState state) throws SQLException {
+        stmt.setString(index, state.cursorUuid);
+        stmt.setInt(index + 1, state.cursorX);
+        stmt.setInt(index + 2, state.cursorZ);
+    }
+
+    private static String unhex(String column) {
+        return "UNHEX(REPLACE(" + column + ", '-', ''))";
+    }
+
+    /**
+     * Copies a version 1 table in ranges of its key.
+     * Claims and helpers are keyed by their chunk and the other tables by their first uuid column,
+     * so that every row of a key is copied in the same batch.
+     */
+    private static class TableCopy {
+
+        private final String table;
+        private final boolean chunkKeyed;
+        private final String selectBatchEnd;
+        private final String copyRange;
+        private final String copyRest;
+
+        TableCopy(String table, boolean chunkKeyed, String columns, String convertedColumns) {
+            this.table = table;
+            this.chunkKeyed = chunkKeyed;
+            String keyColumns = chunkKeyed ? "world_uuid, x, z" : columns.substring(0, columns.indexOf(','));
+            String keyParameters = chunkKeyed ? "(?, ?, ?)" : "?";
+            String afterCursor = "(" + keyColumns + ") > " + keyParameters;
+            this.selectBatchEnd = "SELECT " + keyColumns + " FROM " + table + " WHERE " + afterCursor +
+                    " ORDER BY " + keyColumns + " LIMIT 1 OFFSET " + (BATCH_SIZE - 1);
+            // Locked so that writes to the range wait until it was copied
+            String copy = "INSERT IGNORE INTO " + table + "_v2 (" + columns + ") SELECT " + convertedColumns + " FROM " + table + " WHERE " + afterCursor;
+            this.copyRange = copy + " AND (" + keyColumns + ") <= " + keyParameters + " LOCK IN SHARE MODE";
+            this.copyRest = copy + " LOCK IN SHARE MODE";
+        }
+
+        /**
+         * @return the index of the next parameter
+         */
+        int bindKey(PreparedStatement stmt, int index, TableState key) throws SQLException {
+            stmt.setString(index, key.cursorUuid);
+            if (!this.chunkKeyed) {
+                return index + 1;
+            }
+            stmt.setInt(index + 1, key.cursorX);
+            stmt.setInt(index + 2, key.cursorZ);
+            return index + 3;
+        }
+
+        TableState readKey(ResultSet results) throws SQLException {
+            if (!this.chunkKeyed) {
+                return new TableState(results.getString(1), Integer.MIN_VALUE, Integer.MIN_VALUE);
+            }
+            return new TableState(results.getString(1), results.getInt(2), results.getInt(3));
+        }
+
+    }
+
+    private static class TableState {
+
+        private final int version;
+        private final boolean legacyWrites;
+        // Last key that was copied
+        private final String cursorUuid;
+        private final int cursorX;
+        private final int cursorZ;
+        private final long changedAt;
+
+        TableState(int version, boolean legacyWrites, String cursorUuid, int cursorX, int cursorZ, long changedAt) {
+            this.version = version;
+            this.legacyWrites = legacyWrites;
+            this.cursorUuid = cursorUuid;
+            this.cursorX = cursorX;
+            this.cursorZ = cursorZ;
+            this.changedAt = changedAt;
+        }
+
+        TableState(String cursorUuid, int cursorX, int cursorZ) {
+            this(SQLTableVersion.LEGACY_VERSION, true, cursorUuid, cursorX, cursorZ, 0);
+        }
+
+    }
+
+}
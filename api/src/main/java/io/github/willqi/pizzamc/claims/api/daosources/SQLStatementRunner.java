@@ -0,0 +1,238 @@
+package io.github.willqi.pizzamc.claims.api.daosources;
+
+import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
+
+import javax.sql.DataSource;
+import java.sql.*;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Runs statements for the SQL daos.
+ * Borrows a connection from the pool for each call and always returns it along with its statements and results.
+ *
+ * Statements are prepared with the same sql strings every time so that the driver's prepared statement cache
+ * (see {@link SQLDaoSource#DEFAULT_DRIVER_PROPERTIES}) hands back the server side statement of the connection
+ * instead of preparing it again.
+ */
+public class SQLStatementRunner {
+
+    private final DataSource source;
+
+    public SQLStatementRunner(DataSource source) {
+        this.source = source;
+    }
+
+    /**
+     * Execute a statement without parameters. Used to create tables.
+     * @param sql
+     * @throws DaoException if the statement failed
+     */
+    public void execute(String sql) throws DaoException {
+        try (Connection connection = this.source.getConnection();
+             Statement stmt = connection.createStatement()) {
+            stmt.execute(sql);
+        } catch (SQLException exception) {
+            throw new DaoException(exception);
+        }
+    }
+
+    /**
+     * Check if a table exists in the database
+     * @param table
+     * @return if the table exists
+     * @throws DaoException if the database metadata could not be read
+     */
+    public boolean tableExists(String table) throws DaoException {
+        try (Connection connection = this.source.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String name = metaData.storesUpperCaseIdentifiers() ? table.toUpperCase(Locale.ROOT) : table;
+            try (ResultSet results = metaData.getTables(connection.getCatalog(), null, name, new String[]{ "TABLE" })) {
+                return results.next();
+            }
+        } catch (SQLException exception) {
+            throw new DaoException(exception);
+        }
+    }
+
+    /**
+     * Check if an index exists on a table
+     * @param table
+     * @param index
+     * @return if the index exists
+     * @throws DaoException if the database metadata could not be read
+     */
+    public boolean indexExists(String table, String index) throws DaoException {
+        try (Connection connection = this.source.getConnection()) {
+            DatabaseMetaData metaData = connection.getMetaData();
+            String name = metaData.storesUpperCaseIdentifiers() ? table.toUpperCase(Locale.ROOT) : table;
+            try (ResultSet results = metaData.getIndexInfo(connection.getCatalog(), null, name, false, true)) {
+                while (results.next()) {
+                    if (index.equalsIgnoreCase(results.getString("INDEX_NAME"))) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        } catch (SQLException exception) {
+            throw new DaoException(exception);
+        }
+    }
+
+    /**
+     * Run a query and read its results
+     * @param sql
+     * @param binder sets the parameters of the statement
+     * @param reader reads the results. The results are closed once it returns
+     * @param <T> result type
+     * @return the value returned by the reader
+     * @throws DaoException if the query failed
+     */
+    public <T> T query(String sql, ParameterBinder binder, ResultReader<T> reader) throws DaoException {
+        try (Connection connection = this.source.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            binder.bind(stmt);
+            try (ResultSet results = stmt.executeQuery()) {
+                return reader.read(results);
+            }
+        } catch (SQLException exception) {
+            throw new DaoException(exception);
+        }
+    }
+
+    /**
+     * Run a query over a whole table without loading every row into memory at once
+     * @param sql
+     * @param fetchSize rows fetched per round trip
+     * @param handler called for every row
+     * @throws DaoException if the query or the handler failed
+     */
+    public void stream(String sql, int fetchSize, RowHandler handler) throws DaoException {
+        try (Connection connection = this.source.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY)) {
+            stmt.setFetchSize(fetchSize);
+            try (ResultSet results = stmt.executeQuery()) {
+                while (results.next()) {
+                    handler.handle(results);
+                }
+            }
+        } catch (SQLException exception) {
+            throw new DaoException(exception);
+        }
+    }
+
+    /**
+     * Run an insert, update or delete statement
+     * @param sql
+     * @param binder sets the parameters of the statement
+     * @return the amount of rows changed
+     * @throws DaoException if the statement failed
+     */
+    public int update(String sql, ParameterBinder binder) throws DaoException {
+        try (Connection connection = this.source.getConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            binder.bind(stmt);
+            return stmt.executeUpdate();
+        } catch (SQLException exception) {
+            throw new DaoException(exception);
+        }
+    }
+
+    /**
+     * Run a statement for each item as a single batch inside a transaction
+     * @param sql
+     * @param items
+     * @param binder sets the parameters of the statement for an item
+     * @param <T> item type
+     * @throws DaoException if the batch failed. Nothing is changed if this happens
+     */
+    public <T> void batch(String sql, Collection<T> items, BatchBinder<T> binder) throws DaoException {
+        this.batches(Arrays.asList(new Batch<>(sql, items, binder)));
+    }
+
+    /**
+     * Run several batches in order inside a single transaction
+     * @param batches
+     * @throws DaoException if a batch failed. Nothing is changed if this happens
+     */
+    public void batches(List<? extends Batch<?>> batches) throws DaoException {
+        boolean empty = true;
+        for (Batch<?> batch : batches) {
+            empty &= batch.items.isEmpty();
+        }
+        if (empty) {
+            return;
+        }
+        try (Connection connection = this.source.getConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                for (Batch<?> batch : batches) {
+                    batch.execute(connection);
+                }
+                connection.commit();
+            } catch (SQLException exception) {
+                try { connection.rollback(); } catch (SQLException ignored) {}
+                throw exception;
+            } finally {
+                try { connection.setAutoCommit(true); } catch (SQLException ignored) {}
+            }
+        } catch (SQLException exception) {
+            throw new DaoException(exception);
+        }
+    }
+
+    /**
+     * A statement to run once for each item
+     * @param <T> item type
+     */
+    public static class Batch<T> {
+
+        private final String sql;
+        private final Collection<T> items;
+        private final BatchBinder<T> binder;
+
+        /**
+         * @param sql
+         * @param items
+         * @param binder sets the parameters of the statement for an item
+         */
+        public Batch(String sql, Collection<T> items, BatchBinder<T> binder) {
+            this.sql = sql;
+            this.items = items;
+            this.binder = binder;
+        }
+
+        private void execute(Connection connection) throws SQLException {
+            if (this.items.isEmpty()) {
+                return;
+            }
+            try (PreparedStatement stmt = connection.prepareStatement(this.sql)) {
+                for (T item : this.items) {
+                    this.binder.bind(stmt, item);
+                    stmt.addBatch();
+                }
+                stmt.executeBatch();
+            }
+        }
+
+    }
+
+    public interface ParameterBinder {
+        void bind(PreparedStatement stmt) throws SQLException;
+    }
+
+    public interface BatchBinder<T> {
+        void bind(PreparedStatement stmt, T item) throws SQLException;
+    }
+
+    public interface ResultReader<T> {
+        T read(ResultSet results) throws SQLException;
+    }
+
+    public interface RowHandler {
+        void handle(ResultSet results) throws SQLException, DaoException;
+    }
+
+}
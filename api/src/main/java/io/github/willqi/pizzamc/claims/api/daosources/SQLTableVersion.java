@@ -0,0 +1,111 @@
+package io.github.willqi.pizzamc.claims.api.daosources;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Which schema version of a table the SQL daos read from and write to while {@link SQLSchemaMigrator} copies it.
+ *
+ * Version 1 tables store uuids as VARCHAR(36). Latest tables store them as BINARY(16) and are named with a _v2 suffix
+ * so that both versions exist at once. While rows are copied, reads go to the version 1 table and writes go to both tables in one transaction.
+ */
+public class SQLTableVersion {
+
+    public static final int LEGACY_VERSION = 1;
+    public static final int LATEST_VERSION = 2;
+
+    private volatile int readVersion;
+    private volatile boolean writingLegacy;
+
+    SQLTableVersion(int readVersion, boolean writingLegacy) {
+        this.readVersion = readVersion;
+        this.writingLegacy = writingLegacy;
+    }
+
+    /**
+     * @return the version of a table that only exists in the latest version
+     */
+    public static SQLTableVersion latest() {
+        return new SQLTableVersion(LATEST_VERSION, false);
+    }
+
+    /**
+     * @return if reads go to the version 1 table because not every row was copied yet
+     */
+    public boolean isReadingLegacy() {
+        return this.readVersion == LEGACY_VERSION;
+    }
+
+    /**
+     * @return if writes also go to the version 1 table
+     */
+    public boolean isWritingLegacy() {
+        return this.writingLegacy;
+    }
+
+    void set(int readVersion, boolean writingLegacy) {
+        this.readVersion = readVersion;
+        this.writingLegacy = writingLegacy;
+    }
+
+    /**
+     * Create the batches that write the items to the latest table and, while it is still written, to the version 1 table first.
+     * The batches should be run in one transaction so that both tables stay the same.
+     * @param sql statement of the latest table
+     * @param legacySql statement of the version 1 table
+     * @param items
+     * @param binder sets the parameters of either statement for an item
+     * @param <T> item type
+     * @return the batches to run
+     */
+    public <T> List<SQLStatementRunner.Batch<T>> batches(String sql, String legacySql, Collection<T> items, Binder<T> binder) {
+        List<SQLStatementRunner.Batch<T>> batches = new ArrayList<>(2);
+        if (this.writingLegacy) {
+            batches.add(new SQLStatementRunner.Batch<>(legacySql, items, (stmt, item) -> binder.bind(stmt, item, true)));
+        }
+        batches.add(new SQLStatementRunner.Batch<>(sql, items, (stmt, item) -> binder.bind(stmt, item, false)));
+        return batches;
+    }
+
+    /**
+     * Set a uuid parameter the way the table of a version stores it
+     * @param stmt
+     * @param index
+     * @param uuid may be null
+     * @param legacy if the statement is for the version 1 table
+     * @throws SQLException
+     */
+    public static void setUuid(PreparedStatement stmt, int index, UUID uuid, boolean legacy) throws SQLException {
+        if (legacy) {
+            stmt.setString(index, uuid != null ? uuid.toString() : null);
+        } else {
+            stmt.setBytes(index, UuidBytes.toBytes(uuid));
+        }
+    }
+
+    /**
+     * Read a uuid column the way the table of a version stores it
+     * @param results
+     * @param column
+     * @param legacy if the results are of the version 1 table
+     * @return the uuid or null if the column is null
+     * @throws SQLException
+     */
+    public static UUID getUuid(ResultSet results, String column, boolean legacy) throws SQLException {
+        if (legacy) {
+            String uuid = results.getString(column);
+            return uuid != null ? UUID.fromString(uuid) : null;
+        }
+        return UuidBytes.fromBytes(results.getBytes(column));
+    }
+
+    public interface Binder<T> {
+        void bind(PreparedStatement stmt, T item, boolean legacy) throws SQLException;
+    }
+
+}
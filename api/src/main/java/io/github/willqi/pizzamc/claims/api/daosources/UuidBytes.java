@@ -0,0 +1,55 @@
+package io.github.willqi.pizzamc.claims.api.daosources;
+
+import java.util.UUID;
+
+/**
+ * Converts uuids to and from the 16 bytes stored in BINARY(16) columns.
+ */
+public final class UuidBytes {
+
+    private UuidBytes() {}
+
+    /**
+     * @param uuid
+     * @return the big endian bytes of the uuid or null if the uuid is null
+     */
+    public static byte[] toBytes(UUID uuid) {
+        if (uuid == null) {
+            return null;
+        }
+        byte[] bytes = new byte[16];
+        writeLong(bytes, 0, uuid.getMostSignificantBits());
+        writeLong(bytes, 8, uuid.getLeastSignificantBits());
+        return bytes;
+    }
+
+    /**
+     * @param bytes
+     * @return the uuid or null if bytes is null
+     */
+    public static UUID fromBytes(byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        if (bytes.length != 16) {
+            throw new IllegalArgumentException("Expected 16 bytes but got " + bytes.length);
+        }
+        return new UUID(readLong(bytes, 0), readLong(bytes, 8));
+    }
+
+    private static void writeLong(byte[] bytes, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + i] = (byte)value;
+            value >>>= 8;
+        }
+    }
+
+    private static long readLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+}
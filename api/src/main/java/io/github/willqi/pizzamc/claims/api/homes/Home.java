@@ -5,19 +5,27 @@ import io.github.willqi.pizzamc.claims.api.exceptions.InvalidHomeNameException;
 import java.util.Objects;
 import java.util.UUID;
 
-public class Home implements Cloneable {
+/**
+ * Immutable snapshot of a home.
+ * Use withLocation to create a moved copy that can be passed to the HomesManager.
+ */
+public class Home {
 
     public static final int MAX_NAME_LENGTH = 50;
 
     private final String name;
     private final UUID ownerUUID;
 
-    private double x;
-    private double y;
-    private double z;
-    private UUID worldUUID;
+    private final double x;
+    private final double y;
+    private final double z;
+    private final UUID worldUUID;
 
     public Home(UUID ownerUUID, String name, UUID worldUUID, double x, double y, double z) throws InvalidHomeNameException {
+        this(ownerUUID, name, worldUUID, x, y, z, true);
+    }
+
+    private Home(UUID ownerUUID, String name, UUID worldUUID, double x, double y, double z, boolean validateName) throws InvalidHomeNameException {
         this.ownerUUID = ownerUUID;
         this.name = name;
         this.worldUUID = worldUUID;
@@ -25,7 +33,7 @@ public class Home implements Cloneable {
         this.y = y;
         this.z = z;
 
-        if (this.name.length() > MAX_NAME_LENGTH) {
+        if (validateName && this.name.length() > MAX_NAME_LENGTH) {
             throw new InvalidHomeNameException("The home name is too long");
         }
     }
@@ -33,30 +41,18 @@ public class Home implements Cloneable {
     public UUID getWorldUUID() {
         return this.worldUUID;
     }
-    public void setWorldUUID(UUID uuid) {
-        this.worldUUID = uuid;
-    }
 
     public double getX() {
         return this.x;
     }
-    public void setX(double x) {
-        this.x = x;
-    }
 
     public double getY() {
         return this.y;
     }
-    public void setY(double y) {
-        this.y = y;
-    }
 
     public double getZ() {
         return this.z;
     }
-    public void setZ(double z) {
-        this.z = z;
-    }
 
     public UUID getOwnerUUID() {
         return this.ownerUUID;
@@ -65,16 +61,18 @@ public class Home implements Cloneable {
         return this.name;
     }
 
-    @Override
-    public Home clone() {
+    /**
+     * @param worldUUID
+     * @param x
+     * @param y
+     * @param z
+     * @return a copy of this home at the location provided
+     */
+    public Home withLocation(UUID worldUUID, double x, double y, double z) {
         try {
-            return (Home)super.clone();
-        } catch (CloneNotSupportedException exception) {
-            try {
-                return new Home(this.ownerUUID, this.name, this.worldUUID, this.x, this.y, this.z);
-            } catch (InvalidHomeNameException homeNameException) {
-                throw new AssertionError("Failed to clone new home. Unexpectedly threw invalid home name");
-            }
+            return new Home(this.ownerUUID, this.name, worldUUID, x, y, z, false);
+        } catch (InvalidHomeNameException exception) {
+            throw new AssertionError("Failed to copy home. Unexpectedly threw invalid home name");
         }
     }
 
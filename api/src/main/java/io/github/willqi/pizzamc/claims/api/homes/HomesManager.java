@@ -1,30 +1,53 @@
 package io.github.willqi.pizzamc.claims.api.homes;
 
+import io.github.willqi.pizzamc.claims.api.cache.AsyncLoadingCache;
+import io.github.willqi.pizzamc.claims.api.cache.LoadStats;
+import io.github.willqi.pizzamc.claims.api.daosources.DaoExecutor;
 import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
 import io.github.willqi.pizzamc.claims.api.homes.dao.HomesDao;
 
 import java.util.*;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Responsible for homes and handling interactions with the HomesDao
  */
 public class HomesManager {
 
-    private final Map<UUID, Map<String, Home>> cache;
-
-    private final Map<UUID, CompletableFuture<Map<String, Home>>> queueHomeFutures;
+    // Each player's homes are stored as an unmodifiable snapshot that is replaced on every change
+    private final AsyncLoadingCache<UUID, Map<String, Home>> cache;
 
     private final HomesDao homesDao;
 
+    private final Executor executor;
+
 
     public HomesManager (HomesDao homesDao) {
-        this.cache = new ConcurrentHashMap<>();
-        this.homesDao = homesDao;
+        this(homesDao, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param homesDao
+     * @param executor executor used to run dao calls
+     */
+    public HomesManager (HomesDao homesDao, Executor executor) {
+        this(homesDao, executor, 0, 0);
+    }
 
-        this.queueHomeFutures = new ConcurrentHashMap<>();
+    /**
+     * @param homesDao
+     * @param executor executor used to run dao calls
+     * @param maximumPlayers amount of players whose homes are cached before the least recently used are dropped. 0 or less for no limit
+     * @param expireAfterMinutes how long the homes of a player are cached after they were loaded or changed. 0 or less to keep them until cleared
+     */
+    public HomesManager (HomesDao homesDao, Executor executor, int maximumPlayers, long expireAfterMinutes) {
+        this.homesDao = homesDao;
+        this.executor = executor;
+        this.cache = new AsyncLoadingCache<>(this::loadHomes, maximumPlayers, expireAfterMinutes, 0, TimeUnit.MINUTES);
     }
 
     /**
@@ -34,38 +57,7 @@ public class HomesManager {
      * @return the homes of the player
      */
     public CompletableFuture<Map<String, Home>> fetchHomes(UUID playerUuid) {
-        Optional<Map<String, Home>> existingHomes = this.getHomes(playerUuid);
-        if (existingHomes.isPresent()) {
-            Map<String, Home> returnedHomes = new HashMap<>(existingHomes.get());
-            returnedHomes.replaceAll((name, home) -> home.clone());
-            return CompletableFuture.completedFuture(Collections.unmodifiableMap(returnedHomes));
-        } else {
-            CompletableFuture<Map<String, Home>> returnedFuture = this.queueHomeFutures.getOrDefault(playerUuid, null);
-            if (returnedFuture == null) {
-
-                returnedFuture = CompletableFuture.supplyAsync(() -> {
-                    Set<Home> homes;
-                    try {
-                        homes = this.homesDao.getHomesByOwner(playerUuid);
-                    } catch (DaoException exception) {
-                        throw new RuntimeException(exception);
-                    }
-                    Map<String, Home> mappedHomes = new ConcurrentHashMap<>();
-                    for (Home home : homes) {
-                        mappedHomes.put(home.getName(), home);
-                    }
-                    this.cache.putIfAbsent(playerUuid, mappedHomes);
-
-                    Map<String, Home> returnedMappedHomes = new HashMap<>(mappedHomes);
-                    returnedMappedHomes.replaceAll((name, home) -> home.clone());
-                    this.queueHomeFutures.remove(playerUuid);
-                    return Collections.unmodifiableMap(returnedMappedHomes);
-                });
-                this.queueHomeFutures.put(playerUuid, returnedFuture);
-
-            }
-            return returnedFuture;
-        }
+        return this.cache.get(playerUuid);
     }
 
     /**
@@ -74,14 +66,7 @@ public class HomesManager {
      * @return the cached homes
      */
     public Optional<Map<String, Home>> getHomes(UUID playerUuid) {
-        Map<String, Home> cachedMap = this.cache.getOrDefault(playerUuid, null);
-        if (cachedMap != null) {
-            Map<String, Home> returnedMap = new HashMap<>(cachedMap);
-            returnedMap.replaceAll((name, home) -> home.clone());
-            return Optional.of(Collections.unmodifiableMap(returnedMap));
-        } else {
-            return Optional.empty();
-        }
+        return Optional.ofNullable(this.cache.getIfPresent(playerUuid));
     }
 
     /**
@@ -91,9 +76,9 @@ public class HomesManager {
      * @return an empty optional if the player's homes were not fetched or if the player does not have a home named that
      */
     public Optional<Home> getHome (UUID ownerUuid, String name) {
-        Optional<Map<String, Home>> homes = this.getHomes(ownerUuid);
-        if (homes.isPresent()) {
-            return Optional.ofNullable(homes.get().getOrDefault(name, null));
+        Map<String, Home> homes = this.cache.getIfPresent(ownerUuid);
+        if (homes != null) {
+            return Optional.ofNullable(homes.get(name));
         } else {
             return Optional.empty();
         }
@@ -106,9 +91,9 @@ public class HomesManager {
      */
     public CompletableFuture<Void> save (Home home) {
         return this.fetchHomes(home.getOwnerUUID()).thenAcceptAsync(homes -> {
-            Map<String, Home> cachedHomes = Optional.ofNullable(this.cache.getOrDefault(home.getOwnerUUID(), null)).orElseGet(ConcurrentHashMap::new);
+            Map<String, Home> cachedHomes = this.cache.getIfPresent(home.getOwnerUUID());
             try {
-                if (cachedHomes.containsKey(home.getName())) {
+                if ((cachedHomes != null ? cachedHomes : homes).containsKey(home.getName())) {
                     this.homesDao.update(home);
                 } else {
                     this.homesDao.insert(home);
@@ -116,10 +101,16 @@ public class HomesManager {
             } catch (DaoException exception) {
                 throw new CompletionException(exception);
             }
-            cachedHomes = this.cache.getOrDefault(home.getOwnerUUID(), cachedHomes);
-            cachedHomes.put(home.getName(), home.clone());
-            this.cache.putIfAbsent(home.getOwnerUUID(), cachedHomes);
-        });
+            this.cache.compute(home.getOwnerUUID(), (uuid, existingHomes) -> {
+                if (existingHomes == null) {
+                    // Evicted or expired since it was fetched. Caching only this home would hide the other homes of the player
+                    return null;
+                }
+                Map<String, Home> updatedHomes = new HashMap<>(existingHomes);
+                updatedHomes.put(home.getName(), home);
+                return Collections.unmodifiableMap(updatedHomes);
+            });
+        }, this.executor);
     }
 
     /**
@@ -128,17 +119,21 @@ public class HomesManager {
      * @return a CompletableFuture that resolves after deletion
      */
     public CompletableFuture<Void> delete(Home home) {
-        return CompletableFuture.runAsync(() -> {
-            Map<String, Home> cachedHomes = this.cache.getOrDefault(home.getOwnerUUID(), null);
-            if (cachedHomes != null) {
-                cachedHomes.remove(home.getName());
-            }
+        return DaoExecutor.runAsync(() -> {
+            this.cache.compute(home.getOwnerUUID(), (uuid, existingHomes) -> {
+                if (existingHomes == null) {
+                    return null;
+                }
+                Map<String, Home> updatedHomes = new HashMap<>(existingHomes);
+                updatedHomes.remove(home.getName());
+                return Collections.unmodifiableMap(updatedHomes);
+            });
             try {
                 this.homesDao.delete(home);
             } catch (DaoException exception) {
                 throw new CompletionException(exception);
             }
-        });
+        }, this.executor);
     }
 
     /**
@@ -146,15 +141,37 @@ public class HomesManager {
      * @param uuid
      */
     public void clearHomesCache (UUID uuid) {
-        this.cache.remove(uuid);
+        this.cache.invalidate(uuid);
+    }
+
+    /**
+     * @return how often the homes of players were already cached and how long loading them took
+     */
+    public LoadStats getLoadStats() {
+        return this.cache.getStats();
     }
 
     /**
      * Called internally when plugin is shutdown
      */
     public void cleanUp () {
-        this.cache.clear();
-        this.queueHomeFutures.clear();
+        this.cache.invalidateAll();
+    }
+
+    private CompletableFuture<Map<String, Home>> loadHomes(UUID playerUuid) {
+        return DaoExecutor.supplyAsync(() -> {
+            Set<Home> homes;
+            try {
+                homes = this.homesDao.getHomesByOwner(playerUuid);
+            } catch (DaoException exception) {
+                throw new CompletionException(exception);
+            }
+            Map<String, Home> mappedHomes = new HashMap<>();
+            for (Home home : homes) {
+                mappedHomes.put(home.getName(), home);
+            }
+            return Collections.unmodifiableMap(mappedHomes);
+        }, this.executor);
     }
 
 }
@@ -3,15 +3,42 @@ package io.github.willqi.pizzamc.claims.api.homes.dao;
 import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
 import io.github.willqi.pizzamc.claims.api.homes.Home;
 
+import java.util.Collection;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public interface HomesDao {
 
     Set<Home> getHomesByOwner(UUID uuid) throws DaoException;
 
+    /**
+     * Stream every stored home without keeping the whole table in memory
+     * @param consumer called for each home
+     * @throws DaoException
+     */
+    void forEachHome(Consumer<Home> consumer) throws DaoException;
+
+    /**
+     * @return if no homes are stored
+     * @throws DaoException
+     */
+    boolean isEmpty() throws DaoException;
+
     void insert(Home home) throws DaoException;
     void update(Home home) throws DaoException;
     void delete(Home home) throws DaoException;
 
+    /**
+     * Insert many homes at once.
+     * Implementations should write all homes or none of them.
+     * @param homes
+     * @throws DaoException
+     */
+    default void insertAll(Collection<Home> homes) throws DaoException {
+        for (Home home : homes) {
+            this.insert(home);
+        }
+    }
+
 }
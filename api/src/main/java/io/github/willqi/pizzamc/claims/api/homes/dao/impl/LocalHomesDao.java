@@ -0,0 +1,198 @@
+package io.github.willqi.pizzamc.claims.api.homes.dao.impl;
+
+import io.github.willqi.pizzamc.claims.api.daosources.LocalLog;
+import io.github.willqi.pizzamc.claims.api.daosources.LocalTable;
+import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
+import io.github.willqi.pizzamc.claims.api.exceptions.InvalidHomeNameException;
+import io.github.willqi.pizzamc.claims.api.homes.Home;
+import io.github.willqi.pizzamc.claims.api.homes.dao.HomesDao;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Homes kept in memory and persisted through a {@link LocalLog}
+ */
+public class LocalHomesDao implements HomesDao, LocalTable {
+
+    public static final byte TABLE_ID = 4;
+
+    private static final byte OP_PUT = 0;
+    private static final byte OP_DELETE = 1;
+
+    private final LocalLog log;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<UUID, Map<String, Home>> homes = new HashMap<>();
+    private int size;
+
+    public LocalHomesDao(LocalLog log) {
+        this.log = log;
+    }
+
+    @Override
+    public Set<Home> getHomesByOwner(UUID uuid) throws DaoException {
+        this.lock.readLock().lock();
+        try {
+            Map<String, Home> ownedHomes = this.homes.get(uuid);
+            return ownedHomes != null ? new HashSet<>(ownedHomes.values()) : new HashSet<>();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void forEachHome(Consumer<Home> consumer) throws DaoException {
+        this.lock.readLock().lock();
+        try {
+            for (Map<String, Home> ownedHomes : this.homes.values()) {
+                ownedHomes.values().forEach(consumer);
+            }
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.size() == 0;
+    }
+
+    @Override
+    public void insert(Home home) throws DaoException {
+        this.lock.writeLock().lock();
+        try {
+            if (this.isStored(home)) {
+                throw new DaoException("A home named " + home.getName() + " is already stored for " + home.getOwnerUUID());
+            }
+            this.log.append(output -> writePut(output, home));
+            this.putHome(home);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void update(Home home) throws DaoException {
+        this.lock.writeLock().lock();
+        try {
+            // Updating a home that is not stored does nothing, like an update that matches no rows
+            if (!this.isStored(home)) {
+                return;
+            }
+            this.log.append(output -> writePut(output, home));
+            this.putHome(home);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(Home home) throws DaoException {
+        this.lock.writeLock().lock();
+        try {
+            if (!this.isStored(home)) {
+                return;
+            }
+            this.log.append(output -> {
+                output.writeByte(TABLE_ID);
+                output.writeByte(OP_DELETE);
+                LocalTable.writeUuid(output, home.getOwnerUUID());
+                output.writeUTF(home.getName());
+            });
+            this.removeHome(home.getOwnerUUID(), home.getName());
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public byte getTableId() {
+        return TABLE_ID;
+    }
+
+    @Override
+    public void replay(DataInput input) throws IOException {
+        byte op = input.readByte();
+        UUID ownerUuid = LocalTable.readUuid(input);
+        String name = input.readUTF();
+        if (op == OP_PUT) {
+            UUID worldUuid = LocalTable.readUuid(input);
+            double x = input.readDouble();
+            double y = input.readDouble();
+            double z = input.readDouble();
+            try {
+                this.putHome(new Home(ownerUuid, name, worldUuid, x, y, z));
+            } catch (InvalidHomeNameException exception) {
+                throw new IOException("Log contained invalid home name " + name, exception);
+            }
+        } else if (op == OP_DELETE) {
+            this.removeHome(ownerUuid, name);
+        } else {
+            throw new IOException("Unknown home operation " + op);
+        }
+    }
+
+    @Override
+    public long writeSnapshot(LocalLog.RecordSink sink) throws IOException {
+        long records = 0;
+        for (Map<String, Home> ownedHomes : this.homes.values()) {
+            for (Home home : ownedHomes.values()) {
+                sink.append(output -> writePut(output, home));
+                records++;
+            }
+        }
+        return records;
+    }
+
+    @Override
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.size;
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private boolean isStored(Home home) {
+        Map<String, Home> ownedHomes = this.homes.get(home.getOwnerUUID());
+        return ownedHomes != null && ownedHomes.containsKey(home.getName());
+    }
+
+    private void putHome(Home home) {
+        if (this.homes.computeIfAbsent(home.getOwnerUUID(), uuid -> new HashMap<>()).put(home.getName(), home) == null) {
+            this.size++;
+        }
+    }
+
+    private void removeHome(UUID ownerUuid, String name) {
+        Map<String, Home> ownedHomes = this.homes.get(ownerUuid);
+        if (ownedHomes != null && ownedHomes.remove(name) != null) {
+            this.size--;
+            if (ownedHomes.isEmpty()) {
+                this.homes.remove(ownerUuid);
+            }
+        }
+    }
+
+    private static void writePut(DataOutput output, Home home) throws IOException {
+        output.writeByte(TABLE_ID);
+        output.writeByte(OP_PUT);
+        LocalTable.writeUuid(output, home.getOwnerUUID());
+        output.writeUTF(home.getName());
+        LocalTable.writeUuid(output, home.getWorldUUID());
+        output.writeDouble(home.getX());
+        output.writeDouble(home.getY());
+        output.writeDouble(home.getZ());
+    }
+
+}
@@ -1,175 +1,154 @@
 package io.github.willqi.pizzamc.claims.api.homes.dao.impl;
 
-import com.zaxxer.hikari.HikariDataSource;
+import io.github.willqi.pizzamc.claims.api.daosources.SQLReplicaRouter;
+import io.github.willqi.pizzamc.claims.api.daosources.SQLStatementRunner;
+import io.github.willqi.pizzamc.claims.api.daosources.SQLTableVersion;
 import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
 import io.github.willqi.pizzamc.claims.api.exceptions.InvalidHomeNameException;
 import io.github.willqi.pizzamc.claims.api.homes.Home;
 import io.github.willqi.pizzamc.claims.api.homes.dao.HomesDao;
 
-import java.sql.*;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
 
 public class SQLHomesDao implements HomesDao {
 
-    private static final String STMT_CREATE_HOMES_TABLE = "CREATE TABLE IF NOT EXISTS homes (" +
-            "owner_uuid VARCHAR(36) NOT NULL," +
+    private static final String STMT_CREATE_HOMES_TABLE = "CREATE TABLE IF NOT EXISTS homes_v2 (" +
+            "owner_uuid BINARY(16) NOT NULL," +
             "name VARCHAR(" + Home.MAX_NAME_LENGTH + ") NOT NULL," +
-            "world_uuid VARCHAR(36) NOT NULL," +
+            "world_uuid BINARY(16) NOT NULL," +
             "x DOUBLE NOT NULL," +
             "y DOUBLE NOT NULL," +
             "z DOUBLE NOT NULL," +
             "PRIMARY KEY(owner_uuid, name)" +
             ")";
-    private static final String STMT_GET_HOMES = "SELECT owner_uuid, name, world_uuid, x, y, z FROM homes WHERE owner_uuid=?";
-    private static final String STMT_INSERT_HOME = "INSERT INTO homes (owner_uuid, name, world_uuid, x, y, z) VALUES (?, ?, ?, ?, ?, ?)";
-    private static final String STMT_UPDATE_HOME = "UPDATE homes SET world_uuid=?, x=?, y=?, z=? WHERE owner_uuid=? AND name=?";
-    private static final String STMT_DELETE_HOME = "DELETE FROM homes WHERE owner_uuid=? AND name=?";
-
-    private HikariDataSource source;
+    private static final String STMT_GET_HOMES = "SELECT owner_uuid, name, world_uuid, x, y, z FROM homes_v2 WHERE owner_uuid=?";
+    private static final String STMT_GET_ALL_HOMES = "SELECT owner_uuid, name, world_uuid, x, y, z FROM homes_v2";
+    private static final String STMT_HAS_ROWS = "SELECT 1 FROM homes_v2 LIMIT 1";
+    private static final String STMT_INSERT_HOME = "INSERT INTO homes_v2 (owner_uuid, name, world_uuid, x, y, z) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String STMT_UPDATE_HOME = "UPDATE homes_v2 SET world_uuid=?, x=?, y=?, z=? WHERE owner_uuid=? AND name=?";
+    private static final String STMT_DELETE_HOME = "DELETE FROM homes_v2 WHERE owner_uuid=? AND name=?";
+
+    // Statements of the version 1 table, used until it was copied
+    private static final String LEGACY_STMT_GET_HOMES = "SELECT owner_uuid, name, world_uuid, x, y, z FROM homes WHERE owner_uuid=?";
+    private static final String LEGACY_STMT_GET_ALL_HOMES = "SELECT owner_uuid, name, world_uuid, x, y, z FROM homes";
+    private static final String LEGACY_STMT_HAS_ROWS = "SELECT 1 FROM homes LIMIT 1";
+    private static final String LEGACY_STMT_INSERT_HOME = "INSERT INTO homes (owner_uuid, name, world_uuid, x, y, z) VALUES (?, ?, ?, ?, ?, ?)";
+    private static final String LEGACY_STMT_UPDATE_HOME = "UPDATE homes SET world_uuid=?, x=?, y=?, z=? WHERE owner_uuid=? AND name=?";
+    private static final String LEGACY_STMT_DELETE_HOME = "DELETE FROM homes WHERE owner_uuid=? AND name=?";
+
+    // Rows fetched per round trip when streaming a whole table
+    private static final int STREAM_FETCH_SIZE = 10000;
+
+    private final SQLStatementRunner runner;
+    private final SQLReplicaRouter reads;
+    private final SQLTableVersion version;
+
+    public SQLHomesDao(SQLStatementRunner runner) throws DaoException {
+        this(runner, SQLReplicaRouter.primaryOnly(runner), SQLTableVersion.latest());
+    }
 
-    public SQLHomesDao(HikariDataSource source) throws SQLException {
-        this.source = source;
-        Connection connection = null;
-        Statement stmt = null;
-        try {
-            connection = this.source.getConnection();
-            stmt = connection.createStatement();
-            stmt.execute(STMT_CREATE_HOMES_TABLE);
-        } finally {
-            if (stmt != null) {
-                try { stmt.close(); } catch (SQLException ignored) {}
-            }
-            if (connection != null) {
-                try { connection.close(); } catch (SQLException ignored) {}
-            }
-        }
+    /**
+     * @param runner runner of the primary database
+     * @param reads routes home lookups by owner to a replica
+     * @param version which version of the table is read and written
+     * @throws DaoException if the table could not be created
+     */
+    public SQLHomesDao(SQLStatementRunner runner, SQLReplicaRouter reads, SQLTableVersion version) throws DaoException {
+        this.runner = runner;
+        this.reads = reads;
+        this.version = version;
+        this.runner.execute(STMT_CREATE_HOMES_TABLE);
     }
 
     @Override
     public Set<Home> getHomesByOwner(UUID uuid) throws DaoException {
-        Set<Home> homes = new HashSet<>();
-        Connection connection = null;
-        PreparedStatement stmt = null;
-        ResultSet results = null;
-
-        try {
-            connection = this.source.getConnection();
-            stmt = connection.prepareStatement(STMT_GET_HOMES);
-            stmt.setString(1, uuid.toString());
-            results = stmt.executeQuery();
-
+        boolean legacy = this.version.isReadingLegacy();
+        return this.reads.getRunner(uuid).query(legacy ? LEGACY_STMT_GET_HOMES : STMT_GET_HOMES, stmt -> SQLTableVersion.setUuid(stmt, 1, uuid, legacy), results -> {
+            Set<Home> homes = new HashSet<>();
             while (results.next()) {
-                UUID owner = UUID.fromString(results.getString("owner_uuid"));
-                UUID worldUuid = UUID.fromString(results.getString("world_uuid"));
-                String name = results.getString("name");
-                double x = results.getDouble("x");
-                double y = results.getDouble("y");
-                double z = results.getDouble("z");
-
-                Home home;
-                try {
-                    home = new Home(owner, name, worldUuid, x, y, z);
-                } catch (InvalidHomeNameException exception) {
-                    throw new AssertionError("Database contained invalid home name while fetching the homes of " + uuid, exception);
-                }
-                homes.add(home);
+                homes.add(readHome(results, legacy));
             }
+            return homes;
+        });
+    }
 
-        } catch (SQLException exception) {
-            throw new DaoException(exception);
-        } finally {
-            if (results != null) {
-                try { results.close(); } catch (SQLException ignored) {}
-            }
-            if (stmt != null) {
-                try { stmt.close(); } catch (SQLException ignored) {}
-            }
-            if (connection != null) {
-                try { connection.close(); } catch (SQLException ignored) {}
-            }
-        }
-        return homes;
+    @Override
+    public void forEachHome(Consumer<Home> consumer) throws DaoException {
+        boolean legacy = this.version.isReadingLegacy();
+        this.runner.stream(legacy ? LEGACY_STMT_GET_ALL_HOMES : STMT_GET_ALL_HOMES, STREAM_FETCH_SIZE, results -> consumer.accept(readHome(results, legacy)));
+    }
+
+    @Override
+    public boolean isEmpty() throws DaoException {
+        String sql = this.version.isReadingLegacy() ? LEGACY_STMT_HAS_ROWS : STMT_HAS_ROWS;
+        return this.runner.query(sql, stmt -> {}, results -> !results.next());
     }
 
     @Override
     public void insert(Home home) throws DaoException {
-        Connection connection = null;
-        PreparedStatement stmt = null;
+        this.insertAll(Collections.singletonList(home));
+    }
 
-        try {
-            connection = this.source.getConnection();
-            stmt = connection.prepareStatement(STMT_INSERT_HOME);
-            stmt.setString(1, home.getOwnerUUID().toString());
-            stmt.setString(2, home.getName());
-            stmt.setString(3, home.getWorldUUID().toString());
-            stmt.setDouble(4, home.getX());
-            stmt.setDouble(5, home.getY());
-            stmt.setDouble(6, home.getZ());
-            stmt.execute();
-
-        } catch (SQLException exception) {
-            throw new DaoException(exception);
-        } finally {
-            if (stmt != null) {
-                try { stmt.close(); } catch (SQLException ignored) {}
-            }
-            if (connection != null) {
-                try { connection.close(); } catch (SQLException ignored) {}
-            }
+    @Override
+    public void insertAll(Collection<Home> homes) throws DaoException {
+        if (homes.isEmpty()) {
+            return;
         }
+        this.runner.batches(this.version.batches(STMT_INSERT_HOME, LEGACY_STMT_INSERT_HOME, homes, SQLHomesDao::bindInsert));
+        this.reads.markWritten(homes.stream().map(Home::getOwnerUUID).collect(Collectors.toSet()));
     }
 
     @Override
     public void update(Home home) throws DaoException {
-        Connection connection = null;
-        PreparedStatement stmt = null;
-
-        try {
-            connection = this.source.getConnection();
-            stmt = connection.prepareStatement(STMT_UPDATE_HOME);
-            stmt.setString(1, home.getWorldUUID().toString());
-            stmt.setDouble(2, home.getX());
-            stmt.setDouble(3, home.getY());
-            stmt.setDouble(4, home.getZ());
-            stmt.setString(5, home.getOwnerUUID().toString());
-            stmt.setString(6, home.getName());
-            stmt.execute();
-
-        } catch (SQLException exception) {
-            throw new DaoException(exception);
-        } finally {
-            if (stmt != null) {
-                try { stmt.close(); } catch (SQLException ignored) {}
-            }
-            if (connection != null) {
-                try { connection.close(); } catch (SQLException ignored) {}
-            }
-        }
+        this.runner.batches(this.version.batches(STMT_UPDATE_HOME, LEGACY_STMT_UPDATE_HOME, Collections.singletonList(home), (stmt, item, legacy) -> {
+            SQLTableVersion.setUuid(stmt, 1, item.getWorldUUID(), legacy);
+            stmt.setDouble(2, item.getX());
+            stmt.setDouble(3, item.getY());
+            stmt.setDouble(4, item.getZ());
+            SQLTableVersion.setUuid(stmt, 5, item.getOwnerUUID(), legacy);
+            stmt.setString(6, item.getName());
+        }));
+        this.reads.markWritten(home.getOwnerUUID());
     }
 
     @Override
     public void delete(Home home) throws DaoException {
-        Connection connection = null;
-        PreparedStatement stmt = null;
+        this.runner.batches(this.version.batches(STMT_DELETE_HOME, LEGACY_STMT_DELETE_HOME, Collections.singletonList(home), (stmt, item, legacy) -> {
+            SQLTableVersion.setUuid(stmt, 1, item.getOwnerUUID(), legacy);
+            stmt.setString(2, item.getName());
+        }));
+        this.reads.markWritten(home.getOwnerUUID());
+    }
 
+    private static void bindInsert(PreparedStatement stmt, Home home, boolean legacy) throws SQLException {
+        SQLTableVersion.setUuid(stmt, 1, home.getOwnerUUID(), legacy);
+        stmt.setString(2, home.getName());
+        SQLTableVersion.setUuid(stmt, 3, home.getWorldUUID(), legacy);
+        stmt.setDouble(4, home.getX());
+        stmt.setDouble(5, home.getY());
+        stmt.setDouble(6, home.getZ());
+    }
+
+    private static Home readHome(ResultSet results, boolean legacy) throws SQLException {
+        UUID owner = SQLTableVersion.getUuid(results, "owner_uuid", legacy);
+        UUID worldUuid = SQLTableVersion.getUuid(results, "world_uuid", legacy);
+        String name = results.getString("name");
+        double x = results.getDouble("x");
+        double y = results.getDouble("y");
+        double z = results.getDouble("z");
         try {
-            connection = this.source.getConnection();
-            stmt = connection.prepareStatement(STMT_DELETE_HOME);
-            stmt.setString(1, home.getOwnerUUID().toString());
-            stmt.setString(2, home.getName());
-            stmt.execute();
-
-        } catch (SQLException exception) {
-            throw new DaoException(exception);
-        } finally {
-            if (stmt != null) {
-                try { stmt.close(); } catch (SQLException ignored) {}
-            }
-            if (connection != null) {
-                try { connection.close(); } catch (SQLException ignored) {}
-            }
+            return new Home(owner, name, worldUuid, x, y, z);
+        } catch (InvalidHomeNameException exception) {
+            throw new AssertionError("Database contained invalid home name while fetching the homes of " + owner, exception);
         }
     }
 
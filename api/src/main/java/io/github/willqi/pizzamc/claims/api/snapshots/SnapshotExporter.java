@@ -0,0 +1,250 @@
+package io.github.willqi.pizzamc.claims.api.snapshots;
+
+import io.github.willqi.pizzamc.claims.api.claims.ChunkCoordinates;
+import io.github.willqi.pizzamc.claims.api.claims.Claim;
+import io.github.willqi.pizzamc.claims.api.claims.ClaimHelper;
+import io.github.willqi.pizzamc.claims.api.daosources.DaoSource;
+import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
+import io.github.willqi.pizzamc.claims.api.homes.Home;
+import io.github.willqi.pizzamc.claims.api.users.User;
+
+import java.io.*;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.zip.CRC32;
+
+import static io.github.willqi.pizzamc.claims.api.snapshots.SnapshotFormat.*;
+
+/**
+ * Writes the tables of a {@link DaoSource} to a compact binary snapshot that can be restored by the {@link SnapshotImporter}.
+ * Rows are streamed from the daos and written in blocks, so the tables are never held in memory at once.
+ */
+public class SnapshotExporter {
+
+    private final DaoSource source;
+
+    public SnapshotExporter(DaoSource source) {
+        this.source = source;
+    }
+
+    /**
+     * Write every claim, claim helper, owner trust, home and user to a snapshot.
+     * The tables are read one after another, so changes made during the export may be partially included.
+     * @param output stream to write the snapshot to. It is flushed but not closed.
+     * @return statistics of the export
+     * @throws DaoException if a table could not be read
+     * @throws IOException if the snapshot could not be written
+     */
+    public SnapshotStats exportTo(OutputStream output) throws DaoException, IOException {
+        long startTime = System.currentTimeMillis();
+        BlockWriter writer = new BlockWriter(output);
+        writer.output.writeInt(MAGIC);
+        writer.output.writeInt(VERSION);
+
+        int claimCount = writer.writeSection(SECTION_CLAIMS, this.source.getClaimsDao()::forEachClaim, (columns, claims) -> {
+            for (Claim claim : claims) {
+                writeVarInt(columns, writer.getId(claim.getCoordinates().getWorldUUID()));
+            }
+            writeDeltas(columns, claims, claim -> claim.getCoordinates().getX());
+            writeDeltas(columns, claims, claim -> claim.getCoordinates().getZ());
+            for (Claim claim : claims) {
+                writeVarInt(columns, claim.getOwner().map(owner -> writer.getId(owner) + 1).orElse(0));
+            }
+            for (Claim claim : claims) {
+                writeVarInt(columns, claim.getFlags());
+            }
+        });
+
+        int helperCount = writer.<Map.Entry<ChunkCoordinates, ClaimHelper>>writeSection(SECTION_HELPERS,
+                consumer -> this.source.getClaimsHelperDao().forEachClaimHelper((coordinates, helper) -> consumer.accept(new AbstractMap.SimpleImmutableEntry<>(coordinates, helper))),
+                (columns, helpers) -> {
+                    for (Map.Entry<ChunkCoordinates, ClaimHelper> entry : helpers) {
+                        writeVarInt(columns, writer.getId(entry.getKey().getWorldUUID()));
+                    }
+                    writeDeltas(columns, helpers, entry -> entry.getKey().getX());
+                    writeDeltas(columns, helpers, entry -> entry.getKey().getZ());
+                    for (Map.Entry<ChunkCoordinates, ClaimHelper> entry : helpers) {
+                        writeVarInt(columns, writer.getId(entry.getValue().getUuid()));
+                    }
+                    for (Map.Entry<ChunkCoordinates, ClaimHelper> entry : helpers) {
+                        writeVarInt(columns, entry.getValue().getPermissions());
+                    }
+                });
+
+        int ownerTrustCount = writer.<Map.Entry<UUID, ClaimHelper>>writeSection(SECTION_OWNER_TRUSTS,
+                consumer -> this.source.getOwnerTrustsDao().forEachTrust((ownerUuid, helper) -> consumer.accept(new AbstractMap.SimpleImmutableEntry<>(ownerUuid, helper))),
+                (columns, trusts) -> {
+                    for (Map.Entry<UUID, ClaimHelper> entry : trusts) {
+                        writeVarInt(columns, writer.getId(entry.getKey()));
+                    }
+                    for (Map.Entry<UUID, ClaimHelper> entry : trusts) {
+                        writeVarInt(columns, writer.getId(entry.getValue().getUuid()));
+                    }
+                    for (Map.Entry<UUID, ClaimHelper> entry : trusts) {
+                        writeVarInt(columns, entry.getValue().getPermissions());
+                    }
+                });
+
+        int homeCount = writer.writeSection(SECTION_HOMES, this.source.getHomesDao()::forEachHome, (columns, homes) -> {
+            for (Home home : homes) {
+                writeVarInt(columns, writer.getId(home.getOwnerUUID()));
+            }
+            for (Home home : homes) {
+                columns.writeUTF(home.getName());
+            }
+            for (Home home : homes) {
+                writeVarInt(columns, writer.getId(home.getWorldUUID()));
+            }
+            for (Home home : homes) {
+                columns.writeDouble(home.getX());
+                columns.writeDouble(home.getY());
+                columns.writeDouble(home.getZ());
+            }
+        });
+
+        int userCount = writer.writeSection(SECTION_USERS, this.source.getUsersDao()::forEachUser, (columns, users) -> {
+            for (User user : users) {
+                writeVarInt(columns, writer.getId(user.getUUID()));
+            }
+            for (User user : users) {
+                columns.writeUTF(user.getName());
+            }
+        });
+
+        writer.output.writeByte(SECTION_END);
+        writer.output.flush();
+        return new SnapshotStats(claimCount, helperCount, ownerTrustCount, homeCount, userCount, writer.counter.count, System.currentTimeMillis() - startTime);
+    }
+
+    private static <T> void writeDeltas(DataOutput columns, List<T> rows, ToIntFunction<T> column) throws IOException {
+        int previous = 0;
+        for (T row : rows) {
+            int value = column.applyAsInt(row);
+            writeVarInt(columns, zigzag(value - previous));
+            previous = value;
+        }
+    }
+
+    @FunctionalInterface
+    private interface RowSource<T> {
+
+        void forEach(Consumer<T> consumer) throws DaoException;
+
+    }
+
+    @FunctionalInterface
+    private interface ColumnWriter<T> {
+
+        void write(DataOutput columns, List<T> rows) throws IOException;
+
+    }
+
+    /**
+     * Holds the uuid dictionary of a snapshot being written
+     */
+    private static class BlockWriter {
+
+        private final CountingOutputStream counter;
+        private final DataOutputStream output;
+
+        private final Map<UUID, Integer> dictionary = new HashMap<>();
+        private final List<UUID> newUuids = new ArrayList<>();
+
+        private final ByteArrayOutputStream columnBytes = new ByteArrayOutputStream();
+        private final DataOutputStream columns = new DataOutputStream(this.columnBytes);
+        private final ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+        private final DataOutputStream payload = new DataOutputStream(this.payloadBytes);
+        private final CRC32 crc = new CRC32();
+
+        public BlockWriter(OutputStream output) {
+            this.counter = new CountingOutputStream(output);
+            this.output = new DataOutputStream(new BufferedOutputStream(this.counter, 1 << 16));
+        }
+
+        public int getId(UUID uuid) {
+            Integer id = this.dictionary.get(uuid);
+            if (id == null) {
+                id = this.dictionary.size();
+                this.dictionary.put(uuid, id);
+                this.newUuids.add(uuid);
+            }
+            return id;
+        }
+
+        public <T> int writeSection(byte tag, RowSource<T> source, ColumnWriter<T> columnWriter) throws DaoException, IOException {
+            this.output.writeByte(tag);
+            List<T> block = new ArrayList<>(BLOCK_ROWS);
+            int[] rowCount = new int[1];
+            try {
+                source.forEach(row -> {
+                    block.add(row);
+                    if (block.size() >= BLOCK_ROWS) {
+                        try {
+                            this.writeBlock(block, columnWriter);
+                        } catch (IOException exception) {
+                            throw new UncheckedIOException(exception);
+                        }
+                        rowCount[0] += block.size();
+                        block.clear();
+                    }
+                });
+            } catch (UncheckedIOException exception) {
+                throw exception.getCause();
+            }
+            if (!block.isEmpty()) {
+                this.writeBlock(block, columnWriter);
+                rowCount[0] += block.size();
+            }
+            writeVarInt(this.output, 0);
+            return rowCount[0];
+        }
+
+        private <T> void writeBlock(List<T> rows, ColumnWriter<T> columnWriter) throws IOException {
+            // The columns are written first as they decide which uuids are new to the dictionary
+            this.columnBytes.reset();
+            columnWriter.write(this.columns, rows);
+
+            this.payloadBytes.reset();
+            writeVarInt(this.payload, this.newUuids.size());
+            for (UUID uuid : this.newUuids) {
+                this.payload.writeLong(uuid.getMostSignificantBits());
+                this.payload.writeLong(uuid.getLeastSignificantBits());
+            }
+            this.newUuids.clear();
+            this.columnBytes.writeTo(this.payload);
+
+            byte[] payloadArray = this.payloadBytes.toByteArray();
+            this.crc.reset();
+            this.crc.update(payloadArray, 0, payloadArray.length);
+            writeVarInt(this.output, rows.size());
+            writeVarInt(this.output, payloadArray.length);
+            this.output.write(payloadArray);
+            this.output.writeInt((int)this.crc.getValue());
+        }
+
+    }
+
+    private static class CountingOutputStream extends FilterOutputStream {
+
+        private long count;
+
+        public CountingOutputStream(OutputStream output) {
+            super(output);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            this.out.write(b);
+            this.count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            this.out.write(b, off, len);
+            this.count += len;
+        }
+
+    }
+
+}
@@ -0,0 +1,64 @@
+package io.github.willqi.pizzamc.claims.api.snapshots;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Layout of a snapshot:
+ * the magic and version, followed by one section per table and SECTION_END.
+ *
+ * A section is its tag followed by blocks of up to BLOCK_ROWS rows, ending with a block of 0 rows.
+ * A block is its row count, payload length, payload and the CRC32 of the payload.
+ * The payload starts with the uuids first used in the block, which are added to the uuid dictionary of the snapshot,
+ * followed by the columns of the rows. Uuids are written as their index in the dictionary
+ * and coordinates as the zigzag encoded difference to the previous row.
+ */
+final class SnapshotFormat {
+
+    static final int MAGIC = 0x505A534E;
+    static final int VERSION = 1;
+
+    static final int BLOCK_ROWS = 4096;
+
+    static final byte SECTION_END = 0;
+    static final byte SECTION_CLAIMS = 1;
+    static final byte SECTION_HELPERS = 2;
+    static final byte SECTION_OWNER_TRUSTS = 3;
+    static final byte SECTION_HOMES = 4;
+    static final byte SECTION_USERS = 5;
+
+    private SnapshotFormat() {}
+
+    static void writeVarInt(DataOutput output, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    static int readVarInt(DataInput input) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            byte b = input.readByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    /**
+     * Map signed values to unsigned values so that small negative values stay small varints
+     */
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+}
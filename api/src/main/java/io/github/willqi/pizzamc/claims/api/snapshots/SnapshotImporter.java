@@ -0,0 +1,327 @@
+package io.github.willqi.pizzamc.claims.api.snapshots;
+
+import io.github.willqi.pizzamc.claims.api.claims.ChunkCoordinates;
+import io.github.willqi.pizzamc.claims.api.claims.Claim;
+import io.github.willqi.pizzamc.claims.api.claims.ClaimHelper;
+import io.github.willqi.pizzamc.claims.api.daosources.DaoSource;
+import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
+import io.github.willqi.pizzamc.claims.api.exceptions.InvalidHomeNameException;
+import io.github.willqi.pizzamc.claims.api.homes.Home;
+import io.github.willqi.pizzamc.claims.api.users.User;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+import static io.github.willqi.pizzamc.claims.api.snapshots.SnapshotFormat.*;
+
+/**
+ * Restores a snapshot written by the {@link SnapshotExporter} into the tables of a {@link DaoSource}.
+ * The tables are expected to be empty, as rows that are already stored cannot be inserted again.
+ */
+public class SnapshotImporter {
+
+    private final DaoSource source;
+
+    public SnapshotImporter(DaoSource source) {
+        this.source = source;
+    }
+
+    /**
+     * Insert every row of a snapshot.
+     * Each block is verified before any of its rows are inserted, so a corrupt snapshot stops at the first bad block.
+     * @param input stream to read the snapshot from. It is not closed.
+     * @return statistics of the import
+     * @throws DaoException if a table is not empty or the rows could not be inserted
+     * @throws IOException if the snapshot could not be read or is corrupt
+     */
+    public SnapshotStats importFrom(InputStream input) throws DaoException, IOException {
+        // Checked up front so that an import never stops halfway on a row that already exists
+        if (!this.source.getClaimsDao().isEmpty()
+                || !this.source.getClaimsHelperDao().isEmpty()
+                || !this.source.getOwnerTrustsDao().isEmpty()
+                || !this.source.getHomesDao().isEmpty()
+                || !this.source.getUsersDao().isEmpty()) {
+            throw new DaoException("Snapshots can only be imported into empty storage");
+        }
+
+        long startTime = System.currentTimeMillis();
+        BlockReader reader = new BlockReader(input);
+        if (reader.input.readInt() != MAGIC) {
+            throw new IOException("Not a claims snapshot");
+        }
+        int version = reader.input.readInt();
+        if (version > VERSION) {
+            throw new IOException("Unsupported snapshot version " + version);
+        }
+
+        int claimCount = 0;
+        int helperCount = 0;
+        int ownerTrustCount = 0;
+        int homeCount = 0;
+        int userCount = 0;
+        byte tag;
+        while ((tag = reader.input.readByte()) != SECTION_END) {
+            switch (tag) {
+                case SECTION_CLAIMS:
+                    claimCount = this.readClaims(reader);
+                    break;
+                case SECTION_HELPERS:
+                    helperCount = this.readHelpers(reader);
+                    break;
+                case SECTION_OWNER_TRUSTS:
+                    ownerTrustCount = this.readOwnerTrusts(reader);
+                    break;
+                case SECTION_HOMES:
+                    homeCount = this.readHomes(reader);
+                    break;
+                case SECTION_USERS:
+                    userCount = this.readUsers(reader);
+                    break;
+                default:
+                    // Sections added by later versions are skipped
+                    while (reader.readBlock() != null) {}
+                    break;
+            }
+        }
+        return new SnapshotStats(claimCount, helperCount, ownerTrustCount, homeCount, userCount, reader.counter.count, System.currentTimeMillis() - startTime);
+    }
+
+    private int readClaims(BlockReader reader) throws DaoException, IOException {
+        int rowCount = 0;
+        DataInputStream columns;
+        while ((columns = reader.readBlock()) != null) {
+            int rows = reader.getBlockRows();
+            UUID[] worlds = reader.readUuids(columns, rows);
+            int[] xs = readDeltas(columns, rows);
+            int[] zs = readDeltas(columns, rows);
+            UUID[] owners = reader.readOptionalUuids(columns, rows);
+            List<Claim> claims = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                claims.add(new Claim(new ChunkCoordinates(worlds[i], xs[i], zs[i]), owners[i], readVarInt(columns)));
+            }
+            reader.finishBlock(columns);
+            this.source.getClaimsDao().insertAll(claims);
+            rowCount += rows;
+        }
+        return rowCount;
+    }
+
+    private int readHelpers(BlockReader reader) throws DaoException, IOException {
+        int rowCount = 0;
+        DataInputStream columns;
+        while ((columns = reader.readBlock()) != null) {
+            int rows = reader.getBlockRows();
+            UUID[] worlds = reader.readUuids(columns, rows);
+            int[] xs = readDeltas(columns, rows);
+            int[] zs = readDeltas(columns, rows);
+            UUID[] helperUuids = reader.readUuids(columns, rows);
+            Map<ChunkCoordinates, List<ClaimHelper>> helpers = new LinkedHashMap<>();
+            for (int i = 0; i < rows; i++) {
+                helpers.computeIfAbsent(new ChunkCoordinates(worlds[i], xs[i], zs[i]), coordinates -> new ArrayList<>())
+                        .add(new ClaimHelper(helperUuids[i], readVarInt(columns)));
+            }
+            reader.finishBlock(columns);
+            this.source.getClaimsHelperDao().insertAll(helpers);
+            rowCount += rows;
+        }
+        return rowCount;
+    }
+
+    private int readOwnerTrusts(BlockReader reader) throws DaoException, IOException {
+        int rowCount = 0;
+        DataInputStream columns;
+        while ((columns = reader.readBlock()) != null) {
+            int rows = reader.getBlockRows();
+            UUID[] owners = reader.readUuids(columns, rows);
+            UUID[] helperUuids = reader.readUuids(columns, rows);
+            Map<UUID, List<ClaimHelper>> trusts = new LinkedHashMap<>();
+            for (int i = 0; i < rows; i++) {
+                trusts.computeIfAbsent(owners[i], owner -> new ArrayList<>())
+                        .add(new ClaimHelper(helperUuids[i], readVarInt(columns)));
+            }
+            reader.finishBlock(columns);
+            this.source.getOwnerTrustsDao().insertAll(trusts);
+            rowCount += rows;
+        }
+        return rowCount;
+    }
+
+    private int readHomes(BlockReader reader) throws DaoException, IOException {
+        int rowCount = 0;
+        DataInputStream columns;
+        while ((columns = reader.readBlock()) != null) {
+            int rows = reader.getBlockRows();
+            UUID[] owners = reader.readUuids(columns, rows);
+            String[] names = new String[rows];
+            for (int i = 0; i < rows; i++) {
+                names[i] = columns.readUTF();
+            }
+            UUID[] worlds = reader.readUuids(columns, rows);
+            List<Home> homes = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                try {
+                    homes.add(new Home(owners[i], names[i], worlds[i], columns.readDouble(), columns.readDouble(), columns.readDouble()));
+                } catch (InvalidHomeNameException exception) {
+                    throw new IOException("Snapshot contained invalid home name " + names[i], exception);
+                }
+            }
+            reader.finishBlock(columns);
+            this.source.getHomesDao().insertAll(homes);
+            rowCount += rows;
+        }
+        return rowCount;
+    }
+
+    private int readUsers(BlockReader reader) throws DaoException, IOException {
+        int rowCount = 0;
+        DataInputStream columns;
+        while ((columns = reader.readBlock()) != null) {
+            int rows = reader.getBlockRows();
+            UUID[] uuids = reader.readUuids(columns, rows);
+            List<User> users = new ArrayList<>(rows);
+            for (int i = 0; i < rows; i++) {
+                users.add(new User(uuids[i], columns.readUTF()));
+            }
+            reader.finishBlock(columns);
+            this.source.getUsersDao().insertAll(users);
+            rowCount += rows;
+        }
+        return rowCount;
+    }
+
+    private static int[] readDeltas(DataInput columns, int rows) throws IOException {
+        int[] values = new int[rows];
+        int previous = 0;
+        for (int i = 0; i < rows; i++) {
+            previous += unzigzag(readVarInt(columns));
+            values[i] = previous;
+        }
+        return values;
+    }
+
+    /**
+     * Holds the uuid dictionary of a snapshot being read
+     */
+    private static class BlockReader {
+
+        private final CountingInputStream counter;
+        private final DataInputStream input;
+
+        private final List<UUID> dictionary = new ArrayList<>();
+        private final CRC32 crc = new CRC32();
+        private int blockRows;
+
+        public BlockReader(InputStream input) {
+            this.counter = new CountingInputStream(input);
+            this.input = new DataInputStream(new BufferedInputStream(this.counter, 1 << 16));
+        }
+
+        /**
+         * Read and verify the next block of the current section
+         * @return the columns of the block or null if the section ended
+         * @throws IOException if the block is corrupt
+         */
+        public DataInputStream readBlock() throws IOException {
+            this.blockRows = readVarInt(this.input);
+            if (this.blockRows == 0) {
+                return null;
+            }
+            int length = readVarInt(this.input);
+            if (this.blockRows < 0 || this.blockRows > BLOCK_ROWS || length < 0) {
+                throw new IOException("Snapshot block header is corrupt");
+            }
+            byte[] payload = new byte[length];
+            this.input.readFully(payload);
+            this.crc.reset();
+            this.crc.update(payload, 0, length);
+            if ((int)this.crc.getValue() != this.input.readInt()) {
+                throw new IOException("Snapshot block checksum mismatch");
+            }
+
+            DataInputStream columns = new DataInputStream(new ByteArrayInputStream(payload));
+            int newUuidCount = readVarInt(columns);
+            if (newUuidCount < 0 || newUuidCount > length / 16) {
+                throw new IOException("Snapshot block is corrupt");
+            }
+            for (int i = 0; i < newUuidCount; i++) {
+                this.dictionary.add(new UUID(columns.readLong(), columns.readLong()));
+            }
+            return columns;
+        }
+
+        public int getBlockRows() {
+            return this.blockRows;
+        }
+
+        public void finishBlock(DataInputStream columns) throws IOException {
+            if (columns.available() > 0) {
+                throw new IOException("Snapshot block has trailing data");
+            }
+        }
+
+        public UUID[] readUuids(DataInput columns, int rows) throws IOException {
+            UUID[] uuids = new UUID[rows];
+            for (int i = 0; i < rows; i++) {
+                uuids[i] = this.getUuid(readVarInt(columns));
+            }
+            return uuids;
+        }
+
+        /**
+         * Read uuids where 0 means no uuid
+         */
+        public UUID[] readOptionalUuids(DataInput columns, int rows) throws IOException {
+            UUID[] uuids = new UUID[rows];
+            for (int i = 0; i < rows; i++) {
+                int id = readVarInt(columns);
+                uuids[i] = id == 0 ? null : this.getUuid(id - 1);
+            }
+            return uuids;
+        }
+
+        private UUID getUuid(int id) throws IOException {
+            if (id < 0 || id >= this.dictionary.size()) {
+                throw new IOException("Snapshot referenced unknown uuid " + id);
+            }
+            return this.dictionary.get(id);
+        }
+
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        public CountingInputStream(InputStream input) {
+            super(input);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = this.in.read();
+            if (b != -1) {
+                this.count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = this.in.read(b, off, len);
+            if (read > 0) {
+                this.count += read;
+            }
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = this.in.skip(n);
+            this.count += skipped;
+            return skipped;
+        }
+
+    }
+
+}
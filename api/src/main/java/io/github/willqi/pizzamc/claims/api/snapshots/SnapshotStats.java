@@ -0,0 +1,63 @@
+package io.github.willqi.pizzamc.claims.api.snapshots;
+
+/**
+ * Statistics of exporting or importing a snapshot
+ */
+public class SnapshotStats {
+
+    private final int claimCount;
+    private final int helperCount;
+    private final int ownerTrustCount;
+    private final int homeCount;
+    private final int userCount;
+    private final long bytes;
+    private final long timeMillis;
+
+    public SnapshotStats(int claimCount, int helperCount, int ownerTrustCount, int homeCount, int userCount, long bytes, long timeMillis) {
+        this.claimCount = claimCount;
+        this.helperCount = helperCount;
+        this.ownerTrustCount = ownerTrustCount;
+        this.homeCount = homeCount;
+        this.userCount = userCount;
+        this.bytes = bytes;
+        this.timeMillis = timeMillis;
+    }
+
+    public int getClaimCount() {
+        return this.claimCount;
+    }
+
+    public int getHelperCount() {
+        return this.helperCount;
+    }
+
+    public int getOwnerTrustCount() {
+        return this.ownerTrustCount;
+    }
+
+    public int getHomeCount() {
+        return this.homeCount;
+    }
+
+    public int getUserCount() {
+        return this.userCount;
+    }
+
+    /**
+     * @return size of the snapshot
+     */
+    public long getBytes() {
+        return this.bytes;
+    }
+
+    public long getTimeMillis() {
+        return this.timeMillis;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%d claims, %d claim helpers, %d owner trusts, %d homes and %d users (%d bytes) in %dms",
+                this.claimCount, this.helperCount, this.ownerTrustCount, this.homeCount, this.userCount, this.bytes, this.timeMillis);
+    }
+
+}
@@ -1,5 +1,6 @@
 package io.github.willqi.pizzamc.claims.api.users;
 
+import io.github.willqi.pizzamc.claims.api.daosources.DaoExecutor;
 import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
 import io.github.willqi.pizzamc.claims.api.users.dao.UsersDao;
 
@@ -7,6 +8,8 @@ import java.util.Optional;
 import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  * Contrary to the other managers, the UsersManager does not use a cache
@@ -15,9 +18,19 @@ import java.util.concurrent.CompletionException;
 public class UsersManager {
 
     private final UsersDao usersDao;
+    private final Executor executor;
 
     public UsersManager(UsersDao usersDao) {
+        this(usersDao, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * @param usersDao
+     * @param executor executor used to run dao calls
+     */
+    public UsersManager(UsersDao usersDao, Executor executor) {
         this.usersDao = usersDao;
+        this.executor = executor;
     }
 
     /**
@@ -26,13 +39,13 @@ public class UsersManager {
      * @return an empty optional if there is no record of the player yet or a user if one does exist.
      */
     public CompletableFuture<Optional<User>> fetchUser(UUID uuid) {
-        return CompletableFuture.supplyAsync(() -> {
+        return DaoExecutor.supplyAsync(() -> {
             try {
                 return this.usersDao.getUserByUuid(uuid);
             } catch (DaoException exception) {
                 throw new CompletionException(exception);
             }
-        });
+        }, this.executor);
     }
 
     /**
@@ -41,13 +54,13 @@ public class UsersManager {
      * @return an empty optional if there is no record of the player yet or a user if one does exist.
      */
     public CompletableFuture<Optional<User>> fetchUser(String name) {
-        return CompletableFuture.supplyAsync(() -> {
+        return DaoExecutor.supplyAsync(() -> {
             try {
                 return this.usersDao.getUserByName(name);
             } catch (DaoException exception) {
                 throw new CompletionException(exception);
             }
-        });
+        }, this.executor);
     }
 
     /**
@@ -69,7 +82,7 @@ public class UsersManager {
             } catch (DaoException exception) {
                 throw new CompletionException(exception);
             }
-        });
+        }, this.executor);
     }
 
 }
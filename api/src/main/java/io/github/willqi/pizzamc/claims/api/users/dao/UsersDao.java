@@ -3,16 +3,43 @@ package io.github.willqi.pizzamc.claims.api.users.dao;
 import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
 import io.github.willqi.pizzamc.claims.api.users.User;
 
+import java.util.Collection;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public interface UsersDao {
 
     Optional<User> getUserByName(String name) throws DaoException;
     Optional<User> getUserByUuid(UUID uuid) throws DaoException;
 
+    /**
+     * Stream every stored user without keeping the whole table in memory
+     * @param consumer called for each user
+     * @throws DaoException
+     */
+    void forEachUser(Consumer<User> consumer) throws DaoException;
+
+    /**
+     * @return if no users are stored
+     * @throws DaoException
+     */
+    boolean isEmpty() throws DaoException;
+
     void insert(User user) throws DaoException;
     void update(User user) throws DaoException;
     void delete(User user) throws DaoException;
 
+    /**
+     * Insert many users at once.
+     * Implementations should write all users or none of them.
+     * @param users
+     * @throws DaoException
+     */
+    default void insertAll(Collection<User> users) throws DaoException {
+        for (User user : users) {
+            this.insert(user);
+        }
+    }
+
 }
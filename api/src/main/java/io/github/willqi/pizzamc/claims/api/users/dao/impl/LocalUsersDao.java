@@ -0,0 +1,185 @@
+package io.github.willqi.pizzamc.claims.api.users.dao.impl;
+
+import io.github.willqi.pizzamc.claims.api.daosources.LocalLog;
+import io.github.willqi.pizzamc.claims.api.daosources.LocalTable;
+import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
+import io.github.willqi.pizzamc.claims.api.users.User;
+import io.github.willqi.pizzamc.claims.api.users.dao.UsersDao;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+
+/**
+ * Users kept in memory and persisted through a {@link LocalLog}.
+ * Names are stored upper cased, like the SQL dao.
+ */
+public class LocalUsersDao implements UsersDao, LocalTable {
+
+    public static final byte TABLE_ID = 5;
+
+    private static final byte OP_PUT = 0;
+    private static final byte OP_DELETE = 1;
+
+    private final LocalLog log;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<UUID, String> names = new HashMap<>();
+    private final Map<String, UUID> uuids = new HashMap<>();
+
+    public LocalUsersDao(LocalLog log) {
+        this.log = log;
+    }
+
+    @Override
+    public Optional<User> getUserByName(String name) throws DaoException {
+        this.lock.readLock().lock();
+        try {
+            UUID uuid = this.uuids.get(name.toUpperCase(Locale.ROOT));
+            return uuid != null ? Optional.of(new User(uuid, name)) : Optional.empty();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public Optional<User> getUserByUuid(UUID uuid) throws DaoException {
+        this.lock.readLock().lock();
+        try {
+            String name = this.names.get(uuid);
+            return name != null ? Optional.of(new User(uuid, name)) : Optional.empty();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void forEachUser(Consumer<User> consumer) throws DaoException {
+        this.lock.readLock().lock();
+        try {
+            this.names.forEach((uuid, name) -> consumer.accept(new User(uuid, name)));
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return this.size() == 0;
+    }
+
+    @Override
+    public void insert(User user) throws DaoException {
+        this.lock.writeLock().lock();
+        try {
+            if (this.names.containsKey(user.getUUID())) {
+                throw new DaoException("User " + user.getUUID() + " is already stored");
+            }
+            String name = user.getName().toUpperCase(Locale.ROOT);
+            this.log.append(output -> writePut(output, user.getUUID(), name));
+            this.putUser(user.getUUID(), name);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void update(User user) throws DaoException {
+        this.lock.writeLock().lock();
+        try {
+            // Updating a user that is not stored does nothing, like an update that matches no rows
+            if (!this.names.containsKey(user.getUUID())) {
+                return;
+            }
+            String name = user.getName().toUpperCase(Locale.ROOT);
+            this.log.append(output -> writePut(output, user.getUUID(), name));
+            this.putUser(user.getUUID(), name);
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(User user) throws DaoException {
+        this.lock.writeLock().lock();
+        try {
+            if (!this.names.containsKey(user.getUUID())) {
+                return;
+            }
+            this.log.append(output -> {
+                output.writeByte(TABLE_ID);
+                output.writeByte(OP_DELETE);
+                LocalTable.writeUuid(output, user.getUUID());
+            });
+            this.removeUser(user.getUUID());
+        } finally {
+            this.lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public byte getTableId() {
+        return TABLE_ID;
+    }
+
+    @Override
+    public void replay(DataInput input) throws IOException {
+        byte op = input.readByte();
+        UUID uuid = LocalTable.readUuid(input);
+        if (op == OP_PUT) {
+            this.putUser(uuid, input.readUTF());
+        } else if (op == OP_DELETE) {
+            this.removeUser(uuid);
+        } else {
+            throw new IOException("Unknown user operation " + op);
+        }
+    }
+
+    @Override
+    public long writeSnapshot(LocalLog.RecordSink sink) throws IOException {
+        for (Map.Entry<UUID, String> entry : this.names.entrySet()) {
+            sink.append(output -> writePut(output, entry.getKey(), entry.getValue()));
+        }
+        return this.names.size();
+    }
+
+    @Override
+    public int size() {
+        this.lock.readLock().lock();
+        try {
+            return this.names.size();
+        } finally {
+            this.lock.readLock().unlock();
+        }
+    }
+
+    private void putUser(UUID uuid, String name) {
+        String oldName = this.names.put(uuid, name);
+        if (oldName != null) {
+            this.uuids.remove(oldName, uuid);
+        }
+        this.uuids.put(name, uuid);
+    }
+
+    private void removeUser(UUID uuid) {
+        String oldName = this.names.remove(uuid);
+        if (oldName != null) {
+            this.uuids.remove(oldName, uuid);
+        }
+    }
+
+    private static void writePut(DataOutput output, UUID uuid, String name) throws IOException {
+        output.writeByte(TABLE_ID);
+        output.writeByte(OP_PUT);
+        LocalTable.writeUuid(output, uuid);
+        output.writeUTF(name);
+    }
+
+}
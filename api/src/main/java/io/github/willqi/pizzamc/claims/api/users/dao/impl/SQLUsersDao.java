@@ -1,92 +1,93 @@
 package io.github.willqi.pizzamc.claims.api.users.dao.impl;
 
-import com.zaxxer.hikari.HikariDataSource;
+import io.github.willqi.pizzamc.claims.api.daosources.SQLReplicaRouter;
+import io.github.willqi.pizzamc.claims.api.daosources.SQLStatementRunner;
+import io.github.willqi.pizzamc.claims.api.daosources.SQLTableVersion;
 import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
 import io.github.willqi.pizzamc.claims.api.users.User;
 import io.github.willqi.pizzamc.claims.api.users.dao.UsersDao;
 
-import java.sql.*;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
 import java.util.Optional;
 import java.util.UUID;
+import java.util.function.Consumer;
 
 public class SQLUsersDao implements UsersDao {
 
-    private static final String STMT_CREATE_USERS_TABLE = "CREATE TABLE IF NOT EXISTS users (" +
-            "uuid VARCHAR(36) NOT NULL," +
+    private static final String STMT_CREATE_USERS_TABLE = "CREATE TABLE IF NOT EXISTS users_v2 (" +
+            "uuid BINARY(16) NOT NULL," +
             "name VARCHAR(16) NOT NULL," +
             "PRIMARY KEY(uuid)" +
             ");";
 
-    private static final String STMT_GET_USER_BY_NAME = "SELECT uuid FROM users WHERE name=UPPER(?);";
-    private static final String STMT_GET_USER_BY_UUID = "SELECT UPPER(name) FROM users WHERE uuid=?";
-    private static final String STMT_INSERT_USER = "INSERT INTO users (uuid, name) VALUES (?, UPPER(?));";
-    private static final String STMT_UPDATE_USER = "UPDATE users SET name=UPPER(?) WHERE uuid=?;";
-    private static final String STMT_DELETE_USER = "DELETE FROM users WHERE uuid=?";
-
-    private final HikariDataSource source;
-
-    public SQLUsersDao(HikariDataSource source) throws SQLException {
-        this.source = source;
-        Connection connection = null;
-        Statement stmt = null;
-        try {
-            connection = this.source.getConnection();
-            stmt = connection.createStatement();
-            stmt.execute(STMT_CREATE_USERS_TABLE);
-        } finally {
-            if (stmt != null) {
-                try { stmt.close(); } catch (SQLException ignored) {}
-            }
-            if (connection != null) {
-                try { connection.close(); } catch (SQLException ignored) {}
-            }
-        }
+    private static final String STMT_GET_USER_BY_NAME = "SELECT uuid FROM users_v2 WHERE name=UPPER(?);";
+    private static final String STMT_GET_USER_BY_UUID = "SELECT name FROM users_v2 WHERE uuid=?";
+    private static final String STMT_GET_ALL_USERS = "SELECT uuid, name FROM users_v2";
+    private static final String STMT_HAS_ROWS = "SELECT 1 FROM users_v2 LIMIT 1";
+    private static final String STMT_INSERT_USER = "INSERT INTO users_v2 (uuid, name) VALUES (?, UPPER(?));";
+    private static final String STMT_UPDATE_USER = "UPDATE users_v2 SET name=UPPER(?) WHERE uuid=?;";
+    private static final String STMT_DELETE_USER = "DELETE FROM users_v2 WHERE uuid=?";
+
+    // Statements of the version 1 table, used until it was copied
+    private static final String LEGACY_STMT_GET_USER_BY_NAME = "SELECT uuid FROM users WHERE name=UPPER(?);";
+    private static final String LEGACY_STMT_GET_USER_BY_UUID = "SELECT name FROM users WHERE uuid=?";
+    private static final String LEGACY_STMT_GET_ALL_USERS = "SELECT uuid, name FROM users";
+    private static final String LEGACY_STMT_HAS_ROWS = "SELECT 1 FROM users LIMIT 1";
+    private static final String LEGACY_STMT_INSERT_USER = "INSERT INTO users (uuid, name) VALUES (?, UPPER(?));";
+    private static final String LEGACY_STMT_UPDATE_USER = "UPDATE users SET name=UPPER(?) WHERE uuid=?;";
+    private static final String LEGACY_STMT_DELETE_USER = "DELETE FROM users WHERE uuid=?";
+
+    // Rows fetched per round trip when streaming a whole table
+    private static final int STREAM_FETCH_SIZE = 10000;
+
+    private final SQLStatementRunner runner;
+    private final SQLReplicaRouter reads;
+    private final SQLTableVersion version;
+
+    public SQLUsersDao(SQLStatementRunner runner) throws DaoException {
+        this(runner, SQLReplicaRouter.primaryOnly(runner), SQLTableVersion.latest());
+    }
+
+    /**
+     * @param runner runner of the primary database
+     * @param reads routes user lookups by uuid and name to a replica
+     * @param version which version of the table is read and written
+     * @throws DaoException if the table could not be created
+     */
+    public SQLUsersDao(SQLStatementRunner runner, SQLReplicaRouter reads, SQLTableVersion version) throws DaoException {
+        this.runner = runner;
+        this.reads = reads;
+        this.version = version;
+        this.runner.execute(STMT_CREATE_USERS_TABLE);
     }
 
     @Override
     public Optional<User> getUserByName(String name) throws DaoException {
-        Connection connection = null;
-        PreparedStatement stmt = null;
-        ResultSet results = null;
-        try {
-            connection = this.source.getConnection();
-            stmt = connection.prepareStatement(STMT_GET_USER_BY_NAME);
-            stmt.setString(1, name);
-            results = stmt.executeQuery();
-
+        boolean legacy = this.version.isReadingLegacy();
+        String sql = legacy ? LEGACY_STMT_GET_USER_BY_NAME : STMT_GET_USER_BY_NAME;
+        return this.reads.getRunner(name.toUpperCase(Locale.ROOT)).query(sql, stmt -> stmt.setString(1, name), results -> {
             if (results.next()) {
-                UUID uuid = UUID.fromString(results.getString("uuid"));
+                UUID uuid = SQLTableVersion.getUuid(results, "uuid", legacy);
                 User user = new User(uuid, name);
                 return Optional.of(user);
             } else {
                 return Optional.empty();
             }
-        } catch (SQLException exception) {
-            throw new DaoException(exception);
-        } finally {
-            if (results != null) {
-                try { results.close(); } catch (SQLException ignored) {}
-            }
-            if (stmt != null) {
-                try { stmt.close(); } catch (SQLException ignored) {}
-            }
-            if (connection != null) {
-                try { connection.close(); } catch (SQLException ignored) {}
-            }
-        }
+        });
     }
 
     @Override
     public Optional<User> getUserByUuid(UUID uuid) throws DaoException {
-        Connection connection = null;
-        PreparedStatement stmt = null;
-        ResultSet results = null;
-        try {
-            connection = this.source.getConnection();
-            stmt = connection.prepareStatement(STMT_GET_USER_BY_UUID);
-            stmt.setString(1, uuid.toString());
-            results = stmt.executeQuery();
-
+        boolean legacy = this.version.isReadingLegacy();
+        String sql = legacy ? LEGACY_STMT_GET_USER_BY_UUID : STMT_GET_USER_BY_UUID;
+        return this.reads.getRunner(uuid).query(sql, stmt -> SQLTableVersion.setUuid(stmt, 1, uuid, legacy), results -> {
             if (results.next()) {
                 String name = results.getString("name");
                 User user = new User(uuid, name);
@@ -94,84 +95,69 @@ public class SQLUsersDao implements UsersDao {
             } else {
                 return Optional.empty();
             }
-        } catch (SQLException exception) {
-            throw new DaoException(exception);
-        } finally {
-            if (results != null) {
-                try { results.close(); } catch (SQLException ignored) {}
-            }
-            if (stmt != null) {
-                try { stmt.close(); } catch (SQLException ignored) {}
-            }
-            if (connection != null) {
-                try { connection.close(); } catch (SQLException ignored) {}
-            }
-        }
+        });
+    }
+
+    @Override
+    public void forEachUser(Consumer<User> consumer) throws DaoException {
+        boolean legacy = this.version.isReadingLegacy();
+        this.runner.stream(legacy ? LEGACY_STMT_GET_ALL_USERS : STMT_GET_ALL_USERS, STREAM_FETCH_SIZE, results ->
+                consumer.accept(new User(SQLTableVersion.getUuid(results, "uuid", legacy), results.getString("name"))));
+    }
+
+    @Override
+    public boolean isEmpty() throws DaoException {
+        String sql = this.version.isReadingLegacy() ? LEGACY_STMT_HAS_ROWS : STMT_HAS_ROWS;
+        return this.runner.query(sql, stmt -> {}, results -> !results.next());
     }
 
     @Override
     public void insert(User user) throws DaoException {
-        Connection connection = null;
-        PreparedStatement stmt = null;
-        try {
-            connection = this.source.getConnection();
-            stmt = connection.prepareStatement(STMT_INSERT_USER);
-            stmt.setString(1, user.getUUID().toString());
-            stmt.setString(2, user.getName());
-            stmt.execute();
-        } catch (SQLException exception) {
-            throw new DaoException(exception);
-        } finally {
-            if (stmt != null) {
-                try { stmt.close(); } catch (SQLException ignored) {}
-            }
-            if (connection != null) {
-                try { connection.close(); } catch (SQLException ignored) {}
-            }
+        this.runner.batches(this.version.batches(STMT_INSERT_USER, LEGACY_STMT_INSERT_USER, Collections.singletonList(user), SQLUsersDao::bindInsert));
+        this.markWritten(user);
+    }
+
+    @Override
+    public void insertAll(Collection<User> users) throws DaoException {
+        if (users.isEmpty()) {
+            return;
+        }
+        this.runner.batches(this.version.batches(STMT_INSERT_USER, LEGACY_STMT_INSERT_USER, users, SQLUsersDao::bindInsert));
+        List<Object> keys = new ArrayList<>(users.size() * 2);
+        for (User user : users) {
+            keys.add(user.getUUID());
+            keys.add(user.getName().toUpperCase(Locale.ROOT));
         }
+        this.reads.markWritten(keys);
     }
 
     @Override
     public void update(User user) throws DaoException {
-        Connection connection = null;
-        PreparedStatement stmt = null;
-        try {
-            connection = this.source.getConnection();
-            stmt = connection.prepareStatement(STMT_UPDATE_USER);
-            stmt.setString(1, user.getName());
-            stmt.setString(2, user.getUUID().toString());
-            stmt.execute();
-        } catch (SQLException exception) {
-            throw new DaoException(exception);
-        } finally {
-            if (stmt != null) {
-                try { stmt.close(); } catch (SQLException ignored) {}
-            }
-            if (connection != null) {
-                try { connection.close(); } catch (SQLException ignored) {}
-            }
-        }
+        this.runner.batches(this.version.batches(STMT_UPDATE_USER, LEGACY_STMT_UPDATE_USER, Collections.singletonList(user), (stmt, item, legacy) -> {
+            stmt.setString(1, item.getName());
+            SQLTableVersion.setUuid(stmt, 2, item.getUUID(), legacy);
+        }));
+        this.markWritten(user);
     }
 
     @Override
     public void delete(User user) throws DaoException {
-        Connection connection = null;
-        PreparedStatement stmt = null;
-        try {
-            connection = this.source.getConnection();
-            stmt = connection.prepareStatement(STMT_DELETE_USER);
-            stmt.setString(1, user.getUUID().toString());
-            stmt.execute();
-        } catch (SQLException exception) {
-            throw new DaoException(exception);
-        } finally {
-            if (stmt != null) {
-                try { stmt.close(); } catch (SQLException ignored) {}
-            }
-            if (connection != null) {
-                try { connection.close(); } catch (SQLException ignored) {}
-            }
-        }
+        this.runner.batches(this.version.batches(STMT_DELETE_USER, LEGACY_STMT_DELETE_USER, Collections.singletonList(user),
+                (stmt, item, legacy) -> SQLTableVersion.setUuid(stmt, 1, item.getUUID(), legacy)));
+        this.markWritten(user);
+    }
+
+    private static void bindInsert(PreparedStatement stmt, User user, boolean legacy) throws SQLException {
+        SQLTableVersion.setUuid(stmt, 1, user.getUUID(), legacy);
+        stmt.setString(2, user.getName());
+    }
+
+    /**
+     * Names are keyed upper cased like they are stored.
+     * The previous name of a renamed user is unknown and may still be read from the replica until it catches up.
+     */
+    private void markWritten(User user) {
+        this.reads.markWritten(Arrays.asList(user.getUUID(), user.getName().toUpperCase(Locale.ROOT)));
     }
 
 }
@@ -0,0 +1,90 @@
+package io.github.willqi.pizzamc.claims.api.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class AsyncLoadingCacheTest {
+
+    @Test
+    public void concurrentGetsShouldShareOneLoad() {
+        AtomicInteger loads = new AtomicInteger();
+        CompletableFuture<String> pendingLoad = new CompletableFuture<>();
+        AsyncLoadingCache<Integer, String> cache = new AsyncLoadingCache<>(key -> {
+            loads.incrementAndGet();
+            return pendingLoad;
+        });
+
+        CompletableFuture<String> first = cache.get(1);
+        CompletableFuture<String> second = cache.get(1);
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+
+        pendingLoad.complete("value");
+        assertEquals("value", first.join());
+        assertEquals("value", cache.getIfPresent(1));
+        assertEquals("value", cache.get(1).join());
+        assertEquals(1, loads.get());
+
+        LoadStats stats = cache.getStats();
+        assertEquals(1, stats.getHitCount());
+        assertEquals(2, stats.getMissCount());
+        assertEquals(1, stats.getCoalescedLoadCount());
+        assertEquals(1, stats.getLoadCount());
+    }
+
+    @Test
+    public void failedLoadsShouldBeRetried() {
+        AtomicInteger loads = new AtomicInteger();
+        AsyncLoadingCache<Integer, String> cache = new AsyncLoadingCache<>(key -> {
+            if (loads.incrementAndGet() == 1) {
+                throw new IllegalStateException("first load fails");
+            }
+            return CompletableFuture.completedFuture("value");
+        });
+
+        assertTrue(cache.get(1).isCompletedExceptionally());
+        assertEquals("value", cache.get(1).join());
+        assertEquals(1, cache.getStats().getFailedLoadCount());
+    }
+
+    @Test
+    public void leastRecentlyUsedValueShouldBeEvicted() {
+        AsyncLoadingCache<Integer, String> cache = new AsyncLoadingCache<>(key -> CompletableFuture.completedFuture("value" + key),
+                2, 0, 0, TimeUnit.MILLISECONDS);
+
+        cache.get(1).join();
+        cache.get(2).join();
+        cache.get(1).join();
+        cache.get(3).join();
+
+        assertEquals(2, cache.size());
+        assertNotNull(cache.getIfPresent(1));
+        assertNull(cache.getIfPresent(2));
+        assertNotNull(cache.getIfPresent(3));
+    }
+
+    @Test
+    public void staleValuesShouldBeRefreshedAndExpiredValuesReloaded() throws InterruptedException {
+        AtomicInteger loads = new AtomicInteger();
+        AsyncLoadingCache<Integer, Integer> refreshingCache = new AsyncLoadingCache<>(key -> CompletableFuture.completedFuture(loads.incrementAndGet()),
+                0, 0, 1, TimeUnit.MILLISECONDS);
+        assertEquals(1, (int)refreshingCache.get(1).join());
+        Thread.sleep(5);
+        // The stale value is returned while the refresh replaces it
+        assertEquals(1, (int)refreshingCache.get(1).join());
+        assertEquals(2, (int)refreshingCache.getIfPresent(1));
+
+        AsyncLoadingCache<Integer, String> expiringCache = new AsyncLoadingCache<>(key -> CompletableFuture.completedFuture("value"),
+                0, 1, 0, TimeUnit.MILLISECONDS);
+        expiringCache.put(1, "old");
+        Thread.sleep(5);
+        assertNull(expiringCache.getIfPresent(1));
+        assertEquals("value", expiringCache.get(1).join());
+    }
+
+}
@@ -9,21 +9,21 @@ import java.util.UUID;
 public class ClaimHelperTest {
 
     @Test
-    public void addPermissionShouldNotReaddAPermission() {
-        ClaimHelper helper = new ClaimHelper(UUID.randomUUID(), 0);
-        helper.addPermission(ClaimHelper.Permission.BUILD);
-        helper.addPermission(ClaimHelper.Permission.BUILD);
+    public void withPermissionShouldNotReaddAPermission() {
+        ClaimHelper helper = new ClaimHelper(UUID.randomUUID(), 0)
+                .withPermission(ClaimHelper.Permission.BUILD)
+                .withPermission(ClaimHelper.Permission.BUILD);
         assertEquals(ClaimHelper.Permission.BUILD.getValue(), helper.getPermissions());
     }
 
     @Test
-    public void removePermissionShouldNotRemoveAPermissionThatDoesNotExist() {
-        ClaimHelper helper = new ClaimHelper(UUID.randomUUID(), 0);
-        helper.addPermission(ClaimHelper.Permission.BUILD);
-        helper.removePermission(ClaimHelper.Permission.INTERACT);
+    public void withoutPermissionShouldNotRemoveAPermissionThatDoesNotExist() {
+        ClaimHelper helper = new ClaimHelper(UUID.randomUUID(), 0)
+                .withPermission(ClaimHelper.Permission.BUILD)
+                .withoutPermission(ClaimHelper.Permission.INTERACT);
         assertEquals(ClaimHelper.Permission.BUILD.getValue(), helper.getPermissions());
 
-        helper.removePermission(ClaimHelper.Permission.BUILD);
+        helper = helper.withoutPermission(ClaimHelper.Permission.BUILD);
         assertEquals(0, helper.getPermissions());
     }
 
@@ -1,6 +1,7 @@
 package io.github.willqi.pizzamc.claims.api.claims;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 
 import org.junit.jupiter.api.Test;
 
@@ -12,22 +13,29 @@ public class ClaimTest {
     private static final ChunkCoordinates DEFAULT_COORDINATES = new ChunkCoordinates(NULL_UUID, 0, 0);
 
     @Test
-    public void addFlagShouldNotReaddAFlag() {
-        Claim claim = new Claim(DEFAULT_COORDINATES, 0);
-        claim.addFlag(Claim.Flag.ALWAYS_DAY);
-        claim.addFlag(Claim.Flag.ALWAYS_DAY);
+    public void withFlagShouldNotReaddAFlag() {
+        Claim claim = new Claim(DEFAULT_COORDINATES, 0)
+                .withFlag(Claim.Flag.ALWAYS_DAY)
+                .withFlag(Claim.Flag.ALWAYS_DAY);
         assertEquals(Claim.Flag.ALWAYS_DAY.getValue(), claim.getFlags());
     }
 
     @Test
-    public void removeFlagShouldNotRemoveAFlagThatDoesNotExist() {
-        Claim claim = new Claim(DEFAULT_COORDINATES, 0);
-        claim.removeFlag(Claim.Flag.ALWAYS_DAY);
+    public void withoutFlagShouldNotRemoveAFlagThatDoesNotExist() {
+        Claim claim = new Claim(DEFAULT_COORDINATES, 0).withoutFlag(Claim.Flag.ALWAYS_DAY);
         assertEquals(0, claim.getFlags());
 
-        claim.addFlag(Claim.Flag.ALWAYS_DAY);
-        claim.removeFlag(Claim.Flag.ALWAYS_DAY);
+        claim = claim.withFlag(Claim.Flag.ALWAYS_DAY).withoutFlag(Claim.Flag.ALWAYS_DAY);
+        assertEquals(0, claim.getFlags());
+    }
+
+    @Test
+    public void withMethodsShouldNotModifyTheOriginalClaim() {
+        Claim claim = new Claim(DEFAULT_COORDINATES, 0);
+        claim.withFlag(Claim.Flag.DENY_PVP);
+        claim.withOwner(NULL_UUID);
         assertEquals(0, claim.getFlags());
+        assertFalse(claim.getOwner().isPresent());
     }
 
 }
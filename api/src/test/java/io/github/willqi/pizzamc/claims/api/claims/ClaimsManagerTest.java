@@ -5,14 +5,27 @@ import static org.mockito.Mockito.*;
 
 import io.github.willqi.pizzamc.claims.api.claims.dao.ClaimsDao;
 import io.github.willqi.pizzamc.claims.api.claims.dao.ClaimHelpersDao;
+import io.github.willqi.pizzamc.claims.api.claims.dao.OwnerTrustsDao;
+import io.github.willqi.pizzamc.claims.api.claims.sync.ClaimUpdate;
+import io.github.willqi.pizzamc.claims.api.claims.sync.ClaimUpdateBus;
+import io.github.willqi.pizzamc.claims.api.claims.sync.LoopbackClaimUpdateBus;
+import io.github.willqi.pizzamc.claims.api.daosources.LocalDaoSource;
 import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
 import org.junit.jupiter.api.Test;
-
-import java.util.HashSet;
-import java.util.Optional;
-import java.util.Set;
-import java.util.UUID;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatcher;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class ClaimsManagerTest {
 
@@ -123,8 +136,7 @@ public class ClaimsManagerTest {
         ClaimsManager claimsManager = new ClaimsManager(mockClaimsDao, new TestClaimHelpersDao());
         try {
             claimsManager.saveClaim(daoClaim).get();
-            daoClaim.setFlags(0);
-            claimsManager.saveClaim(daoClaim).get();
+            claimsManager.saveClaim(daoClaim.withFlags(0)).get();
         } catch (InterruptedException | ExecutionException exception) {
             throw new AssertionError("saveClaim threw an error somehow", exception);
         }
@@ -149,8 +161,7 @@ public class ClaimsManagerTest {
         try {
             claimsManager.saveClaim(daoClaim).get();    // Insert claim
 
-            daoClaim.setOwner(UUID.fromString("10000000-0000-0000-0000-000000000000"));
-            claimsManager.saveClaim(daoClaim).get();    // This should update the claim
+            claimsManager.saveClaim(daoClaim.withOwner(UUID.fromString("10000000-0000-0000-0000-000000000000"))).get();    // This should update the claim
         } catch (InterruptedException | ExecutionException exception) {
             throw new AssertionError("saveClaim threw an error somehow", exception);
         }
@@ -181,7 +192,7 @@ public class ClaimsManagerTest {
 
 
     @Test
-    public void fetchAndGetClaimShouldReturnAClone() {
+    public void fetchAndGetClaimShouldReturnTheSavedSnapshot() {
         Claim daoClaim = new Claim(DEFAULT_COORDINATES, 1);
 
         ClaimsManager claimsManager = new ClaimsManager(new TestClaimsDao() {
@@ -193,39 +204,31 @@ public class ClaimsManagerTest {
 
         }, new TestClaimHelpersDao());
 
-        // Check flags of fetched claim to ensure it is different
         try {
             claimsManager.saveClaim(daoClaim).get();
-            daoClaim.setFlags(2);
-            Claim fetchedClaim = claimsManager.fetchClaim(daoClaim.getCoordinates()).get();
-            assertNotEquals(daoClaim.getFlags(), fetchedClaim.getFlags());
 
-            // Ensure that the fetched claim returns a cloned claim and that it does not modify the original
-            fetchedClaim.setFlags(3);
-            assertNotEquals(fetchedClaim.getFlags(), claimsManager.fetchClaim(daoClaim.getCoordinates()).get().getFlags());
+            // Creating a modified copy should not affect the cached claim
+            Claim modifiedClaim = daoClaim.withFlags(2);
+            Claim fetchedClaim = claimsManager.fetchClaim(daoClaim.getCoordinates()).get();
+            assertSame(daoClaim, fetchedClaim);
+            assertNotEquals(modifiedClaim.getFlags(), fetchedClaim.getFlags());
         } catch (InterruptedException | ExecutionException exception) {
             throw new AssertionError("fetchClaim threw an error somehow", exception);
         }
 
-        // Check flags of cached claim to ensure they are different
         Optional<Claim> cachedClaim = claimsManager.getClaim(daoClaim.getCoordinates());
         if (!cachedClaim.isPresent()) {
             throw new AssertionError("Cached claim was not present for some reason");
         }
-        assertNotEquals(daoClaim.getFlags(), cachedClaim.get().getFlags());
-
-        // The cached claim should be a duplicate of the original claim
-        cachedClaim.get().setFlags(daoClaim.getFlags());
-        assertNotEquals(cachedClaim.get().getFlags(), claimsManager.getClaim(daoClaim.getCoordinates()).get().getFlags());
-
+        assertSame(daoClaim, cachedClaim.get());
     }
 
     @Test
     public void fetchAndGetClaimCountShouldReturnClaimCountOfUuid() throws DaoException {
         TestClaimsDao mockClaimsDao = spy(new TestClaimsDao(){
             @Override
-            public int getClaimCountOfUuid(UUID uuid) {
-                return 1;
+            public List<ChunkCoordinates> getCoordinatesOfOwner(UUID uuid) {
+                return Collections.singletonList(new ChunkCoordinates(NULL_UUID, 0, 0));
             }
         });
         ClaimsManager claimsManager = new ClaimsManager(mockClaimsDao, new TestClaimHelpersDao());
@@ -235,7 +238,8 @@ public class ClaimsManagerTest {
         } catch (InterruptedException | ExecutionException exception) {
             throw new AssertionError("fetchClaimCount threw an exception somehow.", exception);
         }
-        verify(mockClaimsDao, times(1)).getClaimCountOfUuid(NULL_UUID);
+        verify(mockClaimsDao, times(1)).getCoordinatesOfOwner(NULL_UUID);
+        verify(mockClaimsDao, never()).getClaimsOfOwner(any(UUID.class), anyInt(), anyInt());
 
         Optional<Integer> result = claimsManager.getClaimCount(NULL_UUID);
         if (result.isPresent()) {
@@ -258,8 +262,7 @@ public class ClaimsManagerTest {
             // Steal someone else's claim
             Claim tempNotOurClaim = new Claim(new ChunkCoordinates(NULL_UUID, 1, 1), UUID.fromString("10000000-0000-0000-0000-000000000000"), 0);
             claimsManager.saveClaim(tempNotOurClaim).get();
-            tempNotOurClaim.setOwner(NULL_UUID);
-            claimsManager.saveClaim(tempNotOurClaim).get();
+            claimsManager.saveClaim(tempNotOurClaim.withOwner(NULL_UUID)).get();
 
         } catch (InterruptedException | ExecutionException exception) {
             throw new AssertionError("saveClaim threw an exception somehow.", exception);
@@ -282,8 +285,7 @@ public class ClaimsManagerTest {
             // Remove a claim we own.
             Claim ourClaim = new Claim(new ChunkCoordinates(NULL_UUID, 0, 0), NULL_UUID, 0);
             claimsManager.saveClaim(ourClaim).get();
-            ourClaim.setOwner(null);
-            claimsManager.saveClaim(ourClaim).get();
+            claimsManager.saveClaim(ourClaim.withOwner(null)).get();
 
         } catch (InterruptedException | ExecutionException exception) {
             throw new AssertionError("saveClaim threw an exception somehow.", exception);
@@ -297,6 +299,25 @@ public class ClaimsManagerTest {
         }
     }
 
+    @Test
+    public void ownersThatAreNotRetainedShouldBeDroppedFromTheCache() {
+        UUID onlineUuid = UUID.randomUUID();
+        UUID offlineUuid = UUID.randomUUID();
+        ClaimsManager claimsManager = new ClaimsManager(new TestClaimsDao(), new TestClaimHelpersDao());
+        claimsManager.fetchClaimCount(onlineUuid).join();
+        claimsManager.fetchClaimRegions(offlineUuid).join();
+
+        claimsManager.retainClaimCountsInCache(Collections.singleton(onlineUuid));
+        assertEquals(Optional.of(0), claimsManager.getClaimCount(onlineUuid));
+        assertEquals(Optional.empty(), claimsManager.getClaimCount(offlineUuid));
+
+        // Claims of owners that are not tracked are not tracked again when they change
+        claimsManager.saveClaim(new Claim(DEFAULT_COORDINATES, offlineUuid, 0)).join();
+        assertEquals(Optional.empty(), claimsManager.getClaimCount(offlineUuid));
+        claimsManager.removeClaimCountFromCache(onlineUuid);
+        assertEquals(Optional.empty(), claimsManager.getClaimCount(onlineUuid));
+    }
+
     @Test
     public void updatingClaimFlagsShouldNotChangeClaimCountOfUuid() {
         ClaimsManager claimsManager = new ClaimsManager(new TestClaimsDao(), new TestClaimHelpersDao());
@@ -306,8 +327,7 @@ public class ClaimsManagerTest {
             // Remove a claim we own.
             Claim ourClaim = new Claim(new ChunkCoordinates(NULL_UUID, 0, 0), NULL_UUID, 0);
             claimsManager.saveClaim(ourClaim).get();
-            ourClaim.setFlags(5);
-            claimsManager.saveClaim(ourClaim).get();
+            claimsManager.saveClaim(ourClaim.withFlags(5)).get();
 
         } catch (InterruptedException | ExecutionException exception) {
             throw new AssertionError("saveClaim threw an exception somehow.", exception);
@@ -323,10 +343,471 @@ public class ClaimsManagerTest {
 
 
 
+    @Test
+    public void fetchClaimsShouldLoadUncachedChunksWithOneRegionQuery() throws DaoException {
+        UUID ownerUuid = UUID.randomUUID();
+        UUID helperUuid = UUID.randomUUID();
+        ChunkCoordinates claimedCoordinates = new ChunkCoordinates(NULL_UUID, 1, 1);
+        Claim claimedClaim = new Claim(claimedCoordinates, ownerUuid, 0);
+
+        ClaimsDao mockClaimsDao = spy(new TestClaimsDao() {
+
+            @Override
+            public Set<Claim> getClaimsInRegion(UUID worldUuid, int minX, int minZ, int maxX, int maxZ) {
+                return Collections.singleton(claimedClaim);
+            }
+
+        });
+        ClaimHelpersDao mockHelpersDao = spy(new TestClaimHelpersDao() {
+
+            @Override
+            public Map<ChunkCoordinates, Set<ClaimHelper>> getClaimHelpersInRegion(UUID worldUuid, int minX, int minZ, int maxX, int maxZ) {
+                return Collections.singletonMap(claimedCoordinates, Collections.singleton(new ClaimHelper(helperUuid, ClaimHelper.Permission.BUILD.getValue())));
+            }
+
+        });
+        ClaimsManager claimsManager = new ClaimsManager(mockClaimsDao, mockHelpersDao);
+
+        List<ChunkCoordinates> window = new ArrayList<>();
+        for (int x = 0; x <= 2; x++) {
+            for (int z = 0; z <= 2; z++) {
+                window.add(new ChunkCoordinates(NULL_UUID, x, z));
+            }
+        }
+        Map<ChunkCoordinates, Claim> claims = claimsManager.fetchClaims(window).join();
+
+        assertEquals(9, claims.size());
+        assertEquals(claimedClaim, claims.get(claimedCoordinates));
+        assertFalse(claims.get(DEFAULT_COORDINATES).getOwner().isPresent());
+        assertEquals(PermissionState.ALLOWED, claimsManager.checkPermission(claimsManager.getWorldId(NULL_UUID), 1, 1, helperUuid, ClaimHelper.Permission.BUILD));
+
+        // Everything is cached now
+        claimsManager.fetchClaims(window).join();
+        claimsManager.fetchClaim(claimedCoordinates).join();
+        verify(mockClaimsDao, times(1)).getClaimsInRegion(NULL_UUID, 0, 0, 2, 2);
+        verify(mockHelpersDao, times(1)).getClaimHelpersInRegion(NULL_UUID, 0, 0, 2, 2);
+        verify(mockClaimsDao, never()).getClaimByLocation(any(ChunkCoordinates.class));
+    }
+
+    @Test
+    public void unclaimedChunksShouldStayCachedAfterRemovingClaimFromCache() throws DaoException {
+        ClaimsDao mockClaimsDao = spy(new TestClaimsDao());
+        ClaimsManager claimsManager = new ClaimsManager(mockClaimsDao, new TestClaimHelpersDao());
+        int worldId = claimsManager.getWorldId(NULL_UUID);
+
+        assertFalse(claimsManager.fetchClaim(DEFAULT_COORDINATES).join().getOwner().isPresent());
+        claimsManager.removeClaimFromCache(DEFAULT_COORDINATES);
+
+        assertEquals(PermissionState.ALLOWED, claimsManager.checkPermission(worldId, 0, 0, UUID.randomUUID(), ClaimHelper.Permission.BUILD));
+        assertTrue(claimsManager.getClaim(DEFAULT_COORDINATES).isPresent());
+        claimsManager.fetchClaim(DEFAULT_COORDINATES).join();
+        verify(mockClaimsDao, times(1)).getClaimByLocation(DEFAULT_COORDINATES);
+    }
+
+    @Test
+    public void fullCacheShouldEvictUnpinnedChunks() {
+        UUID ownerUuid = UUID.randomUUID();
+        ClaimsManager claimsManager = new ClaimsManager(new TestClaimsDao(), new TestClaimHelpersDao(), null, ForkJoinPool.commonPool(), 0, 1, 2);
+        ChunkCoordinates pinnedCoordinates = new ChunkCoordinates(NULL_UUID, 0, 0);
+        ChunkCoordinates firstCoordinates = new ChunkCoordinates(NULL_UUID, 1, 0);
+        ChunkCoordinates secondCoordinates = new ChunkCoordinates(NULL_UUID, 2, 0);
+
+        claimsManager.pinChunk(pinnedCoordinates);
+        claimsManager.saveClaim(new Claim(pinnedCoordinates, ownerUuid, 0)).join();
+        claimsManager.saveClaim(new Claim(firstCoordinates, ownerUuid, 0)).join();
+        claimsManager.saveClaim(new Claim(secondCoordinates, ownerUuid, 0)).join();
+
+        assertEquals(1, claimsManager.getEvictedChunkCount());
+        assertTrue(claimsManager.getClaim(pinnedCoordinates).isPresent());
+        assertFalse(claimsManager.getClaim(firstCoordinates).isPresent());
+        assertTrue(claimsManager.getClaim(secondCoordinates).isPresent());
+    }
+
+    @Test
+    public void unpinnedChunksShouldStayCachedUntilTheyExpire() throws DaoException, InterruptedException {
+        ClaimsDao mockClaimsDao = spy(new TestClaimsDao());
+        ClaimsManager claimsManager = new ClaimsManager(mockClaimsDao, new TestClaimHelpersDao());
+        claimsManager.pinChunk(DEFAULT_COORDINATES);
+        claimsManager.saveClaim(new Claim(DEFAULT_COORDINATES, UUID.randomUUID(), 0)).join();
+
+        claimsManager.unpinChunk(DEFAULT_COORDINATES);
+        claimsManager.removeUnpinnedChunksFromCache(60_000);
+        claimsManager.pinChunk(DEFAULT_COORDINATES);
+        assertTrue(claimsManager.getClaim(DEFAULT_COORDINATES).isPresent());
+        assertEquals(1, claimsManager.getAvoidedReloadCount());
+
+        claimsManager.unpinChunk(DEFAULT_COORDINATES);
+        Thread.sleep(5);
+        claimsManager.removeUnpinnedChunksFromCache(1);
+        assertFalse(claimsManager.getClaim(DEFAULT_COORDINATES).isPresent());
+        assertEquals(1, claimsManager.getExpiredChunkCount());
+        // Only queried by saveClaim
+        verify(mockClaimsDao, times(1)).getClaimByLocation(DEFAULT_COORDINATES);
+    }
+
+    @Test
+    public void savingClaimShouldReplaceUnclaimedChunk() throws DaoException {
+        UUID ownerUuid = UUID.randomUUID();
+        ClaimsDao mockClaimsDao = spy(new TestClaimsDao());
+        ClaimsManager claimsManager = new ClaimsManager(mockClaimsDao, new TestClaimHelpersDao());
+        int worldId = claimsManager.getWorldId(NULL_UUID);
+
+        claimsManager.fetchClaim(DEFAULT_COORDINATES).join();
+        Claim claim = new Claim(DEFAULT_COORDINATES, ownerUuid, 0);
+        claimsManager.saveClaim(claim).join();
+
+        verify(mockClaimsDao, times(1)).insert(claim);
+        assertEquals(PermissionState.DENIED, claimsManager.checkPermission(worldId, 0, 0, UUID.randomUUID(), ClaimHelper.Permission.BUILD));
+
+        claimsManager.deleteClaim(claim).join();
+        claimsManager.removeClaimFromCache(DEFAULT_COORDINATES);
+        assertEquals(PermissionState.ALLOWED, claimsManager.checkPermission(worldId, 0, 0, UUID.randomUUID(), ClaimHelper.Permission.BUILD));
+    }
+
+    @Test
+    public void preloadClaimsShouldCacheEverythingAndStopQueryingDaos() throws DaoException {
+        UUID ownerUuid = UUID.randomUUID();
+        UUID helperUuid = UUID.randomUUID();
+        Claim claim = new Claim(DEFAULT_COORDINATES, ownerUuid, 0);
+
+        ClaimsDao mockClaimsDao = spy(new TestClaimsDao() {
+
+            @Override
+            public void forEachClaim(Consumer<Claim> consumer) {
+                consumer.accept(claim);
+            }
+
+        });
+        ClaimHelpersDao mockHelpersDao = spy(new TestClaimHelpersDao() {
+
+            @Override
+            public void forEachClaimHelper(BiConsumer<ChunkCoordinates, ClaimHelper> consumer) {
+                consumer.accept(DEFAULT_COORDINATES, new ClaimHelper(helperUuid, ClaimHelper.Permission.BUILD.getValue()));
+            }
+
+        });
+        ClaimsManager claimsManager = new ClaimsManager(mockClaimsDao, mockHelpersDao);
+        int worldId = claimsManager.getWorldId(NULL_UUID);
+
+        PreloadStats stats = claimsManager.preloadClaims().join();
+        assertEquals(1, stats.getClaimCount());
+        assertEquals(1, stats.getHelperCount());
+        assertTrue(stats.getBytesPerClaim() > 0);
+        assertTrue(stats.getBytesPerHelper() > 0);
+        assertTrue(claimsManager.isPreloaded());
+
+        // Unloading chunks should not evict anything and unknown chunks are unclaimed
+        claimsManager.removeClaimFromCache(DEFAULT_COORDINATES);
+        assertEquals(PermissionState.ALLOWED, claimsManager.checkPermission(worldId, 0, 0, helperUuid, ClaimHelper.Permission.BUILD));
+        assertEquals(PermissionState.DENIED, claimsManager.checkPermission(worldId, 0, 0, UUID.randomUUID(), ClaimHelper.Permission.BUILD));
+        assertEquals(PermissionState.ALLOWED, claimsManager.checkPermission(worldId, 5, 5, UUID.randomUUID(), ClaimHelper.Permission.BUILD));
+        assertFalse(claimsManager.fetchClaim(new ChunkCoordinates(NULL_UUID, 5, 5)).join().getOwner().isPresent());
+        assertTrue(claimsManager.fetchClaimHelpers(new ChunkCoordinates(NULL_UUID, 5, 5)).join().isEmpty());
+
+        verify(mockClaimsDao, never()).getClaimByLocation(any(ChunkCoordinates.class));
+        verify(mockHelpersDao, never()).getClaimHelpersByLocation(any(ChunkCoordinates.class));
+    }
+
+    @Test
+    public void preloadClaimsShouldIndexClaimsByOwner() throws DaoException {
+        UUID ownerUuid = UUID.randomUUID();
+        ClaimsDao mockClaimsDao = spy(new TestClaimsDao() {
+
+            @Override
+            public void forEachClaim(Consumer<Claim> consumer) {
+                consumer.accept(new Claim(DEFAULT_COORDINATES, ownerUuid, 0));
+            }
+
+        });
+        ClaimsManager claimsManager = new ClaimsManager(mockClaimsDao, new TestClaimHelpersDao());
+        claimsManager.preloadClaims().join();
+
+        assertEquals(Optional.of(1), claimsManager.getClaimCount(ownerUuid));
+        assertEquals(Optional.of(0), claimsManager.getClaimCount(UUID.randomUUID()));
+
+        ChunkCoordinates newCoordinates = new ChunkCoordinates(NULL_UUID, 1, 0);
+        claimsManager.saveClaim(new Claim(newCoordinates, ownerUuid, 0)).join();
+        claimsManager.deleteClaim(new Claim(DEFAULT_COORDINATES, ownerUuid, 0)).join();
+        assertEquals(Optional.of(Collections.singleton(newCoordinates)), claimsManager.getOwnedClaims(ownerUuid));
+
+        verify(mockClaimsDao, never()).getClaimsOfOwner(any(UUID.class), anyInt(), anyInt());
+        verify(mockClaimsDao, never()).getCoordinatesOfOwner(any(UUID.class));
+    }
+
+    @Test
+    public void savedClaimsShouldBeWrittenTogether() throws DaoException {
+        UUID ownerUuid = UUID.randomUUID();
+        ClaimsDao mockClaimsDao = spy(new TestClaimsDao());
+        ClaimsManager claimsManager = new ClaimsManager(mockClaimsDao, new TestClaimHelpersDao());
+        List<Claim> claims = Arrays.asList(
+                new Claim(new ChunkCoordinates(NULL_UUID, 0, 0), ownerUuid, 0),
+                new Claim(new ChunkCoordinates(NULL_UUID, 0, 1), ownerUuid, 0),
+                new Claim(new ChunkCoordinates(NULL_UUID, 5, 5), ownerUuid, 0)
+        );
+
+        claimsManager.saveClaims(claims).join();
+        verify(mockClaimsDao, times(1)).saveAll(anyCollection(), anyCollection());
+        verify(mockClaimsDao, times(1)).insertAll(argThat(new ArgumentMatcher<Collection<Claim>>() {
+            @Override
+            public boolean matches(Object argument) {
+                return ((Collection<?>)argument).size() == claims.size();
+            }
+        }));
+
+        claimsManager.deleteClaims(claims).join();
+        verify(mockClaimsDao, times(1)).deleteAll(anyCollection());
+    }
+
+    @Test
+    public void claimRegionsShouldFollowClaimChanges() {
+        UUID ownerUuid = UUID.randomUUID();
+        ChunkCoordinates[] chunks = new ChunkCoordinates[4];
+        for (int x = 0; x < chunks.length; x++) {
+            chunks[x] = new ChunkCoordinates(NULL_UUID, x, 0);
+        }
+        ClaimsManager claimsManager = new ClaimsManager(new TestClaimsDao(), new TestClaimHelpersDao());
+        claimsManager.fetchOwnedClaims(ownerUuid).join();
+        claimsManager.saveClaim(new Claim(chunks[0], ownerUuid, 0)).join();
+        claimsManager.saveClaim(new Claim(chunks[1], ownerUuid, 0)).join();
+        claimsManager.saveClaim(new Claim(chunks[3], ownerUuid, 0)).join();
+
+        assertEquals(new HashSet<>(Arrays.asList(chunks[0], chunks[1])), claimsManager.fetchClaimRegion(chunks[0]).join());
+        assertEquals(2, claimsManager.fetchClaimRegions(ownerUuid).join().size());
+        assertTrue(claimsManager.fetchClaimRegion(chunks[2]).join().isEmpty());
+
+        // Removing a claim splits its region
+        claimsManager.deleteClaim(new Claim(chunks[1], ownerUuid, 0)).join();
+        assertEquals(Optional.of(Collections.singleton(chunks[0])), claimsManager.getClaimRegion(chunks[0]));
+
+        claimsManager.saveClaim(new Claim(chunks[2], ownerUuid, 0)).join();
+        claimsManager.saveClaim(new Claim(chunks[1], ownerUuid, 0)).join();
+        assertEquals(new HashSet<>(Arrays.asList(chunks)), claimsManager.fetchClaimRegion(chunks[3]).join());
+
+        claimsManager.saveClaimRegionFlags(chunks[0], Claim.Flag.ALWAYS_DAY.getValue()).join();
+        for (ChunkCoordinates chunk : chunks) {
+            assertTrue(claimsManager.getClaim(chunk).get().hasFlag(Claim.Flag.ALWAYS_DAY));
+        }
+    }
+
     //
     //  ClaimHelper tests
     //
 
+    @Test
+    public void queuedClaimWritesShouldBeCoalesced() throws DaoException {
+        ClaimsDao mockClaimsDao = spy(new TestClaimsDao());
+        ClaimsManager claimsManager = new ClaimsManager(mockClaimsDao, new TestClaimHelpersDao(), ForkJoinPool.commonPool(), 60_000, 100);
+
+        Claim firstClaim = new Claim(DEFAULT_COORDINATES, UUID.randomUUID(), 0);
+        Claim secondClaim = new Claim(DEFAULT_COORDINATES, UUID.randomUUID(), 0);
+        claimsManager.fetchClaim(DEFAULT_COORDINATES).join();
+        CompletableFuture<Void> firstSave = claimsManager.saveClaim(firstClaim);
+        CompletableFuture<Void> secondSave = claimsManager.saveClaim(secondClaim);
+
+        assertFalse(firstSave.isDone());
+        assertEquals(1, claimsManager.getPendingWriteCount());
+        assertEquals(secondClaim.getOwner(), claimsManager.getClaim(DEFAULT_COORDINATES).get().getOwner());
+        verify(mockClaimsDao, never()).insert(any());
+
+        claimsManager.flushWrites().join();
+        firstSave.join();
+        secondSave.join();
+        assertEquals(0, claimsManager.getPendingWriteCount());
+        ArgumentCaptor<Claim> insertedClaim = ArgumentCaptor.forClass(Claim.class);
+        verify(mockClaimsDao, times(1)).insert(insertedClaim.capture());
+        assertEquals(secondClaim.getOwner(), insertedClaim.getValue().getOwner());
+        claimsManager.cleanUp();
+    }
+
+    @Test
+    public void failedWritesShouldStayQueuedUntilTheyAreWritten() throws DaoException {
+        boolean[] failing = { true };
+        ClaimsDao mockClaimsDao = spy(new TestClaimsDao() {
+
+            @Override
+            public void insertAll(Collection<Claim> claims) throws DaoException {
+                if (failing[0]) {
+                    throw new DaoException("Database is unavailable");
+                }
+            }
+
+        });
+        ClaimsManager claimsManager = new ClaimsManager(mockClaimsDao, new TestClaimHelpersDao(), ForkJoinPool.commonPool(), 60_000, 100);
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setLevel(Level.OFF);
+        claimsManager.setLogger(logger);
+        ClaimUpdateBus updateBus = spy(new LoopbackClaimUpdateBus());
+        claimsManager.attachUpdateBus(updateBus);
+
+        Claim claim = new Claim(DEFAULT_COORDINATES, UUID.randomUUID(), 0);
+        claimsManager.fetchClaim(DEFAULT_COORDINATES).join();
+        CompletableFuture<Void> save = claimsManager.saveClaim(claim);
+        claimsManager.flushWrites().join();
+        claimsManager.flushWrites().join();
+        claimsManager.flushWrites().join();
+        assertTrue(save.isCompletedExceptionally());
+        assertEquals(1, claimsManager.getPendingWriteCount());
+        verify(updateBus, never()).flush();
+
+        // Updates the bus failed to send while the database was unavailable are sent once writes succeed again
+        failing[0] = false;
+        claimsManager.flushWrites().join();
+        assertEquals(0, claimsManager.getPendingWriteCount());
+        verify(mockClaimsDao, times(4)).insertAll(any());
+        verify(updateBus).flush();
+        claimsManager.cleanUp();
+    }
+
+    @Test
+    public void pausedWritesShouldStayQueuedUntilResumed() throws DaoException {
+        ClaimsDao mockClaimsDao = spy(new TestClaimsDao());
+        ClaimsManager claimsManager = new ClaimsManager(mockClaimsDao, new TestClaimHelpersDao());
+        Claim pausedClaim = new Claim(DEFAULT_COORDINATES, UUID.randomUUID(), 0);
+        claimsManager.fetchClaim(DEFAULT_COORDINATES).join();
+
+        claimsManager.pauseWrites();
+        CompletableFuture<Void> save = claimsManager.saveClaim(pausedClaim);
+        claimsManager.flushWrites().join();
+        assertFalse(save.isDone());
+        assertEquals(1, claimsManager.getPendingWriteCount());
+        verify(mockClaimsDao, never()).insertAll(any());
+
+        claimsManager.resumeWrites();
+        save.join();
+        assertEquals(0, claimsManager.getPendingWriteCount());
+        verify(mockClaimsDao).insertAll(Collections.singletonList(pausedClaim));
+        claimsManager.cleanUp();
+    }
+
+    @Test
+    public void deletingQueuedClaimShouldNotWriteIt() throws DaoException {
+        ClaimsDao mockClaimsDao = spy(new TestClaimsDao());
+        ClaimHelpersDao mockHelpersDao = spy(new TestClaimHelpersDao());
+        ClaimsManager claimsManager = new ClaimsManager(mockClaimsDao, mockHelpersDao, ForkJoinPool.commonPool(), 60_000, 100);
+
+        Claim claim = new Claim(DEFAULT_COORDINATES, UUID.randomUUID(), 0);
+        ClaimHelper helper = new ClaimHelper(UUID.randomUUID(), ClaimHelper.Permission.BUILD.getValue());
+        claimsManager.fetchClaim(DEFAULT_COORDINATES).join();
+        claimsManager.saveClaim(claim);
+        claimsManager.saveClaimHelper(DEFAULT_COORDINATES, helper);
+        CompletableFuture<Void> deleteFuture = claimsManager.deleteClaim(claim);
+        assertEquals(2, claimsManager.getPendingWriteCount());
+
+        claimsManager.flushWrites().join();
+        deleteFuture.join();
+        verify(mockClaimsDao, never()).insert(any());
+        verify(mockClaimsDao, never()).delete(any());
+        verify(mockHelpersDao, never()).insert(any(), any());
+        verify(mockHelpersDao, never()).delete(any(), any());
+        claimsManager.cleanUp();
+    }
+
+    @Test
+    public void fetchClaimsOfOwnerShouldWriteQueuedClaimsFirst() throws DaoException {
+        UUID ownerUuid = UUID.randomUUID();
+        Claim claim = new Claim(DEFAULT_COORDINATES, ownerUuid, 0);
+        List<Claim> storedClaims = new ArrayList<>();
+        ClaimsDao mockClaimsDao = spy(new TestClaimsDao() {
+
+            @Override
+            public void insert(Claim claim) {
+                storedClaims.add(claim);
+            }
+
+            @Override
+            public List<Claim> getClaimsOfOwner(UUID uuid, int offset, int limit) {
+                return storedClaims.subList(Math.min(offset, storedClaims.size()), Math.min(offset + limit, storedClaims.size()));
+            }
+
+        });
+        ClaimsManager claimsManager = new ClaimsManager(mockClaimsDao, new TestClaimHelpersDao(), ForkJoinPool.commonPool(), 60_000, 100);
+
+        claimsManager.fetchClaim(DEFAULT_COORDINATES).join();
+        claimsManager.saveClaim(claim);
+
+        assertEquals(Collections.singletonList(claim), claimsManager.fetchClaimsOfOwner(ownerUuid, 1, 10).join());
+        assertTrue(claimsManager.fetchClaimsOfOwner(ownerUuid, 2, 10).join().isEmpty());
+        verify(mockClaimsDao, times(1)).getClaimsOfOwner(ownerUuid, 10, 10);
+        claimsManager.cleanUp();
+    }
+
+    @Test
+    public void ownerHelperShouldBeWrittenWithOneDaoCall() throws DaoException {
+        UUID ownerUuid = UUID.randomUUID();
+        ClaimHelper helper = new ClaimHelper(UUID.randomUUID(), ClaimHelper.Permission.BUILD.getValue());
+        int claimCount = 200;
+        ClaimsDao mockClaimsDao = spy(new TestClaimsDao() {
+
+            @Override
+            public void forEachClaim(Consumer<Claim> consumer) {
+                for (int x = 0; x < claimCount; x++) {
+                    consumer.accept(new Claim(new ChunkCoordinates(NULL_UUID, x, 0), ownerUuid, 0));
+                }
+            }
+
+        });
+        ClaimHelpersDao mockHelpersDao = spy(new TestClaimHelpersDao());
+        ClaimsManager claimsManager = new ClaimsManager(mockClaimsDao, mockHelpersDao);
+        claimsManager.preloadClaims().join();
+
+        // A single chunk goes through the write queue
+        ChunkCoordinates firstChunk = new ChunkCoordinates(NULL_UUID, 0, 0);
+        claimsManager.saveClaimHelper(firstChunk, helper).join();
+        verify(mockHelpersDao, times(1)).insertAll(anyMap());
+
+        claimsManager.saveClaimHelperOfOwner(ownerUuid, helper).join();
+        verify(mockHelpersDao, times(1)).saveForOwner(ownerUuid, helper);
+        for (int x = 0; x < claimCount; x++) {
+            assertEquals(Optional.of(helper), claimsManager.getClaimHelper(new ChunkCoordinates(NULL_UUID, x, 0), helper.getUuid()));
+        }
+
+        claimsManager.deleteClaimHelperOfOwner(ownerUuid, helper.getUuid()).join();
+        verify(mockHelpersDao, times(1)).deleteForOwner(ownerUuid, helper.getUuid());
+        assertTrue(claimsManager.getClaimHelpers(firstChunk).get().isEmpty());
+        verify(mockHelpersDao, never()).getClaimHelpersByLocation(any(ChunkCoordinates.class));
+    }
+
+    @Test
+    public void ownerTrustShouldApplyUnlessOverriddenByChunkHelper() throws DaoException {
+        UUID ownerUuid = UUID.randomUUID();
+        UUID helperUuid = UUID.randomUUID();
+        ClaimHelper trust = new ClaimHelper(helperUuid, ClaimHelper.Permission.BUILD.getValue());
+        ClaimsDao claimsDao = new TestClaimsDao() {
+
+            @Override
+            public Optional<Claim> getClaimByLocation(ChunkCoordinates location) {
+                return Optional.of(new Claim(location, ownerUuid, 0));
+            }
+
+        };
+        OwnerTrustsDao mockTrustsDao = spy(new TestOwnerTrustsDao() {
+
+            @Override
+            public Set<ClaimHelper> getTrustsOfOwner(UUID uuid) {
+                return uuid.equals(ownerUuid) ? Collections.singleton(trust) : new HashSet<>();
+            }
+
+        });
+        ClaimsManager claimsManager = new ClaimsManager(claimsDao, new TestClaimHelpersDao(), mockTrustsDao, ForkJoinPool.commonPool(), 0, 1);
+        int worldId = claimsManager.getWorldId(NULL_UUID);
+
+        claimsManager.fetchClaim(new ChunkCoordinates(NULL_UUID, 0, 0)).join();
+        claimsManager.fetchClaim(new ChunkCoordinates(NULL_UUID, 1, 0)).join();
+        assertEquals(PermissionState.ALLOWED, claimsManager.checkPermission(worldId, 0, 0, helperUuid, ClaimHelper.Permission.BUILD));
+        assertEquals(PermissionState.ALLOWED, claimsManager.checkPermission(worldId, 1, 0, helperUuid, ClaimHelper.Permission.BUILD));
+        verify(mockTrustsDao, times(1)).getTrustsOfOwner(ownerUuid);
+
+        // The helper of a chunk takes precedence over the trust of the owner
+        claimsManager.saveClaimHelper(new ChunkCoordinates(NULL_UUID, 0, 0), new ClaimHelper(helperUuid, ClaimHelper.Permission.INTERACT.getValue())).join();
+        assertEquals(PermissionState.DENIED, claimsManager.checkPermission(worldId, 0, 0, helperUuid, ClaimHelper.Permission.BUILD));
+        assertEquals(PermissionState.ALLOWED, claimsManager.checkPermission(worldId, 1, 0, helperUuid, ClaimHelper.Permission.BUILD));
+
+        claimsManager.deleteOwnerTrust(ownerUuid, helperUuid).join();
+        verify(mockTrustsDao, times(1)).delete(ownerUuid, helperUuid);
+        assertEquals(PermissionState.DENIED, claimsManager.checkPermission(worldId, 1, 0, helperUuid, ClaimHelper.Permission.BUILD));
+        assertEquals(PermissionState.ALLOWED, claimsManager.checkPermission(worldId, 0, 0, helperUuid, ClaimHelper.Permission.INTERACT));
+    }
+
     @Test
     public void fetchClaimHelpersShouldQueryDaoWithNoCacheData() throws DaoException {
         ClaimHelpersDao mockHelpersDao = spy(new TestClaimHelpersDao());
@@ -373,32 +854,28 @@ public class ClaimsManagerTest {
     }
 
     @Test
-    public void fetchAndGetClaimHelpersShouldReturnClones() {
+    public void fetchAndGetClaimHelpersShouldReturnTheSavedSnapshot() {
         ChunkCoordinates coordinates = new ChunkCoordinates(NULL_UUID, 0, 0);
         ClaimHelper helper = new ClaimHelper(NULL_UUID, ClaimHelper.Permission.BUILD.getValue());
 
         ClaimsManager claimsManager = new ClaimsManager(new TestClaimsDao(), new TestClaimHelpersDao());
 
-        // Check fetched claim helper's permission
         try {
             claimsManager.saveClaimHelper(coordinates, helper).get();
-            helper.setPermissions(2);
+
+            // Creating a modified copy should not affect the cached helper
+            ClaimHelper modifiedHelper = helper.withPermissions(2);
             Set<ClaimHelper> fetchedHelpers = claimsManager.fetchClaimHelpers(coordinates).get();
-            assertNotEquals(helper.getPermissions(), ((ClaimHelper)(fetchedHelpers.toArray())[0]).getPermissions());
+            assertNotEquals(modifiedHelper.getPermissions(), ((ClaimHelper)(fetchedHelpers.toArray())[0]).getPermissions());
         } catch (InterruptedException | ExecutionException exception) {
             throw new AssertionError("This test threw an error somehow", exception);
         }
 
-        // Check cached claim helper's permission
         Optional<ClaimHelper> cachedClaimHelper = claimsManager.getClaimHelper(coordinates, helper.getUuid());
         if (!cachedClaimHelper.isPresent()) {
             throw new AssertionError("Cached claim helper does not exist for some reason");
         }
-        assertNotEquals(helper.getPermissions(), cachedClaimHelper.get().getPermissions());
-
-        // The cached claim helper should be a clone of the original stored helper
-        cachedClaimHelper.get().setPermissions(helper.getPermissions());
-        assertNotEquals(cachedClaimHelper.get().getPermissions(), claimsManager.getClaimHelper(coordinates, helper.getUuid()).get().getPermissions());
+        assertSame(helper, cachedClaimHelper.get());
     }
 
     @Test
@@ -411,8 +888,7 @@ public class ClaimsManagerTest {
         ClaimsManager claimsManager = new ClaimsManager(new TestClaimsDao(), mockClaimHelpersDao);
         try {
             claimsManager.saveClaimHelper(coordinates, helper).get();
-            helper.addPermission(ClaimHelper.Permission.INTERACT);
-            claimsManager.saveClaimHelper(coordinates, helper).get();
+            claimsManager.saveClaimHelper(coordinates, helper.withPermission(ClaimHelper.Permission.INTERACT)).get();
         } catch (InterruptedException | ExecutionException exception) {
             throw new AssertionError("saveClaimHelper threw an error somehow", exception);
         }
@@ -473,8 +949,196 @@ public class ClaimsManagerTest {
     }
 
 
+    @Test
+    public void checkPermissionShouldReturnLoadingIfClaimIsNotCached() {
+        ClaimsManager claimsManager = new ClaimsManager(new TestClaimsDao(), new TestClaimHelpersDao());
+        int worldId = claimsManager.getWorldId(NULL_UUID);
+        assertEquals(PermissionState.LOADING, claimsManager.checkPermission(worldId, 0, 0, NULL_UUID, ClaimHelper.Permission.BUILD));
+    }
+
+    @Test
+    public void checkPermissionShouldOnlyAllowOwnersAndHelpersWithPermission() {
+        UUID ownerUuid = UUID.fromString("10000000-0000-0000-0000-000000000000");
+        UUID helperUuid = UUID.fromString("20000000-0000-0000-0000-000000000000");
+        ClaimsManager claimsManager = new ClaimsManager(new TestClaimsDao(), new TestClaimHelpersDao());
+        try {
+            claimsManager.saveClaim(new Claim(DEFAULT_COORDINATES, ownerUuid, 0)).get();
+            claimsManager.saveClaimHelper(DEFAULT_COORDINATES, new ClaimHelper(helperUuid, ClaimHelper.Permission.INTERACT.getValue())).get();
+        } catch (InterruptedException | ExecutionException exception) {
+            throw new AssertionError("This test threw an exception somehow", exception);
+        }
+
+        int worldId = claimsManager.getWorldId(NULL_UUID);
+        assertEquals(PermissionState.ALLOWED, claimsManager.checkPermission(worldId, 0, 0, ownerUuid, ClaimHelper.Permission.BUILD));
+        assertEquals(PermissionState.ALLOWED, claimsManager.checkPermission(worldId, 0, 0, helperUuid, ClaimHelper.Permission.INTERACT));
+        assertEquals(PermissionState.DENIED, claimsManager.checkPermission(worldId, 0, 0, helperUuid, ClaimHelper.Permission.BUILD));
+        assertEquals(PermissionState.DENIED, claimsManager.checkPermission(worldId, 0, 0, NULL_UUID, ClaimHelper.Permission.INTERACT));
+    }
+
+
+    //
+    // Update bus tests
+    //
+
+    @Test
+    public void changesShouldBeAppliedToTheCacheOfOtherServers() {
+        UUID ownerUuid = UUID.fromString("10000000-0000-0000-0000-000000000000");
+        UUID helperUuid = UUID.fromString("20000000-0000-0000-0000-000000000000");
+        LoopbackClaimUpdateBus busA = new LoopbackClaimUpdateBus();
+        ClaimsManager serverA = new ClaimsManager(new TestClaimsDao(), new TestClaimHelpersDao());
+        serverA.attachUpdateBus(busA);
+        TestClaimsDao claimsDaoB = spy(new TestClaimsDao());
+        ClaimsManager serverB = new ClaimsManager(claimsDaoB, new TestClaimHelpersDao());
+        serverB.attachUpdateBus(busA.connect());
+
+        ClaimHelper helper = new ClaimHelper(helperUuid, ClaimHelper.Permission.INTERACT.getValue());
+        try {
+            serverB.fetchClaim(DEFAULT_COORDINATES).get();
+            assertEquals(0, (int)serverB.fetchClaimCount(ownerUuid).get());
+
+            serverA.saveClaim(new Claim(DEFAULT_COORDINATES, ownerUuid, 0)).get();
+            serverA.saveClaimHelper(DEFAULT_COORDINATES, helper).get();
+        } catch (InterruptedException | ExecutionException exception) {
+            throw new AssertionError("This test threw an exception somehow", exception);
+        }
+        assertEquals(Optional.of(ownerUuid), serverB.getClaim(DEFAULT_COORDINATES).flatMap(Claim::getOwner));
+        assertEquals(Optional.of(helper), serverB.getClaimHelper(DEFAULT_COORDINATES, helperUuid));
+        assertEquals(Optional.of(1), serverB.getClaimCount(ownerUuid));
+
+        try {
+            serverA.deleteClaim(new Claim(DEFAULT_COORDINATES, ownerUuid, 0)).get();
+        } catch (InterruptedException | ExecutionException exception) {
+            throw new AssertionError("This test threw an exception somehow", exception);
+        }
+        assertEquals(Optional.of(new Claim(DEFAULT_COORDINATES, 0)), serverB.getClaim(DEFAULT_COORDINATES));
+        assertEquals(Optional.empty(), serverB.getClaimHelper(DEFAULT_COORDINATES, helperUuid));
+        assertEquals(Optional.of(0), serverB.getClaimCount(ownerUuid));
+
+        // Only the initial load reached the dao
+        verify(claimsDaoB, times(1)).getClaimByLocation(DEFAULT_COORDINATES);
+    }
+
+    @Test
+    public void helpersOfOwnersShouldOnlyBePatchedIfTheirClaimsAreLoaded() throws DaoException {
+        UUID ownerUuid = UUID.fromString("10000000-0000-0000-0000-000000000000");
+        UUID otherOwnerUuid = UUID.fromString("30000000-0000-0000-0000-000000000000");
+        ChunkCoordinates otherCoordinates = new ChunkCoordinates(NULL_UUID, 1, 0);
+        ClaimHelper helper = new ClaimHelper(UUID.fromString("20000000-0000-0000-0000-000000000000"), ClaimHelper.Permission.BUILD.getValue());
+        LoopbackClaimUpdateBus busA = new LoopbackClaimUpdateBus();
+        ClaimsManager serverA = new ClaimsManager(new TestClaimsDao(), new TestClaimHelpersDao());
+        serverA.attachUpdateBus(busA);
+        TestClaimsDao claimsDaoB = spy(new TestClaimsDao());
+        ClaimsManager serverB = new ClaimsManager(claimsDaoB, new TestClaimHelpersDao());
+        serverB.attachUpdateBus(busA.connect());
+
+        serverB.fetchClaim(DEFAULT_COORDINATES).join();
+        serverB.fetchClaim(otherCoordinates).join();
+        serverB.fetchOwnedClaims(ownerUuid).join();
+        serverA.saveClaim(new Claim(DEFAULT_COORDINATES, ownerUuid, 0)).join();
+        serverA.saveClaim(new Claim(otherCoordinates, otherOwnerUuid, 0)).join();
+
+        serverA.saveClaimHelperOfOwner(ownerUuid, helper).join();
+        serverA.saveClaimHelperOfOwner(otherOwnerUuid, helper).join();
+        assertEquals(Optional.of(helper), serverB.getClaimHelper(DEFAULT_COORDINATES, helper.getUuid()));
+        assertEquals(Optional.empty(), serverB.getClaimHelper(otherCoordinates, helper.getUuid()));
+        verify(claimsDaoB, never()).getCoordinatesOfOwner(otherOwnerUuid);
+    }
+
+    @Test
+    public void updatesShouldSurviveSerialization() throws IOException {
+        UUID ownerUuid = UUID.fromString("10000000-0000-0000-0000-000000000000");
+        ClaimHelper helper = new ClaimHelper(UUID.fromString("20000000-0000-0000-0000-000000000000"), ClaimHelper.Permission.BUILD.getValue());
+        Claim claim = new Claim(new ChunkCoordinates(NULL_UUID, -5, 12), ownerUuid, 3);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        ClaimUpdate.claim(claim, null).write(output);
+        ClaimUpdate.ownerTrust(ownerUuid, helper).write(output);
+
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        ClaimUpdate claimUpdate = ClaimUpdate.read(input);
+        assertEquals(ClaimUpdate.Type.CLAIM, claimUpdate.getType());
+        assertEquals(claim, claimUpdate.getClaim());
+        assertEquals(Optional.of(ownerUuid), claimUpdate.getClaim().getOwner());
+        assertEquals(3, claimUpdate.getClaim().getFlags());
+        assertEquals(Optional.empty(), claimUpdate.getPreviousOwner());
+
+        ClaimUpdate trustUpdate = ClaimUpdate.read(input);
+        assertEquals(ClaimUpdate.Type.OWNER_TRUST, trustUpdate.getType());
+        assertEquals(Optional.of(ownerUuid), trustUpdate.getOwner());
+        assertEquals(helper.getPermissions(), trustUpdate.getHelper().getPermissions());
+    }
+
+
+
+    //
+    // Local dao source tests
+    //
+
+    @Test
+    public void claimChangesShouldBeReadBackFromLocalDaoSource(@TempDir Path directory) throws DaoException {
+        UUID ownerUuid = UUID.randomUUID();
+        ClaimHelper helper = new ClaimHelper(UUID.randomUUID(), ClaimHelper.Permission.BUILD.getValue());
+        ClaimHelper trust = new ClaimHelper(UUID.randomUUID(), ClaimHelper.Permission.INTERACT.getValue());
+        ChunkCoordinates deletedCoordinates = new ChunkCoordinates(NULL_UUID, 1, 0);
+
+        LocalDaoSource source = new LocalDaoSource(directory);
+        ClaimsManager claimsManager = createLocalClaimsManager(source);
+        claimsManager.saveClaims(Arrays.asList(new Claim(DEFAULT_COORDINATES, ownerUuid, 0), new Claim(deletedCoordinates, ownerUuid, 0))).join();
+        claimsManager.saveClaimHelper(DEFAULT_COORDINATES, helper).join();
+        claimsManager.saveClaimHelper(deletedCoordinates, helper).join();
+        claimsManager.saveClaim(new Claim(DEFAULT_COORDINATES, ownerUuid, Claim.Flag.ALWAYS_DAY.getValue())).join();
+        claimsManager.saveOwnerTrust(ownerUuid, trust).join();
+        claimsManager.deleteClaim(new Claim(deletedCoordinates, 0)).join();
+        claimsManager.cleanUp();
+        source.cleanUp();
+
+        source = new LocalDaoSource(directory);
+        claimsManager = createLocalClaimsManager(source);
+        Claim claim = claimsManager.fetchClaim(DEFAULT_COORDINATES).join();
+        assertEquals(Optional.of(ownerUuid), claim.getOwner());
+        assertTrue(claim.hasFlag(Claim.Flag.ALWAYS_DAY));
+        assertEquals(Collections.singleton(helper), claimsManager.fetchClaimHelpers(DEFAULT_COORDINATES).join());
+        assertEquals(helper.getPermissions(), claimsManager.getClaimHelper(DEFAULT_COORDINATES, helper.getUuid()).get().getPermissions());
+        assertEquals(Collections.singleton(trust), claimsManager.fetchOwnerTrusts(ownerUuid).join());
+
+        assertFalse(claimsManager.fetchClaim(deletedCoordinates).join().hasOwner());
+        assertTrue(claimsManager.fetchClaimHelpers(deletedCoordinates).join().isEmpty());
+        assertEquals(1, claimsManager.fetchClaimCount(ownerUuid).join());
+        claimsManager.cleanUp();
+        source.cleanUp();
+    }
+
+    @Test
+    public void ownerHelpersShouldBeWrittenToLocalDaoSource(@TempDir Path directory) throws DaoException {
+        UUID ownerUuid = UUID.randomUUID();
+        ClaimHelper helper = new ClaimHelper(UUID.randomUUID(), ClaimHelper.Permission.BUILD.getValue());
+        List<Claim> claims = new ArrayList<>();
+        for (int x = 0; x < 10; x++) {
+            claims.add(new Claim(new ChunkCoordinates(NULL_UUID, x, 0), ownerUuid, 0));
+        }
+
+        LocalDaoSource source = new LocalDaoSource(directory);
+        source.getClaimsDao().insertAll(claims);
+        ClaimsManager claimsManager = createLocalClaimsManager(source);
+        claimsManager.preloadClaims().join();
 
+        claimsManager.saveClaimHelperOfOwner(ownerUuid, helper).join();
+        for (Claim claim : claims) {
+            assertEquals(Collections.singleton(helper), source.getClaimsHelperDao().getClaimHelpersByLocation(claim.getCoordinates()));
+            assertEquals(Optional.of(helper), claimsManager.getClaimHelper(claim.getCoordinates(), helper.getUuid()));
+        }
 
+        claimsManager.deleteClaimHelperOfOwner(ownerUuid, helper.getUuid()).join();
+        assertTrue(source.getClaimsHelperDao().isEmpty());
+        assertFalse(claimsManager.getClaimHelper(DEFAULT_COORDINATES, helper.getUuid()).isPresent());
+        claimsManager.cleanUp();
+        source.cleanUp();
+    }
+
+    private static ClaimsManager createLocalClaimsManager(LocalDaoSource source) {
+        return new ClaimsManager(source.getClaimsDao(), source.getClaimsHelperDao(), source.getOwnerTrustsDao(), ForkJoinPool.commonPool(), 0, 1);
+    }
 
     //
     // Utility classes
@@ -488,8 +1152,28 @@ public class ClaimsManagerTest {
         }
 
         @Override
-        public int getClaimCountOfUuid(UUID uuid) throws DaoException {
-            return 0;
+        public Set<Claim> getClaimsInRegion(UUID worldUuid, int minX, int minZ, int maxX, int maxZ) {
+            return new HashSet<>();
+        }
+
+        @Override
+        public List<ChunkCoordinates> getCoordinatesOfOwner(UUID ownerUuid) throws DaoException {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public List<Claim> getClaimsOfOwner(UUID ownerUuid, int offset, int limit) throws DaoException {
+            return Collections.emptyList();
+        }
+
+        @Override
+        public void forEachClaim(Consumer<Claim> consumer) {
+
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return true;
         }
 
         @Override
@@ -515,6 +1199,21 @@ public class ClaimsManagerTest {
             return new HashSet<>();
         }
 
+        @Override
+        public Map<ChunkCoordinates, Set<ClaimHelper>> getClaimHelpersInRegion(UUID worldUuid, int minX, int minZ, int maxX, int maxZ) {
+            return new HashMap<>();
+        }
+
+        @Override
+        public void forEachClaimHelper(BiConsumer<ChunkCoordinates, ClaimHelper> consumer) {
+
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return true;
+        }
+
         @Override
         public void delete(ChunkCoordinates claimCoords, ClaimHelper helper) {
 
@@ -530,6 +1229,50 @@ public class ClaimsManagerTest {
 
         }
 
+        @Override
+        public void saveForOwner(UUID ownerUuid, ClaimHelper helper) {
+
+        }
+
+        @Override
+        public void deleteForOwner(UUID ownerUuid, UUID helperUuid) {
+
+        }
+
+    }
+
+    private static class TestOwnerTrustsDao implements OwnerTrustsDao {
+
+        @Override
+        public Set<ClaimHelper> getTrustsOfOwner(UUID ownerUuid) {
+            return new HashSet<>();
+        }
+
+        @Override
+        public void forEachTrust(BiConsumer<UUID, ClaimHelper> consumer) {
+
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return true;
+        }
+
+        @Override
+        public void insert(UUID ownerUuid, ClaimHelper helper) {
+
+        }
+
+        @Override
+        public void update(UUID ownerUuid, ClaimHelper helper) {
+
+        }
+
+        @Override
+        public void delete(UUID ownerUuid, UUID helperUuid) {
+
+        }
+
     }
 
 
@@ -0,0 +1,44 @@
+package io.github.willqi.pizzamc.claims.api.claims.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+public class ChunkBitmapTest {
+
+    @Test
+    public void chunksShouldBeTrackedPerWorldAndRegion() {
+        ChunkBitmap bitmap = new ChunkBitmap();
+        bitmap.add(0, -1, -1);
+        bitmap.add(0, 31, 31);
+        bitmap.add(1, 0, 0);
+
+        assertTrue(bitmap.contains(0, -1, -1));
+        assertTrue(bitmap.contains(0, 31, 31));
+        assertTrue(bitmap.contains(1, 0, 0));
+        assertFalse(bitmap.contains(0, 0, 0));
+        assertFalse(bitmap.contains(0, -33, -1));
+        assertFalse(bitmap.contains(2, 0, 0));
+        assertEquals(3, bitmap.getRegionCount());
+    }
+
+    @Test
+    public void emptyRegionsShouldBeReleased() {
+        ChunkBitmap bitmap = new ChunkBitmap();
+        long[] keys = new long[32 * 32];
+        int count = 0;
+        for (int x = 0; x < 32; x++) {
+            for (int z = 0; z < 32; z++) {
+                keys[count++] = ChunkKeys.pack(x, z);
+            }
+        }
+        bitmap.addAll(0, keys, count);
+        assertEquals(1, bitmap.getRegionCount());
+
+        for (int i = 0; i < count; i++) {
+            bitmap.remove(0, ChunkKeys.getX(keys[i]), ChunkKeys.getZ(keys[i]));
+        }
+        assertEquals(0, bitmap.getRegionCount());
+    }
+
+}
@@ -0,0 +1,70 @@
+package io.github.willqi.pizzamc.claims.api.claims.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ChunkClockTest {
+
+    @Test
+    public void unusedChunksShouldBeEvictedFirst() {
+        List<Long> evictedChunks = new ArrayList<>();
+        ChunkClock clock = new ChunkClock(2, (worldId, x, z) -> evictedChunks.add(ChunkKeys.pack(x, z)));
+
+        clock.access(0, 0, 0);
+        clock.access(0, 1, 0);
+        // Every chunk gets a second chance, after which the first chunk the hand reaches is evicted
+        clock.access(0, 2, 0);
+        assertEquals(1, evictedChunks.size());
+        assertEquals(ChunkKeys.pack(0, 0), (long)evictedChunks.get(0));
+
+        // Chunk 1 was used since the hand passed it while chunk 2 was not
+        clock.access(0, 1, 0);
+        clock.access(0, 3, 0);
+        assertEquals(ChunkKeys.pack(2, 0), (long)evictedChunks.get(1));
+        assertEquals(2, clock.size());
+        assertEquals(2, clock.getEvictionCount());
+    }
+
+    @Test
+    public void pinnedChunksShouldNeverBeEvicted() {
+        List<Long> evictedChunks = new ArrayList<>();
+        ChunkClock clock = new ChunkClock(1, (worldId, x, z) -> evictedChunks.add(ChunkKeys.pack(x, z)));
+
+        clock.pin(0, 0, 0);
+        clock.pin(0, 1, 0);
+        clock.access(0, 0, 0);
+        assertTrue(evictedChunks.isEmpty());
+        assertEquals(2, clock.getPinnedCount());
+
+        clock.unpin(0, 0, 0);
+        clock.remove(0, 1, 0);
+        assertEquals(1, evictedChunks.size());
+        assertEquals(ChunkKeys.pack(0, 0), (long)evictedChunks.get(0));
+        assertEquals(1, clock.size());
+    }
+
+    @Test
+    public void releasedChunksShouldExpireUnlessPinnedAgain() {
+        List<Long> evictedChunks = new ArrayList<>();
+        ChunkClock clock = new ChunkClock(0, (worldId, x, z) -> evictedChunks.add(ChunkKeys.pack(x, z)));
+
+        clock.pin(0, 0, 0);
+        clock.pin(0, 1, 0);
+        clock.access(0, 2, 0);
+        clock.unpin(0, 0, 0);
+        clock.unpin(0, 1, 0);
+        clock.pin(0, 1, 0);
+        assertEquals(1, clock.getRepinnedCount());
+
+        clock.expireReleasedBefore(System.nanoTime() + 1);
+        assertEquals(1, evictedChunks.size());
+        assertEquals(ChunkKeys.pack(0, 0), (long)evictedChunks.get(0));
+        assertEquals(1, clock.getExpiredCount());
+        assertEquals(2, clock.size());
+    }
+
+}
@@ -0,0 +1,44 @@
+package io.github.willqi.pizzamc.claims.api.claims.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.willqi.pizzamc.claims.api.claims.ClaimHelper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+public class HelperSetTest {
+
+    private static final UUID HELPER_A = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID HELPER_B = UUID.fromString("00000000-0000-0000-0000-000000000002");
+    private static final UUID HELPER_C = UUID.fromString("00000000-0000-0000-0000-000000000003");
+
+    @Test
+    public void changesShouldReturnSortedCopies() {
+        HelperSet helpers = HelperSet.of(Arrays.asList(new ClaimHelper(HELPER_C, 1), new ClaimHelper(HELPER_A, 1)));
+        HelperSet withB = helpers.with(new ClaimHelper(HELPER_B, 2));
+
+        assertNull(helpers.get(HELPER_B));
+        assertEquals(2, withB.get(HELPER_B).getPermissions());
+        assertEquals(Arrays.asList(HELPER_A, HELPER_B, HELPER_C), Arrays.asList(
+                withB.asSet().stream().map(ClaimHelper::getUuid).toArray()));
+        assertSame(withB, withB.with(new ClaimHelper(HELPER_B, 2)));
+        assertEquals(helpers, withB.without(HELPER_B));
+        assertSame(HelperSet.EMPTY, HelperSet.of(Arrays.asList(new ClaimHelper(HELPER_A, 1))).without(HELPER_A));
+    }
+
+    @Test
+    public void equalSetsShouldBeInternedOnce() {
+        Interner<HelperSet> interner = new Interner<>();
+        HelperSet helpers = interner.intern(HelperSet.of(Arrays.asList(new ClaimHelper(HELPER_A, 1), new ClaimHelper(HELPER_B, 1))));
+
+        assertSame(helpers, interner.intern(HelperSet.of(Arrays.asList(new ClaimHelper(HELPER_B, 1), new ClaimHelper(HELPER_A, 1)))));
+        // Sets with the same helpers but different permissions are not equal
+        HelperSet otherPermissions = HelperSet.of(Arrays.asList(new ClaimHelper(HELPER_A, 2), new ClaimHelper(HELPER_B, 1)));
+        assertNotEquals(helpers, otherPermissions);
+        assertNotSame(helpers, interner.intern(otherPermissions));
+        assertTrue(helpers.asSet().contains(new ClaimHelper(HELPER_A, 2)));
+    }
+
+}
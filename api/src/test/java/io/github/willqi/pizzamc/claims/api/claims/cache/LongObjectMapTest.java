@@ -0,0 +1,73 @@
+package io.github.willqi.pizzamc.claims.api.claims.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+public class LongObjectMapTest {
+
+    @Test
+    public void putShouldReplaceExistingValues() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        assertNull(map.put(ChunkKeys.pack(1, 2), "a"));
+        assertEquals("a", map.put(ChunkKeys.pack(1, 2), "b"));
+        assertEquals("b", map.get(ChunkKeys.pack(1, 2)));
+        assertEquals(1, map.size());
+    }
+
+    @Test
+    public void putIfAbsentShouldNotReplaceExistingValues() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        assertNull(map.putIfAbsent(5L, "a"));
+        assertEquals("a", map.putIfAbsent(5L, "b"));
+        assertEquals("a", map.get(5L));
+    }
+
+    @Test
+    public void mapShouldMatchHashMapAfterRandomOperations() {
+        LongObjectMap<Integer> map = new LongObjectMap<>();
+        Map<Long, Integer> expected = new HashMap<>();
+        Random random = new Random(1);
+
+        for (int i = 0; i < 50000; i++) {
+            // Small coordinate range so that collisions, removals and re-insertions all happen frequently
+            long key = ChunkKeys.pack(random.nextInt(64) - 32, random.nextInt(64) - 32);
+            if (random.nextInt(3) == 0) {
+                assertEquals(expected.remove(key), map.remove(key));
+            } else {
+                assertEquals(expected.put(key, i), map.put(key, i));
+            }
+        }
+
+        assertEquals(expected.size(), map.size());
+        for (Map.Entry<Long, Integer> entry : expected.entrySet()) {
+            assertEquals(entry.getValue(), map.get(entry.getKey()));
+        }
+        map.forEach((key, value) -> assertEquals(expected.get(key), value));
+    }
+
+    @Test
+    public void chunkKeysShouldRoundTripNegativeCoordinates() {
+        long key = ChunkKeys.pack(-1875000, 1875000);
+        assertEquals(-1875000, ChunkKeys.getX(key));
+        assertEquals(1875000, ChunkKeys.getZ(key));
+        assertNotEquals(ChunkKeys.pack(0, -1), ChunkKeys.pack(-1, 0));
+    }
+
+    @Test
+    public void claimIndexShouldSeparateWorlds() {
+        ClaimIndex<String> index = new ClaimIndex<>();
+        index.put(0, 1, 1, "overworld");
+        index.put(2, 1, 1, "nether");
+        assertEquals("overworld", index.get(0, 1, 1));
+        assertEquals("nether", index.get(2, 1, 1));
+        assertNull(index.get(1, 1, 1));
+        assertEquals("nether", index.remove(2, 1, 1));
+        assertNull(index.get(2, 1, 1));
+    }
+
+}
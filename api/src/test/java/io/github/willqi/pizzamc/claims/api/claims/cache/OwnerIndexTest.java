@@ -0,0 +1,48 @@
+package io.github.willqi.pizzamc.claims.api.claims.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.UUID;
+
+public class OwnerIndexTest {
+
+    private static final UUID OWNER = UUID.fromString("00000000-0000-0000-0000-000000000001");
+    private static final UUID OTHER_OWNER = UUID.fromString("00000000-0000-0000-0000-000000000002");
+
+    @Test
+    public void changesWhileLoadingShouldBeReplayed() {
+        OwnerIndex<Integer> index = new OwnerIndex<>();
+        index.add(OWNER, 0);
+        assertEquals(-1, index.getCount(OWNER));
+
+        index.startLoading(OWNER);
+        index.add(OWNER, 3);
+        index.remove(OWNER, 1);
+        assertNull(index.getKeys(OWNER));
+
+        assertEquals(new HashSet<>(Arrays.asList(2, 3)), index.finishLoading(OWNER, Arrays.asList(1, 2)));
+        index.remove(OWNER, 2);
+        assertEquals(1, index.getCount(OWNER));
+    }
+
+    @Test
+    public void unknownOwnersShouldOwnNothingOnceComplete() {
+        OwnerIndex<Integer> index = new OwnerIndex<>();
+        index.startLoadingAll();
+        index.add(OTHER_OWNER, 5);
+        index.finishLoadingAll(Collections.singletonMap(OWNER, Arrays.asList(1, 2)));
+
+        assertEquals(2, index.getCount(OWNER));
+        assertEquals(Collections.singleton(5), index.getKeys(OTHER_OWNER));
+        assertEquals(0, index.getCount(UUID.randomUUID()));
+
+        index.removeOwner(OWNER);
+        assertEquals(2, index.getCount(OWNER));
+    }
+
+}
@@ -0,0 +1,145 @@
+package io.github.willqi.pizzamc.claims.api.claims.dao;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.willqi.pizzamc.claims.api.claims.ChunkCoordinates;
+import io.github.willqi.pizzamc.claims.api.claims.Claim;
+import io.github.willqi.pizzamc.claims.api.claims.ClaimHelper;
+import io.github.willqi.pizzamc.claims.api.daosources.DaoSourceContractTest;
+import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+/**
+ * Behaviour every {@link ClaimHelpersDao} must have
+ */
+public abstract class ClaimHelpersDaoContractTest extends DaoSourceContractTest {
+
+    private static final UUID WORLD_UUID = UUID.randomUUID();
+    private static final UUID OWNER_UUID = UUID.randomUUID();
+    private static final UUID HELPER_UUID = UUID.randomUUID();
+
+    private static final ChunkCoordinates FIRST_CLAIM = new ChunkCoordinates(WORLD_UUID, 0, 0);
+    private static final ChunkCoordinates SECOND_CLAIM = new ChunkCoordinates(WORLD_UUID, 2, 2);
+
+    @Test
+    public void insertedHelpersShouldBeFoundByLocation() throws DaoException {
+        ClaimHelpersDao dao = this.insertClaims();
+        assertTrue(dao.isEmpty());
+        dao.insert(FIRST_CLAIM, new ClaimHelper(HELPER_UUID, 3));
+
+        assertFalse(dao.isEmpty());
+        Set<ClaimHelper> helpers = dao.getClaimHelpersByLocation(FIRST_CLAIM);
+        assertEquals(1, helpers.size());
+        assertEquals(3, helpers.iterator().next().getPermissions());
+        assertTrue(dao.getClaimHelpersByLocation(SECOND_CLAIM).isEmpty());
+    }
+
+    @Test
+    public void insertingAStoredHelperShouldFail() throws DaoException {
+        ClaimHelpersDao dao = this.insertClaims();
+        dao.insert(FIRST_CLAIM, new ClaimHelper(HELPER_UUID, 1));
+
+        assertThrows(DaoException.class, () -> dao.insert(FIRST_CLAIM, new ClaimHelper(HELPER_UUID, 2)));
+        assertEquals(1, dao.getClaimHelpersByLocation(FIRST_CLAIM).iterator().next().getPermissions());
+        // The same helper may help on other claims
+        dao.insert(SECOND_CLAIM, new ClaimHelper(HELPER_UUID, 2));
+    }
+
+    @Test
+    public void updatingAMissingHelperShouldDoNothing() throws DaoException {
+        ClaimHelpersDao dao = this.insertClaims();
+        dao.update(FIRST_CLAIM, new ClaimHelper(HELPER_UUID, 1));
+
+        assertTrue(dao.getClaimHelpersByLocation(FIRST_CLAIM).isEmpty());
+        assertTrue(dao.isEmpty());
+    }
+
+    @Test
+    public void updatedAndDeletedHelpersShouldBeStored() throws DaoException {
+        ClaimHelpersDao dao = this.insertClaims();
+        dao.insert(FIRST_CLAIM, new ClaimHelper(HELPER_UUID, 1));
+        dao.update(FIRST_CLAIM, new ClaimHelper(HELPER_UUID, 6));
+        assertEquals(6, dao.getClaimHelpersByLocation(FIRST_CLAIM).iterator().next().getPermissions());
+
+        dao.delete(FIRST_CLAIM, new ClaimHelper(HELPER_UUID));
+        // Deleting a helper that is not stored does nothing
+        dao.delete(FIRST_CLAIM, new ClaimHelper(HELPER_UUID));
+        assertTrue(dao.getClaimHelpersByLocation(FIRST_CLAIM).isEmpty());
+        assertTrue(dao.isEmpty());
+    }
+
+    @Test
+    public void regionsShouldIncludeTheirBounds() throws DaoException {
+        ClaimHelpersDao dao = this.insertClaims();
+        dao.insert(FIRST_CLAIM, new ClaimHelper(HELPER_UUID, 1));
+        dao.insert(SECOND_CLAIM, new ClaimHelper(HELPER_UUID, 1));
+
+        Map<ChunkCoordinates, Set<ClaimHelper>> helpers = dao.getClaimHelpersInRegion(WORLD_UUID, 0, 0, 2, 2);
+        assertEquals(2, helpers.size());
+        assertEquals(Collections.singleton(new ClaimHelper(HELPER_UUID)), helpers.get(SECOND_CLAIM));
+        assertEquals(1, dao.getClaimHelpersInRegion(WORLD_UUID, 1, 1, 2, 2).size());
+        assertTrue(dao.getClaimHelpersInRegion(WORLD_UUID, 1, 1, 1, 1).isEmpty());
+        assertTrue(dao.getClaimHelpersInRegion(UUID.randomUUID(), 0, 0, 2, 2).isEmpty());
+    }
+
+    @Test
+    public void saveForOwnerShouldSaveTheHelperOnEveryClaimOfTheOwner() throws DaoException {
+        ClaimHelpersDao dao = this.insertClaims();
+        ChunkCoordinates otherClaim = new ChunkCoordinates(WORLD_UUID, 5, 5);
+        this.source.getClaimsDao().insert(new Claim(otherClaim, UUID.randomUUID(), 0));
+        dao.insert(FIRST_CLAIM, new ClaimHelper(HELPER_UUID, 1));
+
+        // Stored helpers are updated and missing helpers are inserted
+        dao.saveForOwner(OWNER_UUID, new ClaimHelper(HELPER_UUID, 4));
+        assertEquals(4, dao.getClaimHelpersByLocation(FIRST_CLAIM).iterator().next().getPermissions());
+        assertEquals(4, dao.getClaimHelpersByLocation(SECOND_CLAIM).iterator().next().getPermissions());
+        assertTrue(dao.getClaimHelpersByLocation(otherClaim).isEmpty());
+
+        dao.deleteForOwner(OWNER_UUID, HELPER_UUID);
+        assertTrue(dao.getClaimHelpersByLocation(FIRST_CLAIM).isEmpty());
+        assertTrue(dao.getClaimHelpersByLocation(SECOND_CLAIM).isEmpty());
+        // Deleting a helper that helps on none of the claims does nothing
+        dao.deleteForOwner(OWNER_UUID, HELPER_UUID);
+        assertTrue(dao.isEmpty());
+    }
+
+    @Test
+    public void writeAllShouldApplyDeletesBeforeInserts() throws DaoException {
+        ClaimHelpersDao dao = this.insertClaims();
+        dao.insert(FIRST_CLAIM, new ClaimHelper(HELPER_UUID, 1));
+
+        dao.writeAll(
+                Collections.singletonMap(FIRST_CLAIM, Collections.singleton(new ClaimHelper(HELPER_UUID))),
+                Collections.singletonMap(FIRST_CLAIM, Collections.singleton(new ClaimHelper(HELPER_UUID, 2))),
+                Collections.singletonMap(SECOND_CLAIM, Collections.singleton(new ClaimHelper(HELPER_UUID, 3)))
+        );
+        assertEquals(2, dao.getClaimHelpersByLocation(FIRST_CLAIM).iterator().next().getPermissions());
+        assertTrue(dao.getClaimHelpersByLocation(SECOND_CLAIM).isEmpty());
+    }
+
+    @Test
+    public void forEachClaimHelperShouldVisitEveryHelper() throws DaoException {
+        ClaimHelpersDao dao = this.insertClaims();
+        UUID otherHelperUuid = UUID.randomUUID();
+        dao.insert(FIRST_CLAIM, new ClaimHelper(HELPER_UUID, 1));
+        dao.insert(FIRST_CLAIM, new ClaimHelper(otherHelperUuid, 1));
+        dao.insert(SECOND_CLAIM, new ClaimHelper(HELPER_UUID, 1));
+
+        Map<ChunkCoordinates, Set<UUID>> visited = new HashMap<>();
+        dao.forEachClaimHelper((coordinates, helper) -> visited.computeIfAbsent(coordinates, key -> new HashSet<>()).add(helper.getUuid()));
+        assertEquals(new HashSet<>(Arrays.asList(HELPER_UUID, otherHelperUuid)), visited.get(FIRST_CLAIM));
+        assertEquals(Collections.singleton(HELPER_UUID), visited.get(SECOND_CLAIM));
+    }
+
+    /**
+     * Store the claims of the owner that helpers are added to
+     * @return the helpers dao
+     */
+    private ClaimHelpersDao insertClaims() throws DaoException {
+        this.source.getClaimsDao().insertAll(Arrays.asList(new Claim(FIRST_CLAIM, OWNER_UUID, 0), new Claim(SECOND_CLAIM, OWNER_UUID, 0)));
+        return this.source.getClaimsHelperDao();
+    }
+
+}
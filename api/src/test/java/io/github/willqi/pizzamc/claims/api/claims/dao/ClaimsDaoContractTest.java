@@ -0,0 +1,140 @@
+package io.github.willqi.pizzamc.claims.api.claims.dao;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.willqi.pizzamc.claims.api.claims.ChunkCoordinates;
+import io.github.willqi.pizzamc.claims.api.claims.Claim;
+import io.github.willqi.pizzamc.claims.api.daosources.DaoSourceContractTest;
+import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+/**
+ * Behaviour every {@link ClaimsDao} must have
+ */
+public abstract class ClaimsDaoContractTest extends DaoSourceContractTest {
+
+    private static final UUID WORLD_UUID = UUID.randomUUID();
+    private static final UUID OWNER_UUID = UUID.randomUUID();
+
+    @Test
+    public void insertedClaimsShouldBeFoundByLocation() throws DaoException {
+        ClaimsDao dao = this.source.getClaimsDao();
+        assertTrue(dao.isEmpty());
+
+        ChunkCoordinates coordinates = new ChunkCoordinates(WORLD_UUID, 3, -5);
+        dao.insert(new Claim(coordinates, OWNER_UUID, 2));
+
+        assertFalse(dao.isEmpty());
+        Claim claim = dao.getClaimByLocation(coordinates).get();
+        assertEquals(Optional.of(OWNER_UUID), claim.getOwner());
+        assertEquals(2, claim.getFlags());
+        assertFalse(dao.getClaimByLocation(new ChunkCoordinates(UUID.randomUUID(), 3, -5)).isPresent());
+    }
+
+    @Test
+    public void insertingAStoredClaimShouldFail() throws DaoException {
+        ClaimsDao dao = this.source.getClaimsDao();
+        Claim claim = new Claim(new ChunkCoordinates(WORLD_UUID, 0, 0), OWNER_UUID, 1);
+        dao.insert(claim);
+
+        assertThrows(DaoException.class, () -> dao.insert(new Claim(claim.getCoordinates(), UUID.randomUUID(), 0)));
+        assertThrows(DaoException.class, () -> dao.insertAll(Collections.singletonList(claim)));
+        assertEquals(Optional.of(OWNER_UUID), dao.getClaimByLocation(claim.getCoordinates()).get().getOwner());
+    }
+
+    @Test
+    public void updatingAMissingClaimShouldDoNothing() throws DaoException {
+        ClaimsDao dao = this.source.getClaimsDao();
+        ChunkCoordinates coordinates = new ChunkCoordinates(WORLD_UUID, 0, 0);
+        dao.update(new Claim(coordinates, OWNER_UUID, 1));
+        dao.updateAll(Collections.singletonList(new Claim(coordinates, OWNER_UUID, 2)));
+
+        assertFalse(dao.getClaimByLocation(coordinates).isPresent());
+        assertTrue(dao.isEmpty());
+    }
+
+    @Test
+    public void updatedClaimsShouldBeStored() throws DaoException {
+        ClaimsDao dao = this.source.getClaimsDao();
+        ChunkCoordinates coordinates = new ChunkCoordinates(WORLD_UUID, 0, 0);
+        dao.insert(new Claim(coordinates, OWNER_UUID, 1));
+        dao.update(new Claim(coordinates, OWNER_UUID, 4));
+
+        assertEquals(4, dao.getClaimByLocation(coordinates).get().getFlags());
+    }
+
+    @Test
+    public void deletedClaimsShouldNotBeFound() throws DaoException {
+        ClaimsDao dao = this.source.getClaimsDao();
+        Claim claim = new Claim(new ChunkCoordinates(WORLD_UUID, 0, 0), OWNER_UUID, 0);
+        dao.insert(claim);
+        dao.delete(claim);
+        // Deleting a claim that is not stored does nothing
+        dao.delete(claim);
+
+        assertFalse(dao.getClaimByLocation(claim.getCoordinates()).isPresent());
+        assertTrue(dao.isEmpty());
+    }
+
+    @Test
+    public void regionsShouldIncludeTheirBounds() throws DaoException {
+        ClaimsDao dao = this.source.getClaimsDao();
+        List<Claim> claims = new ArrayList<>();
+        for (int x = -3; x <= 3; x++) {
+            for (int z = -3; z <= 3; z++) {
+                claims.add(new Claim(new ChunkCoordinates(WORLD_UUID, x, z), OWNER_UUID, 0));
+            }
+        }
+        claims.add(new Claim(new ChunkCoordinates(UUID.randomUUID(), 0, 0), OWNER_UUID, 0));
+        dao.insertAll(claims);
+
+        Set<Claim> region = dao.getClaimsInRegion(WORLD_UUID, -1, -2, 1, 2);
+        assertEquals(15, region.size());
+        assertTrue(region.contains(new Claim(new ChunkCoordinates(WORLD_UUID, -1, -2), 0)));
+        assertTrue(region.contains(new Claim(new ChunkCoordinates(WORLD_UUID, 1, 2), 0)));
+        assertFalse(region.contains(new Claim(new ChunkCoordinates(WORLD_UUID, 2, 2), 0)));
+        assertEquals(1, dao.getClaimsInRegion(WORLD_UUID, 3, 3, 3, 3).size());
+        assertEquals(7, dao.getClaimsInRegion(WORLD_UUID, -1000, 0, 1000, 0).size());
+        assertTrue(dao.getClaimsInRegion(UUID.randomUUID(), -3, -3, 3, 3).isEmpty());
+    }
+
+    @Test
+    public void claimsShouldBeFoundByOwner() throws DaoException {
+        ClaimsDao dao = this.source.getClaimsDao();
+        List<Claim> claims = new ArrayList<>();
+        for (int x = 0; x < 5; x++) {
+            claims.add(new Claim(new ChunkCoordinates(WORLD_UUID, x, 0), OWNER_UUID, 0));
+        }
+        dao.insertAll(claims);
+        dao.insert(new Claim(new ChunkCoordinates(WORLD_UUID, 0, 1), UUID.randomUUID(), 0));
+        dao.insert(new Claim(new ChunkCoordinates(WORLD_UUID, 1, 1), 0));
+
+        Set<ChunkCoordinates> coordinates = new HashSet<>(dao.getCoordinatesOfOwner(OWNER_UUID));
+        assertEquals(5, coordinates.size());
+        for (Claim claim : claims) {
+            assertTrue(coordinates.contains(claim.getCoordinates()));
+        }
+        assertTrue(dao.getCoordinatesOfOwner(UUID.randomUUID()).isEmpty());
+
+        List<Claim> page = dao.getClaimsOfOwner(OWNER_UUID, 3, 10);
+        assertEquals(2, page.size());
+        assertTrue(dao.getClaimsOfOwner(OWNER_UUID, 5, 10).isEmpty());
+    }
+
+    @Test
+    public void forEachClaimShouldVisitEveryClaim() throws DaoException {
+        ClaimsDao dao = this.source.getClaimsDao();
+        Set<Claim> claims = new HashSet<>();
+        for (int x = 0; x < 10; x++) {
+            claims.add(new Claim(new ChunkCoordinates(WORLD_UUID, x, x), OWNER_UUID, 0));
+        }
+        dao.insertAll(claims);
+
+        Set<Claim> visited = new HashSet<>();
+        dao.forEachClaim(visited::add);
+        assertEquals(claims, visited);
+    }
+
+}
@@ -0,0 +1,80 @@
+package io.github.willqi.pizzamc.claims.api.claims.dao;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.willqi.pizzamc.claims.api.claims.ClaimHelper;
+import io.github.willqi.pizzamc.claims.api.daosources.DaoSourceContractTest;
+import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+/**
+ * Behaviour every {@link OwnerTrustsDao} must have
+ */
+public abstract class OwnerTrustsDaoContractTest extends DaoSourceContractTest {
+
+    private static final UUID OWNER_UUID = UUID.randomUUID();
+    private static final UUID HELPER_UUID = UUID.randomUUID();
+
+    @Test
+    public void insertedTrustsShouldBeFoundByOwner() throws DaoException {
+        OwnerTrustsDao dao = this.source.getOwnerTrustsDao();
+        assertTrue(dao.isEmpty());
+        dao.insert(OWNER_UUID, new ClaimHelper(HELPER_UUID, 5));
+
+        assertFalse(dao.isEmpty());
+        Set<ClaimHelper> trusts = dao.getTrustsOfOwner(OWNER_UUID);
+        assertEquals(Collections.singleton(new ClaimHelper(HELPER_UUID)), trusts);
+        assertEquals(5, trusts.iterator().next().getPermissions());
+        assertTrue(dao.getTrustsOfOwner(HELPER_UUID).isEmpty());
+    }
+
+    @Test
+    public void insertingAStoredTrustShouldFail() throws DaoException {
+        OwnerTrustsDao dao = this.source.getOwnerTrustsDao();
+        dao.insert(OWNER_UUID, new ClaimHelper(HELPER_UUID, 1));
+
+        assertThrows(DaoException.class, () -> dao.insert(OWNER_UUID, new ClaimHelper(HELPER_UUID, 2)));
+        assertEquals(1, dao.getTrustsOfOwner(OWNER_UUID).iterator().next().getPermissions());
+    }
+
+    @Test
+    public void updatingAMissingTrustShouldDoNothing() throws DaoException {
+        OwnerTrustsDao dao = this.source.getOwnerTrustsDao();
+        dao.update(OWNER_UUID, new ClaimHelper(HELPER_UUID, 1));
+
+        assertTrue(dao.getTrustsOfOwner(OWNER_UUID).isEmpty());
+        assertTrue(dao.isEmpty());
+    }
+
+    @Test
+    public void updatedAndDeletedTrustsShouldBeStored() throws DaoException {
+        OwnerTrustsDao dao = this.source.getOwnerTrustsDao();
+        dao.insert(OWNER_UUID, new ClaimHelper(HELPER_UUID, 1));
+        dao.update(OWNER_UUID, new ClaimHelper(HELPER_UUID, 3));
+        assertEquals(3, dao.getTrustsOfOwner(OWNER_UUID).iterator().next().getPermissions());
+
+        dao.delete(OWNER_UUID, HELPER_UUID);
+        // Deleting a trust that is not stored does nothing
+        dao.delete(OWNER_UUID, HELPER_UUID);
+        assertTrue(dao.getTrustsOfOwner(OWNER_UUID).isEmpty());
+        assertTrue(dao.isEmpty());
+    }
+
+    @Test
+    public void forEachTrustShouldVisitEveryTrust() throws DaoException {
+        OwnerTrustsDao dao = this.source.getOwnerTrustsDao();
+        UUID otherOwnerUuid = UUID.randomUUID();
+        Map<UUID, Collection<ClaimHelper>> trusts = new HashMap<>();
+        trusts.put(OWNER_UUID, Arrays.asList(new ClaimHelper(HELPER_UUID, 1), new ClaimHelper(otherOwnerUuid, 1)));
+        trusts.put(otherOwnerUuid, Collections.singletonList(new ClaimHelper(HELPER_UUID, 1)));
+        dao.insertAll(trusts);
+
+        Map<UUID, Set<ClaimHelper>> visited = new HashMap<>();
+        dao.forEachTrust((ownerUuid, helper) -> visited.computeIfAbsent(ownerUuid, key -> new HashSet<>()).add(helper));
+        assertEquals(new HashSet<>(trusts.get(OWNER_UUID)), visited.get(OWNER_UUID));
+        assertEquals(new HashSet<>(trusts.get(otherOwnerUuid)), visited.get(otherOwnerUuid));
+    }
+
+}
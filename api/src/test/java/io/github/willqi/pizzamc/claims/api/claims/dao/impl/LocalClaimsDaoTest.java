@@ -0,0 +1,17 @@
+package io.github.willqi.pizzamc.claims.api.claims.dao.impl;
+
+import io.github.willqi.pizzamc.claims.api.claims.dao.ClaimsDaoContractTest;
+import io.github.willqi.pizzamc.claims.api.daosources.DaoSource;
+import io.github.willqi.pizzamc.claims.api.daosources.LocalDaoSource;
+import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
+
+import java.nio.file.Path;
+
+public class LocalClaimsDaoTest extends ClaimsDaoContractTest {
+
+    @Override
+    protected DaoSource openDaoSource(Path directory) throws DaoException {
+        return new LocalDaoSource(directory);
+    }
+
+}
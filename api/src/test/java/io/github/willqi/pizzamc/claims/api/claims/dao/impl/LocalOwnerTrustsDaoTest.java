@@ -0,0 +1,17 @@
+package io.github.willqi.pizzamc.claims.api.claims.dao.impl;
+
+import io.github.willqi.pizzamc.claims.api.claims.dao.OwnerTrustsDaoContractTest;
+import io.github.willqi.pizzamc.claims.api.daosources.DaoSource;
+import io.github.willqi.pizzamc.claims.api.daosources.LocalDaoSource;
+import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
+
+import java.nio.file.Path;
+
+public class LocalOwnerTrustsDaoTest extends OwnerTrustsDaoContractTest {
+
+    @Override
+    protected DaoSource openDaoSource(Path directory) throws DaoException {
+        return new LocalDaoSource(directory);
+    }
+
+}
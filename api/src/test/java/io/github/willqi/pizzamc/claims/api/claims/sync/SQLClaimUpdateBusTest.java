@@ -0,0 +1,91 @@
+package io.github.willqi.pizzamc.claims.api.claims.sync;
+
+import io.github.willqi.pizzamc.claims.api.claims.ClaimHelper;
+import io.github.willqi.pizzamc.claims.api.daosources.SQLStatementRunner;
+import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class SQLClaimUpdateBusTest {
+
+    private static final long NEVER_POLL = 3600000;
+
+    @Test
+    public void updatesThatFailedToBeSentShouldBeSentAgainInOrder() throws DaoException, IOException, InterruptedException {
+        TestStatementRunner runner = new TestStatementRunner();
+        List<Exception> errors = new CopyOnWriteArrayList<>();
+        SQLClaimUpdateBus bus = new SQLClaimUpdateBus(runner, NEVER_POLL, SQLClaimUpdateBus.DEFAULT_RETENTION_MILLIS, errors::add);
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        UUID third = UUID.randomUUID();
+
+        runner.failBatches = true;
+        bus.publish(ClaimUpdate.ownerTrust(first, new ClaimHelper(UUID.randomUUID(), 1)));
+        bus.publish(ClaimUpdate.ownerTrust(second, new ClaimHelper(UUID.randomUUID(), 1)));
+        bus.flush();
+        assertTrue(runner.failedBatch.await(10, TimeUnit.SECONDS));
+        bus.publish(ClaimUpdate.ownerTrust(third, new ClaimHelper(UUID.randomUUID(), 1)));
+
+        runner.failBatches = false;
+        bus.close();
+        assertEquals(1, errors.size());
+        assertEquals(Arrays.asList(first, second, third), runner.getSentOwners());
+    }
+
+    private static class TestStatementRunner extends SQLStatementRunner {
+
+        private volatile boolean failBatches;
+        private final CountDownLatch failedBatch = new CountDownLatch(1);
+        private final List<byte[]> sent = new ArrayList<>();
+
+        public TestStatementRunner() {
+            super(null);
+        }
+
+        @Override
+        public void execute(String sql) {}
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T query(String sql, ParameterBinder binder, ResultReader<T> reader) {
+            return (T)Long.valueOf(0);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> void batch(String sql, Collection<T> items, BatchBinder<T> binder) throws DaoException {
+            if (this.failBatches) {
+                this.failedBatch.countDown();
+                throw new DaoException("Database unavailable");
+            }
+            synchronized (this.sent) {
+                this.sent.addAll((Collection<byte[]>)items);
+            }
+        }
+
+        public List<UUID> getSentOwners() throws IOException {
+            List<UUID> owners = new ArrayList<>();
+            synchronized (this.sent) {
+                for (byte[] payload : this.sent) {
+                    owners.add(ClaimUpdate.read(new DataInputStream(new ByteArrayInputStream(payload))).getOwner().get());
+                }
+            }
+            return owners;
+        }
+
+    }
+
+}
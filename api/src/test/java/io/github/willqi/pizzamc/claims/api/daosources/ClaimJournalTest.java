@@ -0,0 +1,117 @@
+package io.github.willqi.pizzamc.claims.api.daosources;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.willqi.pizzamc.claims.api.claims.ChunkCoordinates;
+import io.github.willqi.pizzamc.claims.api.claims.Claim;
+import io.github.willqi.pizzamc.claims.api.claims.ClaimHelper;
+import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+public class ClaimJournalTest {
+
+    private static final UUID WORLD_UUID = UUID.randomUUID();
+    private static final UUID OWNER_UUID = UUID.randomUUID();
+
+    private Path directory;
+    private ClaimJournal journal;
+
+    @BeforeEach
+    public void setUp() throws IOException, DaoException {
+        this.directory = Files.createTempDirectory("claim-journal");
+        this.journal = this.open();
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        this.journal.close();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(this.directory);
+    }
+
+    @Test
+    public void batchesShouldBeReplayedAllOrNothing() throws DaoException, IOException {
+        this.append(claim(0), claim(1));
+        this.append(claim(2), claim(3), claim(4));
+        this.journal.close();
+        // Tear the middle record of the second batch
+        try (FileChannel channel = FileChannel.open(this.directory.resolve(ClaimJournal.JOURNAL_FILE_NAME), StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 42 }), 3 * ClaimJournal.RECORD_SIZE + 20);
+        }
+
+        List<ClaimJournal.Record> records = new ArrayList<>();
+        this.journal = this.open(records);
+        assertEquals(2, records.size());
+        assertEquals(2, this.journal.getRecordCount());
+
+        // Records of the discarded batch after the new batch are not replayed with it
+        this.append(claim(5));
+        this.journal.close();
+        records.clear();
+        this.journal = this.open(records);
+        assertEquals(3, records.size());
+        assertEquals(5, records.get(2).getCoordinates().getX());
+    }
+
+    @Test
+    public void compactionShouldReplaceTheJournalWithASnapshot() throws DaoException, IOException {
+        this.append(claim(0), claim(1), claim(2));
+        ChunkCoordinates coordinates = new ChunkCoordinates(WORLD_UUID, 0, 0);
+        this.journal.compact(sink -> {
+            sink.append(ClaimJournal.Record.putClaim(new Claim(coordinates, OWNER_UUID, 3)));
+            sink.append(ClaimJournal.Record.putHelper(coordinates, new ClaimHelper(OWNER_UUID, 1)));
+        });
+        assertEquals(0, this.journal.getRecordCount());
+        this.append(ClaimJournal.Record.deleteHelper(coordinates, OWNER_UUID));
+        this.journal.close();
+
+        // Records of the previous generation left after the new records are ignored
+        List<ClaimJournal.Record> records = new ArrayList<>();
+        this.journal = this.open(records);
+        assertEquals(1, this.journal.getGeneration());
+        assertEquals(3, records.size());
+        assertEquals(ClaimJournal.Record.Type.PUT_CLAIM, records.get(0).getType());
+        assertEquals(OWNER_UUID, records.get(0).getSubject());
+        assertEquals(3, records.get(0).getValue());
+        assertEquals(ClaimJournal.Record.Type.DELETE_HELPER, records.get(2).getType());
+    }
+
+    private ClaimJournal open() throws DaoException {
+        return this.open(new ArrayList<>());
+    }
+
+    private ClaimJournal open(List<ClaimJournal.Record> records) throws DaoException {
+        ClaimJournal journal = new ClaimJournal(this.directory);
+        journal.replay(records::add);
+        return journal;
+    }
+
+    private void append(ClaimJournal.Record... records) throws DaoException {
+        this.journal.getLock().writeLock().lock();
+        try {
+            this.journal.append(Arrays.asList(records));
+        } finally {
+            this.journal.getLock().writeLock().unlock();
+        }
+    }
+
+    private static ClaimJournal.Record claim(int x) {
+        return ClaimJournal.Record.putClaim(new Claim(new ChunkCoordinates(WORLD_UUID, x, 0), 0));
+    }
+
+}
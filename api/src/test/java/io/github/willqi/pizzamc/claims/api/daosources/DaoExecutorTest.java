@@ -0,0 +1,52 @@
+package io.github.willqi.pizzamc.claims.api.daosources;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.*;
+
+public class DaoExecutorTest {
+
+    @Test
+    public void tasksShouldBeRejectedWhenTheQueueIsFull() throws InterruptedException {
+        DaoExecutor executor = DaoExecutor.fixed(1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<Void> running = DaoExecutor.runAsync(() -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException exception) {
+                throw new CompletionException(exception);
+            }
+        }, executor);
+        started.await();
+        CompletableFuture<Void> queued = DaoExecutor.runAsync(() -> {}, executor);
+        CompletableFuture<Void> rejected = DaoExecutor.runAsync(() -> {}, executor);
+
+        assertEquals(1, executor.getActiveCount());
+        assertEquals(1, executor.getQueueDepth());
+        assertEquals(1, executor.getRejectedCount());
+        assertTrue(rejected.isCompletedExceptionally());
+
+        release.countDown();
+        running.join();
+        queued.join();
+        assertTrue(executor.shutdown(5, TimeUnit.SECONDS));
+        assertEquals(0, executor.getQueueDepth());
+        assertEquals(2, executor.getCompletedCount());
+    }
+
+    @Test
+    public void tasksShouldBeRejectedAfterShutdown() {
+        DaoExecutor executor = DaoExecutor.fixed(1, 1);
+        assertTrue(executor.shutdown(5, TimeUnit.SECONDS));
+
+        assertThrows(CompletionException.class, () -> DaoExecutor.supplyAsync(() -> 1, executor).join());
+        assertEquals(1, executor.getRejectedCount());
+        assertEquals(0, executor.getQueueDepth());
+    }
+
+}
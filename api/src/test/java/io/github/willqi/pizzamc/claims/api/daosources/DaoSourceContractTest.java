@@ -0,0 +1,36 @@
+package io.github.willqi.pizzamc.claims.api.daosources;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+
+/**
+ * Base of the dao contract tests. Every test runs against a new, empty dao source
+ */
+public abstract class DaoSourceContractTest {
+
+    @TempDir
+    protected Path directory;
+
+    protected DaoSource source;
+
+    @BeforeEach
+    public void openSource() throws Exception {
+        this.source = this.openDaoSource(this.directory);
+    }
+
+    @AfterEach
+    public void closeSource() {
+        this.source.cleanUp();
+    }
+
+    /**
+     * @param directory empty directory the source may store its files in
+     * @return a dao source with nothing stored
+     * @throws Exception
+     */
+    protected abstract DaoSource openDaoSource(Path directory) throws Exception;
+
+}
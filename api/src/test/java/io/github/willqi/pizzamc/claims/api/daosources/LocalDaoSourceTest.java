@@ -0,0 +1,147 @@
+package io.github.willqi.pizzamc.claims.api.daosources;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.willqi.pizzamc.claims.api.claims.ChunkCoordinates;
+import io.github.willqi.pizzamc.claims.api.claims.Claim;
+import io.github.willqi.pizzamc.claims.api.claims.ClaimHelper;
+import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
+import io.github.willqi.pizzamc.claims.api.exceptions.InvalidHomeNameException;
+import io.github.willqi.pizzamc.claims.api.homes.Home;
+import io.github.willqi.pizzamc.claims.api.users.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+public class LocalDaoSourceTest {
+
+    private static final UUID WORLD_UUID = UUID.randomUUID();
+    private static final UUID OWNER_UUID = UUID.randomUUID();
+    private static final UUID HELPER_UUID = UUID.randomUUID();
+
+    private Path directory;
+    private LocalDaoSource source;
+
+    @BeforeEach
+    public void setUp() throws IOException, DaoException {
+        this.directory = Files.createTempDirectory("local-dao-source");
+        this.source = new LocalDaoSource(this.directory);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        this.source.cleanUp();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(this.directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(this.directory);
+    }
+
+    @Test
+    public void claimsShouldBeFoundByLocationRegionAndOwner() throws DaoException {
+        List<Claim> claims = new ArrayList<>();
+        for (int x = -2; x <= 2; x++) {
+            for (int z = -2; z <= 2; z++) {
+                claims.add(new Claim(new ChunkCoordinates(WORLD_UUID, x, z), OWNER_UUID, 0));
+            }
+        }
+        this.source.getClaimsDao().insertAll(claims);
+        this.source.getClaimsDao().update(new Claim(new ChunkCoordinates(WORLD_UUID, 0, 0), 4));
+        assertThrows(DaoException.class, () -> this.source.getClaimsDao().insert(claims.get(0)));
+
+        assertEquals(4, this.source.getClaimsDao().getClaimByLocation(new ChunkCoordinates(WORLD_UUID, 0, 0)).get().getFlags());
+        assertFalse(this.source.getClaimsDao().getClaimByLocation(new ChunkCoordinates(WORLD_UUID, 3, 0)).isPresent());
+        assertEquals(4, this.source.getClaimsDao().getClaimsInRegion(WORLD_UUID, -1, -2, 0, -1).size());
+        // Wide regions are scanned instead of read one column at a time
+        assertEquals(10, this.source.getClaimsDao().getClaimsInRegion(WORLD_UUID, -1000, 1, 1000, 2).size());
+
+        assertEquals(24, this.source.getClaimsDao().getCoordinatesOfOwner(OWNER_UUID).size());
+        List<Claim> page = this.source.getClaimsDao().getClaimsOfOwner(OWNER_UUID, 5, 3);
+        assertEquals(Arrays.asList(
+                new Claim(new ChunkCoordinates(WORLD_UUID, -1, -2), 0),
+                new Claim(new ChunkCoordinates(WORLD_UUID, -1, -1), 0),
+                new Claim(new ChunkCoordinates(WORLD_UUID, -1, 0), 0)
+        ), page);
+    }
+
+    @Test
+    public void helpersShouldBeSavedForEveryClaimOfAnOwner() throws DaoException {
+        ChunkCoordinates first = new ChunkCoordinates(WORLD_UUID, 0, 0);
+        ChunkCoordinates second = new ChunkCoordinates(WORLD_UUID, 0, 1);
+        this.source.getClaimsDao().insertAll(Arrays.asList(new Claim(first, OWNER_UUID, 0), new Claim(second, OWNER_UUID, 0)));
+        this.source.getClaimsHelperDao().insert(first, new ClaimHelper(HELPER_UUID, 1));
+
+        this.source.getClaimsHelperDao().saveForOwner(OWNER_UUID, new ClaimHelper(HELPER_UUID, 3));
+        assertEquals(3, this.source.getClaimsHelperDao().getClaimHelpersByLocation(first).iterator().next().getPermissions());
+        assertEquals(2, this.source.getClaimsHelperDao().getClaimHelpersInRegion(WORLD_UUID, 0, 0, 0, 1).size());
+
+        this.source.getClaimsHelperDao().deleteForOwner(OWNER_UUID, HELPER_UUID);
+        assertTrue(this.source.getClaimsHelperDao().getClaimHelpersByLocation(second).isEmpty());
+
+        // A helper deleted earlier in the batch may be inserted again
+        this.source.getClaimsHelperDao().insert(first, new ClaimHelper(HELPER_UUID, 1));
+        this.source.getClaimsHelperDao().writeAll(
+                Collections.singletonMap(first, Collections.singleton(new ClaimHelper(HELPER_UUID))),
+                Collections.singletonMap(first, Collections.singleton(new ClaimHelper(HELPER_UUID, 2))),
+                Collections.emptyMap()
+        );
+        assertEquals(2, this.source.getClaimsHelperDao().getClaimHelpersByLocation(first).iterator().next().getPermissions());
+    }
+
+    @Test
+    public void changesShouldSurviveReopening() throws DaoException, InvalidHomeNameException {
+        ChunkCoordinates coordinates = new ChunkCoordinates(WORLD_UUID, 4, -7);
+        this.source.getClaimsDao().insert(new Claim(coordinates, OWNER_UUID, 1));
+        this.source.getClaimsHelperDao().insert(coordinates, new ClaimHelper(HELPER_UUID, 2));
+        this.source.getOwnerTrustsDao().insert(OWNER_UUID, new ClaimHelper(HELPER_UUID, 1));
+        this.source.getHomesDao().insert(new Home(OWNER_UUID, "base", WORLD_UUID, 1, 2, 3));
+        this.source.getUsersDao().insert(new User(OWNER_UUID, "Owner"));
+        this.source.getUsersDao().update(new User(OWNER_UUID, "Renamed"));
+        this.source.getHomesDao().delete(new Home(OWNER_UUID, "base", WORLD_UUID, 0, 0, 0));
+
+        this.source.cleanUp();
+        this.source = new LocalDaoSource(this.directory);
+        // The log held more records than rows so it was compacted
+        assertEquals(2, this.source.getLogRecordCount());
+        assertEquals(2, this.source.getClaimJournalRecordCount());
+
+        assertEquals(1, this.source.getClaimsDao().getClaimByLocation(coordinates).get().getFlags());
+        assertEquals(2, this.source.getClaimsHelperDao().getClaimHelpersByLocation(coordinates).iterator().next().getPermissions());
+        assertEquals(1, this.source.getOwnerTrustsDao().getTrustsOfOwner(OWNER_UUID).size());
+        assertTrue(this.source.getHomesDao().getHomesByOwner(OWNER_UUID).isEmpty());
+        assertEquals("RENAMED", this.source.getUsersDao().getUserByUuid(OWNER_UUID).get().getName());
+        assertFalse(this.source.getUsersDao().getUserByName("owner").isPresent());
+        assertEquals(OWNER_UUID, this.source.getUsersDao().getUserByName("renamed").get().getUUID());
+    }
+
+    @Test
+    public void tornRecordsShouldBeDiscardedWhenReopening() throws DaoException, IOException, InvalidHomeNameException {
+        Home home = new Home(OWNER_UUID, "base", WORLD_UUID, 0, 0, 0);
+        this.source.getHomesDao().insert(home);
+        this.source.cleanUp();
+
+        Path log = this.directory.resolve(LocalDaoSource.LOG_FILE_NAME);
+        long size = Files.size(log);
+        Files.write(log, new byte[] { 0, 0, 0, 40, 1, 2, 3 }, StandardOpenOption.APPEND);
+
+        this.source = new LocalDaoSource(this.directory);
+        assertEquals(size, Files.size(log));
+        assertEquals(1, this.source.getHomesDao().getHomesByOwner(OWNER_UUID).size());
+
+        // Records appended after recovering are kept
+        this.source.getHomesDao().delete(home);
+        this.source.cleanUp();
+        this.source = new LocalDaoSource(this.directory);
+        assertTrue(this.source.getHomesDao().getHomesByOwner(OWNER_UUID).isEmpty());
+    }
+
+}
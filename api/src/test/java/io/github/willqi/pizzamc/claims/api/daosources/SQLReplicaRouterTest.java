@@ -0,0 +1,43 @@
+package io.github.willqi.pizzamc.claims.api.daosources;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.UUID;
+
+public class SQLReplicaRouterTest {
+
+    private final SQLStatementRunner primary = new SQLStatementRunner(null);
+    private final SQLStatementRunner replica = new SQLStatementRunner(null);
+
+    @Test
+    public void writtenKeysShouldBeReadFromThePrimary() {
+        SQLReplicaRouter router = new SQLReplicaRouter(this.primary, this.replica, 60000);
+        UUID written = UUID.randomUUID();
+        UUID batchWritten = UUID.randomUUID();
+        assertSame(this.replica, router.getRunner(written));
+
+        router.markWritten(written);
+        router.markWritten(Arrays.asList(batchWritten));
+        assertSame(this.primary, router.getRunner(written));
+        assertSame(this.primary, router.getRunner(batchWritten));
+        assertSame(this.replica, router.getRunner(UUID.randomUUID()));
+
+        router.markAllWritten();
+        assertSame(this.primary, router.getRunner(UUID.randomUUID()));
+    }
+
+    @Test
+    public void keysShouldReturnToTheReplicaAfterTheStickinessWindow() {
+        SQLReplicaRouter router = new SQLReplicaRouter(this.primary, this.replica, 0);
+        UUID written = UUID.randomUUID();
+        router.markWritten(written);
+        router.markAllWritten();
+        assertSame(this.replica, router.getRunner(written));
+
+        assertSame(this.primary, SQLReplicaRouter.primaryOnly(this.primary).getRunner(written));
+    }
+
+}
@@ -0,0 +1,56 @@
+package io.github.willqi.pizzamc.claims.api.daosources;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.UUID;
+
+public class SQLTableVersionTest {
+
+    private static final UUID UUID_VALUE = UUID.fromString("01234567-89ab-cdef-fedc-ba9876543210");
+
+    @Test
+    public void legacyWritesShouldRunBeforeLatestWritesInOneTransaction() throws DaoException, SQLException {
+        Connection connection = mock(Connection.class);
+        PreparedStatement legacyStmt = mock(PreparedStatement.class);
+        PreparedStatement stmt = mock(PreparedStatement.class);
+        when(connection.prepareStatement("legacy")).thenReturn(legacyStmt);
+        when(connection.prepareStatement("latest")).thenReturn(stmt);
+        DataSource source = mock(DataSource.class);
+        when(source.getConnection()).thenReturn(connection);
+
+        SQLTableVersion version = new SQLTableVersion(SQLTableVersion.LEGACY_VERSION, true);
+        assertTrue(version.isReadingLegacy());
+        new SQLStatementRunner(source).batches(version.batches("latest", "legacy", Collections.singletonList(UUID_VALUE),
+                (batchStmt, uuid, legacy) -> SQLTableVersion.setUuid(batchStmt, 1, uuid, legacy)));
+
+        InOrder order = inOrder(connection, legacyStmt, stmt);
+        order.verify(connection).setAutoCommit(false);
+        order.verify(legacyStmt).setString(1, UUID_VALUE.toString());
+        order.verify(stmt).setBytes(1, UuidBytes.toBytes(UUID_VALUE));
+        order.verify(connection).commit();
+    }
+
+    @Test
+    public void latestTablesShouldOnlyWriteTheLatestTable() {
+        SQLTableVersion version = SQLTableVersion.latest();
+        assertFalse(version.isReadingLegacy());
+        assertFalse(version.isWritingLegacy());
+        assertEquals(1, version.batches("latest", "legacy", Collections.singletonList(UUID_VALUE), (stmt, uuid, legacy) -> {}).size());
+
+        // Reads switch once a table is copied while writes still go to both tables
+        version.set(SQLTableVersion.LATEST_VERSION, true);
+        assertFalse(version.isReadingLegacy());
+        assertEquals(2, version.batches("latest", "legacy", Collections.singletonList(UUID_VALUE), (stmt, uuid, legacy) -> {}).size());
+    }
+
+}
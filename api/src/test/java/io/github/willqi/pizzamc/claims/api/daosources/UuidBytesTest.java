@@ -0,0 +1,30 @@
+package io.github.willqi.pizzamc.claims.api.daosources;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+
+public class UuidBytesTest {
+
+    @Test
+    public void uuidsShouldSurviveConversionToBytes() {
+        UUID uuid = UUID.fromString("01234567-89ab-cdef-fedc-ba9876543210");
+        byte[] bytes = UuidBytes.toBytes(uuid);
+
+        assertEquals(16, bytes.length);
+        assertEquals(0x01, bytes[0]);
+        assertEquals(0x10, bytes[15]);
+        assertEquals(uuid, UuidBytes.fromBytes(bytes));
+        assertEquals(new UUID(-1, Long.MIN_VALUE), UuidBytes.fromBytes(UuidBytes.toBytes(new UUID(-1, Long.MIN_VALUE))));
+    }
+
+    @Test
+    public void nullShouldBeConvertedToNull() {
+        assertNull(UuidBytes.toBytes(null));
+        assertNull(UuidBytes.fromBytes(null));
+        assertThrows(IllegalArgumentException.class, () -> UuidBytes.fromBytes(new byte[4]));
+    }
+
+}
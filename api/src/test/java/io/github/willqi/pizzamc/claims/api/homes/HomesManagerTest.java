@@ -3,13 +3,17 @@ package io.github.willqi.pizzamc.claims.api.homes;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
+import io.github.willqi.pizzamc.claims.api.daosources.LocalDaoSource;
 import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
 import io.github.willqi.pizzamc.claims.api.homes.dao.HomesDao;
 import io.github.willqi.pizzamc.claims.api.exceptions.InvalidHomeNameException;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
 
 public class HomesManagerTest {
 
@@ -85,8 +89,7 @@ public class HomesManagerTest {
         Home home = createHome(NULL_UUID, "Test Home");
         try {
             homesManager.save(home).get();
-            home.setX(1);
-            homesManager.save(home).get();
+            homesManager.save(home.withLocation(NULL_UUID, 1, 0, 0)).get();
         } catch (ExecutionException | InterruptedException exception) {
             throw new AssertionError("save threw an exception somehow", exception);
         }
@@ -94,41 +97,96 @@ public class HomesManagerTest {
     }
 
     @Test
-    public void fetchAndGetHomesShouldReturnClones() {
+    public void fetchAndGetHomesShouldReturnTheSavedSnapshot() {
         HomesManager homesManager = new HomesManager(new TestHomesDao());
         Home comparisonHome = createHome(NULL_UUID, "Test home");
 
         // Check fetch
         try {
             homesManager.save(comparisonHome).get();
-            comparisonHome.setX(1);
+            Home movedHome = comparisonHome.withLocation(NULL_UUID, 1, 0, 0);
             Map<String, Home> homes = homesManager.fetchHomes(NULL_UUID).get(); // NULL_UUID is also the UUID of the owner
             assertEquals(0, homes.get(comparisonHome.getName()).getX());
-
-            // Change the x of the returned map too
-            homes.get(comparisonHome.getName()).setX(1);
-            homes = homesManager.fetchHomes(NULL_UUID).get();
-            assertEquals(0, homes.get(comparisonHome.getName()).getX());
+            assertEquals(1, movedHome.getX());
+            assertThrows(UnsupportedOperationException.class, () -> homes.remove(comparisonHome.getName()));
         } catch (ExecutionException | InterruptedException exception) {
             throw new AssertionError("The test threw an exception somehow", exception);
         }
 
         // Check cache
-        Optional<Map<String, Home>> homes = homesManager.getHomes(NULL_UUID);
-        if (!homes.isPresent() || !homes.get().containsKey(comparisonHome.getName())) {
+        Optional<Home> cachedHome = homesManager.getHome(NULL_UUID, comparisonHome.getName());
+        if (!cachedHome.isPresent()) {
             throw new AssertionError("Failed to find home in cache");
         }
-        assertEquals(0, homes.get().get(comparisonHome.getName()).getX());  // Ensure that the cache was not modified
+        assertSame(comparisonHome, cachedHome.get());
+    }
 
-        homes.get().get(comparisonHome.getName()).setX(1);
-        homes = homesManager.getHomes(NULL_UUID);
-        if (!homes.isPresent() || !homes.get().containsKey(comparisonHome.getName())) {
-            throw new AssertionError("Failed to find home in cache");
+    @Test
+    public void deleteShouldNotModifyPreviouslyReturnedHomes() {
+        HomesManager homesManager = new HomesManager(new TestHomesDao());
+        Home home = createHome(NULL_UUID, "Test home");
+
+        try {
+            homesManager.save(home).get();
+            Map<String, Home> homes = homesManager.fetchHomes(NULL_UUID).get();
+            homesManager.delete(home).get();
+            assertTrue(homes.containsKey(home.getName()));
+            assertFalse(homesManager.getHome(NULL_UUID, home.getName()).isPresent());
+        } catch (ExecutionException | InterruptedException exception) {
+            throw new AssertionError("The test threw an exception somehow", exception);
         }
-        assertEquals(0, homes.get().get(comparisonHome.getName()).getX());
     }
 
 
+    @Test
+    public void saveShouldNotCacheAPartialMapIfTheHomesWereEvicted() {
+        Home otherHome = createHome(NULL_UUID, "Other home");
+        HomesManager[] homesManager = new HomesManager[1];
+        homesManager[0] = new HomesManager(new TestHomesDao() {
+
+            @Override
+            public Set<Home> getHomesByOwner(UUID uuid) {
+                return new HashSet<>(Collections.singletonList(otherHome));
+            }
+
+            @Override
+            public void insert(Home home) {
+                // Evicted while the home is written
+                homesManager[0].clearHomesCache(home.getOwnerUUID());
+            }
+
+        });
+
+        try {
+            homesManager[0].save(createHome(NULL_UUID, "Test home")).get();
+        } catch (ExecutionException | InterruptedException exception) {
+            throw new AssertionError("The test threw an exception somehow", exception);
+        }
+        assertFalse(homesManager[0].getHomes(NULL_UUID).isPresent());
+    }
+
+    @Test
+    public void savedHomesShouldBeReadBackFromLocalDaoSource(@TempDir Path directory) throws DaoException {
+        Home movedHome = createHome(NULL_UUID, "Moved home");
+        Home deletedHome = createHome(NULL_UUID, "Deleted home");
+
+        LocalDaoSource source = new LocalDaoSource(directory);
+        HomesManager homesManager = new HomesManager(source.getHomesDao());
+        homesManager.save(movedHome).join();
+        homesManager.save(deletedHome).join();
+        homesManager.save(movedHome.withLocation(NULL_UUID, 1, 2, 3)).join();
+        homesManager.delete(deletedHome).join();
+        homesManager.cleanUp();
+        source.cleanUp();
+
+        source = new LocalDaoSource(directory);
+        homesManager = new HomesManager(source.getHomesDao());
+        Map<String, Home> homes = homesManager.fetchHomes(NULL_UUID).join();
+        assertEquals(Collections.singleton(movedHome.getName()), homes.keySet());
+        assertEquals(3, homes.get(movedHome.getName()).getZ());
+        homesManager.cleanUp();
+        source.cleanUp();
+    }
 
     private static Home createHome(UUID ownerUuid, String name) {
         try {
@@ -145,6 +203,16 @@ public class HomesManagerTest {
             return new HashSet<>();
         }
 
+        @Override
+        public void forEachHome(Consumer<Home> consumer) {
+
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return true;
+        }
+
         @Override
         public void insert(Home home) {
 
@@ -0,0 +1,89 @@
+package io.github.willqi.pizzamc.claims.api.homes.dao;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.willqi.pizzamc.claims.api.daosources.DaoSourceContractTest;
+import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
+import io.github.willqi.pizzamc.claims.api.exceptions.InvalidHomeNameException;
+import io.github.willqi.pizzamc.claims.api.homes.Home;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+/**
+ * Behaviour every {@link HomesDao} must have
+ */
+public abstract class HomesDaoContractTest extends DaoSourceContractTest {
+
+    private static final UUID OWNER_UUID = UUID.randomUUID();
+    private static final UUID WORLD_UUID = UUID.randomUUID();
+
+    @Test
+    public void insertedHomesShouldBeFoundByOwner() throws DaoException, InvalidHomeNameException {
+        HomesDao dao = this.source.getHomesDao();
+        assertTrue(dao.isEmpty());
+        dao.insert(new Home(OWNER_UUID, "base", WORLD_UUID, 1.5, 64, -2.5));
+
+        assertFalse(dao.isEmpty());
+        Set<Home> homes = dao.getHomesByOwner(OWNER_UUID);
+        assertEquals(1, homes.size());
+        Home home = homes.iterator().next();
+        assertEquals("base", home.getName());
+        assertEquals(WORLD_UUID, home.getWorldUUID());
+        assertEquals(1.5, home.getX());
+        assertEquals(64, home.getY());
+        assertEquals(-2.5, home.getZ());
+        assertTrue(dao.getHomesByOwner(UUID.randomUUID()).isEmpty());
+    }
+
+    @Test
+    public void insertingAStoredHomeShouldFail() throws DaoException, InvalidHomeNameException {
+        HomesDao dao = this.source.getHomesDao();
+        dao.insert(new Home(OWNER_UUID, "base", WORLD_UUID, 0, 0, 0));
+
+        assertThrows(DaoException.class, () -> dao.insert(new Home(OWNER_UUID, "base", WORLD_UUID, 1, 1, 1)));
+        assertEquals(0, dao.getHomesByOwner(OWNER_UUID).iterator().next().getX());
+        // Other owners may use the same name
+        dao.insert(new Home(UUID.randomUUID(), "base", WORLD_UUID, 0, 0, 0));
+    }
+
+    @Test
+    public void updatingAMissingHomeShouldDoNothing() throws DaoException, InvalidHomeNameException {
+        HomesDao dao = this.source.getHomesDao();
+        dao.update(new Home(OWNER_UUID, "base", WORLD_UUID, 0, 0, 0));
+
+        assertTrue(dao.getHomesByOwner(OWNER_UUID).isEmpty());
+        assertTrue(dao.isEmpty());
+    }
+
+    @Test
+    public void updatedAndDeletedHomesShouldBeStored() throws DaoException, InvalidHomeNameException {
+        HomesDao dao = this.source.getHomesDao();
+        Home home = new Home(OWNER_UUID, "base", WORLD_UUID, 0, 0, 0);
+        dao.insert(home);
+        dao.update(home.withLocation(WORLD_UUID, 10, 20, 30));
+        assertEquals(30, dao.getHomesByOwner(OWNER_UUID).iterator().next().getZ());
+
+        dao.delete(home);
+        // Deleting a home that is not stored does nothing
+        dao.delete(home);
+        assertTrue(dao.getHomesByOwner(OWNER_UUID).isEmpty());
+        assertTrue(dao.isEmpty());
+    }
+
+    @Test
+    public void forEachHomeShouldVisitEveryHome() throws DaoException, InvalidHomeNameException {
+        HomesDao dao = this.source.getHomesDao();
+        Set<Home> homes = new HashSet<>(Arrays.asList(
+                new Home(OWNER_UUID, "first", WORLD_UUID, 0, 0, 0),
+                new Home(OWNER_UUID, "second", WORLD_UUID, 0, 0, 0),
+                new Home(UUID.randomUUID(), "first", WORLD_UUID, 0, 0, 0)
+        ));
+        dao.insertAll(homes);
+
+        Set<Home> visited = new HashSet<>();
+        dao.forEachHome(visited::add);
+        assertEquals(homes, visited);
+    }
+
+}
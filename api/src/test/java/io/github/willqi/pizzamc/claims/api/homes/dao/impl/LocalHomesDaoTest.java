@@ -0,0 +1,17 @@
+package io.github.willqi.pizzamc.claims.api.homes.dao.impl;
+
+import io.github.willqi.pizzamc.claims.api.daosources.DaoSource;
+import io.github.willqi.pizzamc.claims.api.daosources.LocalDaoSource;
+import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
+import io.github.willqi.pizzamc.claims.api.homes.dao.HomesDaoContractTest;
+
+import java.nio.file.Path;
+
+public class LocalHomesDaoTest extends HomesDaoContractTest {
+
+    @Override
+    protected DaoSource openDaoSource(Path directory) throws DaoException {
+        return new LocalDaoSource(directory);
+    }
+
+}
@@ -0,0 +1,125 @@
+package io.github.willqi.pizzamc.claims.api.snapshots;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.willqi.pizzamc.claims.api.claims.ChunkCoordinates;
+import io.github.willqi.pizzamc.claims.api.claims.Claim;
+import io.github.willqi.pizzamc.claims.api.claims.ClaimHelper;
+import io.github.willqi.pizzamc.claims.api.daosources.LocalDaoSource;
+import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
+import io.github.willqi.pizzamc.claims.api.exceptions.InvalidHomeNameException;
+import io.github.willqi.pizzamc.claims.api.homes.Home;
+import io.github.willqi.pizzamc.claims.api.users.User;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+public class SnapshotTest {
+
+    private static final UUID WORLD_UUID = UUID.randomUUID();
+    private static final UUID OWNER_UUID = UUID.randomUUID();
+    private static final UUID HELPER_UUID = UUID.randomUUID();
+
+    private Path sourceDirectory;
+    private Path targetDirectory;
+    private LocalDaoSource source;
+    private LocalDaoSource target;
+
+    @BeforeEach
+    public void setUp() throws IOException, DaoException {
+        this.sourceDirectory = Files.createTempDirectory("snapshot-source");
+        this.targetDirectory = Files.createTempDirectory("snapshot-target");
+        this.source = new LocalDaoSource(this.sourceDirectory);
+        this.target = new LocalDaoSource(this.targetDirectory);
+    }
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        this.source.cleanUp();
+        this.target.cleanUp();
+        delete(this.sourceDirectory);
+        delete(this.targetDirectory);
+    }
+
+    @Test
+    public void snapshotShouldRestoreEveryTable() throws DaoException, IOException, InvalidHomeNameException {
+        // Enough claims to span several blocks
+        List<Claim> claims = new ArrayList<>();
+        for (int x = -50; x < 50; x++) {
+            for (int z = -50; z < 50; z++) {
+                claims.add((x + z) % 3 == 0 ? new Claim(new ChunkCoordinates(WORLD_UUID, x, z), 1) : new Claim(new ChunkCoordinates(WORLD_UUID, x, z), OWNER_UUID, 2));
+            }
+        }
+        this.source.getClaimsDao().insertAll(claims);
+        ChunkCoordinates helperCoordinates = new ChunkCoordinates(WORLD_UUID, 1, 1);
+        this.source.getClaimsHelperDao().insert(helperCoordinates, new ClaimHelper(HELPER_UUID, 3));
+        this.source.getOwnerTrustsDao().insert(OWNER_UUID, new ClaimHelper(HELPER_UUID, 5));
+        this.source.getHomesDao().insert(new Home(OWNER_UUID, "base", WORLD_UUID, 1.5, 64, -20.25));
+        this.source.getUsersDao().insert(new User(OWNER_UUID, "Owner"));
+
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        SnapshotStats exportStats = new SnapshotExporter(this.source).exportTo(output);
+        assertEquals(claims.size(), exportStats.getClaimCount());
+        assertEquals(output.size(), exportStats.getBytes());
+        SnapshotStats importStats = new SnapshotImporter(this.target).importFrom(new ByteArrayInputStream(output.toByteArray()));
+        assertEquals(claims.size(), importStats.getClaimCount());
+        assertEquals(1, importStats.getHelperCount());
+        assertEquals(1, importStats.getOwnerTrustCount());
+        assertEquals(1, importStats.getHomeCount());
+        assertEquals(1, importStats.getUserCount());
+
+        for (Claim claim : claims) {
+            Claim restored = this.target.getClaimsDao().getClaimByLocation(claim.getCoordinates()).get();
+            assertEquals(claim.getOwner(), restored.getOwner());
+            assertEquals(claim.getFlags(), restored.getFlags());
+        }
+        assertEquals(3, this.target.getClaimsHelperDao().getClaimHelpersByLocation(helperCoordinates).iterator().next().getPermissions());
+        assertEquals(5, this.target.getOwnerTrustsDao().getTrustsOfOwner(OWNER_UUID).iterator().next().getPermissions());
+        Home home = this.target.getHomesDao().getHomesByOwner(OWNER_UUID).iterator().next();
+        assertEquals("base", home.getName());
+        assertEquals(-20.25, home.getZ());
+        assertEquals(OWNER_UUID, this.target.getUsersDao().getUserByName("owner").get().getUUID());
+    }
+
+    @Test
+    public void corruptBlocksShouldBeRejected() throws DaoException, IOException {
+        this.source.getClaimsDao().insert(new Claim(new ChunkCoordinates(WORLD_UUID, 0, 0), OWNER_UUID, 0));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new SnapshotExporter(this.source).exportTo(output);
+        byte[] snapshot = output.toByteArray();
+        // Flip a bit of the owner uuid in the first block
+        snapshot[20] ^= 1;
+
+        assertThrows(IOException.class, () -> new SnapshotImporter(this.target).importFrom(new ByteArrayInputStream(snapshot)));
+        assertFalse(this.target.getClaimsDao().getClaimByLocation(new ChunkCoordinates(WORLD_UUID, 0, 0)).isPresent());
+    }
+
+    @Test
+    public void importShouldBeRefusedUnlessEveryTableIsEmpty() throws DaoException, IOException {
+        this.source.getClaimsDao().insert(new Claim(new ChunkCoordinates(WORLD_UUID, 0, 0), OWNER_UUID, 0));
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        new SnapshotExporter(this.source).exportTo(output);
+        this.target.getUsersDao().insert(new User(OWNER_UUID, "Owner"));
+
+        assertThrows(DaoException.class, () -> new SnapshotImporter(this.target).importFrom(new ByteArrayInputStream(output.toByteArray())));
+        assertTrue(this.target.getClaimsDao().isEmpty());
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+
+}
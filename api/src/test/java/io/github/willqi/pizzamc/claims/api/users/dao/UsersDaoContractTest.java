@@ -0,0 +1,97 @@
+package io.github.willqi.pizzamc.claims.api.users.dao;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import io.github.willqi.pizzamc.claims.api.daosources.DaoSourceContractTest;
+import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
+import io.github.willqi.pizzamc.claims.api.users.User;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+
+/**
+ * Behaviour every {@link UsersDao} must have
+ */
+public abstract class UsersDaoContractTest extends DaoSourceContractTest {
+
+    private static final UUID USER_UUID = UUID.randomUUID();
+
+    @Test
+    public void insertedUsersShouldBeStoredWithUpperCaseNames() throws DaoException {
+        UsersDao dao = this.source.getUsersDao();
+        assertTrue(dao.isEmpty());
+        dao.insert(new User(USER_UUID, "Steve"));
+
+        assertFalse(dao.isEmpty());
+        assertEquals("STEVE", dao.getUserByUuid(USER_UUID).get().getName());
+        assertFalse(dao.getUserByUuid(UUID.randomUUID()).isPresent());
+    }
+
+    @Test
+    public void usersShouldBeFoundByNameIgnoringCase() throws DaoException {
+        UsersDao dao = this.source.getUsersDao();
+        dao.insert(new User(USER_UUID, "Steve"));
+
+        assertEquals(USER_UUID, dao.getUserByName("steve").get().getUUID());
+        assertEquals(USER_UUID, dao.getUserByName("STEVE").get().getUUID());
+        assertFalse(dao.getUserByName("Alex").isPresent());
+    }
+
+    @Test
+    public void insertingAStoredUserShouldFail() throws DaoException {
+        UsersDao dao = this.source.getUsersDao();
+        dao.insert(new User(USER_UUID, "Steve"));
+
+        assertThrows(DaoException.class, () -> dao.insert(new User(USER_UUID, "Alex")));
+        assertEquals("STEVE", dao.getUserByUuid(USER_UUID).get().getName());
+    }
+
+    @Test
+    public void updatingAMissingUserShouldDoNothing() throws DaoException {
+        UsersDao dao = this.source.getUsersDao();
+        dao.update(new User(USER_UUID, "Steve"));
+
+        assertFalse(dao.getUserByUuid(USER_UUID).isPresent());
+        assertFalse(dao.getUserByName("Steve").isPresent());
+        assertTrue(dao.isEmpty());
+    }
+
+    @Test
+    public void renamedUsersShouldOnlyBeFoundByTheirNewName() throws DaoException {
+        UsersDao dao = this.source.getUsersDao();
+        dao.insert(new User(USER_UUID, "Steve"));
+        dao.update(new User(USER_UUID, "Alex"));
+
+        assertEquals("ALEX", dao.getUserByUuid(USER_UUID).get().getName());
+        assertEquals(USER_UUID, dao.getUserByName("alex").get().getUUID());
+        assertFalse(dao.getUserByName("steve").isPresent());
+    }
+
+    @Test
+    public void deletedUsersShouldNotBeFound() throws DaoException {
+        UsersDao dao = this.source.getUsersDao();
+        User user = new User(USER_UUID, "Steve");
+        dao.insert(user);
+        dao.delete(user);
+        // Deleting a user that is not stored does nothing
+        dao.delete(user);
+
+        assertFalse(dao.getUserByUuid(USER_UUID).isPresent());
+        assertFalse(dao.getUserByName("Steve").isPresent());
+        assertTrue(dao.isEmpty());
+    }
+
+    @Test
+    public void forEachUserShouldVisitEveryUser() throws DaoException {
+        UsersDao dao = this.source.getUsersDao();
+        UUID otherUuid = UUID.randomUUID();
+        dao.insertAll(Arrays.asList(new User(USER_UUID, "Steve"), new User(otherUuid, "Alex")));
+
+        Map<UUID, String> visited = new HashMap<>();
+        dao.forEachUser(user -> visited.put(user.getUUID(), user.getName()));
+        assertEquals(2, visited.size());
+        assertEquals("STEVE", visited.get(USER_UUID));
+        assertEquals("ALEX", visited.get(otherUuid));
+    }
+
+}
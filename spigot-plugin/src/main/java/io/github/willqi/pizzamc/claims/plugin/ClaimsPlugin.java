@@ -1,20 +1,34 @@
 package io.github.willqi.pizzamc.claims.plugin;
 
+import io.github.willqi.pizzamc.claims.api.claims.ChunkCoordinates;
 import io.github.willqi.pizzamc.claims.api.claims.ClaimsManager;
+import io.github.willqi.pizzamc.claims.api.claims.PreloadStats;
+import io.github.willqi.pizzamc.claims.api.claims.sync.ClaimUpdateBus;
+import io.github.willqi.pizzamc.claims.api.claims.sync.SQLClaimUpdateBus;
+import io.github.willqi.pizzamc.claims.api.daosources.DaoExecutor;
 import io.github.willqi.pizzamc.claims.api.daosources.DaoSource;
+import io.github.willqi.pizzamc.claims.api.daosources.LocalDaoSource;
 import io.github.willqi.pizzamc.claims.api.daosources.SQLDaoSource;
 import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
 import io.github.willqi.pizzamc.claims.api.homes.HomesManager;
 import io.github.willqi.pizzamc.claims.api.users.UsersManager;
 import io.github.willqi.pizzamc.claims.plugin.commands.ClaimCommand;
 import io.github.willqi.pizzamc.claims.plugin.commands.HomeCommand;
+import io.github.willqi.pizzamc.claims.plugin.commands.SnapshotCommand;
 import io.github.willqi.pizzamc.claims.plugin.listeners.ClaimListener;
 import io.github.willqi.pizzamc.claims.plugin.listeners.HomeListener;
 import io.github.willqi.pizzamc.claims.plugin.listeners.UsersListener;
 import io.github.willqi.pizzamc.claims.plugin.menus.MenuManager;
 import io.github.willqi.pizzamc.claims.plugin.menus.types.*;
+import org.bukkit.Chunk;
+import org.bukkit.World;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.plugin.java.JavaPlugin;
 
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 public class ClaimsPlugin extends JavaPlugin {
@@ -25,15 +39,25 @@ public class ClaimsPlugin extends JavaPlugin {
     private UsersManager usersManager;
 
     private DaoSource daoSource;
+    private DaoExecutor daoExecutor;
+    private ClaimUpdateBus claimUpdateBus;
 
     @Override
     public void onDisable() {
         if (homesManager != null) {
             homesManager.cleanUp();
         }
+        if (this.claimUpdateBus != null) {
+            this.claimUpdateBus.close();
+        }
         if (claimsManager != null) {
+            this.getLogger().info(String.format("Claim cache: %s. %d unloaded chunks were loaded again while cached, %d chunks expired after unloading and %d were evicted",
+                    claimsManager.getLoadStats(), claimsManager.getAvoidedReloadCount(), claimsManager.getExpiredChunkCount(), claimsManager.getEvictedChunkCount()));
             claimsManager.cleanUp();
         }
+        if (this.daoExecutor != null && !this.daoExecutor.shutdown(30, TimeUnit.SECONDS)) {
+            this.getLogger().warning("Timed out waiting for database queries to finish.");
+        }
         if (this.daoSource != null)  {
             this.daoSource.cleanUp();
         }
@@ -43,25 +67,69 @@ public class ClaimsPlugin extends JavaPlugin {
     public void onEnable() {
         this.saveDefaultConfig();
 
+        int defaultDaoThreads;
         try {
-            this.daoSource = new SQLDaoSource(
-                    this.getConfig().getString("host"),
-                    this.getConfig().getInt("port"),
-                    this.getConfig().getString("database"),
-                    this.getConfig().getString("username"),
-                    this.getConfig().getString("password")
-            );
+            if (this.getConfig().getString("storage", "mysql").equalsIgnoreCase("local")) {
+                this.daoSource = new LocalDaoSource(this.getDataFolder().toPath().resolve("storage"));
+                // Local queries never wait on a connection so there is no pool to match
+                defaultDaoThreads = Runtime.getRuntime().availableProcessors();
+            } else {
+                String replicaHost = this.getConfig().getString("replica.host");
+                SQLDaoSource sqlDaoSource = new SQLDaoSource(
+                        this.getConfig().getString("host"),
+                        this.getConfig().getInt("port"),
+                        this.getConfig().getString("database"),
+                        this.getConfig().getString("username"),
+                        this.getConfig().getString("password"),
+                        this.getConfig().getInt("pool_size", SQLDaoSource.DEFAULT_POOL_SIZE),
+                        this.getDriverProperties(),
+                        replicaHost == null || replicaHost.isEmpty() ? null : replicaHost,
+                        this.getConfig().getInt("replica.port", 3306),
+                        this.getConfig().getInt("replica.pool_size", SQLDaoSource.DEFAULT_POOL_SIZE),
+                        this.getConfig().getLong("replica.stickiness_ms", SQLDaoSource.DEFAULT_REPLICA_STICKINESS_MILLIS)
+                );
+                sqlDaoSource.setLogger(this.getLogger());
+                this.daoSource = sqlDaoSource;
+                defaultDaoThreads = sqlDaoSource.getPoolSize() + sqlDaoSource.getReplicaPoolSize();
+            }
         } catch (DaoException exception) {
             this.getLogger().log(Level.SEVERE, "Cannot connect to database.", exception);
             this.getServer().getPluginManager().disablePlugin(this);
             return;
         }
+        this.daoExecutor = this.createDaoExecutor(defaultDaoThreads);
 
-        this.claimsManager = new ClaimsManager(this.daoSource.getClaimsDao(), this.daoSource.getClaimsHelperDao());
-        this.homesManager = new HomesManager(this.daoSource.getHomesDao());
-        this.usersManager = new UsersManager(this.daoSource.getUsersDao());
+        this.claimsManager = new ClaimsManager(
+                this.daoSource.getClaimsDao(),
+                this.daoSource.getClaimsHelperDao(),
+                this.getConfig().getBoolean("owner_trust", false) ? this.daoSource.getOwnerTrustsDao() : null,
+                this.daoExecutor,
+                this.getConfig().getLong("write_behind_interval_ms", 0),
+                this.getConfig().getInt("write_behind_max_pending", 500),
+                this.getConfig().getInt("max_cached_chunks", 100000)
+        );
+        this.claimsManager.setLogger(this.getLogger());
+        this.homesManager = new HomesManager(
+                this.daoSource.getHomesDao(),
+                this.daoExecutor,
+                this.getConfig().getInt("homes_cache_size", 1000),
+                this.getConfig().getLong("homes_cache_expire_minutes", 10)
+        );
+        this.usersManager = new UsersManager(this.daoSource.getUsersDao(), this.daoExecutor);
+        this.attachClaimUpdateBus();
+
+        if (this.getConfig().getBoolean("preload_claims", false)) {
+            try {
+                PreloadStats stats = this.claimsManager.preloadClaims().join();
+                this.getLogger().info(stats.toString());
+            } catch (CompletionException exception) {
+                this.getLogger().log(Level.SEVERE, "Failed to preload claims. Claims will be loaded around players instead.", exception);
+            }
+        }
         this.menuManager = new MenuManager(this);
 
+        this.pinLoadedChunks();
+        this.scheduleClaimJournalCompaction();
         this.registerEvents();
         this.registerCommands();
         this.registerMenuTypes();
@@ -83,6 +151,87 @@ public class ClaimsPlugin extends JavaPlugin {
         return this.menuManager;
     }
 
+    public DaoExecutor getDaoExecutor() {
+        return this.daoExecutor;
+    }
+
+    public DaoSource getDaoSource() {
+        return this.daoSource;
+    }
+
+    /**
+     * Read the MySQL driver properties overridden in the config
+     */
+    private Map<String, String> getDriverProperties() {
+        Map<String, String> properties = new HashMap<>();
+        ConfigurationSection section = this.getConfig().getConfigurationSection("mysql_properties");
+        if (section != null) {
+            for (String key : section.getKeys(false)) {
+                properties.put(key, String.valueOf(section.get(key)));
+            }
+        }
+        return properties;
+    }
+
+    private void attachClaimUpdateBus() {
+        if (!this.getConfig().getBoolean("sync_claims_between_servers", false)) {
+            return;
+        }
+        if (!(this.daoSource instanceof SQLDaoSource)) {
+            this.getLogger().warning("sync_claims_between_servers requires mysql storage. Claims will not be synced.");
+            return;
+        }
+        try {
+            this.claimUpdateBus = ((SQLDaoSource)this.daoSource).createClaimUpdateBus(
+                    this.getConfig().getLong("claim_sync_poll_ms", SQLClaimUpdateBus.DEFAULT_POLL_INTERVAL_MILLIS),
+                    this.getConfig().getLong("claim_sync_retention_seconds", SQLClaimUpdateBus.DEFAULT_RETENTION_MILLIS / 1000) * 1000,
+                    exception -> this.getLogger().log(Level.WARNING, "Failed to sync claims with other servers.", exception)
+            );
+        } catch (DaoException exception) {
+            this.getLogger().log(Level.SEVERE, "Failed to create the claim updates table. Claims will not be synced.", exception);
+            return;
+        }
+        this.claimsManager.attachUpdateBus(this.claimUpdateBus);
+    }
+
+    private void scheduleClaimJournalCompaction() {
+        long periodTicks = this.getConfig().getLong("claim_journal_compaction_minutes", 10) * 60 * 20;
+        if (!(this.daoSource instanceof LocalDaoSource) || periodTicks <= 0) {
+            return;
+        }
+        LocalDaoSource localDaoSource = (LocalDaoSource)this.daoSource;
+        this.getServer().getScheduler().runTaskTimerAsynchronously(this, () -> {
+            try {
+                localDaoSource.compactClaimJournal();
+            } catch (DaoException exception) {
+                this.getLogger().log(Level.WARNING, "Failed to compact the claim journal.", exception);
+            }
+        }, periodTicks, periodTicks);
+    }
+
+    private DaoExecutor createDaoExecutor(int defaultThreads) {
+        int queueSize = this.getConfig().getInt("dao_queue_size", 1000);
+        if (this.getConfig().getBoolean("dao_virtual_threads", false)) {
+            if (DaoExecutor.isVirtualThreadsSupported()) {
+                return DaoExecutor.virtual(queueSize);
+            }
+            this.getLogger().warning("Virtual threads require Java 21 or higher. Falling back to platform threads.");
+        }
+        int threads = this.getConfig().getInt("dao_threads", -1);
+        return DaoExecutor.fixed(threads > 0 ? threads : defaultThreads, queueSize);
+    }
+
+    /**
+     * Chunks loaded before the plugin was enabled never fire a ChunkLoadEvent
+     */
+    private void pinLoadedChunks() {
+        for (World world : this.getServer().getWorlds()) {
+            for (Chunk chunk : world.getLoadedChunks()) {
+                this.claimsManager.pinChunk(new ChunkCoordinates(world.getUID(), chunk.getX(), chunk.getZ()));
+            }
+        }
+    }
+
     private void registerEvents() {
         this.getServer().getPluginManager().registerEvents(new HomeListener(this), this);
         this.getServer().getPluginManager().registerEvents(new ClaimListener(this), this);
@@ -97,6 +246,10 @@ public class ClaimsPlugin extends JavaPlugin {
         ClaimCommand claimCommand = new ClaimCommand(this);
         this.getCommand("claim").setExecutor(claimCommand);
         this.getCommand("claim").setTabCompleter(claimCommand);
+
+        SnapshotCommand snapshotCommand = new SnapshotCommand(this);
+        this.getCommand("claimsnapshot").setExecutor(snapshotCommand);
+        this.getCommand("claimsnapshot").setTabCompleter(snapshotCommand);
     }
 
     private void registerMenuTypes() {
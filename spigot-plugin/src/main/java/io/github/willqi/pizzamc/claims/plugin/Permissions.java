@@ -8,4 +8,6 @@ public class Permissions {
     public static final String CAN_CHANGE_CLAIM_FLAGS = "pizzamcclaims.commands.claim.flags";
     public static final String CAN_MANAGE_HELPERS = "pizzamcclaims.commands.claim.helpers";
     public static final String HAS_CLAIM_ADMIN = "pizzamcclaims.commands.claim.admin";
+
+    public static final String CAN_MANAGE_SNAPSHOTS = "pizzamcclaims.commands.claimsnapshot";
 }
@@ -2,7 +2,9 @@ package io.github.willqi.pizzamc.claims.plugin.commands;
 
 import io.github.willqi.pizzamc.claims.api.claims.ChunkCoordinates;
 import io.github.willqi.pizzamc.claims.api.claims.Claim;
+import io.github.willqi.pizzamc.claims.api.claims.ClaimHelper;
 import io.github.willqi.pizzamc.claims.api.claims.ClaimsManager;
+import io.github.willqi.pizzamc.claims.api.users.User;
 import io.github.willqi.pizzamc.claims.plugin.ClaimsPlugin;
 import io.github.willqi.pizzamc.claims.plugin.Permissions;
 import io.github.willqi.pizzamc.claims.plugin.Utility;
@@ -14,6 +16,7 @@ import org.bukkit.ChatColor;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
 import org.bukkit.Particle;
+import org.bukkit.World;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
@@ -25,34 +28,46 @@ import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.util.StringUtil;
 
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.Level;
 
 public class ClaimCommand implements CommandExecutor, TabCompleter, Listener {
 
     private static final int CLAIM_VIEW_CHUNK_RADIUS = 2;
+    private static final int CLAIM_LIST_PAGE_SIZE = 10;
 
     private static final String USAGE_MESSAGE = "Need help using /claim?\n" +
             "/claim add - Claim the chunk you are in\n" +
+            "/claim add <radius|selection> - Claim every chunk around you or in your selection\n" +
             "/claim remove - Unclaim the chunk you are in\n" +
+            "/claim remove <radius|selection> - Unclaim every chunk around you or in your selection\n" +
+            "/claim select - Select a corner of a rectangle of chunks\n" +
             "/claim flags - View/modify the flags of your claim\n" +
             "/claim helpers - View/modify the helpers of your claim\n" +
-            "/claim view - Toggle claim observation mode to see claim boundaries";
+            "/claim trust <player> - Let a player build and interact in all of your claims\n" +
+            "/claim untrust <player> - Stop trusting a player in all of your claims\n" +
+            "/claim view - Toggle claim observation mode to see claim boundaries\n" +
+            "/claim list [page] - List the chunks you claimed";
 
     private final ClaimsPlugin plugin;
 
     private final Set<Player> claimViewers;
+    // Corners of the rectangle of chunks selected by each player. The second corner is null until selected
+    private final Map<Player, ChunkCoordinates[]> selections;
 
     public ClaimCommand (ClaimsPlugin plugin) {
         this.plugin = plugin;
         this.claimViewers = new HashSet<>();
+        this.selections = new HashMap<>();
         this.plugin.getServer().getScheduler().scheduleSyncRepeatingTask(this.plugin, () -> {
+            ClaimsManager claimsManager = this.plugin.getClaimsManager();
             for (Player player : this.claimViewers) {
 
+                int worldId = claimsManager.getWorldId(player.getWorld().getUID());
                 for (int chunkX = player.getLocation().getChunk().getX() - CLAIM_VIEW_CHUNK_RADIUS; chunkX <= player.getLocation().getChunk().getX() + CLAIM_VIEW_CHUNK_RADIUS; chunkX++) {
                     for (int chunkZ = player.getLocation().getChunk().getZ() - CLAIM_VIEW_CHUNK_RADIUS; chunkZ <= player.getLocation().getChunk().getZ() + CLAIM_VIEW_CHUNK_RADIUS; chunkZ++) {
 
-                        ChunkCoordinates coordinates = new ChunkCoordinates(player.getWorld().getUID(), chunkX, chunkZ);
-                        Optional<Claim> claim = this.plugin.getClaimsManager().getClaim(coordinates);
+                        Optional<Claim> claim = claimsManager.getClaim(worldId, chunkX, chunkZ);
                         if (claim.isPresent() && claim.get().getOwner().isPresent()) {
 
                             Chunk chunk = player.getWorld().getChunkAt(chunkX, chunkZ);
@@ -120,6 +135,10 @@ public class ClaimCommand implements CommandExecutor, TabCompleter, Listener {
                     player.sendMessage(Utility.NO_PERMISSIONS_MESSAGE);
                     return true;
                 }
+                if (args.length > 1) {
+                    this.getArea(player, args[1]).ifPresent(area -> this.claimArea(player, area, playerIsClaimAdmin));
+                    return true;
+                }
 
                 // Is this already owned?
                 if (currentClaim.get().getOwner().isPresent() && !playerIsClaimAdmin) {
@@ -134,9 +153,21 @@ public class ClaimCommand implements CommandExecutor, TabCompleter, Listener {
                 // Check if the player is allowed to claim anymore land
                 int claimLimit = this.plugin.getConfig().getInt("max_claims_per_player");
                 if (!playerIsClaimAdmin && claimLimit >= 0) {
-                    Optional<Integer> totalClaims = this.plugin.getClaimsManager().getClaimCount(player.getUniqueId());
+                    Optional<Integer> totalClaims = claimsManager.getClaimCount(player.getUniqueId());
                     if (!totalClaims.isPresent()) {
-                        player.sendMessage(Utility.formatResponse("Claims", "Please wait a moment..."));
+                        // Only happens right after joining: run the command again once the claims of the player are loaded
+                        claimsManager.fetchClaimCount(player.getUniqueId()).whenComplete((count, exception) -> {
+                            if (exception != null) {
+                                this.plugin.getLogger().log(Level.SEVERE, "Failed to fetch claim count of uuid " + player.getUniqueId(), exception);
+                                player.sendMessage(Utility.formatResponse("Claims", "An exception occurred while trying to claim this chunk.", ChatColor.RED));
+                            } else {
+                                this.plugin.getServer().getScheduler().scheduleSyncDelayedTask(this.plugin, () -> {
+                                    if (player.isOnline()) {
+                                        this.onCommand(commandSender, command, label, args);
+                                    }
+                                });
+                            }
+                        });
                         return true;
                     }
                     if (totalClaims.get() >= claimLimit) {
@@ -145,14 +176,14 @@ public class ClaimCommand implements CommandExecutor, TabCompleter, Listener {
                     }
                 }
 
-                ChunkClaimEvent chunkClaimEvent = new ChunkClaimEvent(player, currentClaim.get());
+                Claim claimedClaim = currentClaim.get().withOwner(player.getUniqueId());
+                ChunkClaimEvent chunkClaimEvent = new ChunkClaimEvent(player, claimedClaim);
                 this.plugin.getServer().getPluginManager().callEvent(chunkClaimEvent);
                 if (chunkClaimEvent.isCancelled()) {
                     return true;
                 }
 
-                currentClaim.get().setOwner(player.getUniqueId());
-                claimsManager.saveClaim(currentClaim.get()).whenComplete((v, exception) -> {
+                claimsManager.saveClaim(claimedClaim).whenComplete((v, exception) -> {
                     if (exception != null) {
                         this.plugin.getLogger().log(Level.SEVERE, "Failed to claim chunk", exception);
                         player.sendMessage(Utility.formatResponse("Claims", "An exception occurred while trying to claim this chunk.", ChatColor.RED));
@@ -168,6 +199,10 @@ public class ClaimCommand implements CommandExecutor, TabCompleter, Listener {
                     player.sendMessage(Utility.NO_PERMISSIONS_MESSAGE);
                     return true;
                 }
+                if (args.length > 1) {
+                    this.getArea(player, args[1]).ifPresent(area -> this.unclaimArea(player, area, playerIsClaimAdmin));
+                    return true;
+                }
 
                 if (!currentClaim.get().getOwner().isPresent()) {
                     player.sendMessage(Utility.formatResponse("Claims", "Nobody has claimed this chunk!", ChatColor.RED));
@@ -229,6 +264,47 @@ public class ClaimCommand implements CommandExecutor, TabCompleter, Listener {
                 break;
 
 
+            case "trust":
+            case "untrust":
+                if (!player.hasPermission(Permissions.CAN_MANAGE_HELPERS) && !playerIsClaimAdmin) {
+                    player.sendMessage(Utility.NO_PERMISSIONS_MESSAGE);
+                    return true;
+                }
+                if (!claimsManager.isOwnerTrustEnabled()) {
+                    player.sendMessage(Utility.formatResponse("Claims", "Trusting players in all of your claims is disabled on this server. Use /claim helpers instead.", ChatColor.RED));
+                    return true;
+                }
+                if (args.length < 2) {
+                    player.sendMessage(Utility.formatResponse("Claims", "Usage: /claim " + args[0] + " <player>", ChatColor.RED));
+                    return true;
+                }
+
+                boolean trust = args[0].equals("trust");
+                String targetName = args[1];
+                this.fetchPlayerUuid(targetName).thenCompose(targetUuid -> {
+                    if (!targetUuid.isPresent()) {
+                        player.sendMessage(Utility.formatResponse("Claims", "That player does not exist or has not logged on the server yet!", ChatColor.RED));
+                        return CompletableFuture.completedFuture(null);
+                    }
+                    if (!trust) {
+                        return claimsManager.deleteOwnerTrust(player.getUniqueId(), targetUuid.get()).thenRun(() ->
+                                player.sendMessage(Utility.formatResponse("Claims", targetName + " is no longer trusted in your claims.", ChatColor.GREEN)));
+                    }
+                    ClaimHelper helper = new ClaimHelper(targetUuid.get());
+                    for (ClaimHelper.Permission permission : ClaimHelper.Permission.values()) {
+                        helper = helper.withPermission(permission);
+                    }
+                    return claimsManager.saveOwnerTrust(player.getUniqueId(), helper).thenRun(() ->
+                            player.sendMessage(Utility.formatResponse("Claims", targetName + " is now trusted in all of your claims.", ChatColor.GREEN)));
+                }).whenComplete((ignored, exception) -> {
+                    if (exception != null) {
+                        this.plugin.getLogger().log(Level.SEVERE, "Failed to change the trust of " + targetName, exception);
+                        player.sendMessage(Utility.formatResponse("Claims", "An exception has occurred!", ChatColor.RED));
+                    }
+                });
+                break;
+
+
             case "view":
                 if (!player.hasPermission(Permissions.CAN_CLAIM_LAND_AND_USE_COMMAND) && !playerIsClaimAdmin) {
                     player.sendMessage(Utility.NO_PERMISSIONS_MESSAGE);
@@ -245,6 +321,74 @@ public class ClaimCommand implements CommandExecutor, TabCompleter, Listener {
                 break;
 
 
+            case "select":
+                if (!player.hasPermission(Permissions.CAN_CLAIM_LAND_AND_USE_COMMAND) && !playerIsClaimAdmin) {
+                    player.sendMessage(Utility.NO_PERMISSIONS_MESSAGE);
+                    return true;
+                }
+
+                ChunkCoordinates[] selection = this.selections.get(player);
+                if (selection == null || selection[1] != null || !selection[0].getWorldUUID().equals(coordinates.getWorldUUID())) {
+                    this.selections.put(player, new ChunkCoordinates[]{ coordinates, null });
+                    player.sendMessage(Utility.formatResponse("Claims", "Selected the first corner. Run /claim select again in the opposite corner.", ChatColor.GREEN));
+                } else {
+                    selection[1] = coordinates;
+                    int width = Math.abs(selection[0].getX() - selection[1].getX()) + 1;
+                    int length = Math.abs(selection[0].getZ() - selection[1].getZ()) + 1;
+                    player.sendMessage(Utility.formatResponse("Claims", "Selected " + width + "x" + length + " chunks. Use /claim add selection or /claim remove selection.", ChatColor.GREEN));
+                }
+                break;
+
+
+            case "list":
+                if (!player.hasPermission(Permissions.CAN_CLAIM_LAND_AND_USE_COMMAND) && !playerIsClaimAdmin) {
+                    player.sendMessage(Utility.NO_PERMISSIONS_MESSAGE);
+                    return true;
+                }
+
+                int page;
+                try {
+                    page = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+                } catch (NumberFormatException exception) {
+                    player.sendMessage(Utility.formatResponse("Claims", "Please provide a valid page number.", ChatColor.RED));
+                    return true;
+                }
+                if (page < 1) {
+                    player.sendMessage(Utility.formatResponse("Claims", "Please provide a valid page number.", ChatColor.RED));
+                    return true;
+                }
+
+                claimsManager.fetchOwnedClaims(player.getUniqueId()).whenComplete((ownedClaims, exception) -> {
+                    if (exception != null) {
+                        this.plugin.getLogger().log(Level.SEVERE, "Failed to list claims", exception);
+                        player.sendMessage(Utility.formatResponse("Claims", "An exception occurred while trying to list your claims.", ChatColor.RED));
+                        return;
+                    }
+                    List<ChunkCoordinates> sortedClaims = new ArrayList<>(ownedClaims);
+                    sortedClaims.sort(Comparator.comparing(ChunkCoordinates::getWorldUUID)
+                            .thenComparingInt(ChunkCoordinates::getX)
+                            .thenComparingInt(ChunkCoordinates::getZ));
+                    int pageStart = (page - 1) * CLAIM_LIST_PAGE_SIZE;
+                    if (pageStart >= sortedClaims.size()) {
+                        player.sendMessage(Utility.formatResponse("Claims", "You have no claims on page " + page + ".", ChatColor.RED));
+                        return;
+                    }
+
+                    StringBuilder message = new StringBuilder("Your claims (page " + page + "):");
+                    for (ChunkCoordinates claimCoordinates : sortedClaims.subList(pageStart, Math.min(pageStart + CLAIM_LIST_PAGE_SIZE, sortedClaims.size()))) {
+                        World world = this.plugin.getServer().getWorld(claimCoordinates.getWorldUUID());
+                        message.append("\n")
+                                .append(world != null ? world.getName() : claimCoordinates.getWorldUUID().toString())
+                                .append(" - chunk ")
+                                .append(claimCoordinates.getX())
+                                .append(", ")
+                                .append(claimCoordinates.getZ());
+                    }
+                    player.sendMessage(Utility.formatResponse("Claims", message.toString()));
+                });
+                break;
+
+
             default:
                 player.sendMessage(Utility.formatResponse("Claims", USAGE_MESSAGE));
                 break;
@@ -262,16 +406,196 @@ public class ClaimCommand implements CommandExecutor, TabCompleter, Listener {
             List<String> options = new ArrayList<>();
             if (args.length == 1) {
                 Collections.sort(
-                        StringUtil.copyPartialMatches(args[0], Arrays.asList("add", "remove", "flags", "helpers", "view"), options)
+                        StringUtil.copyPartialMatches(args[0], Arrays.asList("add", "remove", "select", "flags", "helpers", "trust", "untrust", "view", "list"), options)
+                );
+            } else if (args.length == 2 && (args[0].equals("add") || args[0].equals("remove"))) {
+                Collections.sort(
+                        StringUtil.copyPartialMatches(args[1], Collections.singletonList("selection"), options)
                 );
             }
             return options;
         }
     }
 
+    /**
+     * Look up the uuid of a player by name, using the stored users if the player is offline
+     * @param name
+     * @return CompletableFuture with the uuid or an empty optional if the player never joined
+     */
+    private CompletableFuture<Optional<UUID>> fetchPlayerUuid(String name) {
+        Player target = this.plugin.getServer().getPlayerExact(name);
+        if (target != null) {
+            return CompletableFuture.completedFuture(Optional.of(target.getUniqueId()));
+        }
+        return this.plugin.getUsersManager().fetchUser(name).thenApply(user -> user.map(User::getUUID));
+    }
+
+    /**
+     * Parse the area a player wants to claim or unclaim
+     * @param player
+     * @param arg a radius around the player or "selection"
+     * @return the coordinates of every chunk in the area or an empty optional if it was invalid
+     */
+    private Optional<List<ChunkCoordinates>> getArea(Player player, String arg) {
+        int maxRadius = this.plugin.getConfig().getInt("max_claim_radius");
+        int maxSide = maxRadius * 2 + 1;
+        Chunk chunk = player.getLocation().getChunk();
+        UUID worldUuid = player.getWorld().getUID();
+
+        int minX;
+        int minZ;
+        int maxX;
+        int maxZ;
+        if (arg.equalsIgnoreCase("selection")) {
+            ChunkCoordinates[] selection = this.selections.get(player);
+            if (selection == null || selection[1] == null || !selection[0].getWorldUUID().equals(worldUuid)) {
+                player.sendMessage(Utility.formatResponse("Claims", "Select 2 corners in this world with /claim select first.", ChatColor.RED));
+                return Optional.empty();
+            }
+            minX = Math.min(selection[0].getX(), selection[1].getX());
+            minZ = Math.min(selection[0].getZ(), selection[1].getZ());
+            maxX = Math.max(selection[0].getX(), selection[1].getX());
+            maxZ = Math.max(selection[0].getZ(), selection[1].getZ());
+            if (maxX - minX + 1 > maxSide || maxZ - minZ + 1 > maxSide) {
+                player.sendMessage(Utility.formatResponse("Claims", "Your selection can be at most " + maxSide + "x" + maxSide + " chunks.", ChatColor.RED));
+                return Optional.empty();
+            }
+        } else {
+            int radius;
+            try {
+                radius = Integer.parseInt(arg);
+            } catch (NumberFormatException exception) {
+                player.sendMessage(Utility.formatResponse("Claims", "Please provide a valid radius or selection.", ChatColor.RED));
+                return Optional.empty();
+            }
+            if (radius < 0 || radius > maxRadius) {
+                player.sendMessage(Utility.formatResponse("Claims", "The radius must be between 0 and " + maxRadius + ".", ChatColor.RED));
+                return Optional.empty();
+            }
+            minX = chunk.getX() - radius;
+            minZ = chunk.getZ() - radius;
+            maxX = chunk.getX() + radius;
+            maxZ = chunk.getZ() + radius;
+        }
+
+        List<ChunkCoordinates> area = new ArrayList<>();
+        for (int x = minX; x <= maxX; x++) {
+            for (int z = minZ; z <= maxZ; z++) {
+                area.add(new ChunkCoordinates(worldUuid, x, z));
+            }
+        }
+        return Optional.of(area);
+    }
+
+    /**
+     * Claim every unclaimed chunk of an area at once.
+     * The claim limit is checked once and a single ChunkClaimEvent is called for the whole area.
+     */
+    private void claimArea(Player player, List<ChunkCoordinates> area, boolean playerIsClaimAdmin) {
+        ClaimsManager claimsManager = this.plugin.getClaimsManager();
+        claimsManager.fetchClaimCount(player.getUniqueId()).thenCombine(claimsManager.fetchClaims(area), (fetchedCount, claims) -> {
+            // Events have to be called on the main thread
+            this.plugin.getServer().getScheduler().scheduleSyncDelayedTask(this.plugin, () -> {
+                if (!player.isOnline()) {
+                    return;
+                }
+                // Read from the cache again since chunks may have been claimed by someone else since they were fetched
+                List<Claim> claimedClaims = new ArrayList<>();
+                for (ChunkCoordinates coordinates : claims.keySet()) {
+                    Optional<Claim> claim = claimsManager.getClaim(coordinates);
+                    if (claim.isPresent() && !claim.get().hasOwner()) {
+                        claimedClaims.add(claim.get().withOwner(player.getUniqueId()));
+                    }
+                }
+                if (claimedClaims.isEmpty()) {
+                    player.sendMessage(Utility.formatResponse("Claims", "Every chunk in this area was already claimed.", ChatColor.RED));
+                    return;
+                }
+
+                int claimLimit = this.plugin.getConfig().getInt("max_claims_per_player");
+                int totalClaims = claimsManager.getClaimCount(player.getUniqueId()).orElse(fetchedCount);
+                if (!playerIsClaimAdmin && claimLimit >= 0 && totalClaims + claimedClaims.size() > claimLimit) {
+                    player.sendMessage(Utility.formatResponse("Claims", "Sorry, you can only claim " + Math.max(claimLimit - totalClaims, 0) + " more chunks!", ChatColor.RED));
+                    return;
+                }
+
+                ChunkClaimEvent chunkClaimEvent = new ChunkClaimEvent(player, claimedClaims);
+                this.plugin.getServer().getPluginManager().callEvent(chunkClaimEvent);
+                if (chunkClaimEvent.isCancelled()) {
+                    return;
+                }
+
+                claimsManager.saveClaims(claimedClaims).whenComplete((v, exception) -> {
+                    if (exception != null) {
+                        this.plugin.getLogger().log(Level.SEVERE, "Failed to claim chunks", exception);
+                        player.sendMessage(Utility.formatResponse("Claims", "An exception occurred while trying to claim these chunks.", ChatColor.RED));
+                    } else {
+                        player.sendMessage(Utility.formatResponse("Claims", "Claimed " + claimedClaims.size() + " chunks!", ChatColor.GREEN));
+                    }
+                });
+            });
+            return null;
+        }).whenComplete((v, exception) -> {
+            if (exception != null) {
+                this.plugin.getLogger().log(Level.SEVERE, "Failed to fetch chunks to claim", exception);
+                player.sendMessage(Utility.formatResponse("Claims", "An exception occurred while trying to claim these chunks.", ChatColor.RED));
+            }
+        });
+    }
+
+    /**
+     * Unclaim every chunk of an area the player owns at once.
+     * Claim admins unclaim every claimed chunk of the area. A single ChunkUnclaimEvent is called for the whole area.
+     */
+    private void unclaimArea(Player player, List<ChunkCoordinates> area, boolean playerIsClaimAdmin) {
+        ClaimsManager claimsManager = this.plugin.getClaimsManager();
+        claimsManager.fetchClaims(area).whenComplete((claims, exception) -> {
+            if (exception != null) {
+                this.plugin.getLogger().log(Level.SEVERE, "Failed to fetch chunks to unclaim", exception);
+                player.sendMessage(Utility.formatResponse("Claims", "An exception occurred while trying to unclaim these chunks.", ChatColor.RED));
+                return;
+            }
+
+            // Events have to be called on the main thread
+            this.plugin.getServer().getScheduler().scheduleSyncDelayedTask(this.plugin, () -> {
+                if (!player.isOnline()) {
+                    return;
+                }
+                // Read from the cache again since chunks may have changed owner since they were fetched
+                List<Claim> unclaimedClaims = new ArrayList<>();
+                for (ChunkCoordinates coordinates : claims.keySet()) {
+                    Optional<Claim> claim = claimsManager.getClaim(coordinates);
+                    if (claim.isPresent() && claim.get().hasOwner() && (playerIsClaimAdmin || claim.get().isOwner(player.getUniqueId()))) {
+                        unclaimedClaims.add(claim.get());
+                    }
+                }
+                if (unclaimedClaims.isEmpty()) {
+                    player.sendMessage(Utility.formatResponse("Claims", "You do not own any chunk in this area.", ChatColor.RED));
+                    return;
+                }
+
+                ChunkUnclaimEvent chunkUnclaimEvent = new ChunkUnclaimEvent(player, unclaimedClaims);
+                this.plugin.getServer().getPluginManager().callEvent(chunkUnclaimEvent);
+                if (chunkUnclaimEvent.isCancelled()) {
+                    return;
+                }
+
+                claimsManager.deleteClaims(unclaimedClaims).whenComplete((v, deleteException) -> {
+                    if (deleteException != null) {
+                        this.plugin.getLogger().log(Level.SEVERE, "Failed to unclaim chunks", deleteException);
+                        player.sendMessage(Utility.formatResponse("Claims", "An exception occurred while trying to unclaim these chunks.", ChatColor.RED));
+                    } else {
+                        player.sendMessage(Utility.formatResponse("Claims", "Unclaimed " + unclaimedClaims.size() + " chunks!", ChatColor.GREEN));
+                    }
+                });
+            });
+        });
+    }
+
     @EventHandler
     public void onPlayerQuit(PlayerQuitEvent event) {
         this.claimViewers.remove(event.getPlayer());
+        this.selections.remove(event.getPlayer());
     }
 
 }
@@ -0,0 +1,146 @@
+package io.github.willqi.pizzamc.claims.plugin.commands;
+
+import io.github.willqi.pizzamc.claims.api.daosources.DaoExecutor;
+import io.github.willqi.pizzamc.claims.api.exceptions.DaoException;
+import io.github.willqi.pizzamc.claims.api.snapshots.SnapshotExporter;
+import io.github.willqi.pizzamc.claims.api.snapshots.SnapshotImporter;
+import io.github.willqi.pizzamc.claims.api.snapshots.SnapshotStats;
+import io.github.willqi.pizzamc.claims.plugin.ClaimsPlugin;
+import io.github.willqi.pizzamc.claims.plugin.Permissions;
+import io.github.willqi.pizzamc.claims.plugin.Utility;
+import org.bukkit.ChatColor;
+import org.bukkit.command.Command;
+import org.bukkit.command.CommandExecutor;
+import org.bukkit.command.CommandSender;
+import org.bukkit.command.TabCompleter;
+import org.bukkit.util.StringUtil;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+
+public class SnapshotCommand implements CommandExecutor, TabCompleter {
+
+    private static final String USAGE_MESSAGE = "Need help using /claimsnapshot?\n" +
+                                                "/claimsnapshot export <file> - Write all claims, helpers, homes and users to a snapshot\n" +
+                                                "/claimsnapshot import <file> - Restore a snapshot into empty storage";
+
+    private final ClaimsPlugin plugin;
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public SnapshotCommand (ClaimsPlugin plugin) {
+        this.plugin = plugin;
+    }
+
+    @Override
+    public boolean onCommand(CommandSender commandSender, Command command, String label, String[] args) {
+
+        if (!commandSender.hasPermission(Permissions.CAN_MANAGE_SNAPSHOTS)) {
+            commandSender.sendMessage(Utility.NO_PERMISSIONS_MESSAGE);
+            return true;
+        }
+        if (args.length < 2) {
+            commandSender.sendMessage(Utility.formatResponse("Snapshots", USAGE_MESSAGE));
+            return true;
+        }
+
+        Path directory = this.plugin.getDataFolder().toPath().resolve("snapshots").toAbsolutePath().normalize();
+        Path file = directory.resolve(args[1]).normalize();
+        if (!file.getParent().equals(directory)) {
+            commandSender.sendMessage(Utility.formatResponse("Snapshots", "Snapshots can only be stored directly in the snapshots folder.", ChatColor.RED));
+            return true;
+        }
+
+        boolean export;
+        switch (args[0].toLowerCase()) {
+            case "export":
+                export = true;
+                break;
+            case "import":
+                if (!Files.isRegularFile(file)) {
+                    commandSender.sendMessage(Utility.formatResponse("Snapshots", "No snapshot could be found by that name!", ChatColor.RED));
+                    return true;
+                }
+                export = false;
+                break;
+            default:
+                commandSender.sendMessage(Utility.formatResponse("Snapshots", USAGE_MESSAGE));
+                return true;
+        }
+
+        if (!this.running.compareAndSet(false, true)) {
+            commandSender.sendMessage(Utility.formatResponse("Snapshots", "A snapshot is already being exported or imported.", ChatColor.RED));
+            return true;
+        }
+        commandSender.sendMessage(Utility.formatResponse("Snapshots", (export ? "Exporting to " : "Importing from ") + file.getFileName() + "..."));
+        // Claim changes that are still queued are written first so that the export contains them
+        CompletableFuture<Void> queuedWrites = export ? this.plugin.getClaimsManager().flushWrites() : CompletableFuture.completedFuture(null);
+        queuedWrites.thenCompose(ignored -> DaoExecutor.supplyAsync(() -> {
+            try {
+                return export ? this.exportTo(directory, file) : this.importFrom(file);
+            } catch (DaoException exception) {
+                throw new CompletionException(exception);
+            } catch (IOException exception) {
+                throw new UncheckedIOException(exception);
+            }
+        }, this.plugin.getDaoExecutor())).whenComplete((stats, exception) -> {
+            this.running.set(false);
+            if (exception != null) {
+                this.plugin.getLogger().log(Level.SEVERE, "Failed to " + (export ? "export" : "import") + " snapshot " + file, exception);
+                commandSender.sendMessage(Utility.formatResponse("Snapshots", "An exception has occurred. Check the console for details.", ChatColor.RED));
+            } else {
+                this.plugin.getLogger().info((export ? "Exported " : "Imported ") + stats);
+                commandSender.sendMessage(Utility.formatResponse("Snapshots", (export ? "Exported " : "Imported ") + stats
+                        + (export ? "" : ". Restart the server to clear cached claims and homes.")));
+            }
+        });
+        return true;
+    }
+
+    @Override
+    public List<String> onTabComplete(CommandSender commandSender, Command command, String label, String[] args) {
+        if (!commandSender.hasPermission(Permissions.CAN_MANAGE_SNAPSHOTS)) {
+            return Collections.emptyList();
+        }
+        if (args.length == 1) {
+            return StringUtil.copyPartialMatches(args[0], Arrays.asList("export", "import"), new ArrayList<>());
+        }
+        return Collections.emptyList();
+    }
+
+    private SnapshotStats exportTo(Path directory, Path file) throws DaoException, IOException {
+        Files.createDirectories(directory);
+        // Write next to the target first so an interrupted export never replaces a complete snapshot
+        Path temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        SnapshotStats stats;
+        try (OutputStream output = Files.newOutputStream(temporaryFile, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            stats = new SnapshotExporter(this.plugin.getDaoSource()).exportTo(output);
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.REPLACE_EXISTING);
+        return stats;
+    }
+
+    private SnapshotStats importFrom(Path file) throws DaoException, IOException {
+        // Claim changes made during the import are written afterwards instead of alongside it
+        this.plugin.getClaimsManager().pauseWrites();
+        try (InputStream input = Files.newInputStream(file)) {
+            return new SnapshotImporter(this.plugin.getDaoSource()).importFrom(input);
+        } finally {
+            this.plugin.getClaimsManager().resumeWrites();
+        }
+    }
+
+}
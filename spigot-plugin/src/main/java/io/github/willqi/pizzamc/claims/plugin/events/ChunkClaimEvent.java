@@ -5,6 +5,8 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.Cancellable;
 import org.bukkit.event.HandlerList;
 
+import java.util.Collection;
+
 public class ChunkClaimEvent extends ClaimEvent implements Cancellable {
 
     private static final HandlerList handlers = new HandlerList();
@@ -15,6 +17,10 @@ public class ChunkClaimEvent extends ClaimEvent implements Cancellable {
         super(player, claim);
     }
 
+    public ChunkClaimEvent(Player player, Collection<Claim> claims) {
+        super(player, claims);
+    }
+
     @Override
     public boolean isCancelled() {
         return this.cancelled;
@@ -5,6 +5,8 @@ import org.bukkit.entity.Player;
 import org.bukkit.event.Cancellable;
 import org.bukkit.event.HandlerList;
 
+import java.util.Collection;
+
 public class ChunkUnclaimEvent extends ClaimEvent implements Cancellable {
 
     private static final HandlerList handlers = new HandlerList();
@@ -15,6 +17,10 @@ public class ChunkUnclaimEvent extends ClaimEvent implements Cancellable {
         super(player, claim);
     }
 
+    public ChunkUnclaimEvent(Player player, Collection<Claim> claims) {
+        super(player, claims);
+    }
+
     @Override
     public boolean isCancelled() {
         return this.cancelled;
@@ -4,17 +4,39 @@ import io.github.willqi.pizzamc.claims.api.claims.Claim;
 import org.bukkit.entity.Player;
 import org.bukkit.event.player.PlayerEvent;
 
+import java.util.Collection;
+import java.util.Collections;
+
 public abstract class ClaimEvent extends PlayerEvent {
 
-    private final Claim claim;
+    private final Collection<Claim> claims;
 
     public ClaimEvent(Player player, Claim claim) {
+        this(player, Collections.singletonList(claim));
+    }
+
+    /**
+     * Used when many chunks are changed at once
+     * @param player
+     * @param claims the claims of every chunk. Must not be empty
+     */
+    public ClaimEvent(Player player, Collection<Claim> claims) {
         super(player);
-        this.claim = claim;
+        this.claims = Collections.unmodifiableCollection(claims);
     }
 
+    /**
+     * @return the first claim changed
+     */
     public Claim getClaim() {
-        return this.claim;
+        return this.claims.iterator().next();
+    }
+
+    /**
+     * @return every claim changed
+     */
+    public Collection<Claim> getClaims() {
+        return this.claims;
     }
 
 }
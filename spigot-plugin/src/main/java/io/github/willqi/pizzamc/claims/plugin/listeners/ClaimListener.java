@@ -3,12 +3,15 @@ package io.github.willqi.pizzamc.claims.plugin.listeners;
 import io.github.willqi.pizzamc.claims.api.claims.ChunkCoordinates;
 import io.github.willqi.pizzamc.claims.api.claims.Claim;
 import io.github.willqi.pizzamc.claims.api.claims.ClaimHelper;
+import io.github.willqi.pizzamc.claims.api.claims.ClaimsManager;
+import io.github.willqi.pizzamc.claims.api.claims.PermissionState;
 import io.github.willqi.pizzamc.claims.plugin.ClaimsPlugin;
 import io.github.willqi.pizzamc.claims.plugin.Permissions;
 import io.github.willqi.pizzamc.claims.plugin.Utility;
 import org.bukkit.ChatColor;
 import org.bukkit.Chunk;
 import org.bukkit.Location;
+import org.bukkit.block.Block;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
@@ -19,17 +22,42 @@ import org.bukkit.event.block.BlockPlaceEvent;
 import org.bukkit.event.entity.EntityDamageByEntityEvent;
 import org.bukkit.event.entity.EntitySpawnEvent;
 import org.bukkit.event.player.*;
+import org.bukkit.event.world.ChunkLoadEvent;
 import org.bukkit.event.world.ChunkUnloadEvent;
 
-import java.util.Optional;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
 import java.util.logging.Level;
 
 public class ClaimListener implements Listener {
 
     private final ClaimsPlugin plugin;
 
+    // How often the claimed chunks of players who are not online are dropped, such as players whose region was looked up
+    private static final long OFFLINE_OWNER_SWEEP_TICKS = 20 * 60 * 5;
+
+    // How long the claims of an unloaded chunk stay cached in case the chunk is loaded again. 0 drops them right away
+    private final long unloadedChunkRetentionSeconds;
+
     public ClaimListener(ClaimsPlugin plugin) {
         this.plugin = plugin;
+        this.unloadedChunkRetentionSeconds = plugin.getConfig().getLong("unloaded_chunk_retention_seconds", 60);
+        if (this.unloadedChunkRetentionSeconds > 0) {
+            // Unloaded chunks are kept between 1 and 2 retention periods
+            long periodTicks = this.unloadedChunkRetentionSeconds * 20;
+            this.plugin.getServer().getScheduler().scheduleSyncRepeatingTask(this.plugin, () ->
+                    this.plugin.getClaimsManager().removeUnpinnedChunksFromCache(this.unloadedChunkRetentionSeconds * 1000), periodTicks, periodTicks);
+        }
+        this.plugin.getServer().getScheduler().scheduleSyncRepeatingTask(this.plugin, () -> {
+            Set<UUID> onlinePlayers = new HashSet<>();
+            for (Player player : this.plugin.getServer().getOnlinePlayers()) {
+                onlinePlayers.add(player.getUniqueId());
+            }
+            this.plugin.getClaimsManager().retainClaimCountsInCache(onlinePlayers);
+        }, OFFLINE_OWNER_SWEEP_TICKS, OFFLINE_OWNER_SWEEP_TICKS);
     }
 
     //
@@ -39,9 +67,9 @@ public class ClaimListener implements Listener {
     @EventHandler
     public void onPlayerJoin(PlayerJoinEvent event) {
         this.requestChunksAround(event.getPlayer().getLocation());
-        this.plugin.getClaimsManager().fetchClaimCount(event.getPlayer().getUniqueId()).whenComplete((count, exception) -> {
+        this.plugin.getClaimsManager().fetchOwnedClaims(event.getPlayer().getUniqueId()).whenComplete((claims, exception) -> {
             if (exception != null) {
-                this.plugin.getLogger().log(Level.SEVERE, "Failed to fetch claim count of uuid " + event.getPlayer().getUniqueId(), exception);
+                this.plugin.getLogger().log(Level.SEVERE, "Failed to fetch claims of uuid " + event.getPlayer().getUniqueId(), exception);
             }
         });
     }
@@ -61,9 +89,18 @@ public class ClaimListener implements Listener {
         this.handlePlayerMovementEvent(event);
     }
 
+    @EventHandler
+    public void onChunkLoad(ChunkLoadEvent event) {
+        this.plugin.getClaimsManager().pinChunk(new ChunkCoordinates(event.getChunk().getWorld().getUID(), event.getChunk().getX(), event.getChunk().getZ()));
+    }
+
     @EventHandler
     public void onChunkUnload(ChunkUnloadEvent event) {
-        this.plugin.getClaimsManager().removeClaimFromCache(new ChunkCoordinates(event.getChunk().getWorld().getUID(), event.getChunk().getX(), event.getChunk().getZ()));
+        ChunkCoordinates coordinates = new ChunkCoordinates(event.getChunk().getWorld().getUID(), event.getChunk().getX(), event.getChunk().getZ());
+        this.plugin.getClaimsManager().unpinChunk(coordinates);
+        if (this.unloadedChunkRetentionSeconds <= 0) {
+            this.plugin.getClaimsManager().removeClaimFromCache(coordinates);
+        }
     }
 
     private void handlePlayerMovementEvent(PlayerMoveEvent event) {
@@ -76,15 +113,17 @@ public class ClaimListener implements Listener {
 
     private void requestChunksAround(Location location) {
         Chunk chunk = location.getChunk();
+        List<ChunkCoordinates> window = new ArrayList<>(9);
         for (int x = chunk.getX() - 1; x <= chunk.getX() + 1; x++) {
             for (int z = chunk.getZ() - 1; z <= chunk.getZ() + 1; z++) {
-                this.plugin.getClaimsManager().fetchClaim(new ChunkCoordinates(chunk.getWorld().getUID(), x, z)).whenComplete((claim, exception) -> {
-                    if (exception != null) {
-                        this.plugin.getLogger().log(Level.SEVERE, "An exception occurred while loading a claim chunk", exception);
-                    }
-                });
+                window.add(new ChunkCoordinates(chunk.getWorld().getUID(), x, z));
             }
         }
+        this.plugin.getClaimsManager().fetchClaims(window).whenComplete((claims, exception) -> {
+            if (exception != null) {
+                this.plugin.getLogger().log(Level.SEVERE, "An exception occurred while loading claim chunks", exception);
+            }
+        });
     }
 
 
@@ -95,17 +134,13 @@ public class ClaimListener implements Listener {
     @EventHandler
     public void onPlayerEnterClaim(PlayerMoveEvent event) {
         // Handle ALWAYS_DAY flag
-        Chunk currentChunk = event.getTo().getChunk();
-        Chunk previousChunk = event.getFrom().getChunk();
-        if ((currentChunk.getX() != previousChunk.getX()) || (currentChunk.getZ() != previousChunk.getZ())) {
+        int currentChunkX = event.getTo().getBlockX() >> 4;
+        int currentChunkZ = event.getTo().getBlockZ() >> 4;
+        if ((currentChunkX != event.getFrom().getBlockX() >> 4) || (currentChunkZ != event.getFrom().getBlockZ() >> 4)) {
 
-            ChunkCoordinates currentCoordinates = new ChunkCoordinates(
-                    currentChunk.getWorld().getUID(),
-                    currentChunk.getX(),
-                    currentChunk.getZ()
-            );
-            Optional<Claim> currentChunkClaim = this.plugin.getClaimsManager().getClaim(currentCoordinates);
-            if (currentChunkClaim.isPresent() && currentChunkClaim.get().hasFlag(Claim.Flag.ALWAYS_DAY)) {
+            ClaimsManager claimsManager = this.plugin.getClaimsManager();
+            int worldId = claimsManager.getWorldId(event.getTo().getWorld().getUID());
+            if (claimsManager.hasFlag(worldId, currentChunkX, currentChunkZ, Claim.Flag.ALWAYS_DAY)) {
                 event.getPlayer().setPlayerTime(1000, false);
             } else {
                 event.getPlayer().resetPlayerTime();
@@ -117,13 +152,10 @@ public class ClaimListener implements Listener {
     @EventHandler
     public void onMobSpawn(EntitySpawnEvent event) {
         if ((!(event.getEntity() instanceof Player)) && (event.getEntity() instanceof LivingEntity)) {
-            ChunkCoordinates coordinates = new ChunkCoordinates(
-                    event.getLocation().getWorld().getUID(),
-                    event.getLocation().getChunk().getX(),
-                    event.getLocation().getChunk().getZ()
-            );
-            Optional<Claim> claim = this.plugin.getClaimsManager().getClaim(coordinates);
-            if (claim.isPresent() && claim.get().hasFlag(Claim.Flag.DISABLE_MOB_SPAWNING)) {
+            ClaimsManager claimsManager = this.plugin.getClaimsManager();
+            Location location = event.getLocation();
+            int worldId = claimsManager.getWorldId(location.getWorld().getUID());
+            if (claimsManager.hasFlag(worldId, location.getBlockX() >> 4, location.getBlockZ() >> 4, Claim.Flag.DISABLE_MOB_SPAWNING)) {
                 event.setCancelled(true);
             }
         }
@@ -132,13 +164,10 @@ public class ClaimListener implements Listener {
     @EventHandler
     public void onPVP(EntityDamageByEntityEvent event) {
         if (event.getEntity() instanceof Player && event.getDamager() instanceof Player) {
-            ChunkCoordinates coordinates = new ChunkCoordinates(
-                    event.getEntity().getWorld().getUID(),
-                    event.getEntity().getLocation().getChunk().getX(),
-                    event.getEntity().getLocation().getChunk().getZ()
-            );
-            Optional<Claim> claim = this.plugin.getClaimsManager().getClaim(coordinates);
-            if (claim.isPresent() && claim.get().hasFlag(Claim.Flag.DENY_PVP)) {
+            ClaimsManager claimsManager = this.plugin.getClaimsManager();
+            Location location = event.getEntity().getLocation();
+            int worldId = claimsManager.getWorldId(location.getWorld().getUID());
+            if (claimsManager.hasFlag(worldId, location.getBlockX() >> 4, location.getBlockZ() >> 4, Claim.Flag.DENY_PVP)) {
                 event.getDamager().sendMessage(Utility.formatResponse("Claims", "This is a no PVP zone!", ChatColor.RED));
                 event.setCancelled(true);
             }
@@ -152,7 +181,7 @@ public class ClaimListener implements Listener {
 
     @EventHandler
     public void onClaimBlockPlace(BlockPlaceEvent event) {
-        switch (this.getPlayerBuildStateInChunk(event.getPlayer(), event.getBlock().getChunk())) {
+        switch (this.getPlayerBuildState(event.getPlayer(), event.getBlock())) {
             case DENIED:
                 event.setCancelled(true);
                 event.getPlayer().sendMessage(Utility.formatResponse("Claims", "You do not have permission to build in this chunk!", ChatColor.RED));
@@ -166,7 +195,7 @@ public class ClaimListener implements Listener {
 
     @EventHandler
     public void onClaimBlockBreakEvent(BlockBreakEvent event) {
-        switch (this.getPlayerBuildStateInChunk(event.getPlayer(), event.getBlock().getChunk())) {
+        switch (this.getPlayerBuildState(event.getPlayer(), event.getBlock())) {
             case DENIED:
                 event.setCancelled(true);
                 event.getPlayer().sendMessage(Utility.formatResponse("Claims", "You do not have permission to break blocks in this chunk!", ChatColor.RED));
@@ -225,7 +254,7 @@ public class ClaimListener implements Listener {
                 case DIODE:
                 case DIODE_BLOCK_OFF:
                 case DIODE_BLOCK_ON:
-                    switch (this.getPlayerInteractStateInChunk(event.getPlayer(), event.getClickedBlock().getChunk())) {
+                    switch (this.getPlayerInteractState(event.getPlayer(), event.getClickedBlock())) {
                         case DENIED:
                             event.setCancelled(true);
                             event.getPlayer().sendMessage(Utility.formatResponse("Claims", "You do not have permission to interact with blocks this chunk!", ChatColor.RED));
@@ -245,52 +274,28 @@ public class ClaimListener implements Listener {
 
 
 
-    private PermissionState getPlayerInteractStateInChunk(Player player, Chunk chunk) {
-        return this.getPlayerStateInChunkUsingHelperPermission(player, chunk, ClaimHelper.Permission.INTERACT);
+    private PermissionState getPlayerInteractState(Player player, Block block) {
+        return this.getPlayerStateUsingHelperPermission(player, block, ClaimHelper.Permission.INTERACT);
     }
 
-    private PermissionState getPlayerBuildStateInChunk(Player player, Chunk chunk) {
-        return this.getPlayerStateInChunkUsingHelperPermission(player, chunk, ClaimHelper.Permission.BUILD);
+    private PermissionState getPlayerBuildState(Player player, Block block) {
+        return this.getPlayerStateUsingHelperPermission(player, block, ClaimHelper.Permission.BUILD);
     }
 
     /**
-     * Sees if the player can perform an operation on the chunk
+     * Sees if the player can perform an operation on the chunk of a block
      * by checking if the chunk has no owner or if the chunk owner is the player.
      *
-     * If this is not the case, it will get the cached claim helpers
-     * and check to see if they have the permission provided.
+     * If this is not the case, it will check the cached claim helpers
+     * to see if they have the permission provided.
      */
-    private PermissionState getPlayerStateInChunkUsingHelperPermission(Player player, Chunk chunk, ClaimHelper.Permission helperPermission) {
+    private PermissionState getPlayerStateUsingHelperPermission(Player player, Block block, ClaimHelper.Permission helperPermission) {
         if (player.hasPermission(Permissions.HAS_CLAIM_ADMIN)) {
             return PermissionState.ALLOWED;
         }
-        ChunkCoordinates coordinates = new ChunkCoordinates(
-                chunk.getWorld().getUID(),
-                chunk.getX(),
-                chunk.getZ()
-        );
-        Optional<Claim> currentClaim = this.plugin.getClaimsManager().getClaim(coordinates);
-
-        if (!currentClaim.isPresent()) {
-            return PermissionState.LOADING;
-        }
-
-        // does this claim have a owner? Is it us? If not, are we a helper with permission?
-        if (currentClaim.get().getOwner().isPresent() && !currentClaim.get().getOwner().get().equals(player.getUniqueId())) {
-            // We do not own this claim, so are we a claim helper with permission to do this?
-            Optional<ClaimHelper> helper = this.plugin.getClaimsManager().getClaimHelper(coordinates, player.getUniqueId());
-            if (!helper.isPresent() || !helper.get().hasPermission(helperPermission)) {
-                return PermissionState.DENIED;
-            }
-        }
-
-        return PermissionState.ALLOWED;
-    }
-
-    private enum PermissionState {
-        ALLOWED,
-        DENIED,
-        LOADING
+        ClaimsManager claimsManager = this.plugin.getClaimsManager();
+        int worldId = claimsManager.getWorldId(block.getWorld().getUID());
+        return claimsManager.checkPermission(worldId, block.getX() >> 4, block.getZ() >> 4, player.getUniqueId(), helperPermission);
     }
 
 }
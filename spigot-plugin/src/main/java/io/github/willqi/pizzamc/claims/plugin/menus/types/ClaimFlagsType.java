@@ -68,19 +68,15 @@ public class ClaimFlagsType implements MenuType {
                 NBTTagCompound tag = Utility.getNMSTag(event.getCurrentItem());
                 if (tag.hasKey("flag")) {
                     Claim.Flag flag = Claim.Flag.getFlagByValue(tag.getInt("flag"));
-                    if (claim.hasFlag(flag)) {
-                        claim.removeFlag(flag);
-                    } else {
-                        claim.addFlag(flag);
-                    }
-                    this.plugin.getClaimsManager().saveClaim(claim).whenComplete((v, exception) -> {
+                    Claim updatedClaim = claim.hasFlag(flag) ? claim.withoutFlag(flag) : claim.withFlag(flag);
+                    this.plugin.getClaimsManager().saveClaim(updatedClaim).whenComplete((v, exception) -> {
                         if (exception != null) {
                             this.plugin.getLogger().log(Level.SEVERE, "Failed to save claim flags", exception);
                             player.sendMessage(Utility.formatResponse("Claims", "An exception has occurred while trying to save flags.", ChatColor.RED));
                         } else {
                             player.playSound(player.getLocation(), Sound.ENTITY_ARROW_HIT_PLAYER, 1f, 1f);
                             Map<String, Object> params = new HashMap<>();
-                            params.put("claim", claim);
+                            params.put("claim", updatedClaim);
                             this.plugin.getMenuManager().showMenu(player, ID, params);
                         }
                     });
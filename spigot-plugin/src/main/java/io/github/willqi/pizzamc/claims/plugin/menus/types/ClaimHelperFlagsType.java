@@ -73,12 +73,8 @@ public class ClaimHelperFlagsType implements MenuType {
                 NBTTagCompound tag = Utility.getNMSTag(event.getCurrentItem());
                 if (tag.hasKey("permission")) {
                     ClaimHelper.Permission permission = ClaimHelper.Permission.getPermisionByValue(tag.getInt("permission"));
-                    if (helper.hasPermission(permission)) {
-                        helper.removePermission(permission);
-                    } else {
-                        helper.addPermission(permission);
-                    }
-                    this.plugin.getClaimsManager().saveClaimHelper(claim.getCoordinates(), helper).whenComplete((v, exception) -> {
+                    ClaimHelper updatedHelper = helper.hasPermission(permission) ? helper.withoutPermission(permission) : helper.withPermission(permission);
+                    this.plugin.getClaimsManager().saveClaimHelper(claim.getCoordinates(), updatedHelper).whenComplete((v, exception) -> {
                         if (exception != null) {
                             this.plugin.getLogger().log(Level.SEVERE, "Failed to save claim helper", exception);
                             player.sendMessage(Utility.formatResponse("Claims", "An exception has occurred while trying to save the claim helper.", ChatColor.RED));
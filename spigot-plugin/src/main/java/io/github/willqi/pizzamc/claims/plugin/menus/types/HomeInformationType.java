@@ -76,11 +76,13 @@ public class HomeInformationType implements MenuType {
                     case 0:
                         player.closeInventory();
                         this.plugin.getMenuManager().closeMenu(player);
-                        home.setX(player.getLocation().getX());
-                        home.setY(player.getLocation().getY());
-                        home.setZ(player.getLocation().getZ());
-                        home.setWorldUUID(player.getLocation().getWorld().getUID());
-                        this.plugin.getHomesManager().save(home).whenComplete((v, exception) -> {
+                        Home movedHome = home.withLocation(
+                                player.getLocation().getWorld().getUID(),
+                                player.getLocation().getX(),
+                                player.getLocation().getY(),
+                                player.getLocation().getZ()
+                        );
+                        this.plugin.getHomesManager().save(movedHome).whenComplete((v, exception) -> {
                             if (exception != null) {
                                 this.plugin.getLogger().log(Level.SEVERE, "An exception occured while trying to update a home's location.", exception);
                                 player.sendMessage(Utility.formatResponse("Homes", "An exception has occurred.", ChatColor.RED));